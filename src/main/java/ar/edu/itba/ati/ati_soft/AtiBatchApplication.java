@@ -0,0 +1,36 @@
+package ar.edu.itba.ati.ati_soft;
+
+import ar.edu.itba.ati.ati_soft.batch.BatchRunner;
+import ar.edu.itba.ati.ati_soft.service.ImageIOServiceImpl;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Main class for headless batch processing (see {@link BatchRunner} for the accepted arguments).
+ * Only the service layer and the batch components are loaded (i.e no JavaFX stuff is started).
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@ComponentScan(basePackageClasses = {ImageIOServiceImpl.class, BatchRunner.class})
+@Profile(AtiBatchApplication.BATCH_PROFILE)
+public class AtiBatchApplication {
+
+    /**
+     * The profile that enables batch components (avoids them being loaded by the {@link AtiApplication}).
+     */
+    /* package */ static final String BATCH_PROFILE = "batch";
+
+    /**
+     * Entry point.
+     *
+     * @param args Execution arguments.
+     */
+    public static void main(String[] args) {
+        final SpringApplication application = new SpringApplication(AtiBatchApplication.class);
+        application.setAdditionalProfiles(BATCH_PROFILE);
+        System.exit(SpringApplication.exit(application.run(args)));
+    }
+}
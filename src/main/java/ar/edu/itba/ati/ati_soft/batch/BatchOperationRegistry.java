@@ -0,0 +1,370 @@
+package ar.edu.itba.ati.ati_soft.batch;
+
+import ar.edu.itba.ati.ati_soft.interfaces.*;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Registry that maps operation names (as used in {@link Pipeline}s) to calls to the service layer.
+ * <p>
+ * Operations are named as the service method they call, and take the parameters of that method
+ * (with the same names), except for the {@link Image} being processed.
+ * Two images operations (i.e {@code sum}, {@code subtract} and {@code multiply})
+ * take the path of the other image in the {@code other} parameter.
+ * <p>
+ * Steps are bound to {@link ImageExpression} operations, so consecutive point operations are fused,
+ * and an {@link Image} is only created when a neighbourhood operation (e.g a filter) needs it.
+ */
+@Component
+@Profile("batch")
+public class BatchOperationRegistry implements InitializingBean {
+
+    /**
+     * {@link Map} holding, for each operation name, a {@link Function} that takes a {@link PipelineStep}
+     * with the operation parameters, and returns the operation with those parameters bound.
+     */
+    private final Map<String, Function<PipelineStep, UnaryOperator<ImageExpression>>> operations;
+
+    /**
+     * An {@link ImageIOService} used to open the images used in two images operations.
+     */
+    private final ImageIOService imageIOService;
+
+    /**
+     * An {@link ImageOperationService} used to create {@link ImageExpression}s.
+     */
+    private final ImageOperationService imageOperationService;
+
+    /**
+     * An {@link ImageThresholdService} used to create binary images.
+     */
+    private final ImageThresholdService imageThresholdService;
+
+    /**
+     * A {@link NoiseGenerationService} used to pollute images.
+     */
+    private final NoiseGenerationService noiseGenerationService;
+
+    /**
+     * A {@link SlidingWindowService} used to apply filters to images.
+     */
+    private final SlidingWindowService slidingWindowService;
+
+    /**
+     * A {@link HistogramService} used to perform histogram based operations.
+     */
+    private final HistogramService histogramService;
+
+    /**
+     * A {@link DiffusionService} to perform image filtering using diffusion.
+     */
+    private final DiffusionService diffusionService;
+
+    /**
+     * A {@link HoughService} to perform shape detection.
+     */
+    private final HoughService houghService;
+
+    /**
+     * Constructor.
+     *
+     * @param imageIOService         An {@link ImageIOService} used to open images.
+     * @param imageOperationService  An {@link ImageOperationService} used to create {@link ImageExpression}s.
+     * @param imageThresholdService  An {@link ImageThresholdService} used to create binary images.
+     * @param noiseGenerationService A {@link NoiseGenerationService} used to pollute images.
+     * @param slidingWindowService   A {@link SlidingWindowService} used to apply filters to images.
+     * @param histogramService       A {@link HistogramService} used to perform histogram based operations.
+     * @param diffusionService       A {@link DiffusionService} to perform image filtering using diffusion.
+     * @param houghService           A {@link HoughService} to perform shape detection.
+     */
+    @Autowired
+    public BatchOperationRegistry(ImageIOService imageIOService,
+                                 ImageOperationService imageOperationService,
+                                 ImageThresholdService imageThresholdService,
+                                 NoiseGenerationService noiseGenerationService,
+                                 SlidingWindowService slidingWindowService,
+                                 HistogramService histogramService,
+                                 DiffusionService diffusionService,
+                                 HoughService houghService) {
+        this.operations = new HashMap<>();
+        this.imageIOService = imageIOService;
+        this.imageOperationService = imageOperationService;
+        this.imageThresholdService = imageThresholdService;
+        this.noiseGenerationService = noiseGenerationService;
+        this.slidingWindowService = slidingWindowService;
+        this.histogramService = histogramService;
+        this.diffusionService = diffusionService;
+        this.houghService = houghService;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        // Image operations (all of them are performed lazily)
+        operations.put("sum", step -> twoImages(step, ImageExpression::sum));
+        operations.put("subtract", step -> twoImages(step, ImageExpression::subtract));
+        operations.put("multiply", step -> twoImages(step, ImageExpression::multiply));
+        operations.put("multiplyByScalar", step -> {
+            final double scalar = step.getDouble("scalar");
+            return expression -> expression.multiplyByScalar(scalar);
+        });
+        operations.put("dynamicRangeCompression", step -> ImageExpression::dynamicRangeCompression);
+        operations.put("gammaPower", step -> {
+            final double gamma = step.getDouble("gamma");
+            return expression -> expression.gammaPower(gamma);
+        });
+        operations.put("getNegative", step -> ImageExpression::negative);
+        operations.put("normalize", step -> ImageExpression::normalize);
+
+        // Threshold
+        operations.put("manualThreshold", step -> {
+            final int value = step.getInt("value");
+            return expression -> expression.threshold(value);
+        });
+        operations.put("globalThreshold", step -> {
+            final int deltaT = step.getInt("deltaT");
+            return neighbourhood(image -> imageThresholdService.globalThreshold(image, deltaT));
+        });
+        operations.put("otsuThreshold", step -> neighbourhood(imageThresholdService::otsuThreshold));
+        operations.put("hysteresisThreshold", step -> neighbourhood(imageThresholdService::hysteresisThreshold));
+
+        // Noise
+        operations.put("additiveGaussianNoise", step -> {
+            final double mean = step.getDouble("mean");
+            final double standardDeviation = step.getDouble("standardDeviation");
+            final double density = step.getDouble("density");
+            return neighbourhood(image ->
+                    noiseGenerationService.additiveGaussianNoise(image, mean, standardDeviation, density));
+        });
+        operations.put("multiplicativeRayleighNoise", step -> {
+            final double scale = step.getDouble("scale");
+            final double density = step.getDouble("density");
+            return neighbourhood(image -> noiseGenerationService.multiplicativeRayleighNoise(image, scale, density));
+        });
+        operations.put("multiplicativeExponentialNoise", step -> {
+            final double rate = step.getDouble("rate");
+            final double density = step.getDouble("density");
+            return neighbourhood(image -> noiseGenerationService.multiplicativeExponentialNoise(image, rate, density));
+        });
+        operations.put("saltAndPepperNoise", step -> {
+            final double p0 = step.getDouble("p0");
+            final double p1 = step.getDouble("p1");
+            return neighbourhood(image -> noiseGenerationService.saltAndPepperNoise(image, p0, p1));
+        });
+
+        // Filters
+        operations.put("applyMeanFilter", step -> {
+            final int windowLength = step.getInt("windowLength");
+            return neighbourhood(image -> slidingWindowService.applyMeanFilter(image, windowLength));
+        });
+        operations.put("applyMedianFilter", step -> {
+            final int windowLength = step.getInt("windowLength");
+            return neighbourhood(image -> slidingWindowService.applyMedianFilter(image, windowLength));
+        });
+        operations.put("applyWeightMedianFilter", step -> {
+            final Integer[][] weights = step.getIntMatrix("weights");
+            return neighbourhood(image -> slidingWindowService.applyWeightMedianFilter(image, weights));
+        });
+        operations.put("applyGaussianFilter", step -> {
+            final double standardDeviation = step.getDouble("standardDeviation");
+            return neighbourhood(image -> slidingWindowService.applyGaussianFilter(image, standardDeviation));
+        });
+        operations.put("applyBilateralFilter", step -> {
+            final double spatialStd = step.getDouble("spatialStd");
+            final double rangeStd = step.getDouble("rangeStd");
+            final int windowSize = step.getInt("windowSize");
+            return neighbourhood(image ->
+                    slidingWindowService.applyBilateralFilter(image, spatialStd, rangeStd, windowSize));
+        });
+        operations.put("applyBilateralFilterWithCIELabColor", step -> {
+            final double spatialStd = step.getDouble("spatialStd");
+            final double rangeStd = step.getDouble("rangeStd");
+            final int windowSize = step.getInt("windowSize");
+            return neighbourhood(image -> slidingWindowService
+                    .applyBilateralFilterWithCIELabColor(image, spatialStd, rangeStd, windowSize));
+        });
+
+        // Border detection
+        operations.put("applyHighPassFilter", step -> {
+            final int windowLength = step.getInt("windowLength");
+            return neighbourhood(image -> slidingWindowService.applyHighPassFilter(image, windowLength));
+        });
+        operations.put("prewittGradientOperatorBorderDetectionMethod",
+                step -> neighbourhood(slidingWindowService::prewittGradientOperatorBorderDetectionMethod));
+        operations.put("sobelGradientOperatorBorderDetectionMethod",
+                step -> neighbourhood(slidingWindowService::sobelGradientOperatorBorderDetectionMethod));
+        operations.put("anonymousMaxDirectionBorderDetectionMethod",
+                step -> neighbourhood(slidingWindowService::anonymousMaxDirectionBorderDetectionMethod));
+        operations.put("kirshMaxDirectionBorderDetectionMethod",
+                step -> neighbourhood(slidingWindowService::kirshMaxDirectionBorderDetectionMethod));
+        operations.put("prewittMaxDirectionBorderDetectionMethod",
+                step -> neighbourhood(slidingWindowService::prewittMaxDirectionBorderDetectionMethod));
+        operations.put("sobelMaxDirectionBorderDetectionMethod",
+                step -> neighbourhood(slidingWindowService::sobelMaxDirectionBorderDetectionMethod));
+        operations.put("laplaceMethod", step -> neighbourhood(slidingWindowService::laplaceMethod));
+        operations.put("laplaceMethodWithSlopeEvaluation", step -> {
+            final double slopeThreshold = step.getDouble("slopeThreshold");
+            return neighbourhood(image -> slidingWindowService.laplaceMethodWithSlopeEvaluation(image, slopeThreshold));
+        });
+        operations.put("laplaceOfGaussianMethod", step -> {
+            final double sigma = step.getDouble("sigma");
+            return neighbourhood(image -> slidingWindowService.laplaceOfGaussianMethod(image, sigma));
+        });
+        operations.put("laplaceOfGaussianWithSlopeEvaluation", step -> {
+            final double sigma = step.getDouble("sigma");
+            final double slopeThreshold = step.getDouble("slopeThreshold");
+            return neighbourhood(image ->
+                    slidingWindowService.laplaceOfGaussianWithSlopeEvaluation(image, sigma, slopeThreshold));
+        });
+        operations.put("suppressNoMaxPixels", step -> {
+            final double sigma = step.getDouble("sigma");
+            return neighbourhood(image -> slidingWindowService.suppressNoMaxPixels(image, sigma));
+        });
+        operations.put("cannyDetection", step -> {
+            final double sigma = step.getDouble("sigma");
+            return neighbourhood(image -> slidingWindowService.cannyDetection(image, sigma));
+        });
+        operations.put("susanDetection", step -> {
+            final double t = step.getDouble("t");
+            return neighbourhood(image -> slidingWindowService.susanDetection(image, t));
+        });
+        operations.put("harrisCornerDetection", step -> {
+            final double sigma = step.getDouble("sigma");
+            final double windowSigma = step.getDouble("windowSigma");
+            final double k = step.getDouble("k");
+            final int maxCorners = step.getInt("maxCorners");
+            return neighbourhood(image ->
+                    slidingWindowService.harrisCornerDetection(image, sigma, windowSigma, k, maxCorners));
+        });
+        operations.put("shiTomasiCornerDetection", step -> {
+            final double sigma = step.getDouble("sigma");
+            final double windowSigma = step.getDouble("windowSigma");
+            final int maxCorners = step.getInt("maxCorners");
+            return neighbourhood(image ->
+                    slidingWindowService.shiTomasiCornerDetection(image, sigma, windowSigma, maxCorners));
+        });
+
+        // Histograms
+        operations.put("increaseContrast", step -> neighbourhood(histogramService::increaseContrast));
+        operations.put("equalize", step -> neighbourhood(histogramService::equalize));
+
+        // Diffusion
+        operations.put("isotropicDiffusion", step -> {
+            final int t = step.getInt("t");
+            final double lambda = step.getDouble("lambda");
+            return neighbourhood(image -> diffusionService.isotropicDiffusion(image, t, lambda));
+        });
+        operations.put("anisotropicDiffusionWithLeclerc", step -> {
+            final int t = step.getInt("t");
+            final double lambda = step.getDouble("lambda");
+            final double sigma = step.getDouble("sigma");
+            return neighbourhood(image -> diffusionService.anisotropicDiffusionWithLeclerc(image, t, lambda, sigma));
+        });
+        operations.put("anisotropicDiffusionWithLorentz", step -> {
+            final int t = step.getInt("t");
+            final double lambda = step.getDouble("lambda");
+            final double sigma = step.getDouble("sigma");
+            return neighbourhood(image -> diffusionService.anisotropicDiffusionWithLorentz(image, t, lambda, sigma));
+        });
+
+        // Hough
+        operations.put("findStraightLines", step -> {
+            final double sigma = step.getDouble("sigma");
+            final double thetaStep = step.getDouble("thetaStep");
+            final double epsilon = step.getDouble("epsilon");
+            final double maxPercentage = step.getDouble("maxPercentage");
+            return neighbourhood(image ->
+                    houghService.findStraightLines(image, sigma, thetaStep, epsilon, maxPercentage));
+        });
+        operations.put("findCircles", step -> {
+            final double sigma = step.getDouble("sigma");
+            final double epsilon = step.getDouble("epsilon");
+            final double maxPercentage = step.getDouble("maxPercentage");
+            return neighbourhood(image -> houghService.findCircles(image, sigma, epsilon, maxPercentage));
+        });
+    }
+
+    /**
+     * @return The names of the registered operations.
+     */
+    public Set<String> getOperationNames() {
+        return Collections.unmodifiableSet(new TreeSet<>(operations.keySet()));
+    }
+
+    /**
+     * Binds the given {@link Pipeline}, returning a single operation that applies all of its steps.
+     *
+     * @param pipeline The {@link Pipeline} to be bound.
+     * @return The operation that applies the {@link Pipeline}.
+     * @throws IllegalArgumentException If any step has an unknown operation, or missing or invalid parameters.
+     */
+    public UnaryOperator<ImageExpression> bind(Pipeline pipeline) throws IllegalArgumentException {
+        Assert.notNull(pipeline, "The pipeline must not be null");
+        return pipeline.getSteps().stream()
+                .map(this::bind)
+                .reduce(UnaryOperator.identity(), (f1, f2) -> expression -> f2.apply(f1.apply(expression)));
+    }
+
+    /**
+     * Binds the given {@link PipelineStep}, returning its operation with its parameters set.
+     *
+     * @param step The {@link PipelineStep} to be bound.
+     * @return The operation of the step.
+     * @throws IllegalArgumentException If the step has an unknown operation, or missing or invalid parameters.
+     */
+    public UnaryOperator<ImageExpression> bind(PipelineStep step) throws IllegalArgumentException {
+        Assert.notNull(step, "The step must not be null");
+        return Optional.ofNullable(operations.get(step.getOperation()))
+                .orElseThrow(() -> new IllegalArgumentException("Unknown operation \"" + step.getOperation()
+                        + "\". Available operations are " + getOperationNames()))
+                .apply(step);
+    }
+
+
+    // ================================================================================================================
+    // Helper methods
+    // ================================================================================================================
+
+    /**
+     * Creates an operation that applies the given {@code operation}, which needs an {@link Image} to be performed
+     * (i.e the expression is materialized before applying it).
+     *
+     * @param operation The operation to be performed.
+     * @return The created operation.
+     */
+    private static UnaryOperator<ImageExpression> neighbourhood(UnaryOperator<Image> operation) {
+        return expression -> expression.then(operation);
+    }
+
+    /**
+     * Creates a two images operation, opening the other image from the path in the {@code other} parameter.
+     *
+     * @param step      The {@link PipelineStep} holding the parameters.
+     * @param operation A {@link BiFunction} that takes the processed expression and the other one,
+     *                  and returns the result of the operation.
+     * @return The created operation.
+     * @throws UncheckedIOException If the other image could not be opened.
+     */
+    private UnaryOperator<ImageExpression> twoImages(PipelineStep step,
+                                                     BiFunction<ImageExpression, ImageExpression, ImageExpression>
+                                                             operation) throws UncheckedIOException {
+        final File file = new File(step.getString("other"));
+        try {
+            final Image other = imageIOService.readImage(file);
+            return expression -> operation.apply(expression, imageOperationService.expression(other));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open image " + file, e);
+        }
+    }
+}
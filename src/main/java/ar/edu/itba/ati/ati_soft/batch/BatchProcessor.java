@@ -0,0 +1,288 @@
+package ar.edu.itba.ati.ati_soft.batch;
+
+import ar.edu.itba.ati.ati_soft.interfaces.ImageExpression;
+import ar.edu.itba.ati.ati_soft.interfaces.ImageIOService;
+import ar.edu.itba.ati.ati_soft.interfaces.ImageOperationService;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SampleLayout;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
+import ar.edu.itba.ati.ati_soft.utils.FileHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Component in charge of applying a {@link Pipeline} to all the images in a directory.
+ * <p>
+ * Files are processed in parallel, using a fixed amount of threads.
+ * Memory is bounded with a budget: before a file is submitted,
+ * its memory footprint is estimated from its size, and that amount is reserved from the budget
+ * (blocking until enough memory is released by files being processed).
+ */
+@Component
+@Profile("batch")
+public class BatchProcessor {
+
+    /**
+     * The {@link Logger} object.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchProcessor.class);
+
+    /**
+     * The estimated amount of {@link Image}s alive at the same time while a file is processed
+     * (i.e the input, the output, and the intermediate ones created by neighbourhood operations).
+     */
+    private static final long WORKING_COPIES = 4;
+
+    /**
+     * The size of the memory units handled by the budget (i.e 1 KiB), so budgets bigger than 2 GiB can be used.
+     */
+    private static final long BUDGET_UNIT = 1024;
+
+    /**
+     * An {@link ImageIOService} to open, translate and save images.
+     */
+    private final ImageIOService imageIOService;
+
+    /**
+     * An {@link ImageOperationService} used to create {@link ImageExpression}s.
+     */
+    private final ImageOperationService imageOperationService;
+
+    /**
+     * The {@link BatchOperationRegistry} used to bind {@link Pipeline}s.
+     */
+    private final BatchOperationRegistry operationRegistry;
+
+    /**
+     * Constructor.
+     *
+     * @param imageIOService        An {@link ImageIOService} to open, translate and save images.
+     * @param imageOperationService An {@link ImageOperationService} used to create {@link ImageExpression}s.
+     * @param operationRegistry     The {@link BatchOperationRegistry} used to bind {@link Pipeline}s.
+     */
+    @Autowired
+    public BatchProcessor(ImageIOService imageIOService, ImageOperationService imageOperationService,
+                          BatchOperationRegistry operationRegistry) {
+        this.imageIOService = imageIOService;
+        this.imageOperationService = imageOperationService;
+        this.operationRegistry = operationRegistry;
+    }
+
+    /**
+     * Applies the given {@link Pipeline} to all the supported image files in the {@code inputDirectory},
+     * saving the results (with the same file name) in the {@code outputDirectory}.
+     *
+     * @param pipeline        The {@link Pipeline} to be applied.
+     * @param inputDirectory  The directory from where images are taken.
+     * @param outputDirectory The directory to where results are saved (created if it does not exist).
+     * @param normalizeOutput Indicates whether results must be normalized before being saved
+     *                        (i.e as they are when displayed).
+     * @param sampleType      The {@link SampleType} with which images are read.
+     * @param layout          The {@link SampleLayout} with which images are read.
+     * @param threads         The amount of files to be processed at the same time.
+     * @param memoryBudget    The max. amount of bytes that the files being processed can take (estimated).
+     * @return A {@link BatchReport} with the result of the execution.
+     * @throws IllegalArgumentException If any argument is not valid
+     *                                  (e.g the pipeline has an unknown operation, or a directory does not exist).
+     * @throws InterruptedException     If the thread is interrupted while waiting for files to be processed.
+     */
+    public BatchReport process(Pipeline pipeline, File inputDirectory, File outputDirectory,
+                               boolean normalizeOutput, SampleType sampleType, SampleLayout layout,
+                               int threads, long memoryBudget)
+            throws IllegalArgumentException, InterruptedException {
+        Assert.isTrue(inputDirectory != null && inputDirectory.isDirectory(), "The input must be a directory");
+        Assert.notNull(sampleType, "The sample type must not be null");
+        Assert.notNull(layout, "The layout must not be null");
+        Assert.notNull(outputDirectory, "The output directory must not be null");
+        Assert.isTrue(threads > 0, "The amount of threads must be positive");
+        Assert.isTrue(memoryBudget > 0, "The memory budget must be positive");
+        Assert.isTrue(outputDirectory.isDirectory() || outputDirectory.mkdirs(),
+                "Could not create the output directory " + outputDirectory);
+        // Binding first in order to fail before processing any file
+        final UnaryOperator<ImageExpression> operation = operationRegistry.bind(pipeline);
+        final List<File> files = listImageFiles(inputDirectory);
+        LOGGER.info("Processing {} files ({} samples, {} layout) with {} threads and a memory budget of {} MiB...",
+                files.size(), sampleType, layout, threads, memoryBudget / (BUDGET_UNIT * BUDGET_UNIT));
+
+        final int budgetUnits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, memoryBudget / BUDGET_UNIT));
+        final Semaphore budget = new Semaphore(budgetUnits);
+        final AtomicInteger failures = new AtomicInteger(0);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final long start = System.nanoTime();
+        try {
+            for (File file : files) {
+                // Files bigger than the budget are processed alone
+                final int units = (int) Math.min(budgetUnits,
+                        estimateFootprint(file, sampleType) / BUDGET_UNIT + 1);
+                budget.acquire(units);
+                executor.execute(() -> {
+                    try {
+                        processFile(file, new File(outputDirectory, file.getName()), operation, normalizeOutput,
+                                sampleType, layout);
+                    } catch (Throwable e) {
+                        failures.incrementAndGet();
+                        LOGGER.error("{}: could not be processed: {}", file.getName(), e.getMessage());
+                        LOGGER.debug("Stacktrace: ", e);
+                    } finally {
+                        budget.release(units);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        final BatchReport report = new BatchReport(files.size(), failures.get(), toMillis(System.nanoTime() - start));
+        LOGGER.info("Processed {} files ({} failed) in {} ms", report.getFiles(), report.getFailures(),
+                report.getElapsedMillis());
+        return report;
+    }
+
+
+    // ================================================================================================================
+    // Helper methods
+    // ================================================================================================================
+
+    /**
+     * Processes the given {@code input} file, logging the time taken by each stage.
+     *
+     * @param input           The file to be processed.
+     * @param output          The file to which the result is saved.
+     * @param operation       The operation to be applied.
+     * @param normalizeOutput Indicates whether the result must be normalized before being saved.
+     * @param sampleType      The {@link SampleType} with which the file is read.
+     * @param layout          The {@link SampleLayout} with which the file is read.
+     * @throws Exception If anything goes wrong while processing the file.
+     */
+    private void processFile(File input, File output, UnaryOperator<ImageExpression> operation,
+                             boolean normalizeOutput, SampleType sampleType, SampleLayout layout) throws Exception {
+        final long start = System.nanoTime();
+        // Images are closed once the file is processed, so mapped rasters are not kept until garbage collected
+        try (Image original = imageIOService.readImage(input, sampleType, layout)) {
+            final long read = System.nanoTime();
+
+            final ImageExpression result = operation.apply(imageOperationService.expression(original));
+            try (Image image = (normalizeOutput ? result.normalize() : result).materialize()) {
+                final long processed = System.nanoTime();
+
+                imageIOService.writeImage(image, output);
+                final long written = System.nanoTime();
+
+                LOGGER.info("{}: {}x{}x{} - read {} ms, pipeline {} ms, write {} ms, total {} ms", input.getName(),
+                        image.getWidth(), image.getHeight(), image.getBands(),
+                        toMillis(read - start), toMillis(processed - read), toMillis(written - processed),
+                        toMillis(written - start));
+            }
+        }
+    }
+
+    /**
+     * Lists the files in the given {@code directory} that are supported by the {@link ImageIOService},
+     * sorted by name.
+     *
+     * @param directory The directory whose files will be listed.
+     * @return The {@link List} of files.
+     */
+    private List<File> listImageFiles(File directory) {
+        final Set<String> extensions = imageIOService.getSupportedFormats().keySet();
+        final File[] files = Optional.ofNullable(directory.listFiles(file -> file.isFile()
+                && extensions.contains(FileHelper.getExtension(file))))
+                .orElseThrow(() -> new IllegalArgumentException("Could not list files in " + directory));
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        return Arrays.asList(files);
+    }
+
+    /**
+     * Estimates the amount of memory needed to process the given {@code file}.
+     * Binary PNM files take a byte per sample, so the file size is used as the amount of samples
+     * (ASCII files are bigger, so their footprint is overestimated).
+     * Intermediate results can be promoted (see {@link SampleType#toFloatingPoint()}),
+     * so the size of the promoted type is used.
+     *
+     * @param file       The file whose footprint will be estimated.
+     * @param sampleType The {@link SampleType} with which the file is read.
+     * @return The estimated amount of bytes.
+     */
+    private static long estimateFootprint(File file, SampleType sampleType) {
+        return file.length() * sampleType.toFloatingPoint().getBytes() * WORKING_COPIES;
+    }
+
+    /**
+     * Transforms the given {@code nanos} into milliseconds.
+     *
+     * @param nanos The nanoseconds.
+     * @return The milliseconds.
+     */
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+
+    /**
+     * Bean class holding the result of a batch execution.
+     */
+    public static final class BatchReport {
+
+        /**
+         * The amount of processed files.
+         */
+        private final int files;
+
+        /**
+         * The amount of files that could not be processed.
+         */
+        private final int failures;
+
+        /**
+         * The time taken by the whole execution, in milliseconds.
+         */
+        private final long elapsedMillis;
+
+        /**
+         * Constructor.
+         *
+         * @param files         The amount of processed files.
+         * @param failures      The amount of files that could not be processed.
+         * @param elapsedMillis The time taken by the whole execution, in milliseconds.
+         */
+        private BatchReport(int files, int failures, long elapsedMillis) {
+            this.files = files;
+            this.failures = failures;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * @return The amount of processed files.
+         */
+        public int getFiles() {
+            return files;
+        }
+
+        /**
+         * @return The amount of files that could not be processed.
+         */
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return The time taken by the whole execution, in milliseconds.
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ar.edu.itba.ati.ati_soft.batch;
+
+import ar.edu.itba.ati.ati_soft.batch.BatchProcessor.BatchReport;
+import ar.edu.itba.ati.ati_soft.models.SampleLayout;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.nio.file.Paths;
+
+/**
+ * {@link CommandLineRunner} that executes a batch processing, configured with the following properties
+ * (which can be set as command line arguments, e.g {@code --batch.pipeline=pipeline.yml}):
+ * <ul>
+ * <li>{@code batch.pipeline}: The path of the YAML file holding the {@link Pipeline} (required).</li>
+ * <li>{@code batch.input}: The directory from where images are taken (required).</li>
+ * <li>{@code batch.output}: The directory to where results are saved (required).</li>
+ * <li>{@code batch.threads}: The amount of files processed at the same time
+ * (defaults to the amount of available processors).</li>
+ * <li>{@code batch.memory-budget}: The max. amount of memory, in MiB, that the files being processed can take
+ * (defaults to half the max. heap size).</li>
+ * <li>{@code batch.normalize-output}: Whether results are normalized before being saved (defaults to true).</li>
+ * <li>{@code batch.sample-type}: The {@link SampleType} with which images are read (defaults to {@code FLOAT64};
+ * {@code UINT8} takes an eighth of the memory for 8-bit images).</li>
+ * <li>{@code batch.layout}: The {@link SampleLayout} with which images are read (defaults to {@code INTERLEAVED};
+ * {@code PLANAR} stores each band in its own plane, so band by band operations read it sequentially).</li>
+ * </ul>
+ */
+@Component
+@Profile("batch")
+public class BatchRunner implements CommandLineRunner, ExitCodeGenerator {
+
+    /**
+     * The {@link Logger} object.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchRunner.class);
+
+    /**
+     * The {@link BatchProcessor} that performs the processing.
+     */
+    private final BatchProcessor batchProcessor;
+
+    /**
+     * The path of the YAML file holding the {@link Pipeline}.
+     */
+    private final String pipeline;
+
+    /**
+     * The directory from where images are taken.
+     */
+    private final String input;
+
+    /**
+     * The directory to where results are saved.
+     */
+    private final String output;
+
+    /**
+     * The amount of files processed at the same time (non positive values mean the amount of processors).
+     */
+    private final int threads;
+
+    /**
+     * The max. amount of memory, in MiB, that the files being processed can take
+     * (non positive values mean half the max. heap size).
+     */
+    private final long memoryBudget;
+
+    /**
+     * Indicates whether results are normalized before being saved.
+     */
+    private final boolean normalizeOutput;
+
+    /**
+     * The {@link SampleType} with which images are read.
+     */
+    private final SampleType sampleType;
+
+    /**
+     * The {@link SampleLayout} with which images are read.
+     */
+    private final SampleLayout layout;
+
+    /**
+     * The exit code of the application (i.e {@code 0} if all the files were processed, or {@code 1} otherwise).
+     */
+    private int exitCode;
+
+    @Autowired
+    public BatchRunner(BatchProcessor batchProcessor,
+                       @Value("${batch.pipeline:}") String pipeline,
+                       @Value("${batch.input:}") String input,
+                       @Value("${batch.output:}") String output,
+                       @Value("${batch.threads:0}") int threads,
+                       @Value("${batch.memory-budget:0}") long memoryBudget,
+                       @Value("${batch.normalize-output:true}") boolean normalizeOutput,
+                       @Value("${batch.sample-type:FLOAT64}") SampleType sampleType,
+                       @Value("${batch.layout:INTERLEAVED}") SampleLayout layout) {
+        this.batchProcessor = batchProcessor;
+        this.pipeline = pipeline;
+        this.input = input;
+        this.output = output;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.memoryBudget = memoryBudget > 0 ? memoryBudget * 1024 * 1024 : Runtime.getRuntime().maxMemory() / 2;
+        this.normalizeOutput = normalizeOutput;
+        this.sampleType = sampleType;
+        this.layout = layout;
+        this.exitCode = 0;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Assert.hasText(pipeline, "The pipeline file must be set (use --batch.pipeline=<path>)");
+        Assert.hasText(input, "The input directory must be set (use --batch.input=<path>)");
+        Assert.hasText(output, "The output directory must be set (use --batch.output=<path>)");
+        LOGGER.debug("Reading pipeline from {}...", pipeline);
+        final BatchReport report = batchProcessor.process(Pipeline.fromYaml(Paths.get(pipeline)),
+                new File(input), new File(output), normalizeOutput, sampleType, layout, threads, memoryBudget);
+        this.exitCode = report.getFailures() == 0 ? 0 : 1;
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+}
@@ -0,0 +1,124 @@
+package ar.edu.itba.ati.ati_soft.batch;
+
+import org.springframework.util.Assert;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A declarative list of {@link PipelineStep}s, to be applied in order to each processed image.
+ * <p>
+ * Pipelines are written in YAML, as a list of steps under the {@code steps} key.
+ * Each step is a map holding the name of the operation under the {@code operation} key,
+ * and its parameters under the rest of the keys. For example:
+ * <pre>
+ * steps:
+ *   - operation: applyGaussianFilter
+ *     standardDeviation: 1.5
+ *   - operation: otsuThreshold
+ * </pre>
+ */
+public final class Pipeline {
+
+    /**
+     * The key under which the steps are listed.
+     */
+    private static final String STEPS_KEY = "steps";
+
+    /**
+     * The key under which the name of the operation of a step is set.
+     */
+    private static final String OPERATION_KEY = "operation";
+
+    /**
+     * The steps of this pipeline.
+     */
+    private final List<PipelineStep> steps;
+
+    /**
+     * Constructor.
+     *
+     * @param steps The steps of this pipeline.
+     */
+    public Pipeline(List<PipelineStep> steps) {
+        Assert.notEmpty(steps, "The pipeline must have at least one step");
+        Assert.noNullElements(steps.toArray(), "The steps must not be null");
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+    }
+
+    /**
+     * @return The steps of this pipeline.
+     */
+    public List<PipelineStep> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Reads a {@link Pipeline} from the YAML file in the given {@code path}.
+     *
+     * @param path The {@link Path} of the YAML file.
+     * @return The read {@link Pipeline}.
+     * @throws IOException              If any IO error occurs while reading the file.
+     * @throws IllegalArgumentException If the file does not hold a valid pipeline.
+     */
+    public static Pipeline fromYaml(Path path) throws IOException, IllegalArgumentException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return fromYaml(inputStream);
+        }
+    }
+
+    /**
+     * Reads a {@link Pipeline} from the given YAML {@code inputStream}.
+     *
+     * @param inputStream The {@link InputStream} from where the YAML document is read.
+     * @return The read {@link Pipeline}.
+     * @throws IllegalArgumentException If the document does not hold a valid pipeline.
+     */
+    public static Pipeline fromYaml(InputStream inputStream) throws IllegalArgumentException {
+        final Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        // Only standard YAML types are constructed (i.e documents can't instantiate arbitrary classes)
+        final Object document = new Yaml(new SafeConstructor()).load(reader);
+        if (!(document instanceof Map) || !(((Map<?, ?>) document).get(STEPS_KEY) instanceof List)) {
+            throw new IllegalArgumentException("The pipeline must have a list of steps under the \""
+                    + STEPS_KEY + "\" key");
+        }
+        final List<PipelineStep> steps = new ArrayList<>();
+        for (Object element : (List<?>) ((Map<?, ?>) document).get(STEPS_KEY)) {
+            steps.add(toStep(element));
+        }
+        return new Pipeline(steps);
+    }
+
+    /**
+     * Transforms the given YAML {@code element} into a {@link PipelineStep}.
+     *
+     * @param element The element to be transformed (i.e a map, or a string for steps without parameters).
+     * @return The created {@link PipelineStep}.
+     * @throws IllegalArgumentException If the element is not a valid step.
+     */
+    private static PipelineStep toStep(Object element) throws IllegalArgumentException {
+        if (element instanceof String) {
+            return new PipelineStep((String) element, Collections.emptyMap());
+        }
+        if (!(element instanceof Map) || !(((Map<?, ?>) element).get(OPERATION_KEY) instanceof String)) {
+            throw new IllegalArgumentException("Each step must be a map with the name of the operation under the \""
+                    + OPERATION_KEY + "\" key");
+        }
+        final Map<String, Object> parameters = new HashMap<>();
+        ((Map<?, ?>) element).forEach((key, value) -> parameters.put(String.valueOf(key), value));
+        final String operation = (String) parameters.remove(OPERATION_KEY);
+        return new PipelineStep(operation, parameters);
+    }
+}
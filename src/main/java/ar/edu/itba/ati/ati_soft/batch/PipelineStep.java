@@ -0,0 +1,168 @@
+package ar.edu.itba.ati.ati_soft.batch;
+
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A step of a {@link Pipeline} (i.e an operation name, together with the parameters used to call it).
+ */
+public final class PipelineStep {
+
+    /**
+     * The name of the operation performed by this step.
+     */
+    private final String operation;
+
+    /**
+     * The parameters of the operation, by name.
+     */
+    private final Map<String, Object> parameters;
+
+    /**
+     * Constructor.
+     *
+     * @param operation  The name of the operation performed by this step.
+     * @param parameters The parameters of the operation, by name.
+     */
+    public PipelineStep(String operation, Map<String, Object> parameters) {
+        Assert.hasText(operation, "The operation must not be empty");
+        Assert.notNull(parameters, "The parameters map must not be null");
+        this.operation = operation;
+        this.parameters = Collections.unmodifiableMap(new HashMap<>(parameters));
+    }
+
+    /**
+     * @return The name of the operation performed by this step.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return The parameters of the operation, by name.
+     */
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns the parameter with the given {@code name} as a {@code double}.
+     *
+     * @param name The name of the parameter.
+     * @return The parameter value.
+     * @throws IllegalArgumentException If the parameter is missing, or if it is not a number.
+     */
+    public double getDouble(String name) throws IllegalArgumentException {
+        return getNumber(name).doubleValue();
+    }
+
+    /**
+     * Returns the parameter with the given {@code name} as an {@code int}.
+     *
+     * @param name The name of the parameter.
+     * @return The parameter value.
+     * @throws IllegalArgumentException If the parameter is missing, or if it is not an integer number.
+     */
+    public int getInt(String name) throws IllegalArgumentException {
+        final Number number = getNumber(name);
+        if (number.doubleValue() != number.intValue()) {
+            throw new IllegalArgumentException(describe(name) + " must be an integer number");
+        }
+        return number.intValue();
+    }
+
+    /**
+     * Returns the parameter with the given {@code name} as a {@link String}.
+     *
+     * @param name The name of the parameter.
+     * @return The parameter value.
+     * @throws IllegalArgumentException If the parameter is missing.
+     */
+    public String getString(String name) throws IllegalArgumentException {
+        return getParameter(name).toString();
+    }
+
+    /**
+     * Returns the parameter with the given {@code name} as a matrix of {@link Integer}s
+     * (i.e a list of rows, each one being a list of integer numbers, all of them with the same length).
+     *
+     * @param name The name of the parameter.
+     * @return The parameter value.
+     * @throws IllegalArgumentException If the parameter is missing, or if it is not a matrix of integer numbers.
+     */
+    public Integer[][] getIntMatrix(String name) throws IllegalArgumentException {
+        final Object value = getParameter(name);
+        if (!(value instanceof List) || ((List<?>) value).isEmpty()) {
+            throw new IllegalArgumentException(describe(name) + " must be a non empty list of rows");
+        }
+        final List<?> rows = (List<?>) value;
+        final Integer[][] matrix = new Integer[rows.size()][];
+        for (int i = 0; i < matrix.length; i++) {
+            final Object row = rows.get(i);
+            if (!(row instanceof List) || ((List<?>) row).size() != rows.size()) {
+                throw new IllegalArgumentException(describe(name) + " must be a square matrix");
+            }
+            matrix[i] = ((List<?>) row).stream()
+                    .map(element -> {
+                        if (!(element instanceof Integer)) {
+                            throw new IllegalArgumentException(describe(name) + " must hold integer numbers");
+                        }
+                        return (Integer) element;
+                    })
+                    .toArray(Integer[]::new);
+        }
+        return matrix;
+    }
+
+    @Override
+    public String toString() {
+        return operation + parameters;
+    }
+
+
+    // ================================================================================================================
+    // Helper methods
+    // ================================================================================================================
+
+    /**
+     * Returns the parameter with the given {@code name} as a {@link Number}.
+     *
+     * @param name The name of the parameter.
+     * @return The parameter value.
+     * @throws IllegalArgumentException If the parameter is missing, or if it is not a number.
+     */
+    private Number getNumber(String name) throws IllegalArgumentException {
+        final Object value = getParameter(name);
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException(describe(name) + " must be a number");
+        }
+        return (Number) value;
+    }
+
+    /**
+     * Returns the parameter with the given {@code name}.
+     *
+     * @param name The name of the parameter.
+     * @return The parameter value.
+     * @throws IllegalArgumentException If the parameter is missing.
+     */
+    private Object getParameter(String name) throws IllegalArgumentException {
+        return Optional.ofNullable(parameters.get(name))
+                .orElseThrow(() -> new IllegalArgumentException(describe(name) + " is missing"));
+    }
+
+    /**
+     * Describes the parameter with the given {@code name} (to be used in error messages).
+     *
+     * @param name The name of the parameter.
+     * @return The description of the parameter.
+     */
+    private String describe(String name) {
+        return "Parameter \"" + name + "\" of operation \"" + operation + "\"";
+    }
+}
@@ -3,9 +3,11 @@ package ar.edu.itba.ati.ati_soft.controller;
 import ar.edu.itba.ati.ati_soft.interfaces.*;
 import ar.edu.itba.ati.ati_soft.models.Histogram;
 import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.Region;
 import ar.edu.itba.ati.ati_soft.utils.ToSeriesCollector;
 import de.felixroske.jfxsupport.FXMLController;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.fxml.FXML;
 import javafx.scene.Node;
@@ -16,6 +18,7 @@ import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.Alert;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
@@ -27,13 +30,20 @@ import org.apache.commons.collections4.ListUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -48,6 +58,12 @@ public class HomeController {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(HomeController.class);
 
+    /**
+     * The min. size (i.e width or height) an image must have for operations to be previewed
+     * on a downscaled proxy before being performed at full resolution.
+     */
+    private static final int PREVIEW_MIN_SIZE = 1024;
+
     // ==============================================================================
     // Services
     // ==============================================================================
@@ -92,6 +108,11 @@ public class HomeController {
      */
     private final HoughService houghService;
 
+    /**
+     * A {@link ColorSpaceService} to change the color space of images.
+     */
+    private final ColorSpaceService colorSpaceService;
+
 
     // ==============================================================================
     // UI Components
@@ -122,6 +143,19 @@ public class HomeController {
     @FXML
     private ImageView imageView;
 
+    /**
+     * The {@link Node} holding the {@link #progressBar} and the cancel button,
+     * which is only visible while an operation is running.
+     */
+    @FXML
+    private Node taskPane;
+
+    /**
+     * The {@link ProgressBar} showing the progress of the running operation.
+     */
+    @FXML
+    private ProgressBar progressBar;
+
     // ==============================================================================
     // Event handling
     // ==============================================================================
@@ -162,14 +196,29 @@ public class HomeController {
     private ImageMapping lastSaved;
 
     /**
-     * A {@link Stack} holding {@link Image}s obtained.
+     * The {@link ImageHistory} holding the states that can be undone or redone.
      */
-    private final Stack<ImageMapping> imageHistory;
+    private final ImageHistory history;
 
     /**
-     * {@link Stack} holding each undone image (i.e those that were undone).
+     * The {@link Region} to which operations are applied, or {@code null} if they are applied to the whole image.
      */
-    private final Stack<ImageMapping> undoneImages;
+    private Region regionOfInterest;
+
+    /**
+     * The {@link Task} performing the running operation, or {@code null} if there is no running operation.
+     */
+    private Task<ImageMapping> runningTask;
+
+    /**
+     * The name of the running operation, or {@code null} if there is no running operation.
+     */
+    private String runningOperationName;
+
+    /**
+     * The {@link ExecutorService} in which operations are performed (i.e outside the JavaFX application thread).
+     */
+    private final ExecutorService operationsExecutor;
 
 
     // ==============================================================================
@@ -184,7 +233,9 @@ public class HomeController {
                           SlidingWindowService slidingWindowService,
                           HistogramService histogramService,
                           DiffusionService diffusionService,
-                          HoughService houghService) {
+                          HoughService houghService,
+                          ColorSpaceService colorSpaceService,
+                          @Value("${history.memory-budget:0}") long historyMemoryBudget) {
         this.imageIOService = imageIOService;
         this.imageOperationService = imageOperationService;
         this.imageThresholdService = imageThresholdService;
@@ -193,8 +244,14 @@ public class HomeController {
         this.histogramService = histogramService;
         this.diffusionService = diffusionService;
         this.houghService = houghService;
-        this.imageHistory = new Stack<>();
-        this.undoneImages = new Stack<>();
+        this.colorSpaceService = colorSpaceService;
+        this.operationsExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "image-operations");
+            thread.setDaemon(true); // Must not prevent the application from exiting
+            return thread;
+        });
+        this.history = new ImageHistory(historyMemoryBudget > 0 ?
+                historyMemoryBudget * 1024 * 1024 : Runtime.getRuntime().maxMemory() / 4, imageIOService::toImageIO);
     }
 
     @FXML
@@ -238,12 +295,9 @@ public class HomeController {
                                         .ifPresent(bands -> getNumber("Homogeneous image creation",
                                                 "Insert the pixels intensity",
                                                 "Insert the pixels intensity", Integer::parseInt)
-                                                .ifPresent(value -> {
-                                                    final Image image = Image.homogeneous(width, height, bands, value);
-                                                    final BufferedImage buffered = imageIOService
-                                                            .toImageIO(ImageIOContainer.buildForSyntheticImage(image));
-                                                    setUp(buffered, null);
-                                                }))));
+                                                .ifPresent(value -> setUp(
+                                                        Image.homogeneous(width, height, bands, value),
+                                                        Function.identity(), null)))));
     }
 
     /**
@@ -320,6 +374,42 @@ public class HomeController {
         drawActual();
     }
 
+    @FXML
+    public void cancelOperation() {
+        Optional.ofNullable(this.runningTask).ifPresent(task -> {
+            LOGGER.debug("Cancelling the running operation...");
+            task.cancel(true);
+        });
+    }
+
+    @FXML
+    public void selectRegionOfInterest() {
+        getNumberArray("Region of interest",
+                "Insert the 'x' and 'y' coordinates of the top-left pixel, the width and the height, " +
+                        "separated with commas", "Insert the region", Integer::parseInt, 4)
+                .filter(values -> !values.contains(null)) // Non numeric values were already reported
+                .ifPresent(values -> {
+                    try {
+                        final Region region = new Region(values.get(0), values.get(1), values.get(2), values.get(3));
+                        if (this.actual != null && !region.fitsIn(this.actual.getInternalRepresentation())) {
+                            throw new IllegalArgumentException("The region must be inside the image.");
+                        }
+                        LOGGER.debug("Operations will be applied to {}", region);
+                        this.regionOfInterest = region;
+                    } catch (IllegalArgumentException e) {
+                        final Alert alert = new Alert(Alert.AlertType.ERROR, "Invalid region of interest.");
+                        alert.setHeaderText("");
+                        alert.show();
+                    }
+                });
+    }
+
+    @FXML
+    public void clearRegionOfInterest() {
+        LOGGER.debug("Operations will be applied to the whole image");
+        this.regionOfInterest = null;
+    }
+
     @FXML
     public void sum() {
         twoImagesOperationAction(imageOperationService::sum, "sum", imageOperationService::normalize);
@@ -340,7 +430,7 @@ public class HomeController {
         getNumber("Multiplication by scalar", "", "Insert the scalar", Double::parseDouble)
                 .ifPresent(scalar ->
                         oneImageOperationAction(image -> imageOperationService.multiplyByScalar(image, scalar),
-                                "scalar multiplication", imageOperationService::dynamicRangeCompression));
+                                "scalar multiplication", imageOperationService::dynamicRangeCompression, 0));
     }
 
     @FXML
@@ -353,7 +443,7 @@ public class HomeController {
         getNumber("Gamma power", "", "Insert the gamma value", Double::parseDouble)
                 .ifPresent(gamma ->
                         oneImageOperationAction(image -> imageOperationService.gammaPower(image, gamma),
-                                "gamma power transformation", imageOperationService::normalize));
+                                "gamma power transformation", imageOperationService::normalize, 0));
     }
 
     @FXML
@@ -366,6 +456,32 @@ public class HomeController {
         oneImageOperationAction(imageOperationService::getNegative, "negative calculation", Function.identity());
     }
 
+    @FXML
+    public void toHsv() {
+        oneImageOperationAction(colorSpaceService::rgbToHsv, "HSV conversion", imageOperationService::normalize, 0);
+    }
+
+    @FXML
+    public void toYCbCr() {
+        oneImageOperationAction(colorSpaceService::rgbToYCbCr, "YCbCr conversion", imageOperationService::normalize, 0);
+    }
+
+    @FXML
+    public void toXyz() {
+        oneImageOperationAction(colorSpaceService::rgbToXyz, "CIE XYZ conversion", imageOperationService::normalize, 0);
+    }
+
+    @FXML
+    public void toCieLab() {
+        oneImageOperationAction(colorSpaceService::rgbToCieLab, "CIE-Lab conversion",
+                imageOperationService::normalize, 0);
+    }
+
+    @FXML
+    public void toLuma() {
+        oneImageOperationAction(colorSpaceService::toLuma, "luma calculation", Function.identity(), 0);
+    }
+
     @FXML
     public void threshold() {
         getNumber("Threshold value", "", "Insert the threshold", Integer::parseInt)
@@ -416,7 +532,7 @@ public class HomeController {
                                                 oneImageOperationAction(image -> noiseGenerationService
                                                                 .additiveGaussianNoise(image, mean, stdDev, density),
                                                         "addition of Additive Gaussian Noise",
-                                                        imageOperationService::normalize))));
+                                                        imageOperationService::normalize, 0))));
     }
 
     @FXML
@@ -430,7 +546,7 @@ public class HomeController {
                                         oneImageOperationAction(image -> noiseGenerationService
                                                         .multiplicativeRayleighNoise(image, scale, density),
                                                 "addition of Multiplicative Rayleigh Noise",
-                                                imageOperationService::normalize)));
+                                                imageOperationService::normalize, 0)));
     }
 
     @FXML
@@ -444,7 +560,7 @@ public class HomeController {
                                         oneImageOperationAction(image -> noiseGenerationService
                                                         .multiplicativeExponentialNoise(image, rate, density),
                                                 "addition of Multiplicative Exponential Noise",
-                                                imageOperationService::normalize)));
+                                                imageOperationService::normalize, 0)));
     }
 
     @FXML
@@ -455,7 +571,7 @@ public class HomeController {
                         "Insert the p1 value", Double::parseDouble)
                         .ifPresent(p1 -> oneImageOperationAction(image ->
                                         noiseGenerationService.saltAndPepperNoise(image, p0, p1),
-                                "addition of Salt and Pepper Noise", imageOperationService::normalize)));
+                                "addition of Salt and Pepper Noise", imageOperationService::normalize, 0)));
     }
 
     @FXML
@@ -464,7 +580,7 @@ public class HomeController {
                 "Insert the window's length", Integer::parseInt)
                 .ifPresent(length -> oneImageOperationAction(image ->
                                 slidingWindowService.applyMeanFilter(image, length),
-                        "Mean Filtering", imageOperationService::normalize));
+                        "Mean Filtering", imageOperationService::normalize, length / 2));
     }
 
     @FXML
@@ -473,7 +589,7 @@ public class HomeController {
                 "Insert the window's length", Integer::parseInt)
                 .ifPresent(length -> oneImageOperationAction(image ->
                                 slidingWindowService.applyMedianFilter(image, length),
-                        "Median Filtering", imageOperationService::normalize));
+                        "Median Filtering", imageOperationService::normalize, length / 2));
     }
 
     @FXML
@@ -486,7 +602,7 @@ public class HomeController {
                         lists.stream().map(list -> list.toArray(new Integer[list.size()])).toArray(Integer[][]::new))
                 .ifPresent(filter ->
                         oneImageOperationAction(image -> slidingWindowService.applyWeightMedianFilter(image, filter),
-                                "Weighted Median Filtering", imageOperationService::normalize));
+                                "Weighted Median Filtering", imageOperationService::normalize, 1));
     }
 
     @FXML
@@ -495,7 +611,7 @@ public class HomeController {
                 "Insert the standard deviation", Double::parseDouble)
                 .ifPresent(standardDeviation -> oneImageOperationAction(image ->
                                 slidingWindowService.applyGaussianFilter(image, standardDeviation),
-                        "Gaussian Filtering", imageOperationService::normalize));
+                        "Gaussian Filtering", imageOperationService::normalize, standardDeviation.intValue()));
     }
 
     @FXML
@@ -508,7 +624,7 @@ public class HomeController {
                                 "Insert the window length", Integer::parseInt)
                                 .ifPresent(windowLength -> oneImageOperationAction(image -> slidingWindowService
                                                 .applyBilateralFilter(image, spatialStd, rangeStd, windowLength),
-                                        "Bilateral Filtering", imageOperationService::normalize))));
+                                        "Bilateral Filtering", imageOperationService::normalize, windowLength / 2))));
     }
 
 
@@ -526,6 +642,29 @@ public class HomeController {
                                         "Bilateral Filtering", imageOperationService::normalize))));
     }
 
+    @FXML
+    public void bilateralGridFilter() {
+        getNumber("Standard deviation for Gaussian function in the spatial domain", "",
+                "Insert the standard deviation for the spatial domain", Double::parseDouble)
+                .ifPresent(spatialStd -> getNumber("Standard deviation for Gaussian function in the range domain",
+                        "", "Insert the standard deviation for the range domain", Double::parseDouble)
+                        .ifPresent(rangeStd -> oneImageOperationAction(image -> slidingWindowService
+                                        .applyBilateralGridFilter(image, spatialStd, rangeStd),
+                                "Bilateral Grid Filtering", imageOperationService::normalize,
+                                (int) Math.ceil(3 * spatialStd))));
+    }
+
+    @FXML
+    public void bilateralGridFilterCIELab() {
+        getNumber("Standard deviation for Gaussian function in the spatial domain", "",
+                "Insert the standard deviation for the spatial domain", Double::parseDouble)
+                .ifPresent(spatialStd -> getNumber("Standard deviation for Gaussian function in the range domain",
+                        "", "Insert the standard deviation for the range domain", Double::parseDouble)
+                        .ifPresent(rangeStd -> oneImageOperationAction(image -> slidingWindowService
+                                        .applyBilateralGridFilterWithCIELabColor(image, spatialStd, rangeStd),
+                                "Bilateral Grid Filtering", imageOperationService::normalize)));
+    }
+
 
     @FXML
     public void highPassFilter() {
@@ -533,49 +672,49 @@ public class HomeController {
                 "Insert the window's length", Integer::parseInt)
                 .ifPresent(length -> oneImageOperationAction(image ->
                                 slidingWindowService.applyHighPassFilter(image, length),
-                        "High-Pass Filtering", imageOperationService::normalize));
+                        "High-Pass Filtering", imageOperationService::normalize, length / 2));
     }
 
     @FXML
     public void borderDetectionWithPrewittGradientOperator() {
         oneImageOperationAction(slidingWindowService::prewittGradientOperatorBorderDetectionMethod,
-                "border detection with Prewitt's gradient operator", imageOperationService::normalize);
+                "border detection with Prewitt's gradient operator", imageOperationService::normalize, 1);
     }
 
     @FXML
     public void borderDetectionWithSobelGradientOperator() {
         oneImageOperationAction(slidingWindowService::sobelGradientOperatorBorderDetectionMethod,
-                "border detection with Sobel's gradient operator", imageOperationService::normalize);
+                "border detection with Sobel's gradient operator", imageOperationService::normalize, 1);
     }
 
     @FXML
     public void borderDetectionWithAnonymousMaxDirection() {
         oneImageOperationAction(slidingWindowService::anonymousMaxDirectionBorderDetectionMethod,
-                "border detection with anonymous's max direction", imageOperationService::normalize);
+                "border detection with anonymous's max direction", imageOperationService::normalize, 1);
     }
 
     @FXML
     public void borderDetectionWithKirshMaxDirection() {
         oneImageOperationAction(slidingWindowService::kirshMaxDirectionBorderDetectionMethod,
-                "border detection with Kirsh's max direction", imageOperationService::normalize);
+                "border detection with Kirsh's max direction", imageOperationService::normalize, 1);
     }
 
     @FXML
     public void borderDetectionWithPrewittMaxDirection() {
         oneImageOperationAction(slidingWindowService::prewittMaxDirectionBorderDetectionMethod,
-                "border detection with Prewitt's max direction", imageOperationService::normalize);
+                "border detection with Prewitt's max direction", imageOperationService::normalize, 1);
     }
 
     @FXML
     public void borderDetectionWithSobelMaxDirection() {
         oneImageOperationAction(slidingWindowService::sobelMaxDirectionBorderDetectionMethod,
-                "border detection with Sobel's max direction", imageOperationService::normalize);
+                "border detection with Sobel's max direction", imageOperationService::normalize, 1);
     }
 
     @FXML
     public void borderDetectionWithLaplaceMethod() {
         oneImageOperationAction(slidingWindowService::laplaceMethod,
-                "border detection with Laplace's", imageOperationService::normalize);
+                "border detection with Laplace's", imageOperationService::normalize, 2);
     }
 
     @FXML
@@ -583,7 +722,7 @@ public class HomeController {
         getNumber("Slope threshold for Laplace method", "", "Insert the threshold", Double::parseDouble)
                 .ifPresent(threshold -> oneImageOperationAction(image ->
                                 slidingWindowService.laplaceMethodWithSlopeEvaluation(image, threshold),
-                        "border detection with Laplace's", imageOperationService::normalize));
+                        "border detection with Laplace's", imageOperationService::normalize, 2));
     }
 
     @FXML
@@ -592,7 +731,7 @@ public class HomeController {
                 "Insert the standard deviation", Double::parseDouble)
                 .ifPresent(sigma -> oneImageOperationAction(image ->
                                 slidingWindowService.laplaceOfGaussianMethod(image, sigma),
-                        "border detection with Laplace's", imageOperationService::normalize));
+                        "border detection with Laplace's", imageOperationService::normalize, (int) (3 * sigma) + 1));
     }
 
     @FXML
@@ -603,7 +742,8 @@ public class HomeController {
                         "Insert the threshold", Double::parseDouble)
                         .ifPresent(threshold -> oneImageOperationAction(image -> slidingWindowService
                                         .laplaceOfGaussianWithSlopeEvaluation(image, sigma, threshold),
-                                "border detection with Laplace's", imageOperationService::normalize)));
+                                "border detection with Laplace's", imageOperationService::normalize,
+                                (int) (3 * sigma) + 1)));
     }
 
     @FXML
@@ -612,7 +752,7 @@ public class HomeController {
                 "Insert the standard deviation", Double::parseDouble)
                 .ifPresent(sigma -> oneImageOperationAction(image ->
                                 slidingWindowService.suppressNoMaxPixels(image, sigma),
-                        "border detection with Canny method", imageOperationService::normalize));
+                        "border detection with Canny method", imageOperationService::normalize, sigma.intValue() + 2));
     }
 
     @FXML
@@ -620,18 +760,45 @@ public class HomeController {
         getNumber("Standard deviation for gaussian filtering for the Canny Border detection method", "",
                 "Insert the standard deviation", Double::parseDouble)
                 .ifPresent(sigma -> oneImageOperationAction(image -> slidingWindowService.cannyDetection(image, sigma),
-                        "border detection with Canny method", Function.identity()));
+                        "border detection with Canny method", Function.identity(), sigma.intValue() + 2));
     }
 
     @FXML
     public void susanDetector() {
         getNumber("T value for the susan detection method", "",
                 "Insert the t value", Double::parseDouble)
-                .ifPresent(t -> {
-                    LOGGER.debug("Performing the border detection with SUSAN method...");
-                    final Image newImage = slidingWindowService.susanDetection(this.actual.getInternalRepresentation(), t);
-                    afterChanging(newImage, Function.identity(), ImageIOContainer::buildForNewColorImage);
-                });
+                .ifPresent(t -> colorResultOperationAction(image -> slidingWindowService.susanDetection(image, t),
+                        "border detection with SUSAN method"));
+    }
+
+    @FXML
+    public void harrisCornerDetector() {
+        getNumber("Standard deviation for gaussian filtering before calculating the gradients", "",
+                "Insert the standard deviation", Double::parseDouble)
+                .ifPresent(sigma -> getNumber("Standard deviation for the gaussian window", "",
+                        "Insert the standard deviation", Double::parseDouble)
+                        .ifPresent(windowSigma -> getNumber("Sensitivity parameter for the Harris method", "",
+                                "Insert the k value (usually between 0.04 and 0.06)", Double::parseDouble)
+                                .ifPresent(k -> getNumber("Max. amount of corners", "",
+                                        "Insert the max. amount of corners", Integer::parseInt)
+                                        .ifPresent(maxCorners -> colorResultOperationAction(
+                                                image -> slidingWindowService.harrisCornerDetection(image, sigma,
+                                                        windowSigma, k, maxCorners),
+                                                "corner detection with Harris method")))));
+    }
+
+    @FXML
+    public void shiTomasiCornerDetector() {
+        getNumber("Standard deviation for gaussian filtering before calculating the gradients", "",
+                "Insert the standard deviation", Double::parseDouble)
+                .ifPresent(sigma -> getNumber("Standard deviation for the gaussian window", "",
+                        "Insert the standard deviation", Double::parseDouble)
+                        .ifPresent(windowSigma -> getNumber("Max. amount of corners", "",
+                                "Insert the max. amount of corners", Integer::parseInt)
+                                .ifPresent(maxCorners -> colorResultOperationAction(
+                                        image -> slidingWindowService.shiTomasiCornerDetection(image, sigma,
+                                                windowSigma, maxCorners),
+                                        "corner detection with Shi-Tomasi method"))));
     }
 
     @FXML
@@ -642,7 +809,7 @@ public class HomeController {
                         "Insert the lambda value", Double::parseDouble)
                         .ifPresent(lambda -> oneImageOperationAction(image -> diffusionService
                                         .isotropicDiffusion(image, t, lambda),
-                                "isotropic diffusion", imageOperationService::normalize)));
+                                "isotropic diffusion", imageOperationService::normalize, t)));
     }
 
     @FXML
@@ -655,7 +822,7 @@ public class HomeController {
                                 "Insert the sigma value", Double::parseDouble)
                                 .ifPresent(sigma -> oneImageOperationAction(image -> diffusionService
                                                 .anisotropicDiffusionWithLeclerc(image, t, lambda, sigma),
-                                        "Leclerc anisotropic diffusion", imageOperationService::normalize))));
+                                        "Leclerc anisotropic diffusion", imageOperationService::normalize, t))));
     }
 
     @FXML
@@ -668,7 +835,7 @@ public class HomeController {
                                 "Insert the sigma value", Double::parseDouble)
                                 .ifPresent(sigma -> oneImageOperationAction(image -> diffusionService
                                                 .anisotropicDiffusionWithLorentz(image, t, lambda, sigma),
-                                        "Lorentz anisotropic diffusion", imageOperationService::normalize))));
+                                        "Lorentz anisotropic diffusion", imageOperationService::normalize, t))));
     }
 
     @FXML
@@ -683,15 +850,10 @@ public class HomeController {
                                         .ifPresent(epsilon -> getNumber("Max percentage", "",
                                                 "Insert the percentage of the max to be taken into account",
                                                 Double::parseDouble)
-                                                .ifPresent(maxPercentage -> {
-                                                    LOGGER.debug("Performing the Hough transform for straight lines...");
-                                                    final Image image = this.actual.getInternalRepresentation();
-                                                    final Image newImage = houghService
-                                                            .findStraightLines(image, sigma, thetaStep,
-                                                                    epsilon, maxPercentage);
-                                                    afterChanging(newImage, Function.identity(),
-                                                            ImageIOContainer::buildForNewColorImage);
-                                                }))));
+                                                .ifPresent(maxPercentage -> colorResultOperationAction(
+                                                        image -> houghService.findStraightLines(image, sigma,
+                                                                thetaStep, epsilon, maxPercentage),
+                                                        "Hough transform for straight lines")))));
     }
 
     @FXML
@@ -703,15 +865,9 @@ public class HomeController {
                         .ifPresent(epsilon -> getNumber("Max percentage", "",
                                 "Insert the percentage of the max to be taken into account",
                                 Double::parseDouble)
-                                .ifPresent(maxPercentage -> {
-                                    LOGGER.debug("Performing the Hough transform for circles...");
-                                    final Image image = this.actual.getInternalRepresentation();
-                                    final Image newImage = houghService
-                                            .findCircles(image, sigma, epsilon, maxPercentage);
-                                    afterChanging(newImage, Function.identity(),
-                                            ImageIOContainer::buildForNewColorImage);
-
-                                })));
+                                .ifPresent(maxPercentage -> colorResultOperationAction(
+                                        image -> houghService.findCircles(image, sigma, epsilon, maxPercentage),
+                                        "Hough transform for circles"))));
     }
 
     // ======================================
@@ -777,8 +933,9 @@ public class HomeController {
      */
     private void openImage(File imageFile) {
         try {
-            final BufferedImage image = imageIOService.openImage(imageFile);
-            setUp(image, imageFile);
+            // PGM and PPM files are read natively (i.e the displayed image is built from the read one)
+            final Image image = imageIOService.readImage(imageFile);
+            setUp(image, openedImageDisplayOperation(image), imageFile);
         } catch (UnsupportedImageFileException e) {
             LOGGER.debug("File is not an image");
         } catch (IOException e) {
@@ -787,19 +944,35 @@ public class HomeController {
     }
 
     /**
-     * Performs the operations that must be done after an image is opened.
+     * Returns the operation used to display an opened {@link Image}.
+     * Samples are displayed as they are, unless any of them is out of the 8-bit range (e.g 16-bit files),
+     * in which case the {@link Image} is normalized.
      *
      * @param image The opened {@link Image}.
-     * @param file  The {@link File} from where the image was opened.
+     * @return The display operation.
+     */
+    private Function<Image, Image> openedImageDisplayOperation(Image image) {
+        final boolean eightBit = histogramService.getHistograms(image).values().stream()
+                .allMatch(histogram -> histogram.minCategory() >= 0 && histogram.maxCategory() <= 0xFF);
+        return eightBit ? Function.identity() : imageOperationService::normalize;
+    }
+
+    /**
+     * Performs the operations that must be done after an image is opened.
+     *
+     * @param image            The opened {@link Image}.
+     * @param displayOperation A {@link Function} that takes the opened {@link Image}
+     *                         and performs the operation that must be done to be displayed.
+     * @param file             The {@link File} from where the image was opened.
      */
-    private void setUp(BufferedImage image, File file) {
-        this.initialDisplayed = image;
-        final ImageIOContainer initialImageIOContainer = imageIOService.fromImageIO(image);
-        this.actual = new ImageMapping(initialImageIOContainer, image);
+    private void setUp(Image image, Function<Image, Image> displayOperation, File file) {
+        this.actual = new ImageMapping(image, displayOperation, ImageIOContainer::buildForSyntheticImage,
+                imageIOService::toImageIO);
+        this.initialDisplayed = this.actual.getImageIORepresentation();
         this.lastSaved = this.actual;
         this.openedImageFile = file;
-        this.imageHistory.clear();
-        this.undoneImages.clear();
+        this.history.clear();
+        this.regionOfInterest = null;
         drawActual();
     }
 
@@ -932,7 +1105,9 @@ public class HomeController {
     }
 
     /**
-     * Performs the given {@code imageOperation}, applying it to the given actual image.
+     * Performs the given {@code imageOperation} in background, applying it to the whole actual image
+     * (i.e a global operation, like normalization or a threshold, whose result depends on all the pixels,
+     * so the {@link #regionOfInterest} is not taken into account).
      * The result of the operation will be set as the new actual image.
      *
      * @param imageOperation   The operation to be performed over the actual image.
@@ -943,14 +1118,60 @@ public class HomeController {
      */
     private void oneImageOperationAction(Function<Image, Image> imageOperation, String operationName,
                                          Function<Image, Image> displayOperation) {
-        LOGGER.debug("Performing the {}...", operationName);
-        final Image newImage = imageOperation.apply(this.actual.getInternalRepresentation());
-        afterChanging(newImage, displayOperation);
+        final Image actualImage = this.actual.getInternalRepresentation();
+        if (this.regionOfInterest != null) {
+            LOGGER.debug("The {} is applied to the whole image, as it is a global operation", operationName);
+        }
+        performInBackground(operationName, () -> imageOperation.apply(actualImage),
+                previewSupplier(actualImage, imageOperation),
+                displayOperation, this.actual.getImageIOContainer()::buildForNewImage);
+    }
+
+    /**
+     * Performs the given {@code imageOperation} in background, applying it to the given actual image
+     * (only to the {@link #regionOfInterest} if there is one, see {@link ImageOperationService#applyToRegion}).
+     * The result of the operation will be set as the new actual image.
+     *
+     * @param imageOperation   The operation to be performed over the actual image.
+     * @param operationName    Operation name (to be used for logging).
+     * @param displayOperation A {@link Function} that takes the new {@link Image}
+     *                         and performs the operation that must be done to be displayed.
+     *                         (e.g normalization, dynamic range compression, etc.)
+     * @param regionMargin     The amount of pixels around the region of interest that are passed as context
+     *                         to the operation (e.g half the window length of a filter, or {@code 0} for
+     *                         pixelwise operations), so borders of the region are processed as in the whole image.
+     */
+    private void oneImageOperationAction(Function<Image, Image> imageOperation, String operationName,
+                                         Function<Image, Image> displayOperation, int regionMargin) {
+        final Image actualImage = this.actual.getInternalRepresentation();
+        final Optional<Region> region = Optional.ofNullable(this.regionOfInterest)
+                .filter(roi -> roi.fitsIn(actualImage));
+        performInBackground(operationName,
+                () -> region
+                        .map(roi -> imageOperationService
+                                .applyToRegion(actualImage, roi, regionMargin, imageOperation))
+                        .orElseGet(() -> imageOperation.apply(actualImage)),
+                region.isPresent() ? null : previewSupplier(actualImage, imageOperation), // Regions are fast enough
+                displayOperation, this.actual.getImageIOContainer()::buildForNewImage);
     }
 
+    /**
+     * Performs the given {@code imageOperation} in background, applying it to the whole actual image,
+     * being the result a color image that is displayed as is (e.g detected features drawn over the image).
+     * The result of the operation will be set as the new actual image.
+     *
+     * @param imageOperation The operation to be performed over the actual image.
+     * @param operationName  Operation name (to be used for logging).
+     */
+    private void colorResultOperationAction(Function<Image, Image> imageOperation, String operationName) {
+        final Image actualImage = this.actual.getInternalRepresentation();
+        performInBackground(operationName, () -> imageOperation.apply(actualImage),
+                previewSupplier(actualImage, imageOperation),
+                Function.identity(), ImageIOContainer::buildForNewColorImage);
+    }
 
     /**
-     * Performs the given {@code imageOperation},
+     * Performs the given {@code imageOperation} in background,
      * using the actual image as first {@link Image},
      * and opening a new {@link Image} using the {@link #openImage()} method.
      * The result of the operation will be set a the new actual image.
@@ -963,67 +1184,195 @@ public class HomeController {
      */
     private void twoImagesOperationAction(BiFunction<Image, Image, Image> imageOperation, String operationName,
                                           Function<Image, Image> displayOperation) {
+        final Image actualImage = this.actual.getInternalRepresentation();
         Optional.ofNullable(selectFile())
-                .map(anotherImageFile -> {
-                    try {
-                        return imageIOService.openImage(anotherImageFile);
-                    } catch (IOException e) {
-                        LOGGER.error("Could not open image file.");
-                        LOGGER.debug("Error message: {}", e.getMessage());
-                        LOGGER.trace("Stacktrace: ", e);
-                        return null;
-                    }
-                })
-                .map(imageIOService::fromImageIO)
-                .map(ImageIOContainer::getImage)
-                .map(anotherImage -> imageOperation.apply(this.actual.getInternalRepresentation(), anotherImage))
-                .ifPresent(newImage -> {
-                    LOGGER.debug("Performing {}...", operationName);
-                    afterChanging(newImage, displayOperation);
-                });
+                .ifPresent(anotherImageFile -> performInBackground(operationName,
+                        () -> {
+                            try {
+                                final Image anotherImage = imageIOService.readImage(anotherImageFile);
+                                return imageOperation.apply(actualImage, anotherImage);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException("Could not open image file.", e);
+                            }
+                        },
+                        null, displayOperation, this.actual.getImageIOContainer()::buildForNewImage));
     }
 
     /**
-     * Performs the last steps that must be done after changing the actual image.
+     * Returns a {@link Supplier} that performs the given {@code imageOperation} on a downscaled proxy
+     * of the given {@code image} (to 1/4 of its size, or to 1/8 for very big images),
+     * or {@code null} if the image is small enough to be processed at full resolution without a preview.
      *
-     * @param newImage         The new {@link Image}.
-     * @param displayOperation A {@link Function} that takes the new {@link Image}
-     *                         and performs the operation that must be done to be displayed.
-     *                         (e.g normalization, dynamic range compression, etc.).
-     * @implNote This method calls the {@link #afterChanging(Image, Function, Function)} method,
-     * but delegating the task of building a new {@link ImageIOContainer} to the actual one.
+     * @param image          The {@link Image} to which the operation is applied.
+     * @param imageOperation The operation.
+     * @return The {@link Supplier} of the preview, or {@code null} if no preview is needed.
+     * @apiNote Operation parameters are not scaled (e.g window lengths are in pixels of the proxy),
+     * so the preview is an approximation of the full resolution result.
      */
-    private void afterChanging(Image newImage, Function<Image, Image> displayOperation) {
-        afterChanging(newImage, displayOperation, this.actual.getImageIOContainer()::buildForNewImage);
+    private Supplier<Image> previewSupplier(Image image, Function<Image, Image> imageOperation) {
+        final int size = Math.max(image.getWidth(), image.getHeight());
+        if (size < PREVIEW_MIN_SIZE) {
+            return null;
+        }
+        final int factor = size < 2 * PREVIEW_MIN_SIZE ? 4 : 8;
+        return () -> imageOperation.apply(imageOperationService.downscale(image, factor));
     }
 
     /**
-     * Performs the last steps that must be done after changing the actual image.
+     * Performs an operation in a background {@link Task}, showing its progress,
+     * and allowing it to be cancelled (see {@link #cancelOperation()}).
+     * The new image, and its displayed representation, are built in background,
+     * so only the last steps that must be done after changing the actual image
+     * are performed in the JavaFX application thread.
+     * If a {@code previewSupplier} is given, the operation is first performed on a downscaled proxy,
+     * whose result is displayed until the full resolution result replaces it.
+     * Only one operation can run at a time, as each operation is applied to the result of the previous one.
+     * Performing the running operation again cancels the stale run (e.g when it is performed with new parameters
+     * before the previous run finished), while performing another operation is rejected with a warning.
+     * The result is discarded if the actual image changes while the operation is running
+     * (e.g it is undone, or another image is opened), as it was calculated from a stale image.
      *
-     * @param newImage          The new {@link Image}.
+     * @param operationName     Operation name (to be used for logging).
+     * @param imageSupplier     A {@link Supplier} that performs the operation, returning the new {@link Image}.
+     * @param previewSupplier   A {@link Supplier} that performs the operation on a downscaled proxy,
+     *                          or {@code null} if the operation must not be previewed.
      * @param displayOperation  A {@link Function} that takes the new {@link Image}
      *                          and performs the operation that must be done to be displayed.
      *                          (e.g normalization, dynamic range compression, etc.)
      * @param toImageIOFunction A {@link Function} that takes an {@link Image}
      *                          and transforms it into an {@link ImageIOContainer} for it.
      */
-    private void afterChanging(Image newImage,
-                               Function<Image, Image> displayOperation,
-                               Function<Image, ImageIOContainer> toImageIOFunction) {
-        modify(new ImageMapping(newImage, displayOperation, toImageIOFunction, imageIOService::toImageIO));
+    private void performInBackground(String operationName, Supplier<Image> imageSupplier,
+                                     Supplier<Image> previewSupplier, Function<Image, Image> displayOperation,
+                                     Function<Image, ImageIOContainer> toImageIOFunction) {
+        if (this.runningTask != null) {
+            if (!operationName.equals(this.runningOperationName)) {
+                final Alert alert = new Alert(Alert.AlertType.WARNING,
+                        "Another operation is running. Wait for it to finish, or cancel it.");
+                alert.setHeaderText("");
+                alert.show();
+                return;
+            }
+            LOGGER.debug("Cancelling the stale {}...", operationName);
+            this.runningTask.cancel(true);
+        }
+        // The image to which the operation is applied (i.e the result is stale if it is not the actual one anymore)
+        final ImageMapping source = this.actual;
+        final Task<ImageMapping> task = new Task<ImageMapping>() {
+            @Override
+            protected ImageMapping call() {
+                if (previewSupplier != null) {
+                    LOGGER.debug("Previewing the {}...", operationName);
+                    try {
+                        // The preview can be cancelled, but its progress is not reported
+                        final Image preview = OperationContext.runWith(monitor(false), previewSupplier);
+                        updateValue(new ImageMapping(preview, displayOperation, toImageIOFunction,
+                                imageIOService::toImageIO));
+                    } catch (RuntimeException e) {
+                        // The preview is optional (e.g the proxy can be too small for the operation parameters)
+                        LOGGER.debug("Could not preview the {}: {}", operationName, e.getMessage());
+                    }
+                }
+                if (isCancelled()) {
+                    return null;
+                }
+                LOGGER.debug("Performing the {}...", operationName);
+                // Services abort with a CancellationException when the task is cancelled (which is ignored)
+                return new ImageMapping(OperationContext.runWith(monitor(true), imageSupplier), displayOperation,
+                        toImageIOFunction, imageIOService::toImageIO);
+            }
+
+            /**
+             * Creates a {@link ProgressMonitor} that requests the cancellation of the services
+             * when this task is cancelled.
+             *
+             * @param reportProgress Indicates whether the progress reported by the services
+             *                       must be set as this task's progress.
+             * @return The created {@link ProgressMonitor}.
+             */
+            private ProgressMonitor monitor(boolean reportProgress) {
+                // Task methods are captured, as the monitor's methods have the same names
+                final DoubleConsumer progressUpdater = fraction -> updateProgress(fraction, 1d);
+                final BooleanSupplier cancellationChecker = this::isCancelled;
+                return new ProgressMonitor() {
+                    @Override
+                    public void updateProgress(double fraction) {
+                        if (reportProgress) {
+                            progressUpdater.accept(fraction);
+                        }
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return cancellationChecker.getAsBoolean();
+                    }
+                };
+            }
+        };
+        task.valueProperty().addListener((observable, oldValue, preview) -> {
+            // Previews are only shown while the task runs (the final value is handled when it succeeds)
+            if (preview != null && task == this.runningTask && task.isRunning()) {
+                drawImage(preview.getImageIORepresentation(), this.imageView);
+            }
+        });
+        task.setOnSucceeded(event -> {
+            LOGGER.debug("Finished the {}", operationName);
+            // The actual image could have changed while the task was running (e.g undo, redo, or opening an image)
+            if (this.actual == source) {
+                modify(task.getValue());
+            } else {
+                LOGGER.debug("Discarding the result of the {}, as the image it was applied to changed",
+                        operationName);
+            }
+            finishTask(task); // Draws the new actual image
+        });
+        task.setOnFailed(event -> {
+            finishTask(task);
+            LOGGER.error("Could not perform the {}.", operationName);
+            LOGGER.debug("Error message: {}", task.getException().getMessage());
+            LOGGER.trace("Stacktrace: ", task.getException());
+            final Alert alert = new Alert(Alert.AlertType.ERROR,
+                    "Could not perform the " + operationName + ": " + task.getException().getMessage());
+            alert.setHeaderText("");
+            alert.show();
+        });
+        task.setOnCancelled(event -> {
+            finishTask(task);
+            LOGGER.debug("Cancelled the {}", operationName);
+        });
+        this.runningTask = task;
+        this.runningOperationName = operationName;
+        this.progressBar.progressProperty().bind(task.progressProperty());
+        this.taskPane.setVisible(true);
+        this.operationsExecutor.execute(task);
+    }
+
+    /**
+     * Performs the steps that must be done after the given {@code task} finishes (successfully or not),
+     * unless it is stale (i.e another task was started after it).
+     * The actual image is drawn again, replacing any preview.
+     *
+     * @param task The finished {@link Task}.
+     */
+    private void finishTask(Task<ImageMapping> task) {
+        if (task != this.runningTask) {
+            return;
+        }
+        this.runningTask = null;
+        this.runningOperationName = null;
+        this.progressBar.progressProperty().unbind();
+        this.taskPane.setVisible(false);
         drawActual();
     }
 
     /**
      * Modifies the actual image, setting the given {@link ImageMapping} as the actual,
-     * saving the ex-actual in the {@link #imageHistory} {@link Stack},
-     * and clearing the {@link #undoneImages} {@link Stack}.
+     * and recording the ex-actual in the {@link #history} (which discards the undone images).
      *
      * @param newPair The new actual image (i.e the original-display pair).
      */
     private void modify(ImageMapping newPair) {
-        this.imageHistory.push(this.actual);
-        this.undoneImages.clear();
+        this.history.record(this.actual);
         this.actual = newPair;
     }
 
@@ -1038,22 +1387,14 @@ public class HomeController {
      * Performs the "undo" operation.
      */
     private void doUndo() {
-        if (imageHistory.isEmpty()) {
-            return;
-        }
-        this.undoneImages.push(this.actual);
-        this.actual = this.imageHistory.pop();
+        this.history.undo(this.actual).ifPresent(previous -> this.actual = previous);
     }
 
     /**
      * Performs the "redo" operation.
      */
     private void doRedo() {
-        if (undoneImages.isEmpty()) {
-            return;
-        }
-        this.imageHistory.push(this.actual);
-        this.actual = this.undoneImages.pop();
+        this.history.redo(this.actual).ifPresent(next -> this.actual = next);
     }
 
     /**
@@ -1100,84 +1441,4 @@ public class HomeController {
         stage.setScene(scene);
         stage.show();
     }
-
-    // ==============================================================================
-    // Helper classes
-    // ==============================================================================
-
-    /**
-     * Bean class that holds together an {@link Image} with its {@link BufferedImage} representation,
-     * and an {@link ImageIOContainer} also, which is used to perform the mapping.
-     */
-    private static final class ImageMapping {
-
-        /**
-         * The {@link BufferedImage} that will be displayed.
-         */
-        private final BufferedImage displayed;
-
-        /**
-         * The {@link ImageIOContainer} that was used to perform the {@link Image} - {@link BufferedImage} mapping.
-         */
-        private final ImageIOContainer imageIOContainer;
-
-        /**
-         * Constructor that builds the displayed {@link BufferedImage}.
-         *
-         * @param original                The original {@link Image} (i.e the model).
-         * @param displayOperation        A {@link Function} that takes the {@code original}
-         *                                and transform it into another {@link Image} that can be displayed.
-         * @param toImageIOContainer      A {@link Function} that takes an {@link Image}
-         *                                and produces an {@link ImageIOContainer} for it.
-         * @param toBufferedImageFunction A {@link Function} that takes an {@link ImageIOContainer}
-         *                                and transforms it into the {@link BufferedImage}.
-         * @apiNote This constructor can be used when, having an internal {@link Image},
-         * one wants to hold the mapping for it into an ImageIO {@link BufferedImage}.
-         */
-        private ImageMapping(Image original, Function<Image, Image> displayOperation,
-                             Function<Image, ImageIOContainer> toImageIOContainer,
-                             Function<ImageIOContainer, BufferedImage> toBufferedImageFunction) {
-            this.imageIOContainer = toImageIOContainer.apply(displayOperation.apply(original));
-            this.displayed = toBufferedImageFunction.apply(this.imageIOContainer);
-        }
-
-        /**
-         * Constructor that sets values.
-         *
-         * @param imageIOContainer The {@link ImageIOContainer}
-         *                         that was used to perform the {@link Image} - {@link BufferedImage} mapping.
-         * @param displayed        The {@link BufferedImage}
-         *                         (i.e the displayed representation of the {@code original}) {@link Image}.
-         * @apiNote This constructor can be used when, having the {@link BufferedImage},
-         * one wants to hold the mapping for it into an internal {@link Image}.
-         */
-        private ImageMapping(ImageIOContainer imageIOContainer, BufferedImage displayed) {
-            this.imageIOContainer = imageIOContainer;
-            this.displayed = displayed;
-        }
-
-        /**
-         * @return The original {@link Image} (i.e the model).
-         */
-        private Image getInternalRepresentation() {
-            return imageIOContainer.getImage();
-        }
-
-
-        /**
-         * @return The {@link ImageIOContainer}
-         * that was used to perform the {@link Image} - {@link BufferedImage} mapping.
-         */
-        private ImageIOContainer getImageIOContainer() {
-            return imageIOContainer;
-        }
-
-        /**
-         * @return The {@link BufferedImage}
-         * (i.e the displayed representation of the {@link #getInternalRepresentation()} {@link Image}).
-         */
-        private BufferedImage getImageIORepresentation() {
-            return displayed;
-        }
-    }
 }
@@ -0,0 +1,438 @@
+package ar.edu.itba.ati.ati_soft.controller;
+
+import ar.edu.itba.ati.ati_soft.interfaces.ImageIOContainer;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SampleLayout;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Undo/redo history of {@link ImageMapping}s, whose memory use is bounded by a budget.
+ * <p>
+ * States are never copied: the history holds the same instances it is given (which are never modified,
+ * as operations always create new images), so a state shares its storage with the actual image
+ * until an operation replaces it.
+ * When the states held in memory take more than the budget, the least recently used ones are spilled
+ * to compressed temporary files (dropping their displayed {@link BufferedImage}, which is built again),
+ * and are loaded back when they are reached by undoing or redoing.
+ * A spilled state keeps its file after being loaded, as its samples are not changed,
+ * so it can be evicted again without being written.
+ */
+/* package */ final class ImageHistory {
+
+    /**
+     * The {@link Logger} object.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageHistory.class);
+
+    /**
+     * The size of the buffers used to write and read spilled states.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The max. amount of bytes the states held in memory can take (the actual state is not taken into account).
+     */
+    private final long memoryBudget;
+
+    /**
+     * A {@link Function} that takes an {@link ImageIOContainer} and builds the {@link BufferedImage} to be displayed
+     * (used when a spilled state is loaded).
+     */
+    private final Function<ImageIOContainer, BufferedImage> toBufferedImageFunction;
+
+    /**
+     * {@link Deque} holding the states that can be undone (the first one being the most recent).
+     */
+    private final Deque<Entry> undoEntries;
+
+    /**
+     * {@link Deque} holding the states that can be redone (the first one being the most recent).
+     */
+    private final Deque<Entry> redoEntries;
+
+    /**
+     * The states held in memory, ordered from the least recently used to the most recently used.
+     */
+    private final Set<Entry> residentEntries;
+
+    /**
+     * The {@link Entry} of the actual state (i.e the last one returned or recorded),
+     * kept in order not to spill it again if it comes back to the history.
+     */
+    private Entry actualEntry;
+
+    /**
+     * The amount of bytes the states in {@link #residentEntries} take.
+     */
+    private long residentBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param memoryBudget            The max. amount of bytes the states held in memory can take.
+     * @param toBufferedImageFunction A {@link Function} that takes an {@link ImageIOContainer}
+     *                                and builds the {@link BufferedImage} to be displayed.
+     */
+    /* package */ ImageHistory(long memoryBudget, Function<ImageIOContainer, BufferedImage> toBufferedImageFunction) {
+        Assert.isTrue(memoryBudget > 0, "The memory budget must be positive");
+        Assert.notNull(toBufferedImageFunction, "The function must not be null");
+        this.memoryBudget = memoryBudget;
+        this.toBufferedImageFunction = toBufferedImageFunction;
+        this.undoEntries = new ArrayDeque<>();
+        this.redoEntries = new ArrayDeque<>();
+        this.residentEntries = new LinkedHashSet<>();
+    }
+
+    /**
+     * Records the given {@code previous} state, as it was replaced by a new one,
+     * discarding all the states that could be redone.
+     *
+     * @param previous The replaced state.
+     */
+    /* package */ void record(ImageMapping previous) {
+        Assert.notNull(previous, "The previous state must not be null");
+        redoEntries.forEach(this::discard);
+        redoEntries.clear();
+        undoEntries.push(entryFor(previous));
+        touch(undoEntries.peek());
+        this.actualEntry = null;
+        evict();
+    }
+
+    /**
+     * Performs the "undo" operation.
+     *
+     * @param actual The actual state (which can be redone after this operation).
+     * @return An {@link Optional} holding the new actual state, or empty if there is nothing to undo.
+     */
+    /* package */ Optional<ImageMapping> undo(ImageMapping actual) {
+        return move(undoEntries, redoEntries, actual);
+    }
+
+    /**
+     * Performs the "redo" operation.
+     *
+     * @param actual The actual state (which can be undone after this operation).
+     * @return An {@link Optional} holding the new actual state, or empty if there is nothing to redo.
+     */
+    /* package */ Optional<ImageMapping> redo(ImageMapping actual) {
+        return move(redoEntries, undoEntries, actual);
+    }
+
+    /**
+     * Discards all the states (e.g when a new image is opened).
+     */
+    /* package */ void clear() {
+        undoEntries.forEach(this::discard);
+        redoEntries.forEach(this::discard);
+        undoEntries.clear();
+        redoEntries.clear();
+        Optional.ofNullable(actualEntry).ifPresent(this::discard);
+        this.actualEntry = null;
+    }
+
+    /**
+     * Takes the most recent state from the {@code from} {@link Deque}, which becomes the actual state,
+     * pushing the given {@code actual} one into the {@code to} {@link Deque}.
+     *
+     * @param from   The {@link Deque} from where the new actual state is taken.
+     * @param to     The {@link Deque} into which the given {@code actual} state is pushed.
+     * @param actual The actual state.
+     * @return An {@link Optional} holding the new actual state, or empty if the {@code from} {@link Deque} is empty.
+     */
+    private Optional<ImageMapping> move(Deque<Entry> from, Deque<Entry> to, ImageMapping actual) {
+        if (from.isEmpty()) {
+            return Optional.empty();
+        }
+        Assert.notNull(actual, "The actual state must not be null");
+        final Entry previousActual = entryFor(actual);
+        final Entry newActual = from.pop();
+        final ImageMapping mapping;
+        try {
+            mapping = newActual.load();
+        } catch (IOException e) {
+            LOGGER.error("Could not load state from history. The state is lost.");
+            LOGGER.debug("Error message: {}", e.getMessage());
+            LOGGER.trace("Stacktrace: ", e);
+            discard(newActual);
+            return Optional.empty();
+        }
+        // The actual state is not part of the budget
+        if (residentEntries.remove(newActual)) {
+            residentBytes -= newActual.bytes;
+        }
+        to.push(previousActual);
+        touch(previousActual);
+        this.actualEntry = newActual;
+        evict();
+        return Optional.of(mapping);
+    }
+
+    /**
+     * Returns the {@link Entry} for the given {@code mapping}, reusing the {@link #actualEntry} if it belongs to it.
+     *
+     * @param mapping The {@link ImageMapping}.
+     * @return The {@link Entry}.
+     */
+    private Entry entryFor(ImageMapping mapping) {
+        return actualEntry != null && actualEntry.mapping == mapping ? actualEntry : new Entry(mapping);
+    }
+
+    /**
+     * Marks the given (resident) {@link Entry} as the most recently used.
+     *
+     * @param entry The {@link Entry} to be marked.
+     */
+    private void touch(Entry entry) {
+        if (!residentEntries.remove(entry)) {
+            residentBytes += entry.bytes;
+        }
+        residentEntries.add(entry);
+    }
+
+    /**
+     * Spills the least recently used states until the resident ones fit in the budget.
+     */
+    private void evict() {
+        final Iterator<Entry> iterator = residentEntries.iterator();
+        while (residentBytes > memoryBudget && iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            try {
+                entry.spill();
+                iterator.remove();
+                residentBytes -= entry.bytes;
+            } catch (IOException e) {
+                LOGGER.warn("Could not spill state from history. It will be kept in memory.");
+                LOGGER.debug("Error message: {}", e.getMessage());
+                LOGGER.trace("Stacktrace: ", e);
+            }
+        }
+    }
+
+    /**
+     * Discards the given {@link Entry}, deleting its file (if any).
+     *
+     * @param entry The {@link Entry} to be discarded.
+     */
+    private void discard(Entry entry) {
+        if (residentEntries.remove(entry)) {
+            residentBytes -= entry.bytes;
+        }
+        entry.deleteFile();
+    }
+
+    /**
+     * Estimates the amount of heap the given {@code mapping} takes
+     * (i.e its {@link Image} samples, unless they are memory-mapped, and its displayed {@link BufferedImage}).
+     *
+     * @param mapping The {@link ImageMapping}.
+     * @return The estimated amount of bytes.
+     */
+    private static long estimateBytes(ImageMapping mapping) {
+        final Image image = mapping.getInternalRepresentation();
+        final long imageBytes = image.isMapped() ? 0 :
+                (long) image.getWidth() * image.getHeight() * image.getBands() * image.getSampleType().getBytes();
+        final DataBuffer dataBuffer = mapping.getImageIORepresentation().getRaster().getDataBuffer();
+        final long displayedBytes = (long) dataBuffer.getSize() * dataBuffer.getNumBanks()
+                * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / Byte.SIZE;
+        return imageBytes + displayedBytes;
+    }
+
+    /**
+     * Writes the samples of the given {@link Image} into the given {@link DataOutputStream}.
+     *
+     * @param image  The {@link Image} to be written.
+     * @param output The {@link DataOutputStream} into which the image is written.
+     * @throws IOException If any IO error occurs.
+     */
+    private static void writeImage(Image image, DataOutputStream output) throws IOException {
+        final SampleType type = image.getSampleType();
+        output.writeInt(image.getWidth());
+        output.writeInt(image.getHeight());
+        output.writeInt(image.getBands());
+        output.writeUTF(type.name());
+        output.writeUTF(image.getLayout().name());
+        final double[] row = new double[image.getWidth() * image.getBands()];
+        final ByteBuffer buffer = ByteBuffer.allocate(row.length * type.getBytes());
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRow(y, row);
+            buffer.clear();
+            for (double sample : row) {
+                switch (type) {
+                    case UINT8:
+                        buffer.put((byte) (int) sample);
+                        break;
+                    case UINT16:
+                        buffer.putShort((short) (int) sample);
+                        break;
+                    case FLOAT32:
+                        buffer.putFloat((float) sample);
+                        break;
+                    default:
+                        buffer.putDouble(sample);
+                }
+            }
+            output.write(buffer.array());
+        }
+    }
+
+    /**
+     * Reads an {@link Image} written with {@link #writeImage(Image, DataOutputStream)}.
+     *
+     * @param input The {@link DataInputStream} from where the image is read.
+     * @return The read {@link Image}.
+     * @throws IOException If any IO error occurs.
+     */
+    private static Image readImage(DataInputStream input) throws IOException {
+        final int width = input.readInt();
+        final int height = input.readInt();
+        final int bands = input.readInt();
+        final SampleType type = SampleType.valueOf(input.readUTF());
+        final SampleLayout layout = SampleLayout.valueOf(input.readUTF());
+        final Image image = Image.trash(width, height, bands, type, layout);
+        final double[] row = new double[width * bands];
+        final ByteBuffer buffer = ByteBuffer.allocate(row.length * type.getBytes());
+        for (int y = 0; y < height; y++) {
+            input.readFully(buffer.array());
+            buffer.clear();
+            for (int i = 0; i < row.length; i++) {
+                switch (type) {
+                    case UINT8:
+                        row[i] = buffer.get() & 0xFF;
+                        break;
+                    case UINT16:
+                        row[i] = buffer.getShort() & 0xFFFF;
+                        break;
+                    case FLOAT32:
+                        row[i] = buffer.getFloat();
+                        break;
+                    default:
+                        row[i] = buffer.getDouble();
+                }
+            }
+            image.setRow(y, row);
+        }
+        return image;
+    }
+
+
+    /**
+     * A state of the history, which can be held in memory, or spilled to a file.
+     */
+    private final class Entry {
+
+        /**
+         * The estimated amount of bytes the state takes when it is held in memory.
+         */
+        private final long bytes;
+
+        /**
+         * The {@link SampleModel} of the state's {@link ImageIOContainer}.
+         */
+        private final SampleModel sampleModel;
+
+        /**
+         * The {@link ColorModel} of the state's {@link ImageIOContainer}.
+         */
+        private final ColorModel colorModel;
+
+        /**
+         * The properties of the state's {@link ImageIOContainer}.
+         */
+        private final Hashtable<String, Object> properties;
+
+        /**
+         * The state, or {@code null} if it is spilled.
+         */
+        private ImageMapping mapping;
+
+        /**
+         * The file holding the spilled state, or {@code null} if it was never spilled.
+         */
+        private File file;
+
+        /**
+         * Constructor.
+         *
+         * @param mapping The state.
+         */
+        private Entry(ImageMapping mapping) {
+            final ImageIOContainer container = mapping.getImageIOContainer();
+            this.bytes = estimateBytes(mapping);
+            this.sampleModel = container.getSampleModel();
+            this.colorModel = container.getColorModel();
+            this.properties = container.getProperties();
+            this.mapping = mapping;
+        }
+
+        /**
+         * Removes the state from memory, writing it into a temporary file if it was not already written.
+         *
+         * @throws IOException If any IO error occurs while writing the file.
+         */
+        private void spill() throws IOException {
+            if (file == null) {
+                final File newFile = File.createTempFile("ati-history-", ".bin");
+                newFile.deleteOnExit();
+                final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                        new DeflaterOutputStream(new FileOutputStream(newFile), deflater, BUFFER_SIZE),
+                        BUFFER_SIZE))) {
+                    writeImage(mapping.getInternalRepresentation(), output);
+                } catch (IOException e) {
+                    if (!newFile.delete()) {
+                        LOGGER.debug("Could not delete incomplete file {}", newFile);
+                    }
+                    throw e;
+                } finally {
+                    deflater.end();
+                }
+                this.file = newFile;
+            }
+            this.mapping = null;
+        }
+
+        /**
+         * Returns the state, reading it from its file if it is spilled.
+         *
+         * @return The state.
+         * @throws IOException If any IO error occurs while reading the file.
+         */
+        private ImageMapping load() throws IOException {
+            if (mapping == null) {
+                try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                        new InflaterInputStream(new FileInputStream(file)), BUFFER_SIZE))) {
+                    final ImageIOContainer container =
+                            new ImageIOContainer(readImage(input), sampleModel, colorModel, properties);
+                    this.mapping = new ImageMapping(container, toBufferedImageFunction.apply(container));
+                }
+            }
+            return mapping;
+        }
+
+        /**
+         * Deletes the file holding the spilled state (if any).
+         */
+        private void deleteFile() {
+            if (file != null && !file.delete()) {
+                LOGGER.debug("Could not delete history file {}", file);
+            }
+            this.file = null;
+        }
+    }
+}
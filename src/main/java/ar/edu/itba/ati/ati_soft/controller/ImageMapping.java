@@ -0,0 +1,83 @@
+package ar.edu.itba.ati.ati_soft.controller;
+
+import ar.edu.itba.ati.ati_soft.interfaces.ImageIOContainer;
+import ar.edu.itba.ati.ati_soft.models.Image;
+
+import java.awt.image.BufferedImage;
+import java.util.function.Function;
+
+/**
+ * Bean class that holds together an {@link Image} with its {@link BufferedImage} representation,
+ * and an {@link ImageIOContainer} also, which is used to perform the mapping.
+ */
+/* package */ final class ImageMapping {
+
+    /**
+     * The {@link BufferedImage} that will be displayed.
+     */
+    private final BufferedImage displayed;
+
+    /**
+     * The {@link ImageIOContainer} that was used to perform the {@link Image} - {@link BufferedImage} mapping.
+     */
+    private final ImageIOContainer imageIOContainer;
+
+    /**
+     * Constructor that builds the displayed {@link BufferedImage}.
+     *
+     * @param original                The original {@link Image} (i.e the model).
+     * @param displayOperation        A {@link Function} that takes the {@code original}
+     *                                and transform it into another {@link Image} that can be displayed.
+     * @param toImageIOContainer      A {@link Function} that takes an {@link Image}
+     *                                and produces an {@link ImageIOContainer} for it.
+     * @param toBufferedImageFunction A {@link Function} that takes an {@link ImageIOContainer}
+     *                                and transforms it into the {@link BufferedImage}.
+     * @apiNote This constructor can be used when, having an internal {@link Image},
+     * one wants to hold the mapping for it into an ImageIO {@link BufferedImage}.
+     */
+    /* package */ ImageMapping(Image original, Function<Image, Image> displayOperation,
+                               Function<Image, ImageIOContainer> toImageIOContainer,
+                               Function<ImageIOContainer, BufferedImage> toBufferedImageFunction) {
+        this.imageIOContainer = toImageIOContainer.apply(displayOperation.apply(original));
+        this.displayed = toBufferedImageFunction.apply(this.imageIOContainer);
+    }
+
+    /**
+     * Constructor that sets values.
+     *
+     * @param imageIOContainer The {@link ImageIOContainer}
+     *                         that was used to perform the {@link Image} - {@link BufferedImage} mapping.
+     * @param displayed        The {@link BufferedImage}
+     *                         (i.e the displayed representation of the {@code original}) {@link Image}.
+     * @apiNote This constructor can be used when, having the {@link BufferedImage},
+     * one wants to hold the mapping for it into an internal {@link Image}.
+     */
+    /* package */ ImageMapping(ImageIOContainer imageIOContainer, BufferedImage displayed) {
+        this.imageIOContainer = imageIOContainer;
+        this.displayed = displayed;
+    }
+
+    /**
+     * @return The original {@link Image} (i.e the model).
+     */
+    /* package */ Image getInternalRepresentation() {
+        return imageIOContainer.getImage();
+    }
+
+
+    /**
+     * @return The {@link ImageIOContainer}
+     * that was used to perform the {@link Image} - {@link BufferedImage} mapping.
+     */
+    /* package */ ImageIOContainer getImageIOContainer() {
+        return imageIOContainer;
+    }
+
+    /**
+     * @return The {@link BufferedImage}
+     * (i.e the displayed representation of the {@link #getInternalRepresentation()} {@link Image}).
+     */
+    /* package */ BufferedImage getImageIORepresentation() {
+        return displayed;
+    }
+}
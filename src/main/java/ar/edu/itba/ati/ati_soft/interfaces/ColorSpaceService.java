@@ -0,0 +1,87 @@
+package ar.edu.itba.ati.ati_soft.interfaces;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+
+/**
+ * Defines behaviour for an object that can change the color space of {@link Image}s.
+ * All conversions take and return 3-bands {@link Image}s (being RGB samples between 0 and 255),
+ * and conversions that go through intermediate color spaces (e.g RGB to CIE XYZ to CIE-Lab)
+ * are performed in a single pass.
+ */
+public interface ColorSpaceService {
+
+    /**
+     * Converts the given RGB {@link Image} into the HSV color space.
+     *
+     * @param image The RGB {@link Image} to be converted.
+     * @return A new {@link Image} holding the hue (in degrees, between 0 and 360),
+     * the saturation (between 0 and 1), and the value (between 0 and 255) of each pixel.
+     */
+    Image rgbToHsv(Image image);
+
+    /**
+     * Converts the given HSV {@link Image} (see {@link #rgbToHsv(Image)}) into the RGB color space.
+     *
+     * @param image The HSV {@link Image} to be converted.
+     * @return A new RGB {@link Image}.
+     */
+    Image hsvToRgb(Image image);
+
+    /**
+     * Converts the given RGB {@link Image} into the YCbCr color space (full range ITU-R BT.601, as used by JPEG).
+     *
+     * @param image The RGB {@link Image} to be converted.
+     * @return A new {@link Image} holding the luma and both chroma components of each pixel
+     * (all of them between 0 and 255, being the chroma components centered at 128).
+     */
+    Image rgbToYCbCr(Image image);
+
+    /**
+     * Converts the given YCbCr {@link Image} (see {@link #rgbToYCbCr(Image)}) into the RGB color space.
+     *
+     * @param image The YCbCr {@link Image} to be converted.
+     * @return A new RGB {@link Image}.
+     */
+    Image yCbCrToRgb(Image image);
+
+    /**
+     * Converts the given RGB {@link Image} (sRGB) into the CIE XYZ color space.
+     *
+     * @param image The RGB {@link Image} to be converted.
+     * @return A new {@link Image} holding the X, Y and Z components of each pixel (being Y between 0 and 1).
+     */
+    Image rgbToXyz(Image image);
+
+    /**
+     * Converts the given CIE XYZ {@link Image} (see {@link #rgbToXyz(Image)}) into the RGB color space.
+     *
+     * @param image The CIE XYZ {@link Image} to be converted.
+     * @return A new RGB {@link Image}.
+     */
+    Image xyzToRgb(Image image);
+
+    /**
+     * Converts the given RGB {@link Image} (sRGB) into the CIE-Lab color space (D65 referent).
+     *
+     * @param image The RGB {@link Image} to be converted.
+     * @return A new {@link Image} holding the L, a and b components of each pixel.
+     */
+    Image rgbToCieLab(Image image);
+
+    /**
+     * Converts the given CIE-Lab {@link Image} (see {@link #rgbToCieLab(Image)}) into the RGB color space.
+     *
+     * @param image The CIE-Lab {@link Image} to be converted.
+     * @return A new RGB {@link Image}.
+     */
+    Image cieLabToRgb(Image image);
+
+    /**
+     * Calculates the luma of the given {@link Image} (i.e the Y component of {@link #rgbToYCbCr(Image)}),
+     * without converting the chroma components.
+     *
+     * @param image The RGB or gray {@link Image}.
+     * @return A new 1-band {@link Image} holding the luma of each pixel (or a copy of the image if it is gray).
+     */
+    Image toLuma(Image image);
+}
@@ -4,6 +4,8 @@ import ar.edu.itba.ati.ati_soft.models.Image;
 
 /**
  * Defines behaviour for an object that can perform diffusion operations.
+ * Each iteration is reported to the {@link ProgressMonitor} bound with {@link OperationContext},
+ * throwing a {@link java.util.concurrent.CancellationException} if it requests the cancellation.
  */
 public interface DiffusionService {
 
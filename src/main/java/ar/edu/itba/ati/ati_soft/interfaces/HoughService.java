@@ -5,6 +5,8 @@ import ar.edu.itba.ati.ati_soft.models.Image;
 /**
  * Defines behaviour for an object that implements the Hough transform method in {@link Image}s,
  * in order to detect several shapes.
+ * The shapes search reports its progress to the {@link ProgressMonitor} bound with {@link OperationContext},
+ * throwing a {@link java.util.concurrent.CancellationException} if it requests the cancellation.
  */
 public interface HoughService {
 
@@ -0,0 +1,129 @@
+package ar.edu.itba.ati.ati_soft.interfaces;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Defines behaviour for a lazy {@link Image} expression.
+ * Operations performed over an expression are recorded instead of being executed,
+ * so no {@link Image} is created until the expression is materialized (see {@link #materialize()}).
+ * Adjacent point operations and pixel by pixel operations are fused, being evaluated in a single pass.
+ * <p>
+ * Each operation has the same semantics than the one with the same name in {@link ImageOperationService}
+ * (or {@link ImageThresholdService} in the case of {@link #threshold(int)}).
+ * Expressions are immutable (i.e each operation returns a new expression).
+ */
+public interface ImageExpression {
+
+    /**
+     * @return The width of the {@link Image} this expression produces.
+     */
+    int getWidth();
+
+    /**
+     * @return The height of the {@link Image} this expression produces.
+     */
+    int getHeight();
+
+    /**
+     * @return The amount of bands of the {@link Image} this expression produces.
+     */
+    int getBands();
+
+    /**
+     * Sums the given {@code other} expression to this one.
+     *
+     * @param other The other {@link ImageExpression}.
+     * @return The sum of both expressions.
+     * @throws IllegalArgumentException If both expressions have different size.
+     */
+    ImageExpression sum(ImageExpression other) throws IllegalArgumentException;
+
+    /**
+     * Subtracts the given {@code other} expression to this one.
+     *
+     * @param other The other {@link ImageExpression}.
+     * @return The result of the subtraction.
+     * @throws IllegalArgumentException If both expressions have different size.
+     */
+    ImageExpression subtract(ImageExpression other) throws IllegalArgumentException;
+
+    /**
+     * Multiplies this expression with the given {@code other} expression.
+     *
+     * @param other The other {@link ImageExpression}.
+     * @return The result of the multiplication.
+     * @throws IllegalArgumentException If both expressions have different size.
+     */
+    ImageExpression multiply(ImageExpression other) throws IllegalArgumentException;
+
+    /**
+     * Multiplies this expression by the given {@code scalar}.
+     *
+     * @param scalar The scalar value.
+     * @return The result of the multiplication.
+     */
+    ImageExpression multiplyByScalar(double scalar);
+
+    /**
+     * Applies the dynamic range compression transformation to this expression.
+     *
+     * @return The transformed expression.
+     */
+    ImageExpression dynamicRangeCompression();
+
+    /**
+     * Applies the gamma power function to this expression.
+     *
+     * @param gamma The gamma value.
+     * @return The transformed expression.
+     */
+    ImageExpression gammaPower(double gamma);
+
+    /**
+     * Calculates the negative of this expression.
+     *
+     * @return The negative expression.
+     */
+    ImageExpression negative();
+
+    /**
+     * Applies the normalization function to this expression.
+     *
+     * @return The normalized expression.
+     */
+    ImageExpression normalize();
+
+    /**
+     * Converts this expression into a gray one.
+     *
+     * @return The gray expression.
+     */
+    ImageExpression toGray();
+
+    /**
+     * Applies a threshold to this expression, using the given threshold {@code value}.
+     *
+     * @param value The threshold (i.e value that indicates where the separation is done).
+     * @return The threshold expression.
+     */
+    ImageExpression threshold(int value);
+
+    /**
+     * Applies the given {@code operation} (e.g a neighbourhood operation like a filter) to this expression.
+     * As the operation needs an {@link Image}, this expression is materialized before applying it.
+     * The result of the operation is the source of the returned expression.
+     *
+     * @param operation The operation to be applied.
+     * @return An expression whose source is the result of the {@code operation}.
+     */
+    ImageExpression then(UnaryOperator<Image> operation);
+
+    /**
+     * Evaluates this expression, creating the resulting {@link Image}.
+     *
+     * @return A new {@link Image} with the result of this expression.
+     */
+    Image materialize();
+}
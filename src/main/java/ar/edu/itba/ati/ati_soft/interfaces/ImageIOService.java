@@ -1,6 +1,8 @@
 package ar.edu.itba.ati.ati_soft.interfaces;
 
 import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SampleLayout;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -60,6 +62,92 @@ public interface ImageIOService {
      */
     void saveImage(BufferedImage image, File file) throws IOException, UnsupportedImageFileException;
 
+    /**
+     * Reads an {@link Image} from the given {@code imageFile}, without creating a {@link BufferedImage}.
+     * PNM images that don't fit in the heap are stored in a temporary memory-mapped file
+     * (which is released when the returned {@link Image} is closed).
+     *
+     * @param imageFile The image {@link File} to be read.
+     * @return The read {@link Image}.
+     * @throws IOException                   If any IO error occurs while reading the image file.
+     * @throws UnsupportedImageFileException In case the given {@code imageFile}
+     *                                       is not a supported image file (or is not an image at all).
+     */
+    default Image readImage(File imageFile) throws IOException, UnsupportedImageFileException {
+        return readImage(imageFile, SampleType.FLOAT64);
+    }
+
+    /**
+     * Reads an {@link Image} from the given {@code imageFile}, without creating a {@link BufferedImage},
+     * storing its samples with the given {@link SampleType}
+     * (e.g {@link SampleType#UINT8} for 8-bit images takes an eighth of the memory).
+     *
+     * @param imageFile  The image {@link File} to be read.
+     * @param sampleType The {@link SampleType} with which samples are stored.
+     * @return The read {@link Image}.
+     * @throws IOException                   If any IO error occurs while reading the image file.
+     * @throws UnsupportedImageFileException In case the given {@code imageFile}
+     *                                       is not a supported image file (or is not an image at all).
+     */
+    default Image readImage(File imageFile, SampleType sampleType) throws IOException, UnsupportedImageFileException {
+        return readImage(imageFile, sampleType, SampleLayout.INTERLEAVED);
+    }
+
+    /**
+     * Reads an {@link Image} from the given {@code imageFile}, without creating a {@link BufferedImage},
+     * storing its samples with the given {@link SampleType} (see {@link #readImage(File, SampleType)}),
+     * laid out with the given {@link SampleLayout} (e.g {@link SampleLayout#PLANAR} to filter each band
+     * sequentially).
+     *
+     * @param imageFile  The image {@link File} to be read.
+     * @param sampleType The {@link SampleType} with which samples are stored.
+     * @param layout     The {@link SampleLayout} of the raster.
+     * @return The read {@link Image}.
+     * @throws IOException                   If any IO error occurs while reading the image file.
+     * @throws UnsupportedImageFileException In case the given {@code imageFile}
+     *                                       is not a supported image file (or is not an image at all).
+     */
+    Image readImage(File imageFile, SampleType sampleType, SampleLayout layout)
+            throws IOException, UnsupportedImageFileException;
+
+    /**
+     * Writes the given {@link Image} into the given {@code file}, without creating a {@link BufferedImage}.
+     *
+     * @param image The {@link Image} to be written.
+     * @param file  The {@link File} to which the {@link Image} will be written.
+     * @throws IOException                   If any IO error occurs while writing the image file.
+     * @throws UnsupportedImageFileException In case the given {@code file} has a non supported extension.
+     */
+    void writeImage(Image image, File file) throws IOException, UnsupportedImageFileException;
+
+    /**
+     * Opens the given {@code imageFile} in order to read its rows sequentially,
+     * without holding the whole {@link Image} in memory.
+     *
+     * @param imageFile The image {@link File} to be read.
+     * @return An {@link ImageRowReader} for the given {@code imageFile}.
+     * @throws IOException                   If any IO error occurs while opening the image file.
+     * @throws UnsupportedImageFileException In case the given {@code imageFile} is not a supported image file,
+     *                                       or if its format can't be read row by row.
+     */
+    ImageRowReader openRowReader(File imageFile) throws IOException, UnsupportedImageFileException;
+
+    /**
+     * Creates the given {@code file} in order to write the rows of an {@link Image} sequentially,
+     * without holding the whole {@link Image} in memory.
+     *
+     * @param file   The {@link File} to which the {@link Image} will be written.
+     * @param width  The width of the {@link Image}.
+     * @param height The height of the {@link Image}.
+     * @param bands  The amount of bands of the {@link Image}.
+     * @return An {@link ImageRowWriter} for the given {@code file}.
+     * @throws IOException                   If any IO error occurs while creating the image file.
+     * @throws UnsupportedImageFileException In case the given {@code file} has a non supported extension,
+     *                                       or if its format can't be written row by row.
+     */
+    ImageRowWriter openRowWriter(File file, int width, int height, int bands)
+            throws IOException, UnsupportedImageFileException;
+
     /**
      * Creates an {@link ImageIOContainer} from the given {@link BufferedImage}.
      *
@@ -1,6 +1,9 @@
 package ar.edu.itba.ati.ati_soft.interfaces;
 
 import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.Region;
+
+import java.util.function.Function;
 
 /**
  * Defines behaviour for an object that implements several methods that can change {@link Image}s.
@@ -76,4 +79,39 @@ public interface ImageOperationService {
      * @return The result of the operation.
      */
     Image normalize(Image image);
+
+    /**
+     * Creates a lazy {@link ImageExpression} whose source is the given {@link Image}.
+     * Operations performed over the expression are fused, and evaluated only when it is materialized.
+     *
+     * @param image The source {@link Image}.
+     * @return The created {@link ImageExpression}.
+     */
+    ImageExpression expression(Image image);
+
+    /**
+     * Creates a downscaled version of the given {@link Image} (e.g a proxy in which operations can be previewed),
+     * averaging blocks of {@code factor} x {@code factor} pixels.
+     *
+     * @param image  The {@link Image} to be downscaled.
+     * @param factor The amount of pixels of the image, in each direction, that are averaged into one pixel.
+     * @return The downscaled {@link Image}.
+     */
+    Image downscale(Image image, int factor);
+
+    /**
+     * Applies the given {@code operation} (e.g any method of any service that takes and returns an {@link Image}
+     * with the same dimensions) only to the given {@link Region} of the given {@link Image},
+     * without copying the region (i.e the operation is applied to a view of the image).
+     *
+     * @param image     The {@link Image} to be processed.
+     * @param region    The {@link Region} of interest.
+     * @param margin    The amount of pixels around the region that are passed to the operation as context
+     *                  (e.g half the window length of a filter), so results inside the region are not affected
+     *                  by the region borders.
+     * @param operation The operation to be applied.
+     * @return A new {@link Image} with the result of the operation inside the region,
+     * and the samples of the given {@code image} outside it.
+     */
+    Image applyToRegion(Image image, Region region, int margin, Function<Image, Image> operation);
 }
@@ -0,0 +1,45 @@
+package ar.edu.itba.ati.ati_soft.interfaces;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Defines behaviour for an object that reads an {@link Image} sequentially, row by row,
+ * without holding the whole {@link Image} in memory.
+ * Rows are band-interleaved (i.e the sample of column {@code x} and band {@code b}
+ * is stored in position {@code x * bands + b}).
+ */
+public interface ImageRowReader extends Closeable {
+
+    /**
+     * @return The width of the {@link Image} being read.
+     */
+    int getWidth();
+
+    /**
+     * @return The height of the {@link Image} being read.
+     */
+    int getHeight();
+
+    /**
+     * @return The amount of bands of the {@link Image} being read.
+     */
+    int getBands();
+
+    /**
+     * @return {@code true} if there are rows that were not read yet, or {@code false} otherwise.
+     */
+    boolean hasNextRow();
+
+    /**
+     * Reads the next row.
+     *
+     * @param row An array of {@code width * bands} length in which the row will be stored.
+     * @return The given {@code row} array, for method chaining.
+     * @throws IOException           If any IO error occurs while reading.
+     * @throws IllegalStateException If all the rows were already read.
+     */
+    double[] readRow(double[] row) throws IOException, IllegalStateException;
+}
@@ -0,0 +1,32 @@
+package ar.edu.itba.ati.ati_soft.interfaces;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Defines behaviour for an object that writes an {@link Image} sequentially, row by row,
+ * without holding the whole {@link Image} in memory.
+ * Rows are band-interleaved (i.e the sample of column {@code x} and band {@code b}
+ * is stored in position {@code x * bands + b}).
+ */
+public interface ImageRowWriter extends Closeable {
+
+    /**
+     * Writes the next row.
+     *
+     * @param row An array of {@code width * bands} length holding the row to be written.
+     * @throws IOException           If any IO error occurs while writing.
+     * @throws IllegalStateException If all the rows were already written.
+     */
+    void writeRow(double[] row) throws IOException, IllegalStateException;
+
+    /**
+     * Closes this writer.
+     *
+     * @throws IOException If any IO error occurs while closing, or if not all the rows were written.
+     */
+    @Override
+    void close() throws IOException;
+}
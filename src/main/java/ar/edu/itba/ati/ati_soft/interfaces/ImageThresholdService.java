@@ -4,6 +4,8 @@ import ar.edu.itba.ati.ati_soft.models.Image;
 
 /**
  * Service in charge of providing threshold services.
+ * Iterative methods check the {@link ProgressMonitor} bound with {@link OperationContext} in each iteration,
+ * throwing a {@link java.util.concurrent.CancellationException} if it requests the cancellation.
  */
 public interface ImageThresholdService {
 
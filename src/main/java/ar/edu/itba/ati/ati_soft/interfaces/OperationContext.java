@@ -0,0 +1,62 @@
+package ar.edu.itba.ati.ati_soft.interfaces;
+
+import org.springframework.util.Assert;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+/**
+ * Binds a {@link ProgressMonitor} to the thread that performs an operation.
+ * Long-running service methods called in the scope of {@link #runWith(ProgressMonitor, Supplier)}
+ * report their progress to the monitor, and check it at row granularity,
+ * throwing a {@link CancellationException} as soon as it requests the cancellation.
+ * As services always create new {@link ar.edu.itba.ati.ati_soft.models.Image}s,
+ * a cancelled operation leaves no partial state (i.e the given images are not modified).
+ */
+public final class OperationContext {
+
+    /**
+     * Holds the {@link ProgressMonitor} bound to each thread.
+     */
+    private static final ThreadLocal<ProgressMonitor> MONITOR = new ThreadLocal<>();
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private OperationContext() {
+    }
+
+    /**
+     * Performs the given {@code operation} in the calling thread, with the given {@code monitor} bound to it.
+     *
+     * @param monitor   The {@link ProgressMonitor} to be bound.
+     * @param operation The operation to be performed (e.g a service call).
+     * @param <T>       The type of the operation result.
+     * @return The operation result.
+     * @throws CancellationException If the {@code monitor} requested the operation to be cancelled.
+     */
+    public static <T> T runWith(ProgressMonitor monitor, Supplier<T> operation) throws CancellationException {
+        Assert.notNull(monitor, "The monitor must not be null");
+        Assert.notNull(operation, "The operation must not be null");
+        final ProgressMonitor previous = MONITOR.get();
+        MONITOR.set(monitor);
+        try {
+            return operation.get();
+        } finally {
+            if (previous == null) {
+                MONITOR.remove();
+            } else {
+                MONITOR.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return An {@link Optional} holding the {@link ProgressMonitor} bound to the calling thread,
+     * or empty if there is none.
+     */
+    public static Optional<ProgressMonitor> getMonitor() {
+        return Optional.ofNullable(MONITOR.get());
+    }
+}
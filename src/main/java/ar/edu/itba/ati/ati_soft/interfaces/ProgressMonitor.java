@@ -0,0 +1,25 @@
+package ar.edu.itba.ati.ati_soft.interfaces;
+
+/**
+ * Defines behaviour for an object that follows the progress of a long-running operation,
+ * and that can request the operation to be cancelled.
+ * Services use the monitor bound to the thread that calls them (see {@link OperationContext}).
+ */
+public interface ProgressMonitor {
+
+    /**
+     * Notifies the progress of the operation.
+     * This method can be called from any thread (e.g the workers of a parallel operation).
+     *
+     * @param fraction The fraction of the operation that is done (between 0.0 and 1.0).
+     */
+    void updateProgress(double fraction);
+
+    /**
+     * Indicates whether the operation must be cancelled.
+     * This method can be called from any thread (e.g the workers of a parallel operation).
+     *
+     * @return {@code true} if the operation must be cancelled, or {@code false} otherwise.
+     */
+    boolean isCancelled();
+}
@@ -1,9 +1,18 @@
 package ar.edu.itba.ati.ati_soft.interfaces;
 
+import ar.edu.itba.ati.ati_soft.models.Corner;
+import ar.edu.itba.ati.ati_soft.models.Gradients;
 import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.Region;
+import ar.edu.itba.ati.ati_soft.models.SusanFeature;
+
+import java.io.IOException;
+import java.util.List;
 
 /**
  * Defines behaviour for an object that is in charge of providing sliding window services.
+ * Filters report their progress row by row to the {@link ProgressMonitor} bound with {@link OperationContext},
+ * throwing a {@link java.util.concurrent.CancellationException} if it requests the cancellation.
  */
 public interface SlidingWindowService {
 
@@ -64,6 +73,19 @@ public interface SlidingWindowService {
      */
     Image applyBilateralFilter(Image image, double spatialStd, double rangeStd, int windowSize);
 
+    /**
+     * Applies a Bilateral filtering only to the given {@link Region} of the given {@link Image}
+     * (see {@link #applyBilateralFilter(Image, double, double, int)}).
+     *
+     * @param image      The {@link Image} to which the filter will be applied.
+     * @param region     The {@link Region} of interest.
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @param windowSize The size of the window to be used.
+     * @return a new {@link Image} with the filter applied inside the region, and the original samples outside it.
+     */
+    Image applyBilateralFilter(Image image, Region region, double spatialStd, double rangeStd, int windowSize);
+
     /**
      * Applies a Bilateral filtering to the given {@link Image}, using the given standard deviations.
      *
@@ -78,9 +100,152 @@ public interface SlidingWindowService {
      * Only 1-band (gray) and 3-bands (just RGB) images are allowed.
      * For RGB images, an RGB to CIE-Lab transformation is performed before filtering,
      * and a CIE-Lab to RGB transformation after filtering.
+     * The three channels are filtered jointly, being the range distance the color difference in the CIE-Lab space
+     * (i.e Delta E), so the {@code rangeStd} is measured in Delta E units.
      */
     Image applyBilateralFilterWithCIELabColor(Image image, double spatialStd, double rangeStd, int windowSize);
 
+    /**
+     * Applies a Bilateral filtering only to the given {@link Region} of the given {@link Image},
+     * transforming RGB images to CIE-Lab
+     * (see {@link #applyBilateralFilterWithCIELabColor(Image, double, double, int)}).
+     *
+     * @param image      The {@link Image} to which the filter will be applied.
+     * @param region     The {@link Region} of interest.
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @param windowSize The size of the window to be used.
+     * @return a new {@link Image} with the filter applied inside the region, and the original samples outside it.
+     * @apiNote RGB images are normalized using the whole image, so the region matches the whole image filtering.
+     */
+    Image applyBilateralFilterWithCIELabColor(Image image, Region region,
+                                              double spatialStd, double rangeStd, int windowSize);
+
+    /**
+     * Applies an approximation of the Bilateral filtering to the given {@link Image}, using a bilateral grid
+     * (see {@link #applyBilateralFilter(Image, double, double, int)}).
+     * Its cost does not depend on the size of the spatial kernel, so it is meant for big standard deviations.
+     *
+     * @param image      The {@link Image} to which the filter will be applied.
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @return a new {@link Image} with the filter applied (including the pixels in the border).
+     * @apiNote The grid has a cell for each standard deviation in each dimension (i.e for each {@code spatialStd}
+     * pixels in each direction, and for each {@code rangeStd} values), so standard deviations must not be too small
+     * (see Chen J., Paris S., Durand F., (2007), Real-time Edge-Aware Image Processing with the Bilateral Grid).
+     */
+    Image applyBilateralGridFilter(Image image, double spatialStd, double rangeStd);
+
+    /**
+     * Applies an approximation of the Bilateral filtering only to the given {@link Region} of the given {@link Image},
+     * using a bilateral grid (see {@link #applyBilateralGridFilter(Image, double, double)}).
+     *
+     * @param image      The {@link Image} to which the filter will be applied.
+     * @param region     The {@link Region} of interest.
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @return a new {@link Image} with the filter applied inside the region, and the original samples outside it.
+     * @apiNote The grid is built for the region and a margin of three spatial standard deviations,
+     * so its cells are not the ones of the whole image grid, and both approximations can differ slightly.
+     */
+    Image applyBilateralGridFilter(Image image, Region region, double spatialStd, double rangeStd);
+
+    /**
+     * Applies an approximation of the Bilateral filtering to the given {@link Image}, using a bilateral grid
+     * (see {@link #applyBilateralGridFilter(Image, double, double)}),
+     * filtering 3-bands images in the CIE-Lab color space
+     * (see {@link #applyBilateralFilterWithCIELabColor(Image, double, double, int)}).
+     * Note that each CIE-Lab channel is filtered independently (i.e with a grid per channel).
+     *
+     * @param image      The {@link Image} to which the filter will be applied.
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @return a new {@link Image} with the filter applied.
+     */
+    Image applyBilateralGridFilterWithCIELabColor(Image image, double spatialStd, double rangeStd);
+
+    /**
+     * Applies an approximation of the Bilateral filtering only to the given {@link Region} of the given {@link Image},
+     * using a bilateral grid, and filtering 3-bands images in the CIE-Lab color space
+     * (see {@link #applyBilateralGridFilterWithCIELabColor(Image, double, double)}).
+     *
+     * @param image      The {@link Image} to which the filter will be applied.
+     * @param region     The {@link Region} of interest.
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @return a new {@link Image} with the filter applied inside the region, and the original samples outside it.
+     * @apiNote RGB images are normalized using the whole image, but the grid is built for the region
+     * (see {@link #applyBilateralGridFilter(Image, Region, double, double)}).
+     */
+    Image applyBilateralGridFilterWithCIELabColor(Image image, Region region, double spatialStd, double rangeStd);
+
+
+    // ================================================================================================================
+    // Streaming filters
+    // ================================================================================================================
+    //
+    // The following methods apply the same filters than their in-memory counterparts,
+    // reading the image from an ImageRowReader and writing the result into an ImageRowWriter
+    // (which must have the same dimensions). The image is processed by bands of rows (overlapping by half a window),
+    // so only a few rows are held in memory at a time (i.e arbitrarily tall images can be filtered).
+
+    /**
+     * Applies a mean filter to the image read from the given {@code source} (see {@link #applyMeanFilter(Image, int)}).
+     *
+     * @param source       The {@link ImageRowReader} from where the image is read.
+     * @param sink         The {@link ImageRowWriter} into which the filtered image is written.
+     * @param windowLength The length of the window.
+     * @throws IOException If any IO error occurs while reading or writing rows.
+     */
+    void applyMeanFilter(ImageRowReader source, ImageRowWriter sink, int windowLength) throws IOException;
+
+    /**
+     * Applies a median filter to the image read from the given {@code source}
+     * (see {@link #applyMedianFilter(Image, int)}).
+     *
+     * @param source       The {@link ImageRowReader} from where the image is read.
+     * @param sink         The {@link ImageRowWriter} into which the filtered image is written.
+     * @param windowLength The length of the window.
+     * @throws IOException If any IO error occurs while reading or writing rows.
+     */
+    void applyMedianFilter(ImageRowReader source, ImageRowWriter sink, int windowLength) throws IOException;
+
+    /**
+     * Applies a weight median filter to the image read from the given {@code source}
+     * (see {@link #applyWeightMedianFilter(Image, Integer[][])}).
+     *
+     * @param source  The {@link ImageRowReader} from where the image is read.
+     * @param sink    The {@link ImageRowWriter} into which the filtered image is written.
+     * @param weights A two-dimensional array containing the weights.
+     * @throws IOException If any IO error occurs while reading or writing rows.
+     */
+    void applyWeightMedianFilter(ImageRowReader source, ImageRowWriter sink, Integer[][] weights) throws IOException;
+
+    /**
+     * Applies a gaussian filter to the image read from the given {@code source}
+     * (see {@link #applyGaussianFilter(Image, double)}).
+     *
+     * @param source            The {@link ImageRowReader} from where the image is read.
+     * @param sink              The {@link ImageRowWriter} into which the filtered image is written.
+     * @param standardDeviation The standard deviation (i.e the sigma param) for the Gaussian function.
+     * @throws IOException If any IO error occurs while reading or writing rows.
+     */
+    void applyGaussianFilter(ImageRowReader source, ImageRowWriter sink, double standardDeviation) throws IOException;
+
+    /**
+     * Applies a Bilateral filtering to the image read from the given {@code source}
+     * (see {@link #applyBilateralFilter(Image, double, double, int)}).
+     *
+     * @param source     The {@link ImageRowReader} from where the image is read.
+     * @param sink       The {@link ImageRowWriter} into which the filtered image is written.
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @param windowSize The size of the window to be used.
+     * @throws IOException If any IO error occurs while reading or writing rows.
+     */
+    void applyBilateralFilter(ImageRowReader source, ImageRowWriter sink,
+                              double spatialStd, double rangeStd, int windowSize) throws IOException;
+
 
     // ================================================================================================================
     // Border detection
@@ -190,6 +355,21 @@ public interface SlidingWindowService {
      */
     Image suppressNoMaxPixels(Image image, double sigma);
 
+    /**
+     * Calculates the Sobel gradients of the gray version of the given {@link Image},
+     * after applying a Gaussian filter (i.e the ones used by the Canny method and the corner detectors),
+     * so they can be calculated once and passed to several methods
+     * (see {@link #cannyDetection(Gradients)}, {@link #harrisCorners(Gradients, double, double, int)}
+     * and {@link #shiTomasiCorners(Gradients, double, int)}).
+     *
+     * @param image The {@link Image} to be processed.
+     * @param sigma The sigma value for the gaussian filter that is applied before calculating the gradients
+     *              (or {@code 0} to skip the filter).
+     * @return The calculated {@link Gradients}.
+     * @throws IllegalArgumentException If the sigma is negative.
+     */
+    Gradients gradients(Image image, double sigma) throws IllegalArgumentException;
+
     /**
      * Applies the Canny border detector.
      *
@@ -199,12 +379,160 @@ public interface SlidingWindowService {
      */
     Image cannyDetection(Image image, double sigma);
 
+    /**
+     * Applies the Canny border detector, using the given (already calculated) {@link Gradients}
+     * (see {@link #gradients(Image, double)}).
+     *
+     * @param gradients The {@link Gradients} of the {@link Image} to be processed.
+     * @return The borders {@link Image}.
+     */
+    Image cannyDetection(Gradients gradients);
+
+    /**
+     * Applies the Canny border detector only to the given {@link Region} of the given {@link Image}
+     * (see {@link #cannyDetection(Image, double)}).
+     *
+     * @param image  The {@link Image} to be processed.
+     * @param region The {@link Region} of interest.
+     * @param sigma  The sigma value for the gaussian filter that is applied at the beginning of the method.
+     * @return The borders {@link Image} inside the region, with the original samples outside it.
+     * @apiNote The hysteresis thresholds are calculated from the region (and its neighbourhood),
+     * not from the whole image.
+     */
+    Image cannyDetection(Image image, Region region, double sigma);
+
+    /**
+     * Applies the Canny border detector only to the given {@link Region} of the given {@link Image},
+     * choosing where the hysteresis thresholds are calculated from.
+     *
+     * @param image            The {@link Image} to be processed.
+     * @param region           The {@link Region} of interest.
+     * @param sigma            The sigma value for the gaussian filter that is applied at the beginning of the method.
+     * @param globalThresholds Indicates whether the thresholds are calculated from the whole image,
+     *                         so the region matches the whole image detection (the whole image is processed then),
+     *                         or from the region, as in {@link #cannyDetection(Image, Region, double)}.
+     * @return The borders {@link Image} inside the region, with the original samples outside it.
+     */
+    Image cannyDetection(Image image, Region region, double sigma, boolean globalThresholds);
+
     /**
      * Applies the SUSAN border and corner detector.
      *
      * @param image The {@link Image} to be processed.
      * @param t     The t value.
-     * @return The borders and corners {@link Image}.
+     * @return The borders and corners {@link Image} (i.e corners in red, and borders in green).
+     * @see #susanFeatures(Image, double)
      */
     Image susanDetection(Image image, double t);
+
+    /**
+     * Finds the borders and corners of the given {@link Image} with the SUSAN detector.
+     *
+     * @param image The {@link Image} to be processed.
+     * @param t     The t value (i.e the brightness difference threshold).
+     * @return The found {@link SusanFeature}s (with their USAN values), sorted by row, and then by column.
+     * @throws IllegalArgumentException If the t value is not positive.
+     */
+    List<SusanFeature> susanFeatures(Image image, double t) throws IllegalArgumentException;
+
+    /**
+     * Finds the borders and corners of the given {@link Image} with the SUSAN detector,
+     * using the smooth similarity {@code exp(-(d / t) ^ 6)} between each pixel and the nucleus of the mask
+     * (being {@code d} their brightness difference), instead of the {@code |d| < t} test
+     * of {@link #susanFeatures(Image, double)}.
+     *
+     * @param image The {@link Image} to be processed.
+     * @param t     The t value (i.e the brightness difference at which the similarity drops).
+     * @return The found {@link SusanFeature}s (with their USAN values), sorted by row, and then by column.
+     * @throws IllegalArgumentException If the t value is not positive.
+     */
+    List<SusanFeature> smoothSusanFeatures(Image image, double t) throws IllegalArgumentException;
+
+    /**
+     * Applies the Harris corner detector (see {@link #harrisCorners(Image, double, double, double, int)}).
+     *
+     * @param image       The {@link Image} to be processed.
+     * @param sigma       The sigma value for the gaussian filter that is applied before calculating the gradients
+     *                    (or {@code 0} to skip the filter).
+     * @param windowSigma The sigma value for the gaussian window of the structure tensor.
+     * @param k           The Harris sensitivity parameter (usually between 0.04 and 0.06).
+     * @param maxCorners  The max. amount of corners to be found (i.e the strongest ones).
+     * @return An RGB {@link Image} with the found corners marked in red.
+     */
+    Image harrisCornerDetection(Image image, double sigma, double windowSigma, double k, int maxCorners);
+
+    /**
+     * Finds the corners of the given {@link Image} with the Harris corner detector.
+     * The Sobel gradients are the same as the ones used by the Canny method
+     * (see {@link #cannyDetection(Image, double)}). To calculate them only once for both methods,
+     * calculate them with {@link #gradients(Image, double)}, and use
+     * {@link #harrisCorners(Gradients, double, double, int)}.
+     * Corners are the local maximums of the response that are at least 1% of the max. response.
+     *
+     * @param image       The {@link Image} to be processed.
+     * @param sigma       The sigma value for the gaussian filter that is applied before calculating the gradients
+     *                    (or {@code 0} to skip the filter).
+     * @param windowSigma The sigma value for the gaussian window of the structure tensor.
+     * @param k           The Harris sensitivity parameter (usually between 0.04 and 0.06).
+     * @param maxCorners  The max. amount of corners to be found (i.e the strongest ones).
+     * @return The found {@link Corner}s, sorted by response in descending order.
+     * @throws IllegalArgumentException If any parameter is not positive (or the sigma is negative).
+     */
+    List<Corner> harrisCorners(Image image, double sigma, double windowSigma, double k, int maxCorners)
+            throws IllegalArgumentException;
+
+    /**
+     * Finds the corners with the Harris corner detector, using the given (already calculated) {@link Gradients}
+     * (see {@link #harrisCorners(Image, double, double, double, int)}).
+     *
+     * @param gradients   The {@link Gradients} of the {@link Image} to be processed.
+     * @param windowSigma The sigma value for the gaussian window of the structure tensor.
+     * @param k           The Harris sensitivity parameter (usually between 0.04 and 0.06).
+     * @param maxCorners  The max. amount of corners to be found (i.e the strongest ones).
+     * @return The found {@link Corner}s, sorted by response in descending order.
+     * @throws IllegalArgumentException If any parameter is not positive.
+     */
+    List<Corner> harrisCorners(Gradients gradients, double windowSigma, double k, int maxCorners)
+            throws IllegalArgumentException;
+
+    /**
+     * Applies the Shi-Tomasi corner detector (see {@link #shiTomasiCorners(Image, double, double, int)}).
+     *
+     * @param image       The {@link Image} to be processed.
+     * @param sigma       The sigma value for the gaussian filter that is applied before calculating the gradients
+     *                    (or {@code 0} to skip the filter).
+     * @param windowSigma The sigma value for the gaussian window of the structure tensor.
+     * @param maxCorners  The max. amount of corners to be found (i.e the strongest ones).
+     * @return An RGB {@link Image} with the found corners marked in red.
+     */
+    Image shiTomasiCornerDetection(Image image, double sigma, double windowSigma, int maxCorners);
+
+    /**
+     * Finds the corners of the given {@link Image} with the Shi-Tomasi corner detector
+     * (i.e using the min. eigenvalue of the structure tensor as response),
+     * using the same gradients as the Canny method (see {@link #harrisCorners(Image, double, double, double, int)}).
+     *
+     * @param image       The {@link Image} to be processed.
+     * @param sigma       The sigma value for the gaussian filter that is applied before calculating the gradients
+     *                    (or {@code 0} to skip the filter).
+     * @param windowSigma The sigma value for the gaussian window of the structure tensor.
+     * @param maxCorners  The max. amount of corners to be found (i.e the strongest ones).
+     * @return The found {@link Corner}s, sorted by response in descending order.
+     * @throws IllegalArgumentException If any parameter is not positive (or the sigma is negative).
+     */
+    List<Corner> shiTomasiCorners(Image image, double sigma, double windowSigma, int maxCorners)
+            throws IllegalArgumentException;
+
+    /**
+     * Finds the corners with the Shi-Tomasi corner detector, using the given (already calculated)
+     * {@link Gradients} (see {@link #shiTomasiCorners(Image, double, double, int)}).
+     *
+     * @param gradients   The {@link Gradients} of the {@link Image} to be processed.
+     * @param windowSigma The sigma value for the gaussian window of the structure tensor.
+     * @param maxCorners  The max. amount of corners to be found (i.e the strongest ones).
+     * @return The found {@link Corner}s, sorted by response in descending order.
+     * @throws IllegalArgumentException If any parameter is not positive.
+     */
+    List<Corner> shiTomasiCorners(Gradients gradients, double windowSigma, int maxCorners)
+            throws IllegalArgumentException;
 }
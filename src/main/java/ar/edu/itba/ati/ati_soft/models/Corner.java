@@ -0,0 +1,85 @@
+package ar.edu.itba.ati.ati_soft.models;
+
+import org.springframework.util.Assert;
+
+/**
+ * Represents a corner found in an {@link Image} by a corner detector (e.g Harris, or Shi-Tomasi).
+ */
+public class Corner {
+
+    /**
+     * The 'x' coordinate of the corner.
+     */
+    private final int x;
+
+    /**
+     * The 'y' coordinate of the corner.
+     */
+    private final int y;
+
+    /**
+     * The response of the detector in the corner (i.e the higher, the stronger the corner is).
+     */
+    private final double response;
+
+    /**
+     * Constructor.
+     *
+     * @param x        The 'x' coordinate of the corner.
+     * @param y        The 'y' coordinate of the corner.
+     * @param response The response of the detector in the corner.
+     * @throws IllegalArgumentException If the coordinates are negative.
+     */
+    public Corner(int x, int y, double response) throws IllegalArgumentException {
+        Assert.isTrue(x >= 0 && y >= 0, "The coordinates of the corner must not be negative.");
+        this.x = x;
+        this.y = y;
+        this.response = response;
+    }
+
+    /**
+     * @return The 'x' coordinate of the corner.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * @return The 'y' coordinate of the corner.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * @return The response of the detector in the corner (i.e the higher, the stronger the corner is).
+     */
+    public double getResponse() {
+        return response;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Corner)) {
+            return false;
+        }
+        final Corner corner = (Corner) o;
+        return x == corner.x && y == corner.y && Double.compare(corner.response, response) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = x;
+        result = 31 * result + y;
+        result = 31 * result + Double.hashCode(response);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Corner{" + "x=" + x + ", y=" + y + ", response=" + response + '}';
+    }
+}
@@ -0,0 +1,82 @@
+package ar.edu.itba.ati.ati_soft.models;
+
+import org.springframework.util.Assert;
+
+/**
+ * Holds the 'x' and 'y' gradients of an {@link Image} (i.e calculated after applying a Gaussian filter
+ * with a given standard deviation), so they can be calculated once and shared by several methods
+ * (e.g Canny and the corner detectors).
+ */
+public class Gradients {
+
+    /**
+     * The 'x' gradient.
+     */
+    private final Image xGradient;
+
+    /**
+     * The 'y' gradient.
+     */
+    private final Image yGradient;
+
+    /**
+     * The standard deviation of the Gaussian filter applied before calculating the gradients
+     * (or {@code 0} if no filter was applied).
+     */
+    private final double sigma;
+
+    /**
+     * Constructor.
+     *
+     * @param xGradient The 'x' gradient.
+     * @param yGradient The 'y' gradient.
+     * @param sigma     The standard deviation of the Gaussian filter applied before calculating the gradients
+     *                  (or {@code 0} if no filter was applied).
+     * @throws IllegalArgumentException If any gradient is null, if they don't have the same dimensions,
+     *                                  or if the standard deviation is negative.
+     */
+    public Gradients(Image xGradient, Image yGradient, double sigma) throws IllegalArgumentException {
+        Assert.notNull(xGradient, "The 'x' gradient must not be null.");
+        Assert.notNull(yGradient, "The 'y' gradient must not be null.");
+        Assert.isTrue(xGradient.getWidth() == yGradient.getWidth()
+                        && xGradient.getHeight() == yGradient.getHeight()
+                        && xGradient.getBands() == yGradient.getBands(),
+                "The gradients must have the same dimensions.");
+        Assert.isTrue(sigma >= 0, "The standard deviation must not be negative.");
+        this.xGradient = xGradient;
+        this.yGradient = yGradient;
+        this.sigma = sigma;
+    }
+
+    /**
+     * @return The 'x' gradient.
+     * @apiNote The returned {@link Image} can be shared by several methods, so it must not be modified.
+     */
+    public Image getXGradient() {
+        return xGradient;
+    }
+
+    /**
+     * @return The 'y' gradient.
+     * @apiNote The returned {@link Image} can be shared by several methods, so it must not be modified.
+     */
+    public Image getYGradient() {
+        return yGradient;
+    }
+
+    /**
+     * @return The standard deviation of the Gaussian filter applied before calculating the gradients
+     * (or {@code 0} if no filter was applied).
+     */
+    public double getSigma() {
+        return sigma;
+    }
+
+    /**
+     * @return The amount of pixels at each side of the gradients that are not valid
+     * (i.e the border of the Gaussian filter, plus one pixel for the gradient masks).
+     */
+    public int getInvalidBorder() {
+        return (int) sigma + 1;
+    }
+}
@@ -2,13 +2,36 @@ package ar.edu.itba.ati.ati_soft.models;
 
 import org.springframework.util.Assert;
 
-import java.util.Arrays;
-import java.util.stream.IntStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 
 /**
- * An image representation that has a raster that stores data using {@code Double} values.
+ * An image representation that has a raster that stores data using {@code double} values.
+ * <p>
+ * Samples are always accessed as {@code double}s, but they can be stored with a narrower {@link SampleType}
+ * (e.g 8-bit images can be stored using a byte per sample), being converted when written
+ * (see {@link SampleType#quantize(double)}). Images are stored as {@link SampleType#FLOAT64} unless other type
+ * is requested, and {@link #createCompatible(int, int, int)} keeps the type, so algorithms whose results can be
+ * negative, or non integers, must promote it (see {@link SampleType#toFloatingPoint()}).
+ * <p>
+ * By default, the raster is stored row by row, with the samples of each pixel stored together
+ * (see {@link SampleLayout#INTERLEAVED}), but each band can be stored in its own plane
+ * (see {@link SampleLayout#PLANAR}), which allows reading a band sequentially through a view
+ * that shares the raster (see {@link #band(int)}).
+ * Views of rectangular regions share the raster too (see {@link #view(int, int, int, int)}).
+ * Regardless of the layout, whole rows or tiles can be read or written in bulk, band-interleaved
+ * (see {@link #getRow(int, double[])} and {@link #getTile(int, int, int, int, double[])}).
+ * <p>
+ * The raster can be stored in the heap, or in a memory-mapped file (see {@link #mapped(Path, int, int, int)}),
+ * for images that do not fit in the heap. In the latter case, only the accessed parts of the raster are resident,
+ * so algorithms should access it by rows or tiles, and create their results with
+ * {@link #createCompatible(int, int, int)}. Mapped rasters are unmapped when they are garbage collected,
+ * or when the image is closed (see {@link #close()}).
  */
-public class Image {
+public class Image implements Closeable {
 
     /**
      * The image width.
@@ -26,23 +49,90 @@ public class Image {
     private final int bands;
 
     /**
-     * A three-dimensional array holding raster data.
+     * The amount of samples in a row (i.e {@code width * bands}).
      */
-    private final Double[][][] pixels;
+    private final int rowLength;
 
     /**
-     * Constructor.
+     * The {@link SampleBuffer} holding raster data (which might be shared with other images, see {@link #band(int)}).
+     */
+    private final SampleBuffer samples;
+
+    /**
+     * The {@link SampleLayout} of the raster.
+     */
+    private final SampleLayout layout;
+
+    /**
+     * The index in the {@link #samples} buffer of the sample in position (0, 0) of band 0.
+     */
+    private final long offset;
+
+    /**
+     * The distance in the {@link #samples} buffer between a sample and the one below it.
+     */
+    private final long rowStride;
+
+    /**
+     * The distance in the {@link #samples} buffer between a sample and the one in its right.
+     */
+    private final int pixelStride;
+
+    /**
+     * The distance in the {@link #samples} buffer between a sample and the one of the same pixel in the next band.
+     */
+    private final long bandStride;
+
+    /**
+     * Indicates whether this image owns the {@link #samples} buffer (i.e it is not a view of another image),
+     * so closing it releases the buffer.
+     */
+    private final boolean owner;
+
+    /**
+     * Constructor for images that use the whole {@code samples} buffer (i.e that own it).
+     *
+     * @param width   The image width.
+     * @param height  The image height.
+     * @param bands   The amount of values per pixel.
+     * @param samples The {@link SampleBuffer} holding raster data.
+     * @param layout  The {@link SampleLayout} of the raster.
+     */
+    private Image(int width, int height, int bands, SampleBuffer samples, SampleLayout layout) {
+        // As the constructor is private, we are assuming that the dimensions match the samples buffer length.
+        this(width, height, bands, samples, layout, 0,
+                layout == SampleLayout.PLANAR ? width : (long) width * bands,
+                layout == SampleLayout.PLANAR ? 1 : bands,
+                layout == SampleLayout.PLANAR ? (long) width * height : 1, true);
+    }
+
+    /**
+     * Constructor for images that use a part of the {@code samples} buffer (i.e views).
      *
-     * @param pixels A three-dimensional array holding raster data.
+     * @param width       The image width.
+     * @param height      The image height.
+     * @param bands       The amount of values per pixel.
+     * @param samples     The {@link SampleBuffer} holding raster data.
+     * @param layout      The {@link SampleLayout} of the raster.
+     * @param offset      The index of the sample in position (0, 0) of band 0.
+     * @param rowStride   The distance between a sample and the one below it.
+     * @param pixelStride The distance between a sample and the one in its right.
+     * @param bandStride  The distance between a sample and the one of the same pixel in the next band.
+     * @param owner       Indicates whether the image owns the {@code samples} buffer (i.e it is not a view).
      */
-    private Image(Double[][][] pixels) {
-        // As the constructor is private, we are assuming that the pixels array is well formed.
-        // If methods to build an Image is added, if it can't be assured that the array is well formed,
-        // call the #validatePixelsArray(Double[][][]) method.
-        this.width = pixels.length;
-        this.height = pixels[0].length;
-        this.bands = pixels[0][0].length;
-        this.pixels = pixels;
+    private Image(int width, int height, int bands, SampleBuffer samples, SampleLayout layout,
+                  long offset, long rowStride, int pixelStride, long bandStride, boolean owner) {
+        this.width = width;
+        this.height = height;
+        this.bands = bands;
+        this.rowLength = width * bands;
+        this.samples = samples;
+        this.layout = layout;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.pixelStride = pixelStride;
+        this.bandStride = bandStride;
+        this.owner = owner;
     }
 
 
@@ -67,6 +157,42 @@ public class Image {
         return bands;
     }
 
+    /**
+     * @return The {@link SampleType} with which samples are stored.
+     */
+    public SampleType getSampleType() {
+        return samples.getType();
+    }
+
+    /**
+     * @return The {@link SampleLayout} of the raster.
+     */
+    public SampleLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return {@code true} if the raster is stored in a memory-mapped file, or {@code false} otherwise.
+     */
+    public boolean isMapped() {
+        return samples.isMapped();
+    }
+
+    /**
+     * Releases the raster of this image (i.e unmaps it if it is memory-mapped, deleting its file if it is temporary
+     * and could not be deleted before), instead of waiting for it to be garbage collected.
+     * The raster is shared with the views of the image (see {@link #view(int, int, int, int)} and {@link #band(int)}),
+     * so neither this image nor its views must be used after closing it.
+     * Views don't own the raster, so closing them does nothing (i.e it is released by the viewed image).
+     * Rasters stored in the heap hold no resources, so closing them does nothing.
+     */
+    @Override
+    public void close() {
+        if (owner) {
+            samples.close();
+        }
+    }
+
     /**
      * Gets the pixel in the position 'x', 'y'
      *
@@ -77,8 +203,12 @@ public class Image {
     public Double[] getPixel(int x, int y) {
         Assert.isTrue(x >= 0 && x < width, "Usage 'x' value out of range.");
         Assert.isTrue(y >= 0 && y < height, "Usage 'y' value out of range.");
-        Double[] pixel = pixels[x][y];
-        return Arrays.copyOf(pixel, pixel.length); // Copy value to avoid changing state from the outside.
+        final long index = index(x, y, 0);
+        final Double[] pixel = new Double[bands]; // New array to avoid changing state from the outside.
+        for (int b = 0; b < bands; b++) {
+            pixel[b] = samples.get(index + b * bandStride);
+        }
+        return pixel;
     }
 
     /**
@@ -93,7 +223,7 @@ public class Image {
         Assert.isTrue(x >= 0 && x < width, "Usage 'x' value out of range.");
         Assert.isTrue(y >= 0 && y < height, "Usage 'y' value out of range.");
         Assert.isTrue(band >= 0 && band < bands, "Usage a band out of range.");
-        return pixels[x][y][band];
+        return samples.get(index(x, y, band));
     }
 
     /**
@@ -110,7 +240,10 @@ public class Image {
         Assert.notNull(pixel, "The pixel must not be null.");
         Assert.notEmpty(pixel, "The pixel must not be empty.");
         Assert.isTrue(pixel.length == bands, "The pixel must have " + bands + " bands.");
-        this.pixels[x][y] = pixel;
+        final long index = index(x, y, 0);
+        for (int b = 0; b < bands; b++) {
+            this.samples.set(index + b * bandStride, pixel[b]);
+        }
     }
 
     /**
@@ -125,7 +258,97 @@ public class Image {
         Assert.isTrue(x >= 0 && x < width, "Usage 'x' value out of range.");
         Assert.isTrue(y >= 0 && y < height, "Usage 'y' value out of range.");
         Assert.isTrue(band >= 0 && band < bands, "Usage a band out of range.");
-        this.pixels[x][y][band] = sample;
+        this.samples.set(index(x, y, band), sample);
+    }
+
+    /**
+     * Copies the given {@code y} row into the given {@code row} array.
+     * Samples are stored band-interleaved (i.e the sample of column x and band b is stored in index
+     * {@code x * bands + b}).
+     *
+     * @param y   The row to be copied.
+     * @param row The array into which the row will be copied (if {@code null}, a new one is created).
+     * @return The array holding the row (i.e the given one, or the created one).
+     * @throws IllegalArgumentException If the array length is not {@code width * bands}.
+     */
+    public double[] getRow(int y, double[] row) throws IllegalArgumentException {
+        Assert.isTrue(y >= 0 && y < height, "Usage 'y' value out of range.");
+        final double[] destination = row == null ? new double[rowLength] : row;
+        Assert.isTrue(destination.length == rowLength, "The row must have " + rowLength + " samples.");
+        readPixels(0, y, width, destination, 0);
+        return destination;
+    }
+
+    /**
+     * Sets the given {@code y} row, copying the samples of the given {@code row} array.
+     * Samples must be stored band-interleaved (i.e the sample of column x and band b is stored in index
+     * {@code x * bands + b}).
+     *
+     * @param y   The row to be set.
+     * @param row The array holding the samples to be set.
+     * @throws IllegalArgumentException If the array is null, or if its length is not {@code width * bands}.
+     */
+    public void setRow(int y, double[] row) throws IllegalArgumentException {
+        Assert.isTrue(y >= 0 && y < height, "Usage 'y' value out of range.");
+        Assert.notNull(row, "The row must not be null.");
+        Assert.isTrue(row.length == rowLength, "The row must have " + rowLength + " samples.");
+        writePixels(0, y, width, row, 0);
+    }
+
+    /**
+     * Copies the tile (i.e rectangle) starting in the given position, with the given size,
+     * into the given {@code tile} array.
+     * Samples are stored row by row, band-interleaved
+     * (i.e the sample in position (x, y) of the tile, of band b, is stored in index
+     * {@code (y * tileWidth + x) * bands + b}).
+     *
+     * @param xInitial   The 'x' position of the top-left pixel of the tile.
+     * @param yInitial   The 'y' position of the top-left pixel of the tile.
+     * @param tileWidth  The width of the tile.
+     * @param tileHeight The height of the tile.
+     * @param tile       The array into which the tile will be copied (if {@code null}, a new one is created).
+     * @return The array holding the tile (i.e the given one, or the created one).
+     * @throws IllegalArgumentException If the tile is out of range,
+     *                                  or if the array length is not {@code tileWidth * tileHeight * bands}.
+     */
+    public double[] getTile(int xInitial, int yInitial, int tileWidth, int tileHeight, double[] tile)
+            throws IllegalArgumentException {
+        validateTile(xInitial, yInitial, tileWidth, tileHeight);
+        final int tileRowLength = tileWidth * bands;
+        final double[] destination = tile == null ? new double[tileRowLength * tileHeight] : tile;
+        Assert.isTrue(destination.length == tileRowLength * tileHeight,
+                "The tile must have " + tileRowLength * tileHeight + " samples.");
+        for (int y = 0; y < tileHeight; y++) {
+            readPixels(xInitial, yInitial + y, tileWidth, destination, y * tileRowLength);
+        }
+        return destination;
+    }
+
+    /**
+     * Sets the tile (i.e rectangle) starting in the given position, with the given size,
+     * copying the samples of the given {@code tile} array.
+     * Samples must be stored row by row, band-interleaved
+     * (i.e the sample in position (x, y) of the tile, of band b, is stored in index
+     * {@code (y * tileWidth + x) * bands + b}).
+     *
+     * @param xInitial   The 'x' position of the top-left pixel of the tile.
+     * @param yInitial   The 'y' position of the top-left pixel of the tile.
+     * @param tileWidth  The width of the tile.
+     * @param tileHeight The height of the tile.
+     * @param tile       The array holding the samples to be set.
+     * @throws IllegalArgumentException If the tile is out of range, if the array is null,
+     *                                  or if its length is not {@code tileWidth * tileHeight * bands}.
+     */
+    public void setTile(int xInitial, int yInitial, int tileWidth, int tileHeight, double[] tile)
+            throws IllegalArgumentException {
+        validateTile(xInitial, yInitial, tileWidth, tileHeight);
+        final int tileRowLength = tileWidth * bands;
+        Assert.notNull(tile, "The tile must not be null.");
+        Assert.isTrue(tile.length == tileRowLength * tileHeight,
+                "The tile must have " + tileRowLength * tileHeight + " samples.");
+        for (int y = 0; y < tileHeight; y++) {
+            writePixels(xInitial, yInitial + y, tileWidth, tile, y * tileRowLength);
+        }
     }
 
 
@@ -139,21 +362,56 @@ public class Image {
      * @return A {@code Double[][][]} representing the sub-raster
      * @apiNote The resulting array is totally independent from this image.
      * Modifying the result value won't affect this image.
+     * To operate over a part of this image without copying it, use {@link #view(int, int, int, int)}.
      */
     public Double[][][] getSubRaster(int xInitial, int yInitial, int newWidth, int newHeight) {
-        Assert.isTrue(xInitial >= 0 && xInitial + newWidth <= this.width
-                && yInitial >= 0 && yInitial + newHeight <= this.height, "Out of range arguments");
-        return Arrays.stream(pixels)
-                .skip(xInitial)
-                .limit(newWidth)
-                .map(array -> Arrays.stream(array)
-                        .skip(yInitial)
-                        .limit(newHeight)
-                        .map(pixel -> Arrays.copyOf(pixel, pixel.length)) // Copy pixel to avoid changing from outside
-                        .toArray(Double[][]::new))
-                .toArray(Double[][][]::new);
+        final double[] tile = getTile(xInitial, yInitial, newWidth, newHeight, null);
+        final Double[][][] subRaster = new Double[newWidth][newHeight][bands];
+        for (int y = 0; y < newHeight; y++) {
+            for (int x = 0; x < newWidth; x++) {
+                final int position = (y * newWidth + x) * bands;
+                for (int b = 0; b < bands; b++) {
+                    subRaster[x][y][b] = tile[position + b];
+                }
+            }
+        }
+        return subRaster;
     }
 
+    /**
+     * Returns a view of a rectangular part of this image (i.e an image that shares the raster with this image,
+     * so changes in any of them are visible in the other one), whose pixel (0, 0) is the pixel
+     * ({@code xInitial}, {@code yInitial}) of this image.
+     * No samples are copied, so views are a cheap way of applying operations to a region of interest.
+     *
+     * @param xInitial  The starting 'x' point of the image where the view starts.
+     * @param yInitial  The starting 'y' point of the image where the view starts.
+     * @param newWidth  The view width.
+     * @param newHeight The view height.
+     * @return The view.
+     * @throws IllegalArgumentException If the view is not inside this image.
+     */
+    public Image view(int xInitial, int yInitial, int newWidth, int newHeight) throws IllegalArgumentException {
+        validateTile(xInitial, yInitial, newWidth, newHeight);
+        return new Image(newWidth, newHeight, bands, samples, layout, index(xInitial, yInitial, 0),
+                rowStride, pixelStride, bandStride, false);
+    }
+
+
+    /**
+     * Returns a view of the given {@code band} of this image (i.e a one band image that shares the raster
+     * with this image, so changes in any of them are visible in the other one).
+     * With {@link SampleLayout#PLANAR} layout, the samples of the view are stored sequentially.
+     *
+     * @param band The band to be viewed.
+     * @return The view.
+     * @throws IllegalArgumentException If the band is out of range.
+     */
+    public Image band(int band) throws IllegalArgumentException {
+        Assert.isTrue(band >= 0 && band < bands, "Usage a band out of range.");
+        return new Image(width, height, 1, samples, layout, offset + band * bandStride,
+                rowStride, pixelStride, bandStride, false);
+    }
 
     /**
      * Returns a copy of this image.
@@ -161,7 +419,63 @@ public class Image {
      * @return A new totally independent instance of this image.
      */
     public Image copy() {
-        return new Image(getSubRaster(0, 0, width, height));
+        return toSampleType(getSampleType());
+    }
+
+    /**
+     * Returns a copy of this image, whose samples are stored with the given {@code type}.
+     *
+     * @param type The {@link SampleType} of the copy.
+     * @return A new totally independent instance of this image, with its samples converted.
+     */
+    public Image toSampleType(SampleType type) {
+        return copyInto(createCompatible(width, height, bands, type));
+    }
+
+    /**
+     * Returns a copy of this image, whose samples are stored with the given {@code layout}.
+     *
+     * @param layout The {@link SampleLayout} of the copy.
+     * @return A new totally independent instance of this image, with its samples rearranged.
+     * @throws UncheckedIOException If this image is memory-mapped, and the temporary file could not be created.
+     */
+    public Image toLayout(SampleLayout layout) throws UncheckedIOException {
+        Assert.notNull(layout, "The layout must not be null.");
+        final SampleType type = getSampleType();
+        return copyInto(isMapped() ?
+                mappedTemporary(width, height, bands, type, layout) : trash(width, height, bands, type, layout));
+    }
+
+    /**
+     * Creates an {@link Image} with unknown values, stored in the same way as this image
+     * (i.e in the heap if this image is stored in the heap, or in a temporary memory-mapped file otherwise),
+     * and with the same {@link SampleType} and {@link SampleLayout}.
+     * Algorithms should use this method to create their results, so they can process images of any size.
+     *
+     * @param width  The raster width.
+     * @param height The raster height.
+     * @param bands  The amount of values per pixel.
+     * @return The created {@link Image}.
+     * @throws UncheckedIOException If the temporary file could not be created.
+     */
+    public Image createCompatible(int width, int height, int bands) throws UncheckedIOException {
+        return createCompatible(width, height, bands, getSampleType());
+    }
+
+    /**
+     * Creates an {@link Image} with unknown values, stored in the same way as this image
+     * (see {@link #createCompatible(int, int, int)}), but with the given {@link SampleType}.
+     *
+     * @param width  The raster width.
+     * @param height The raster height.
+     * @param bands  The amount of values per pixel.
+     * @param type   The {@link SampleType} of the created {@link Image}.
+     * @return The created {@link Image}.
+     * @throws UncheckedIOException If the temporary file could not be created.
+     */
+    public Image createCompatible(int width, int height, int bands, SampleType type) throws UncheckedIOException {
+        return isMapped() ?
+                mappedTemporary(width, height, bands, type, layout) : trash(width, height, bands, type, layout);
     }
 
     /**
@@ -186,14 +500,9 @@ public class Image {
      * @return The built raster.
      */
     public static Image homogeneous(int width, int height, int bands, double value) {
-        final Double[][][] pixels = IntStream.range(0, width)
-                .mapToObj(x -> IntStream.range(0, height)
-                        .mapToObj(y -> IntStream.range(0, bands)
-                                .mapToObj(band -> value)
-                                .toArray(Double[]::new))
-                        .toArray(Double[][]::new))
-                .toArray(Double[][][]::new);
-        return new Image(pixels); // Not validating the array as it is well formed.
+        final Image image = trash(width, height, bands);
+        image.samples.fill(value);
+        return image;
     }
 
     /**
@@ -205,7 +514,161 @@ public class Image {
      * @return The built {@link Image}.
      */
     public static Image trash(int width, int height, int bands) {
-        return new Image(new Double[width][height][bands]); // Not validating the array as it is well formed.
+        return trash(width, height, bands, SampleType.FLOAT64);
+    }
+
+    /**
+     * Creates an {@link Image} with unknown values, whose samples are stored with the given {@code type}.
+     *
+     * @param width  The raster width.
+     * @param height The raster height.
+     * @param bands  The amount of values per pixel.
+     * @param type   The {@link SampleType} with which samples are stored.
+     * @return The built {@link Image}.
+     */
+    public static Image trash(int width, int height, int bands, SampleType type) {
+        return trash(width, height, bands, type, SampleLayout.INTERLEAVED);
+    }
+
+    /**
+     * Creates an {@link Image} with unknown values, whose samples are stored with the given {@code type},
+     * and laid out with the given {@code layout}.
+     *
+     * @param width  The raster width.
+     * @param height The raster height.
+     * @param bands  The amount of values per pixel.
+     * @param type   The {@link SampleType} with which samples are stored.
+     * @param layout The {@link SampleLayout} of the raster.
+     * @return The built {@link Image}.
+     */
+    public static Image trash(int width, int height, int bands, SampleType type, SampleLayout layout) {
+        validateDimensions(width, height, bands);
+        Assert.notNull(type, "The sample type must not be null.");
+        Assert.notNull(layout, "The layout must not be null.");
+        return new Image(width, height, bands, SampleBuffer.heap((long) width * height * bands, type), layout);
+    }
+
+    /**
+     * Creates an {@link Image} whose raster is stored in the file with the given {@code path},
+     * which is memory-mapped. The file is created (or extended) if it does not have the needed size,
+     * and it holds the raw samples (as native order {@code double}s, row-major, band-interleaved).
+     * This allows working with images bigger than the heap, and with images stored in previous executions.
+     *
+     * @param path   The {@link Path} of the file.
+     * @param width  The raster width.
+     * @param height The raster height.
+     * @param bands  The amount of values per pixel.
+     * @return The created {@link Image}.
+     * @throws IOException If any IO error occurs while mapping the file.
+     */
+    public static Image mapped(Path path, int width, int height, int bands) throws IOException {
+        return mapped(path, width, height, bands, SampleType.FLOAT64);
+    }
+
+    /**
+     * Creates an {@link Image} whose raster is stored in the file with the given {@code path}
+     * (see {@link #mapped(Path, int, int, int)}), holding the raw samples with the given {@code type}
+     * (native order, row-major, band-interleaved).
+     *
+     * @param path   The {@link Path} of the file.
+     * @param width  The raster width.
+     * @param height The raster height.
+     * @param bands  The amount of values per pixel.
+     * @param type   The {@link SampleType} with which samples are stored.
+     * @return The created {@link Image}.
+     * @throws IOException If any IO error occurs while mapping the file.
+     */
+    public static Image mapped(Path path, int width, int height, int bands, SampleType type) throws IOException {
+        return mapped(path, width, height, bands, type, SampleLayout.INTERLEAVED);
+    }
+
+    /**
+     * Creates an {@link Image} whose raster is stored in the file with the given {@code path}
+     * (see {@link #mapped(Path, int, int, int)}), holding the raw samples with the given {@code type},
+     * laid out with the given {@code layout} (native order).
+     *
+     * @param path   The {@link Path} of the file.
+     * @param width  The raster width.
+     * @param height The raster height.
+     * @param bands  The amount of values per pixel.
+     * @param type   The {@link SampleType} with which samples are stored.
+     * @param layout The {@link SampleLayout} of the raster.
+     * @return The created {@link Image}.
+     * @throws IOException If any IO error occurs while mapping the file.
+     */
+    public static Image mapped(Path path, int width, int height, int bands, SampleType type, SampleLayout layout)
+            throws IOException {
+        Assert.notNull(path, "The path must not be null.");
+        Assert.notNull(type, "The sample type must not be null.");
+        Assert.notNull(layout, "The layout must not be null.");
+        validateDimensions(width, height, bands);
+        return new Image(width, height, bands, SampleBuffer.mapped(path, (long) width * height * bands, type),
+                layout);
+    }
+
+    /**
+     * Creates an {@link Image} with unknown values, whose raster is stored in a temporary memory-mapped file
+     * (which is deleted as soon as it is mapped, or when the image is closed if the OS does not allow it).
+     *
+     * @param width  The raster width.
+     * @param height The raster height.
+     * @param bands  The amount of values per pixel.
+     * @return The created {@link Image}.
+     * @throws UncheckedIOException If the temporary file could not be created.
+     */
+    public static Image mappedTemporary(int width, int height, int bands) throws UncheckedIOException {
+        return mappedTemporary(width, height, bands, SampleType.FLOAT64);
+    }
+
+    /**
+     * Creates an {@link Image} with unknown values, whose raster is stored in a temporary memory-mapped file
+     * (which is deleted as soon as it is mapped, or when the image is closed if the OS does not allow it),
+     * with the given {@code type}.
+     *
+     * @param width  The raster width.
+     * @param height The raster height.
+     * @param bands  The amount of values per pixel.
+     * @param type   The {@link SampleType} with which samples are stored.
+     * @return The created {@link Image}.
+     * @throws UncheckedIOException If the temporary file could not be created.
+     */
+    public static Image mappedTemporary(int width, int height, int bands, SampleType type)
+            throws UncheckedIOException {
+        return mappedTemporary(width, height, bands, type, SampleLayout.INTERLEAVED);
+    }
+
+    /**
+     * Creates an {@link Image} with unknown values, whose raster is stored in a temporary memory-mapped file
+     * (which is deleted as soon as it is mapped, or when the image is closed if the OS does not allow it),
+     * with the given {@code type} and {@code layout}.
+     *
+     * @param width  The raster width.
+     * @param height The raster height.
+     * @param bands  The amount of values per pixel.
+     * @param type   The {@link SampleType} with which samples are stored.
+     * @param layout The {@link SampleLayout} of the raster.
+     * @return The created {@link Image}.
+     * @throws UncheckedIOException If the temporary file could not be created.
+     */
+    public static Image mappedTemporary(int width, int height, int bands, SampleType type, SampleLayout layout)
+            throws UncheckedIOException {
+        Assert.notNull(type, "The sample type must not be null.");
+        Assert.notNull(layout, "The layout must not be null.");
+        validateDimensions(width, height, bands);
+        try {
+            final File file = File.createTempFile("ati-image-", ".raw");
+            try {
+                return new Image(width, height, bands,
+                        SampleBuffer.mappedTemporary(file.toPath(), (long) width * height * bands, type), layout);
+            } catch (IOException | RuntimeException e) {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the temporary image file", e);
+        }
     }
 
     /**
@@ -218,9 +681,111 @@ public class Image {
      */
     public static Image fromArray(Double[][][] pixels) throws IllegalArgumentException {
         validatePixelsArray(pixels);  // Sanity check
-        return new Image(pixels);
+        final Image image = trash(pixels.length, pixels[0].length, pixels[0][0].length);
+        for (int x = 0; x < image.width; x++) {
+            for (int y = 0; y < image.height; y++) {
+                image.setPixel(x, y, pixels[x][y]);
+            }
+        }
+        return image;
+    }
+
+
+    /**
+     * Calculates the index in the {@link #samples} array for the given position.
+     *
+     * @param x    The 'x' position of the pixel.
+     * @param y    The 'y' position of the pixel.
+     * @param band The band of the pixel.
+     * @return The index of the sample.
+     */
+    private long index(int x, int y, int band) {
+        return offset + y * rowStride + (long) x * pixelStride + band * bandStride;
+    }
+
+    /**
+     * Copies {@code count} pixels of the given {@code y} row, starting from the given {@code x} column,
+     * into the given {@code destination} array (band-interleaved), starting at the given {@code position}.
+     *
+     * @param x           The first column to be copied.
+     * @param y           The row to be copied.
+     * @param count       The amount of pixels to be copied.
+     * @param destination The array into which samples are copied.
+     * @param position    The position in the array of the first copied sample.
+     */
+    private void readPixels(int x, int y, int count, double[] destination, int position) {
+        final long start = index(x, y, 0);
+        if (pixelStride == bands && (bands == 1 || bandStride == 1)) {
+            samples.get(start, 1, destination, position, 1, count * bands); // Interleaved samples are contiguous
+            return;
+        }
+        for (int b = 0; b < bands; b++) {
+            samples.get(start + b * bandStride, pixelStride, destination, position + b, bands, count);
+        }
+    }
+
+    /**
+     * Copies {@code count} pixels from the given {@code source} array (band-interleaved), starting at the given
+     * {@code position}, into the given {@code y} row, starting from the given {@code x} column.
+     *
+     * @param x        The first column to be set.
+     * @param y        The row to be set.
+     * @param count    The amount of pixels to be set.
+     * @param source   The array from where samples are copied.
+     * @param position The position in the array of the first sample to be copied.
+     */
+    private void writePixels(int x, int y, int count, double[] source, int position) {
+        final long start = index(x, y, 0);
+        if (pixelStride == bands && (bands == 1 || bandStride == 1)) {
+            samples.set(start, 1, source, position, 1, count * bands); // Interleaved samples are contiguous
+            return;
+        }
+        for (int b = 0; b < bands; b++) {
+            samples.set(start + b * bandStride, pixelStride, source, position + b, bands, count);
+        }
+    }
+
+    /**
+     * Copies all the samples of this image into the given {@code copy}, which must have the same dimensions.
+     *
+     * @param copy The {@link Image} into which samples are copied.
+     * @return The given {@code copy}, for method chaining.
+     */
+    private Image copyInto(Image copy) {
+        final double[] row = new double[rowLength];
+        for (int y = 0; y < height; y++) {
+            copy.setRow(y, getRow(y, row));
+        }
+        return copy;
+    }
+
+    /**
+     * Validates that the given tile is inside the image.
+     *
+     * @param xInitial   The 'x' position of the top-left pixel of the tile.
+     * @param yInitial   The 'y' position of the top-left pixel of the tile.
+     * @param tileWidth  The width of the tile.
+     * @param tileHeight The height of the tile.
+     * @throws IllegalArgumentException If the tile is out of range.
+     */
+    private void validateTile(int xInitial, int yInitial, int tileWidth, int tileHeight)
+            throws IllegalArgumentException {
+        Assert.isTrue(xInitial >= 0 && tileWidth > 0 && xInitial + tileWidth <= this.width
+                && yInitial >= 0 && tileHeight > 0 && yInitial + tileHeight <= this.height, "Out of range tile");
     }
 
+    /**
+     * Validates the given dimensions.
+     *
+     * @param width  The raster width.
+     * @param height The raster height.
+     * @param bands  The amount of values per pixel.
+     * @throws IllegalArgumentException If any dimension is not positive, or if rows are too long.
+     */
+    private static void validateDimensions(int width, int height, int bands) throws IllegalArgumentException {
+        Assert.isTrue(width > 0 && height > 0 && bands > 0, "The image dimensions must be positive.");
+        Assert.isTrue((long) width * bands <= Integer.MAX_VALUE, "The image rows are too long.");
+    }
 
     /**
      * Validates the given {@code pixels} array.
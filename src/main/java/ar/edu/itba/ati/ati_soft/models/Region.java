@@ -0,0 +1,141 @@
+package ar.edu.itba.ati.ati_soft.models;
+
+import org.springframework.util.Assert;
+
+/**
+ * Represents a rectangular region of an {@link Image} (e.g a region of interest to which an operation is applied).
+ */
+public class Region {
+
+    /**
+     * The 'x' coordinate of the top-left pixel of the region.
+     */
+    private final int x;
+
+    /**
+     * The 'y' coordinate of the top-left pixel of the region.
+     */
+    private final int y;
+
+    /**
+     * The region width.
+     */
+    private final int width;
+
+    /**
+     * The region height.
+     */
+    private final int height;
+
+    /**
+     * Constructor.
+     *
+     * @param x      The 'x' coordinate of the top-left pixel of the region.
+     * @param y      The 'y' coordinate of the top-left pixel of the region.
+     * @param width  The region width.
+     * @param height The region height.
+     * @throws IllegalArgumentException If the coordinates are negative, or the dimensions are not positive.
+     */
+    public Region(int x, int y, int width, int height) throws IllegalArgumentException {
+        Assert.isTrue(x >= 0 && y >= 0, "The coordinates of the region must not be negative.");
+        Assert.isTrue(width > 0 && height > 0, "The dimensions of the region must be positive.");
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @return The 'x' coordinate of the top-left pixel of the region.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * @return The 'y' coordinate of the top-left pixel of the region.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * @return The region width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The region height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Indicates whether this region is inside the given {@link Image}.
+     *
+     * @param image The {@link Image} to be checked.
+     * @return {@code true} if the region is inside the {@code image}, or {@code false} otherwise.
+     */
+    public boolean fitsIn(Image image) {
+        return x + (long) width <= image.getWidth() && y + (long) height <= image.getHeight();
+    }
+
+    /**
+     * Returns a new region that extends this one by the given {@code margin} in each direction,
+     * clipped to the given {@link Image}.
+     *
+     * @param margin The amount of pixels to be added in each direction.
+     * @param image  The {@link Image} to which the new region is clipped.
+     * @return The expanded region.
+     * @throws IllegalArgumentException If the margin is negative, or this region is not inside the {@code image}.
+     */
+    public Region expand(int margin, Image image) throws IllegalArgumentException {
+        Assert.isTrue(margin >= 0, "The margin must not be negative.");
+        Assert.isTrue(fitsIn(image), "The region must be inside the image.");
+        final int newX = Math.max(0, x - margin);
+        final int newY = Math.max(0, y - margin);
+        return new Region(newX, newY,
+                (int) Math.min(image.getWidth(), (long) x + width + margin) - newX,
+                (int) Math.min(image.getHeight(), (long) y + height + margin) - newY);
+    }
+
+    /**
+     * Returns a view of this region of the given {@link Image} (see {@link Image#view(int, int, int, int)}).
+     *
+     * @param image The viewed {@link Image}.
+     * @return The view.
+     * @throws IllegalArgumentException If this region is not inside the {@code image}.
+     */
+    public Image viewOf(Image image) throws IllegalArgumentException {
+        return image.view(x, y, width, height);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Region)) {
+            return false;
+        }
+        final Region region = (Region) o;
+        return x == region.x && y == region.y && width == region.width && height == region.height;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = x;
+        result = 31 * result + y;
+        result = 31 * result + width;
+        result = 31 * result + height;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Region{" + "x=" + x + ", y=" + y + ", width=" + width + ", height=" + height + '}';
+    }
+}
@@ -0,0 +1,681 @@
+package ar.edu.itba.ati.ati_soft.models;
+
+import org.springframework.util.Assert;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Storage of the samples of an {@link Image}, addressed with {@code long} indexes.
+ */
+/* package */ abstract class SampleBuffer implements Closeable {
+
+    /**
+     * @return The {@link SampleType} with which samples are stored.
+     */
+    /* package */
+    abstract SampleType getType();
+
+    /**
+     * @return {@code true} if samples are stored outside the heap (i.e in a memory-mapped file).
+     */
+    /* package */
+    abstract boolean isMapped();
+
+    /**
+     * Gets the sample in the given {@code index}.
+     *
+     * @param index The index of the sample.
+     * @return The sample.
+     */
+    /* package */
+    abstract double get(long index);
+
+    /**
+     * Sets the sample in the given {@code index} (converted with {@link SampleType#quantize(double)}).
+     *
+     * @param index  The index of the sample.
+     * @param sample The sample to be set.
+     */
+    /* package */
+    abstract void set(long index, double sample);
+
+    /**
+     * Copies {@code length} samples, starting at the given {@code index} and separated by {@code stride} samples,
+     * into the {@code destination} array (separated by {@code destinationStride} positions).
+     *
+     * @param index             The index of the first sample to be copied.
+     * @param stride            The distance between two consecutive samples to be copied.
+     * @param destination       The array into which samples are copied.
+     * @param offset            The position in the array of the first copied sample.
+     * @param destinationStride The distance in the array between two consecutive copied samples.
+     * @param length            The amount of samples to be copied.
+     */
+    /* package */
+    abstract void get(long index, int stride, double[] destination, int offset, int destinationStride, int length);
+
+    /**
+     * Copies {@code length} samples from the {@code source} array (separated by {@code sourceStride} positions),
+     * starting at the given {@code index} and separated by {@code stride} samples
+     * (converted with {@link SampleType#quantize(double)}).
+     *
+     * @param index        The index of the first sample to be set.
+     * @param stride       The distance between two consecutive samples to be set.
+     * @param source       The array from where samples are copied.
+     * @param offset       The position in the array of the first sample to be copied.
+     * @param sourceStride The distance in the array between two consecutive samples to be copied.
+     * @param length       The amount of samples to be copied.
+     */
+    /* package */
+    abstract void set(long index, int stride, double[] source, int offset, int sourceStride, int length);
+
+    /**
+     * Sets the given {@code value} to all the samples.
+     *
+     * @param value The value to be set.
+     */
+    /* package */
+    abstract void fill(double value);
+
+    /**
+     * Releases the resources held by this buffer (i.e unmaps the file of memory-mapped buffers),
+     * instead of waiting for it to be garbage collected. The buffer must not be used after being closed.
+     * Buffers stored in the heap hold no resources, so closing them does nothing.
+     */
+    @Override
+    public void close() {
+        // Heap buffers hold no resources
+    }
+
+
+    /**
+     * Creates a {@link SampleBuffer} stored in the heap.
+     *
+     * @param length The amount of samples.
+     * @param type   The {@link SampleType} with which samples are stored.
+     * @return The created {@link SampleBuffer}.
+     * @throws IllegalArgumentException If the length is bigger than the max. array length.
+     */
+    /* package */
+    static SampleBuffer heap(long length, SampleType type) throws IllegalArgumentException {
+        Assert.isTrue(length <= Integer.MAX_VALUE, "The image is too big to be stored in the heap.");
+        switch (type) {
+            case UINT8:
+                return new ByteSampleBuffer(new byte[(int) length]);
+            case UINT16:
+                return new ShortSampleBuffer(new short[(int) length]);
+            case FLOAT32:
+                return new FloatSampleBuffer(new float[(int) length]);
+            default:
+                return new DoubleSampleBuffer(new double[(int) length]);
+        }
+    }
+
+    /**
+     * Creates a {@link SampleBuffer} stored in the file with the given {@code path}, which is memory-mapped.
+     * The file is created, or extended, if needed.
+     *
+     * @param path   The {@link Path} of the file.
+     * @param length The amount of samples.
+     * @param type   The {@link SampleType} with which samples are stored.
+     * @return The created {@link SampleBuffer}.
+     * @throws IOException If any IO error occurs while mapping the file.
+     */
+    /* package */
+    static SampleBuffer mapped(Path path, long length, SampleType type) throws IOException {
+        return new MappedSampleBuffer(path, length, type, MappedSampleBuffer.REGION_BYTES / type.getBytes(), false);
+    }
+
+    /**
+     * Creates a {@link SampleBuffer} stored in the temporary file with the given {@code path},
+     * which is memory-mapped (see {@link #mapped(Path, long, SampleType)}).
+     * The file is deleted as soon as it is mapped, or, if the OS does not allow deleting mapped files,
+     * when the buffer is closed (or when the virtual machine terminates).
+     *
+     * @param path   The {@link Path} of the temporary file.
+     * @param length The amount of samples.
+     * @param type   The {@link SampleType} with which samples are stored.
+     * @return The created {@link SampleBuffer}.
+     * @throws IOException If any IO error occurs while mapping the file.
+     */
+    /* package */
+    static SampleBuffer mappedTemporary(Path path, long length, SampleType type) throws IOException {
+        return new MappedSampleBuffer(path, length, type, MappedSampleBuffer.REGION_BYTES / type.getBytes(), true);
+    }
+
+
+    /**
+     * A {@link SampleBuffer} backed by a {@code double} array.
+     */
+    private static final class DoubleSampleBuffer extends SampleBuffer {
+
+        /**
+         * The array holding the samples.
+         */
+        private final double[] samples;
+
+        /**
+         * Constructor.
+         *
+         * @param samples The array holding the samples.
+         */
+        private DoubleSampleBuffer(double[] samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        /* package */ SampleType getType() {
+            return SampleType.FLOAT64;
+        }
+
+        @Override
+        /* package */ boolean isMapped() {
+            return false;
+        }
+
+        @Override
+        /* package */ double get(long index) {
+            return samples[(int) index];
+        }
+
+        @Override
+        /* package */ void set(long index, double sample) {
+            samples[(int) index] = sample;
+        }
+
+        @Override
+        /* package */ void get(long index, int stride, double[] destination, int offset, int destinationStride,
+                               int length) {
+            if (stride == 1 && destinationStride == 1) {
+                System.arraycopy(samples, (int) index, destination, offset, length);
+                return;
+            }
+            for (int i = 0, j = (int) index; i < length; i++, j += stride) {
+                destination[offset + i * destinationStride] = samples[j];
+            }
+        }
+
+        @Override
+        /* package */ void set(long index, int stride, double[] source, int offset, int sourceStride, int length) {
+            if (stride == 1 && sourceStride == 1) {
+                System.arraycopy(source, offset, samples, (int) index, length);
+                return;
+            }
+            for (int i = 0, j = (int) index; i < length; i++, j += stride) {
+                samples[j] = source[offset + i * sourceStride];
+            }
+        }
+
+        @Override
+        /* package */ void fill(double value) {
+            Arrays.fill(samples, value);
+        }
+    }
+
+    /**
+     * A {@link SampleBuffer} backed by a {@code float} array.
+     */
+    private static final class FloatSampleBuffer extends SampleBuffer {
+
+        /**
+         * The array holding the samples.
+         */
+        private final float[] samples;
+
+        /**
+         * Constructor.
+         *
+         * @param samples The array holding the samples.
+         */
+        private FloatSampleBuffer(float[] samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        /* package */ SampleType getType() {
+            return SampleType.FLOAT32;
+        }
+
+        @Override
+        /* package */ boolean isMapped() {
+            return false;
+        }
+
+        @Override
+        /* package */ double get(long index) {
+            return samples[(int) index];
+        }
+
+        @Override
+        /* package */ void set(long index, double sample) {
+            samples[(int) index] = (float) sample;
+        }
+
+        @Override
+        /* package */ void get(long index, int stride, double[] destination, int offset, int destinationStride,
+                               int length) {
+            for (int i = 0, j = (int) index; i < length; i++, j += stride) {
+                destination[offset + i * destinationStride] = samples[j];
+            }
+        }
+
+        @Override
+        /* package */ void set(long index, int stride, double[] source, int offset, int sourceStride, int length) {
+            for (int i = 0, j = (int) index; i < length; i++, j += stride) {
+                samples[j] = (float) source[offset + i * sourceStride];
+            }
+        }
+
+        @Override
+        /* package */ void fill(double value) {
+            Arrays.fill(samples, (float) value);
+        }
+    }
+
+    /**
+     * A {@link SampleBuffer} backed by a {@code short} array, holding unsigned 16-bit samples.
+     */
+    private static final class ShortSampleBuffer extends SampleBuffer {
+
+        /**
+         * The array holding the samples.
+         */
+        private final short[] samples;
+
+        /**
+         * Constructor.
+         *
+         * @param samples The array holding the samples.
+         */
+        private ShortSampleBuffer(short[] samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        /* package */ SampleType getType() {
+            return SampleType.UINT16;
+        }
+
+        @Override
+        /* package */ boolean isMapped() {
+            return false;
+        }
+
+        @Override
+        /* package */ double get(long index) {
+            return samples[(int) index] & 0xFFFF;
+        }
+
+        @Override
+        /* package */ void set(long index, double sample) {
+            samples[(int) index] = (short) SampleType.toUnsigned(sample, 0xFFFF);
+        }
+
+        @Override
+        /* package */ void get(long index, int stride, double[] destination, int offset, int destinationStride,
+                               int length) {
+            for (int i = 0, j = (int) index; i < length; i++, j += stride) {
+                destination[offset + i * destinationStride] = samples[j] & 0xFFFF;
+            }
+        }
+
+        @Override
+        /* package */ void set(long index, int stride, double[] source, int offset, int sourceStride, int length) {
+            for (int i = 0, j = (int) index; i < length; i++, j += stride) {
+                samples[j] = (short) SampleType.toUnsigned(source[offset + i * sourceStride], 0xFFFF);
+            }
+        }
+
+        @Override
+        /* package */ void fill(double value) {
+            Arrays.fill(samples, (short) SampleType.toUnsigned(value, 0xFFFF));
+        }
+    }
+
+    /**
+     * A {@link SampleBuffer} backed by a {@code byte} array, holding unsigned 8-bit samples.
+     */
+    private static final class ByteSampleBuffer extends SampleBuffer {
+
+        /**
+         * The array holding the samples.
+         */
+        private final byte[] samples;
+
+        /**
+         * Constructor.
+         *
+         * @param samples The array holding the samples.
+         */
+        private ByteSampleBuffer(byte[] samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        /* package */ SampleType getType() {
+            return SampleType.UINT8;
+        }
+
+        @Override
+        /* package */ boolean isMapped() {
+            return false;
+        }
+
+        @Override
+        /* package */ double get(long index) {
+            return samples[(int) index] & 0xFF;
+        }
+
+        @Override
+        /* package */ void set(long index, double sample) {
+            samples[(int) index] = (byte) SampleType.toUnsigned(sample, 0xFF);
+        }
+
+        @Override
+        /* package */ void get(long index, int stride, double[] destination, int offset, int destinationStride,
+                               int length) {
+            for (int i = 0, j = (int) index; i < length; i++, j += stride) {
+                destination[offset + i * destinationStride] = samples[j] & 0xFF;
+            }
+        }
+
+        @Override
+        /* package */ void set(long index, int stride, double[] source, int offset, int sourceStride, int length) {
+            for (int i = 0, j = (int) index; i < length; i++, j += stride) {
+                samples[j] = (byte) SampleType.toUnsigned(source[offset + i * sourceStride], 0xFF);
+            }
+        }
+
+        @Override
+        /* package */ void fill(double value) {
+            Arrays.fill(samples, (byte) SampleType.toUnsigned(value, 0xFF));
+        }
+    }
+
+    /**
+     * A {@link SampleBuffer} backed by a memory-mapped file.
+     * As a single mapping can't be bigger than 2 GiB, the file is split into several mapped regions.
+     * Samples are stored using the native byte order.
+     * Regions are unmapped when the buffer is closed, or when they are garbage collected if it is not closed.
+     */
+    /* package */ static final class MappedSampleBuffer extends SampleBuffer {
+
+        /**
+         * The default size of each region (i.e 1 GiB regions).
+         */
+        private static final int REGION_BYTES = 1 << 30;
+
+        /**
+         * Unmaps a mapped region (or does nothing if the JVM does not allow unmapping it,
+         * in which case it is unmapped when it is garbage collected).
+         */
+        private static final Consumer<ByteBuffer> UNMAPPER = unmapper();
+
+        /**
+         * The mapped regions (or {@code null} if the buffer is closed).
+         */
+        private volatile ByteBuffer[] regions;
+
+        /**
+         * The {@link Path} of the file to be deleted when the buffer is closed
+         * (i.e a temporary file that could not be deleted while it was mapped), or {@code null} if there is none.
+         */
+        private final Path fileToDelete;
+
+        /**
+         * The {@link SampleType} with which samples are stored.
+         */
+        private final SampleType type;
+
+        /**
+         * The amount of samples in each region (except, probably, the last one).
+         */
+        private final int regionSamples;
+
+        /**
+         * Constructor.
+         *
+         * @param path          The {@link Path} of the file.
+         * @param length        The amount of samples.
+         * @param type          The {@link SampleType} with which samples are stored.
+         * @param regionSamples The amount of samples in each region.
+         * @param temporary     Indicates whether the file is temporary (i.e it must be deleted).
+         * @throws IOException If any IO error occurs while mapping the file.
+         */
+        /* package */ MappedSampleBuffer(Path path, long length, SampleType type, int regionSamples,
+                                         boolean temporary) throws IOException {
+            Assert.isTrue(length > 0, "The length must be positive.");
+            Assert.isTrue(regionSamples > 0, "The amount of samples in each region must be positive.");
+            this.type = type;
+            this.regionSamples = regionSamples;
+            final ByteBuffer[] regions = new ByteBuffer[(int) ((length + regionSamples - 1) / regionSamples)];
+            final int bytes = type.getBytes();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                // Mappings remain valid after the channel is closed
+                for (int i = 0; i < regions.length; i++) {
+                    final long start = (long) i * regionSamples;
+                    final long samples = Math.min(regionSamples, length - start);
+                    regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, start * bytes, samples * bytes)
+                            .order(ByteOrder.nativeOrder());
+                }
+            }
+            this.regions = regions;
+            // Mappings remain valid after the file is deleted (if the OS allows deleting it)
+            if (temporary && !path.toFile().delete()) {
+                path.toFile().deleteOnExit();
+                this.fileToDelete = path;
+            } else {
+                this.fileToDelete = null;
+            }
+        }
+
+        @Override
+        /* package */ SampleType getType() {
+            return type;
+        }
+
+        @Override
+        /* package */ boolean isMapped() {
+            return true;
+        }
+
+        @Override
+        /* package */ double get(long index) {
+            return get(regions()[(int) (index / regionSamples)], (int) (index % regionSamples));
+        }
+
+        @Override
+        /* package */ void set(long index, double sample) {
+            set(regions()[(int) (index / regionSamples)], (int) (index % regionSamples), sample);
+        }
+
+        @Override
+        /* package */ void get(long index, int stride, double[] destination, int offset, int destinationStride,
+                               int length) {
+            final ByteBuffer[] regions = regions();
+            while (length > 0) {
+                // Absolute operations are used as positions are not thread safe
+                final ByteBuffer region = regions[(int) (index / regionSamples)];
+                final int position = (int) (index % regionSamples);
+                // The amount of samples that can be copied before reaching the end of the region
+                final int amount = Math.min(length, (region.capacity() / type.getBytes() - position - 1) / stride + 1);
+                for (int i = 0; i < amount; i++) {
+                    destination[offset + i * destinationStride] = get(region, position + i * stride);
+                }
+                index += (long) amount * stride;
+                offset += amount * destinationStride;
+                length -= amount;
+            }
+        }
+
+        @Override
+        /* package */ void set(long index, int stride, double[] source, int offset, int sourceStride, int length) {
+            final ByteBuffer[] regions = regions();
+            while (length > 0) {
+                final ByteBuffer region = regions[(int) (index / regionSamples)];
+                final int position = (int) (index % regionSamples);
+                final int amount = Math.min(length, (region.capacity() / type.getBytes() - position - 1) / stride + 1);
+                for (int i = 0; i < amount; i++) {
+                    set(region, position + i * stride, source[offset + i * sourceStride]);
+                }
+                index += (long) amount * stride;
+                offset += amount * sourceStride;
+                length -= amount;
+            }
+        }
+
+        @Override
+        /* package */ void fill(double value) {
+            for (ByteBuffer region : regions()) {
+                final int samples = region.capacity() / type.getBytes();
+                for (int i = 0; i < samples; i++) {
+                    set(region, i, value);
+                }
+            }
+        }
+
+        /**
+         * Unmaps the regions of this buffer, deleting its file if it is temporary and it could not be deleted
+         * before. Closing an already closed buffer does nothing.
+         *
+         * @implNote Accessing an unmapped region crashes the virtual machine, so the buffer must not be closed
+         * while other threads are accessing it.
+         */
+        @Override
+        public synchronized void close() {
+            final ByteBuffer[] regions = this.regions;
+            if (regions == null) {
+                return;
+            }
+            this.regions = null; // Any later access fails, instead of accessing unmapped memory
+            for (ByteBuffer region : regions) {
+                UNMAPPER.accept(region);
+            }
+            if (fileToDelete != null) {
+                fileToDelete.toFile().delete(); // Otherwise, it is deleted when the virtual machine terminates
+            }
+        }
+
+        /**
+         * @return The mapped regions.
+         * @throws IllegalStateException If the buffer is closed.
+         */
+        private ByteBuffer[] regions() throws IllegalStateException {
+            final ByteBuffer[] regions = this.regions;
+            if (regions == null) {
+                throw new IllegalStateException("The image was closed.");
+            }
+            return regions;
+        }
+
+        /**
+         * Gets the sample in the given {@code position} of the given {@code region}.
+         *
+         * @param region   The region.
+         * @param position The position of the sample in the region.
+         * @return The sample.
+         */
+        private double get(ByteBuffer region, int position) {
+            switch (type) {
+                case UINT8:
+                    return region.get(position) & 0xFF;
+                case UINT16:
+                    return region.getShort(position * Short.BYTES) & 0xFFFF;
+                case FLOAT32:
+                    return region.getFloat(position * Float.BYTES);
+                default:
+                    return region.getDouble(position * Double.BYTES);
+            }
+        }
+
+        /**
+         * Sets the given {@code sample} in the given {@code position} of the given {@code region}.
+         *
+         * @param region   The region.
+         * @param position The position of the sample in the region.
+         * @param sample   The sample.
+         */
+        private void set(ByteBuffer region, int position, double sample) {
+            switch (type) {
+                case UINT8:
+                    region.put(position, (byte) SampleType.toUnsigned(sample, 0xFF));
+                    break;
+                case UINT16:
+                    region.putShort(position * Short.BYTES, (short) SampleType.toUnsigned(sample, 0xFFFF));
+                    break;
+                case FLOAT32:
+                    region.putFloat(position * Float.BYTES, (float) sample);
+                    break;
+                default:
+                    region.putDouble(position * Double.BYTES, sample);
+            }
+        }
+
+        /**
+         * Creates the {@link Consumer} that unmaps mapped regions, using the internal API of the running JVM
+         * (i.e {@code sun.misc.Unsafe#invokeCleaner} since Java 9, or the buffer's cleaner in Java 8).
+         *
+         * @return The created {@link Consumer}, or one that does nothing if no internal API is accessible.
+         */
+        private static Consumer<ByteBuffer> unmapper() {
+            try {
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+                unsafeField.setAccessible(true);
+                final Object unsafe = unsafeField.get(null);
+                final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                return buffer -> invoke(() -> invokeCleaner.invoke(unsafe, buffer));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Java 8 (i.e no invokeCleaner method), so the cleaner of each buffer is used
+                return buffer -> invoke(() -> {
+                    final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                    cleanerMethod.setAccessible(true);
+                    final Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) {
+                        cleaner.getClass().getMethod("clean").invoke(cleaner);
+                    }
+                    return null;
+                });
+            }
+        }
+
+        /**
+         * Invokes the given reflective {@code operation}, ignoring any error
+         * (i.e the region is unmapped when it is garbage collected).
+         *
+         * @param operation The operation.
+         */
+        private static void invoke(ReflectiveOperation operation) {
+            try {
+                operation.invoke();
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // The region is unmapped when it is garbage collected
+            }
+        }
+
+        /**
+         * An operation that uses reflection.
+         */
+        @FunctionalInterface
+        private interface ReflectiveOperation {
+
+            /**
+             * Performs the operation.
+             *
+             * @return The result of the operation.
+             * @throws ReflectiveOperationException If any reflection error occurs.
+             */
+            Object invoke() throws ReflectiveOperationException;
+        }
+    }
+}
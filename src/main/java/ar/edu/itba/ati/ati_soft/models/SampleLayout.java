@@ -0,0 +1,20 @@
+package ar.edu.itba.ati.ati_soft.models;
+
+/**
+ * Enum containing the ways in which the samples of an {@link Image} can be laid out in memory.
+ */
+public enum SampleLayout {
+    /**
+     * Samples are stored row by row, with the samples of each pixel stored together
+     * (i.e the sample in position (x, y) of band b is stored in index {@code (y * width + x) * bands + b}).
+     * Best suited for algorithms that operate with whole pixels.
+     */
+    INTERLEAVED,
+    /**
+     * Each band is stored in its own plane, row by row
+     * (i.e the sample in position (x, y) of band b is stored in index {@code (b * height + y) * width + x}).
+     * Best suited for algorithms that operate band by band, as each band is read sequentially
+     * (see {@link Image#band(int)}).
+     */
+    PLANAR
+}
@@ -0,0 +1,119 @@
+package ar.edu.itba.ati.ati_soft.models;
+
+/**
+ * Enum containing the types with which the samples of an {@link Image} can be stored.
+ * Samples are always read and written as {@code double}s, being converted to the storage type when written
+ * (see {@link #quantize(double)}), so narrower types reduce memory (and memory bandwidth) at the cost of precision.
+ */
+public enum SampleType {
+    /**
+     * Unsigned 8-bit integers (i.e values between 0 and 255).
+     */
+    UINT8(Byte.BYTES, true, 0xFF),
+    /**
+     * Unsigned 16-bit integers (i.e values between 0 and 65535).
+     */
+    UINT16(Short.BYTES, true, 0xFFFF),
+    /**
+     * Single precision floating point numbers.
+     */
+    FLOAT32(Float.BYTES, false, Float.MAX_VALUE),
+    /**
+     * Double precision floating point numbers (i.e no conversion is performed).
+     */
+    FLOAT64(Double.BYTES, false, Double.MAX_VALUE);
+
+    /**
+     * The amount of bytes each sample takes.
+     */
+    private final int bytes;
+
+    /**
+     * Indicates whether samples are stored as (unsigned) integers.
+     */
+    private final boolean integer;
+
+    /**
+     * The max. value a sample can hold.
+     */
+    private final double maxValue;
+
+    /**
+     * Constructor.
+     *
+     * @param bytes    The amount of bytes each sample takes.
+     * @param integer  Indicates whether samples are stored as (unsigned) integers.
+     * @param maxValue The max. value a sample can hold.
+     */
+    SampleType(int bytes, boolean integer, double maxValue) {
+        this.bytes = bytes;
+        this.integer = integer;
+        this.maxValue = maxValue;
+    }
+
+    /**
+     * @return The amount of bytes each sample takes.
+     */
+    public int getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return {@code true} if samples are stored as unsigned integers (i.e they can't hold negative
+     * or non integer values), or {@code false} otherwise.
+     */
+    public boolean isInteger() {
+        return integer;
+    }
+
+    /**
+     * @return The max. value a sample can hold.
+     */
+    public double getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * Converts the given {@code value} into the value that is actually stored with this type
+     * (i.e integer types round and saturate it, and {@link #FLOAT32} reduces its precision).
+     *
+     * @param value The value to be converted.
+     * @return The converted value.
+     */
+    public double quantize(double value) {
+        switch (this) {
+            case UINT8:
+            case UINT16:
+                return toUnsigned(value, (int) maxValue);
+            case FLOAT32:
+                return (float) value;
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Returns the type to be used to store results that can be negative, or not integers,
+     * computed from samples of this type (i.e {@link #FLOAT32} for integer types, or this type otherwise).
+     *
+     * @return The promoted type.
+     */
+    public SampleType toFloatingPoint() {
+        return integer ? FLOAT32 : this;
+    }
+
+    /**
+     * Rounds the given {@code value} to the nearest integer, saturating it to the range {@code [0, max]}.
+     *
+     * @param value The value to be converted.
+     * @param max   The max. value.
+     * @return The converted value ({@code NaN}s are converted into 0).
+     */
+    /* package */
+    static int toUnsigned(double value, int max) {
+        if (value >= max) {
+            return max;
+        }
+        return value > 0 ? (int) (value + 0.5) : 0;
+    }
+}
@@ -0,0 +1,136 @@
+package ar.edu.itba.ati.ati_soft.models;
+
+import org.springframework.util.Assert;
+
+/**
+ * Represents a feature (i.e a corner or an edge pixel) found by the SUSAN detector,
+ * together with the USAN (i.e Univalue Segment Assimilating Nucleus) of the pixel.
+ */
+public class SusanFeature {
+
+    /**
+     * The 'x' coordinate of the pixel.
+     */
+    private final int x;
+
+    /**
+     * The 'y' coordinate of the pixel.
+     */
+    private final int y;
+
+    /**
+     * The {@link Type} of feature.
+     */
+    private final Type type;
+
+    /**
+     * The USAN area (i.e the sum of the similarities between the nucleus of the circular mask
+     * and the rest of its pixels).
+     */
+    private final double usan;
+
+    /**
+     * The SUSAN response (i.e {@code 1 - usan / maskArea}), being higher for smaller USANs.
+     */
+    private final double response;
+
+    /**
+     * Constructor.
+     *
+     * @param x        The 'x' coordinate of the pixel.
+     * @param y        The 'y' coordinate of the pixel.
+     * @param type     The {@link Type} of feature.
+     * @param usan     The USAN area.
+     * @param response The SUSAN response.
+     * @throws IllegalArgumentException If the coordinates or the USAN area are negative, or the type is null.
+     */
+    public SusanFeature(int x, int y, Type type, double usan, double response) throws IllegalArgumentException {
+        Assert.isTrue(x >= 0 && y >= 0, "The coordinates of the feature must not be negative.");
+        Assert.notNull(type, "The type must not be null.");
+        Assert.isTrue(usan >= 0, "The USAN area must not be negative.");
+        this.x = x;
+        this.y = y;
+        this.type = type;
+        this.usan = usan;
+        this.response = response;
+    }
+
+    /**
+     * @return The 'x' coordinate of the pixel.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * @return The 'y' coordinate of the pixel.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * @return The {@link Type} of feature.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The USAN area (i.e the sum of the similarities between the nucleus of the circular mask
+     * and the rest of its pixels).
+     */
+    public double getUsan() {
+        return usan;
+    }
+
+    /**
+     * @return The SUSAN response (i.e {@code 1 - usan / maskArea}), being higher for smaller USANs.
+     */
+    public double getResponse() {
+        return response;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SusanFeature)) {
+            return false;
+        }
+        final SusanFeature that = (SusanFeature) o;
+        return x == that.x && y == that.y && type == that.type
+                && Double.compare(that.usan, usan) == 0 && Double.compare(that.response, response) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = x;
+        result = 31 * result + y;
+        result = 31 * result + type.hashCode();
+        result = 31 * result + Double.hashCode(usan);
+        result = 31 * result + Double.hashCode(response);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SusanFeature{" + "x=" + x + ", y=" + y + ", type=" + type
+                + ", usan=" + usan + ", response=" + response + '}';
+    }
+
+    /**
+     * The types of features found by the SUSAN detector.
+     */
+    public enum Type {
+        /**
+         * A corner (i.e a pixel whose USAN is about a quarter of the mask).
+         */
+        CORNER,
+        /**
+         * An edge pixel (i.e a pixel whose USAN is about half of the mask).
+         */
+        EDGE
+    }
+}
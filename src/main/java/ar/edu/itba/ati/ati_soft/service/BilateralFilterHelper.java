@@ -0,0 +1,419 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Class implementing the bilateral filter.
+ * The spatial weights are calculated once for the whole image, and the range weights are taken from a
+ * {@link RangeWeights} lookup table, so filtering a pixel does not allocate memory nor calculate exponentials.
+ * It also implements an approximation using a bilateral grid, whose cost does not depend on the window size.
+ */
+/* package */ class BilateralFilterHelper {
+
+    /**
+     * The amount of empty cells added in each side of each dimension of a bilateral grid,
+     * so the blur and the interpolation never need to check ranges.
+     */
+    private static final int GRID_PADDING = 2;
+
+    /**
+     * Filters the given {@link Image} with the bilateral filter, processing its rows in parallel.
+     * Each band is filtered independently, and pixels in the border (i.e those for which the window does not fit
+     * in the image) are set to zero, as with the rest of the sliding window filters.
+     *
+     * @param image      The {@link Image} to which the filter will be applied.
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @param windowSize The size of the window to be used.
+     * @return A new {@link Image} with the filter applied (with the same sample type as the given one).
+     * @throws IllegalArgumentException If any standard deviation is not positive,
+     *                                  or if the window size is not positive and odd.
+     */
+    /* package */
+    static Image filter(Image image, double spatialStd, double rangeStd, int windowSize)
+            throws IllegalArgumentException {
+        Assert.notNull(image, "The image must not be null");
+        validate(spatialStd, rangeStd, windowSize);
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int bands = image.getBands();
+        final int margin = windowSize / 2;
+        final double[] spatialWeights = KernelCache.bilateralSpatial(spatialStd, windowSize).copyWeights();
+        final RangeWeights rangeWeights = new RangeWeights(rangeStd);
+        final Image result = image.createCompatible(width, height, bands);
+        try (ProgressTracker tracker = ProgressTracker.start(height)) {
+            IntStream.range(0, height).parallel().forEach(y -> {
+                final double[] row = new double[width * bands]; // Pixels in the border are set to zero
+                if (y >= margin && y < height - margin) {
+                    // The window rows of the whole row are read at once
+                    final double[] tile = image.getTile(0, y - margin, width, windowSize, null);
+                    final int rowLength = width * bands;
+                    for (int x = margin; x < width - margin; x++) {
+                        for (int b = 0; b < bands; b++) {
+                            final int centerIndex = margin * rowLength + x * bands + b;
+                            final double center = tile[centerIndex];
+                            double weightedSum = 0;
+                            double weightsSum = 0;
+                            for (int i = 0; i < windowSize; i++) {
+                                int index = i * rowLength + (x - margin) * bands + b;
+                                for (int j = 0; j < windowSize; j++, index += bands) {
+                                    final double value = tile[index];
+                                    final double weight = spatialWeights[i * windowSize + j]
+                                            * rangeWeights.get(value - center);
+                                    weightedSum += weight * value;
+                                    weightsSum += weight;
+                                }
+                            }
+                            // The center has weight 1, so the sum is never zero
+                            row[x * bands + b] = weightedSum / weightsSum;
+                        }
+                    }
+                }
+                result.setRow(y, row);
+                tracker.step();
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Filters the given {@link Image} with the joint bilateral filter, processing its rows in parallel.
+     * Unlike {@link #filter(Image, double, double, int)}, the range weight of each neighbour is calculated once,
+     * using the euclidean distance between the neighbour and the center pixels (i.e taking into account all bands),
+     * and all the bands are filtered with it in the same pass. For CIE-Lab images, the distance is the
+     * CIE76 color difference (i.e Delta E), as proposed by Tomasi C. and Manduchi R.
+     * Pixels in the border are set to zero.
+     *
+     * @param image      The {@link Image} to which the filter will be applied.
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering (i.e of the color difference).
+     * @param windowSize The size of the window to be used.
+     * @return A new {@link Image} with the filter applied (with the same sample type as the given one).
+     * @throws IllegalArgumentException If any standard deviation is not positive,
+     *                                  or if the window size is not positive and odd.
+     */
+    /* package */
+    static Image jointFilter(Image image, double spatialStd, double rangeStd, int windowSize)
+            throws IllegalArgumentException {
+        Assert.notNull(image, "The image must not be null");
+        validate(spatialStd, rangeStd, windowSize);
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int bands = image.getBands();
+        final int margin = windowSize / 2;
+        final double[] spatialWeights = KernelCache.bilateralSpatial(spatialStd, windowSize).copyWeights();
+        final RangeWeights rangeWeights = new RangeWeights(rangeStd);
+        final Image result = image.createCompatible(width, height, bands);
+        try (ProgressTracker tracker = ProgressTracker.start(height)) {
+            IntStream.range(0, height).parallel().forEach(y -> {
+                final double[] row = new double[width * bands]; // Pixels in the border are set to zero
+                if (y >= margin && y < height - margin) {
+                    final double[] tile = image.getTile(0, y - margin, width, windowSize, null);
+                    final int rowLength = width * bands;
+                    final double[] weightedSums = new double[bands];
+                    for (int x = margin; x < width - margin; x++) {
+                        final int centerIndex = margin * rowLength + x * bands;
+                        Arrays.fill(weightedSums, 0d);
+                        double weightsSum = 0;
+                        for (int i = 0; i < windowSize; i++) {
+                            int index = i * rowLength + (x - margin) * bands;
+                            for (int j = 0; j < windowSize; j++, index += bands) {
+                                double squaredDistance = 0;
+                                for (int b = 0; b < bands; b++) {
+                                    final double difference = tile[index + b] - tile[centerIndex + b];
+                                    squaredDistance += difference * difference;
+                                }
+                                final double weight = spatialWeights[i * windowSize + j]
+                                        * rangeWeights.get(Math.sqrt(squaredDistance));
+                                for (int b = 0; b < bands; b++) {
+                                    weightedSums[b] += weight * tile[index + b];
+                                }
+                                weightsSum += weight;
+                            }
+                        }
+                        // The center has weight 1, so the sum is never zero
+                        for (int b = 0; b < bands; b++) {
+                            row[x * bands + b] = weightedSums[b] / weightsSum;
+                        }
+                    }
+                }
+                result.setRow(y, row);
+                tracker.step();
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Filters the given {@link Image} with an approximation of the bilateral filter, using a bilateral grid
+     * (see Chen J., Paris S., Durand F., (2007), Real-time Edge-Aware Image Processing with the Bilateral Grid).
+     * Each band is downsampled into a three-dimensional grid (two spatial dimensions and the range dimension),
+     * whose cells have the size of the standard deviations, and which is blurred and then sliced
+     * (i.e interpolated) at each pixel, so the cost depends on the amount of pixels and cells,
+     * and not on the size of the spatial kernel.
+     * As with {@link #filter(Image, double, double, int)}, each band is filtered independently,
+     * but pixels in the border are also filtered.
+     *
+     * @param image      The {@link Image} to which the filter will be applied.
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @return A new {@link Image} with the filter applied (with the same sample type as the given one).
+     * @throws IllegalArgumentException If any standard deviation is not positive,
+     *                                  or if they are so small that the grid can't be allocated.
+     */
+    /* package */
+    static Image gridFilter(Image image, double spatialStd, double rangeStd) throws IllegalArgumentException {
+        Assert.notNull(image, "The image must not be null");
+        Assert.isTrue(spatialStd > 0 && rangeStd > 0, "Both standard deviations must be positive");
+        final Image result = image.createCompatible(image.getWidth(), image.getHeight(), image.getBands());
+        try (ProgressTracker tracker = ProgressTracker.start(image.getBands())) {
+            for (int b = 0; b < image.getBands(); b++) {
+                gridFilterBand(image.band(b), result.band(b), spatialStd, rangeStd);
+                tracker.step();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a filter function that performs the bilateral filtering of a window
+     * (i.e to be used with the sliding window filters that can't access the whole image).
+     *
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @param windowSize The size of the window to be used.
+     * @return The filter function.
+     * @throws IllegalArgumentException If any standard deviation is not positive,
+     *                                  or if the window size is not positive and odd.
+     */
+    /* package */
+    static Function<Double[][], Double> windowFunction(double spatialStd, double rangeStd, int windowSize)
+            throws IllegalArgumentException {
+        validate(spatialStd, rangeStd, windowSize);
+        final int margin = windowSize / 2;
+        final double[] spatialWeights = KernelCache.bilateralSpatial(spatialStd, windowSize).copyWeights();
+        final RangeWeights rangeWeights = new RangeWeights(rangeStd);
+        return window -> {
+            final double center = window[margin][margin];
+            double weightedSum = 0;
+            double weightsSum = 0;
+            for (int i = 0; i < windowSize; i++) {
+                for (int j = 0; j < windowSize; j++) {
+                    final double value = window[i][j];
+                    final double weight = spatialWeights[i * windowSize + j] * rangeWeights.get(value - center);
+                    weightedSum += weight * value;
+                    weightsSum += weight;
+                }
+            }
+            return weightedSum / weightsSum;
+        };
+    }
+
+    /**
+     * Filters the given one band {@link Image} with the bilateral grid
+     * (see {@link #gridFilter(Image, double, double)}), writing the result into the given {@code result}.
+     *
+     * @param band       The {@link Image} to which the filter will be applied (e.g a band view).
+     * @param result     The {@link Image} into which the result is written (e.g a band view).
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @throws IllegalArgumentException If the grid is too big to be allocated.
+     */
+    private static void gridFilterBand(Image band, Image result, double spatialStd, double rangeStd)
+            throws IllegalArgumentException {
+        final int width = band.getWidth();
+        final int height = band.getHeight();
+        final double[] row = new double[width];
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int y = 0; y < height; y++) {
+            for (double sample : band.getRow(y, row)) {
+                min = Math.min(min, sample);
+                max = Math.max(max, sample);
+            }
+        }
+        final double minimum = min;
+        // Dimensions are calculated as doubles, so they can be validated before being truncated to integers
+        final double gridWidthCells = Math.floor((width - 1) / spatialStd) + 1 + 2 * GRID_PADDING;
+        final double gridHeightCells = Math.floor((height - 1) / spatialStd) + 1 + 2 * GRID_PADDING;
+        final double gridDepthCells = Math.floor((max - min) / rangeStd) + 1 + 2 * GRID_PADDING;
+        final double gridCells = gridWidthCells * gridHeightCells * gridDepthCells;
+        // The grid needs three arrays of cells (i.e the values, the weights, and the blur buffer)
+        Assert.isTrue(gridCells <= Integer.MAX_VALUE - 8
+                        && gridCells * 3 * Double.BYTES <= Runtime.getRuntime().maxMemory(),
+                "The standard deviations are too small for the bilateral grid");
+        final int gridWidth = (int) gridWidthCells;
+        final int gridHeight = (int) gridHeightCells;
+        final int gridDepth = (int) gridDepthCells;
+        final int cells = (int) gridCells;
+        final int[] strides = {1, gridWidth, gridWidth * gridHeight};
+        final int[] lengths = {gridWidth, gridHeight, gridDepth};
+
+        // Splatting, blurring, and slicing are the three steps
+        try (ProgressTracker tracker = ProgressTracker.start(3)) {
+            // Each sample is accumulated (with weight 1) into its nearest cell
+            double[] values = new double[cells];
+            double[] weights = new double[cells];
+            for (int y = 0; y < height; y++) {
+                band.getRow(y, row);
+                final int gridY = (int) (y / spatialStd + 0.5) + GRID_PADDING;
+                for (int x = 0; x < width; x++) {
+                    final int gridX = (int) (x / spatialStd + 0.5) + GRID_PADDING;
+                    final int gridZ = (int) ((row[x] - minimum) / rangeStd + 0.5) + GRID_PADDING;
+                    final int index = gridZ * strides[2] + gridY * strides[1] + gridX;
+                    values[index] += row[x];
+                    weights[index]++;
+                }
+            }
+            tracker.step();
+
+            // Applying twice a [1 2 1] kernel in each dimension approximates a Gaussian
+            // whose deviation is the size of a cell (i.e the standard deviation of that dimension)
+            double[] buffer = new double[cells];
+            for (int pass = 0; pass < 6; pass++) {
+                final int dimension = pass / 2;
+                blurGrid(values, buffer, strides[dimension], lengths[dimension]);
+                final double[] blurredValues = buffer;
+                buffer = values;
+                values = blurredValues;
+                blurGrid(weights, buffer, strides[dimension], lengths[dimension]);
+                final double[] blurredWeights = buffer;
+                buffer = weights;
+                weights = blurredWeights;
+            }
+            tracker.step();
+
+            // Each sample is replaced by the trilinear interpolation of the normalized grid at its position
+            final double[] gridValues = values;
+            final double[] gridWeights = weights;
+            try (ProgressTracker slicingTracker = ProgressTracker.start(height)) {
+                IntStream.range(0, height).parallel().forEach(y -> {
+                    final double[] samples = band.getRow(y, null);
+                    final double gridY = y / spatialStd + GRID_PADDING;
+                    final int y0 = (int) gridY;
+                    final double dy = gridY - y0;
+                    for (int x = 0; x < width; x++) {
+                        final double gridX = x / spatialStd + GRID_PADDING;
+                        final double gridZ = (samples[x] - minimum) / rangeStd + GRID_PADDING;
+                        final int x0 = (int) gridX;
+                        final int z0 = (int) gridZ;
+                        final double dx = gridX - x0;
+                        final double dz = gridZ - z0;
+                        double value = 0;
+                        double weight = 0;
+                        for (int corner = 0; corner < 8; corner++) {
+                            final int cx = corner & 1;
+                            final int cy = (corner >> 1) & 1;
+                            final int cz = corner >> 2;
+                            final double factor = (cx == 0 ? 1 - dx : dx) * (cy == 0 ? 1 - dy : dy)
+                                    * (cz == 0 ? 1 - dz : dz);
+                            final int index = (z0 + cz) * strides[2] + (y0 + cy) * strides[1] + x0 + cx;
+                            value += factor * gridValues[index];
+                            weight += factor * gridWeights[index];
+                        }
+                        // The sample's own contribution makes the weight positive, but keep it if it is not
+                        samples[x] = weight > 0 ? value / weight : samples[x];
+                    }
+                    result.setRow(y, samples);
+                    slicingTracker.step();
+                });
+            }
+        }
+    }
+
+    /**
+     * Blurs the given bilateral {@code grid} along one dimension, with a [1 2 1] / 4 kernel,
+     * writing the result into the given {@code blurred} array.
+     *
+     * @param grid    The grid to be blurred.
+     * @param blurred The array into which the blurred grid is written.
+     * @param stride  The distance between consecutive cells in the blurred dimension.
+     * @param length  The amount of cells in the blurred dimension.
+     */
+    private static void blurGrid(double[] grid, double[] blurred, int stride, int length) {
+        IntStream.range(0, grid.length).parallel().forEach(index -> {
+            final int position = (index / stride) % length;
+            final double previous = position > 0 ? grid[index - stride] : 0d;
+            final double next = position < length - 1 ? grid[index + stride] : 0d;
+            blurred[index] = (previous + 2 * grid[index] + next) / 4;
+        });
+    }
+
+    /**
+     * Checks the bilateral filter parameters.
+     *
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @param windowSize The size of the window to be used.
+     * @throws IllegalArgumentException If any standard deviation is not positive,
+     *                                  or if the window size is not positive and odd.
+     */
+    private static void validate(double spatialStd, double rangeStd, int windowSize) throws IllegalArgumentException {
+        Assert.isTrue(spatialStd > 0 && rangeStd > 0, "Both standard deviations must be positive");
+        Assert.isTrue(windowSize > 0, "The window size must be positive");
+        Assert.isTrue(windowSize % 2 != 0, "The window size must not be even");
+    }
+
+    /**
+     * Lookup table of the range weights of the bilateral filter (i.e {@code exp(-d^2 / (2 * rangeStd^2))},
+     * being {@code d} the difference between a sample and the center of the window).
+     * Differences are quantized with a step that is a fraction of the standard deviation,
+     * so the table size does not depend on the range of the samples,
+     * and differences beyond {@link #MAX_STDS} standard deviations have weight zero.
+     */
+    /* package */ static final class RangeWeights {
+
+        /**
+         * The amount of entries of the table per standard deviation.
+         */
+        private static final int ENTRIES_PER_STD = 256;
+
+        /**
+         * The max. difference (in standard deviations) with non zero weight
+         * (i.e weights below {@code exp(-32)} are discarded).
+         */
+        private static final int MAX_STDS = 8;
+
+        /**
+         * The weights, being the one of the difference {@code d} in index {@code round(|d| * scale)}.
+         */
+        private final double[] table;
+
+        /**
+         * The factor that converts a difference into an index of the table.
+         */
+        private final double scale;
+
+        /**
+         * Constructor.
+         *
+         * @param rangeStd The Gaussian standard deviation for the range filtering.
+         */
+        /* package */ RangeWeights(double rangeStd) {
+            this.scale = ENTRIES_PER_STD / rangeStd;
+            this.table = new double[ENTRIES_PER_STD * MAX_STDS + 1];
+            final double step = rangeStd / ENTRIES_PER_STD;
+            final double rangeFactor = 2 * rangeStd * rangeStd;
+            for (int i = 0; i < table.length; i++) {
+                final double difference = i * step;
+                table[i] = Math.exp(-difference * difference / rangeFactor);
+            }
+        }
+
+        /**
+         * Returns the weight of the given {@code difference}.
+         *
+         * @param difference The difference between a sample and the center of the window.
+         * @return The weight.
+         */
+        /* package */ double get(double difference) {
+            final double position = Math.abs(difference) * scale + 0.5;
+            return position < table.length ? table[(int) position] : 0d; // NaNs fall in the else branch
+        }
+    }
+}
@@ -3,8 +3,14 @@ package ar.edu.itba.ati.ati_soft.service;
 import ar.edu.itba.ati.ati_soft.models.Image;
 import org.springframework.util.Assert;
 
+import java.util.stream.IntStream;
+
 /**
  * Class implementing several methods to change the color space of an {@link Image}.
+ * Conversions are performed row by row (in parallel), over the flat arrays of samples,
+ * replacing the expensive functions (i.e the sRGB gamma, and the CIE-Lab cube root) by interpolated lookup tables.
+ * Conversions that go through intermediate color spaces (e.g RGB to CIE XYZ to CIE-Lab) are fused,
+ * so each pixel is converted in a single step, without creating intermediate images.
  */
 /* package */ class ColorHelper {
 
@@ -16,9 +22,43 @@ import org.springframework.util.Assert;
     private static final double D65_Y = 1.0;
     private static final double D65_Z = 1.088830;
 
+    // ========================
+    // Lookup tables
+    // ========================
+
+    /**
+     * The amount of intervals of the tables indexed by values between 0 and 1.
+     */
+    private static final int TABLE_INTERVALS = 4096;
+
+    /**
+     * The sRGB linearization of each 8-bit value (i.e the value at index {@code i} is the linearization of
+     * {@code i / 255}).
+     */
+    private static final double[] LINEARIZATION_TABLE = IntStream.rangeClosed(0, 255)
+            .mapToDouble(value -> linearize(value / 255d))
+            .toArray();
+
+    /**
+     * The sRGB gamma encoding of linear values between 0 and 1
+     * (i.e the value at index {@code i} is the encoding of {@code i / TABLE_INTERVALS}).
+     */
+    private static final double[] GAMMA_TABLE = IntStream.rangeClosed(0, TABLE_INTERVALS)
+            .mapToDouble(i -> encodeGamma((double) i / TABLE_INTERVALS))
+            .toArray();
+
+    /**
+     * The CIE-Lab {@code f(t)} function of values between 0 and 1
+     * (i.e the value at index {@code i} is {@code f(i / TABLE_INTERVALS)}).
+     */
+    private static final double[] LAB_FUNCTION_TABLE = IntStream.rangeClosed(0, TABLE_INTERVALS)
+            .mapToDouble(i -> labFunction((double) i / TABLE_INTERVALS))
+            .toArray();
+
     /**
      * Creates a new {@link Image} identical to the given {@code originalImage},
      * changing the color space from RGB to CIE-LAB.
+     * The conversion to CIE XYZ is fused, so each pixel is converted in a single step.
      *
      * @param originalImage The original {@link Image} (must be an RGB image).
      * @return The converted {@link Image}.
@@ -28,47 +68,32 @@ import org.springframework.util.Assert;
      */
     /* package */
     static Image rgbToCieLab(Image originalImage) {
-        Assert.isTrue(originalImage.getBands() == 3,
-                "The amount of bands of the original image must be 3 " +
-                        "(and must represent each channel of a CIE-Lab image)");
-        final int width = originalImage.getWidth();
-        final int height = originalImage.getHeight();
-
-        return ImageManipulationHelper.createApplying(() -> Image.empty(width, height, 3),
-                (row, col) -> {
-                    final Double[] rgbPixel = originalImage.getPixel(row, col);
-
-                    // Normalize RGB values
-                    final double r = rgbPixel[0] / 255.0;
-                    final double g = rgbPixel[1] / 255.0;
-                    final double b = rgbPixel[2] / 255.0;
+        return convert(originalImage, 3, (source, i, destination, j) -> {
+            // Map RGB to CIE XYZ
+            final double r = linearizeSample(source[i]);
+            final double g = linearizeSample(source[i + 1]);
+            final double b = linearizeSample(source[i + 2]);
 
-                    // Map RGB to CIE XYZ
-                    final double improvedR = r <= 0.04045 ? r / 12.92 : Math.pow((r + 0.055) / 1.055, 2.4);
-                    final double improvedG = g <= 0.04045 ? g / 12.92 : Math.pow((g + 0.055) / 1.055, 2.4);
-                    final double improvedB = b <= 0.04045 ? b / 12.92 : Math.pow((b + 0.055) / 1.055, 2.4);
+            // Apply D65 referent
+            final double x = (0.4124564 * r + 0.3575761 * g + 0.1804375 * b) / D65_X;
+            final double y = (0.2126729 * r + 0.7151522 * g + 0.0721750 * b) / D65_Y;
+            final double z = (0.0193339 * r + 0.1191920 * g + 0.9503041 * b) / D65_Z;
 
-                    // Apply D65 referent
-                    final double x = (0.4124564 * improvedR + 0.3575761 * improvedG + 0.1804375 * improvedB) / D65_X;
-                    final double y = (0.2126729 * improvedR + 0.7151522 * improvedG + 0.0721750 * improvedB) / D65_Y;
-                    final double z = (0.0193339 * improvedR + 0.1191920 * improvedG + 0.9503041 * improvedB) / D65_Z;
+            // Map CIE XYZ to CIE Lab
+            final double improvedX = tabulatedLabFunction(x);
+            final double improvedY = tabulatedLabFunction(y);
+            final double improvedZ = tabulatedLabFunction(z);
 
-                    // Map CIE XYZ to CIE Lab
-                    final double improvedX = x > 0.008856 ? Math.pow(x, 1.0 / 3) : 7.787037 * x + 4.0 / 29;
-                    final double improvedY = y > 0.008856 ? Math.pow(y, 1.0 / 3) : 7.787037 * y + 4.0 / 29;
-                    final double improvedZ = z > 0.008856 ? Math.pow(z, 1.0 / 3) : 7.787037 * z + 4.0 / 29;
-
-                    return new Double[]{
-                            116 * improvedY - 16,           // L
-                            500 * (improvedX - improvedY),  // a
-                            200 * (improvedY - improvedZ),  // b
-                    };
-                });
+            destination[j] = 116 * improvedY - 16;                  // L
+            destination[j + 1] = 500 * (improvedX - improvedY);     // a
+            destination[j + 2] = 200 * (improvedY - improvedZ);     // b
+        });
     }
 
     /**
      * Creates a new {@link Image} identical to the given {@code originalImage},
      * changing the color space from CIE-LAB to RGB.
+     * The conversion from CIE XYZ is fused, so each pixel is converted in a single step.
      *
      * @param originalImage The original {@link Image} (must be an RGB image).
      * @return The converted {@link Image}.
@@ -78,43 +103,338 @@ import org.springframework.util.Assert;
      */
     /* package */
     static Image cieLabToRGB(Image originalImage) {
-        Assert.isTrue(originalImage.getBands() == 3,
-                "The amount of bands of the original image must be 3 " +
-                        "(and must represent each channel of a CIE-Lab image)");
-        final int width = originalImage.getWidth();
-        final int height = originalImage.getHeight();
-
-        return ImageManipulationHelper.createApplying(() -> Image.empty(width, height, 3),
-                (row, col) -> {
-                    final Double[] cieLabPixel = originalImage.getPixel(row, col);
-                    final double l = cieLabPixel[0];
-                    final double a = cieLabPixel[1];
-                    final double b = cieLabPixel[2];
-
-                    // Map CIE Lab to CIE XYZ
-                    final double y = (l + 16) / 116;
-                    final double x = y + a / 500;
-                    final double z = y - b / 200;
-
-                    // Apply D65 referent
-                    final double improvedX = D65_X * (x > 0.206893034 ? x * x * x : (x - 4.0 / 29) / 7.787037);
-                    final double improvedY = D65_Y * (y > 0.206893034 ? y * y * y : (y - 4.0 / 29) / 7.787037);
-                    final double improvedZ = D65_Z * (z > 0.206893034 ? z * z * z : (z - 4.0 / 29) / 7.787037);
-
-                    // Map CIE XYZ to RGB
-                    final double red = 3.2404542 * improvedX - 1.5371385 * improvedY - 0.4985314 * improvedZ;
-                    final double green = -0.9692660 * improvedX + 1.8760108 * improvedY + 0.0415560 * improvedZ;
-                    final double blue = 0.0556434 * improvedX - 0.2040259 * improvedY + 1.0572252 * improvedZ;
-                    final double improvedR = red <= 0.00304 ? 12.92 * red : 1.055 * Math.pow(red, 1 / 2.4) - 0.055;
-                    final double improvedG = green <= 0.00304 ? 12.92 * green : 1.055 * Math.pow(green, 1 / 2.4) - 0.055;
-                    final double improvedB = blue <= 0.00304 ? 12.92 * blue : 1.055 * Math.pow(blue, 1 / 2.4) - 0.055;
-
-                    return new Double[]{
-                            255d * improvedR,
-                            255d * improvedG,
-                            255d * improvedB,
-                    };
-
-                });
+        return convert(originalImage, 3, (source, i, destination, j) -> {
+            final double l = source[i];
+            final double a = source[i + 1];
+            final double b = source[i + 2];
+
+            // Map CIE Lab to CIE XYZ
+            final double y = (l + 16) / 116;
+            final double x = y + a / 500;
+            final double z = y - b / 200;
+
+            // Apply D65 referent
+            final double improvedX = D65_X * inverseLabFunction(x);
+            final double improvedY = D65_Y * inverseLabFunction(y);
+            final double improvedZ = D65_Z * inverseLabFunction(z);
+
+            xyzToRgb(improvedX, improvedY, improvedZ, destination, j);
+        });
+    }
+
+    /**
+     * Creates a new {@link Image} identical to the given RGB {@code originalImage},
+     * changing the color space to CIE XYZ (being the Y component between 0 and 1).
+     *
+     * @param originalImage The original {@link Image} (must be an RGB image).
+     * @return The converted {@link Image}.
+     */
+    /* package */
+    static Image rgbToXyz(Image originalImage) {
+        return convert(originalImage, 3, (source, i, destination, j) -> {
+            final double r = linearizeSample(source[i]);
+            final double g = linearizeSample(source[i + 1]);
+            final double b = linearizeSample(source[i + 2]);
+            destination[j] = 0.4124564 * r + 0.3575761 * g + 0.1804375 * b;
+            destination[j + 1] = 0.2126729 * r + 0.7151522 * g + 0.0721750 * b;
+            destination[j + 2] = 0.0193339 * r + 0.1191920 * g + 0.9503041 * b;
+        });
+    }
+
+    /**
+     * Creates a new {@link Image} identical to the given CIE XYZ {@code originalImage},
+     * changing the color space to RGB.
+     *
+     * @param originalImage The original {@link Image} (must be a CIE XYZ image, as created by
+     *                      {@link #rgbToXyz(Image)}).
+     * @return The converted {@link Image}.
+     */
+    /* package */
+    static Image xyzToRgb(Image originalImage) {
+        return convert(originalImage, 3, (source, i, destination, j) ->
+                xyzToRgb(source[i], source[i + 1], source[i + 2], destination, j));
+    }
+
+    /**
+     * Creates a new {@link Image} identical to the given RGB {@code originalImage},
+     * changing the color space to HSV (being the hue in degrees, between 0 and 360,
+     * the saturation between 0 and 1, and the value between 0 and 255, as the RGB samples).
+     *
+     * @param originalImage The original {@link Image} (must be an RGB image).
+     * @return The converted {@link Image}.
+     */
+    /* package */
+    static Image rgbToHsv(Image originalImage) {
+        return convert(originalImage, 3, (source, i, destination, j) -> {
+            final double r = source[i];
+            final double g = source[i + 1];
+            final double b = source[i + 2];
+            final double max = Math.max(r, Math.max(g, b));
+            final double delta = max - Math.min(r, Math.min(g, b));
+            final double hue;
+            if (delta == 0) {
+                hue = 0; // Gray pixel (the hue is undefined)
+            } else if (max == r) {
+                hue = 60 * ((g - b) / delta);
+            } else if (max == g) {
+                hue = 60 * ((b - r) / delta + 2);
+            } else {
+                hue = 60 * ((r - g) / delta + 4);
+            }
+            destination[j] = hue < 0 ? hue + 360 : hue;
+            destination[j + 1] = max == 0 ? 0 : delta / max;
+            destination[j + 2] = max;
+        });
+    }
+
+    /**
+     * Creates a new {@link Image} identical to the given HSV {@code originalImage},
+     * changing the color space to RGB.
+     *
+     * @param originalImage The original {@link Image} (must be an HSV image, as created by
+     *                      {@link #rgbToHsv(Image)}).
+     * @return The converted {@link Image}.
+     */
+    /* package */
+    static Image hsvToRgb(Image originalImage) {
+        return convert(originalImage, 3, (source, i, destination, j) -> {
+            final double hue = ((source[i] % 360) + 360) % 360 / 60; // Sector between 0 and 6
+            final double value = source[i + 2];
+            final double chroma = value * source[i + 1];
+            final double second = chroma * (1 - Math.abs(hue % 2 - 1));
+            final double min = value - chroma;
+            final int sector = (int) hue;
+            destination[j] = min + (sector == 0 || sector == 5 ? chroma : sector == 1 || sector == 4 ? second : 0);
+            destination[j + 1] = min + (sector == 1 || sector == 2 ? chroma : sector == 0 || sector == 3 ? second : 0);
+            destination[j + 2] = min + (sector == 3 || sector == 4 ? chroma : sector == 2 || sector == 5 ? second : 0);
+        });
+    }
+
+    /**
+     * Creates a new {@link Image} identical to the given RGB {@code originalImage},
+     * changing the color space to YCbCr (full range ITU-R BT.601, as used by JPEG,
+     * being all the components between 0 and 255, and the chroma components centered at 128).
+     *
+     * @param originalImage The original {@link Image} (must be an RGB image).
+     * @return The converted {@link Image}.
+     */
+    /* package */
+    static Image rgbToYCbCr(Image originalImage) {
+        return convert(originalImage, 3, (source, i, destination, j) -> {
+            final double r = source[i];
+            final double g = source[i + 1];
+            final double b = source[i + 2];
+            destination[j] = luma(r, g, b);
+            destination[j + 1] = 128 - 0.168736 * r - 0.331264 * g + 0.5 * b;
+            destination[j + 2] = 128 + 0.5 * r - 0.418688 * g - 0.081312 * b;
+        });
+    }
+
+    /**
+     * Creates a new {@link Image} identical to the given YCbCr {@code originalImage},
+     * changing the color space to RGB.
+     *
+     * @param originalImage The original {@link Image} (must be a YCbCr image, as created by
+     *                      {@link #rgbToYCbCr(Image)}).
+     * @return The converted {@link Image}.
+     */
+    /* package */
+    static Image yCbCrToRgb(Image originalImage) {
+        return convert(originalImage, 3, (source, i, destination, j) -> {
+            final double y = source[i];
+            final double cb = source[i + 1] - 128;
+            final double cr = source[i + 2] - 128;
+            destination[j] = y + 1.402 * cr;
+            destination[j + 1] = y - 0.344136 * cb - 0.714136 * cr;
+            destination[j + 2] = y + 1.772 * cb;
+        });
+    }
+
+    /**
+     * Creates a one band {@link Image} holding the luma of the given RGB {@code originalImage}
+     * (i.e the Y component of {@link #rgbToYCbCr(Image)}), without converting the chroma components.
+     *
+     * @param originalImage The original {@link Image} (must be an RGB image).
+     * @return The luma {@link Image}.
+     */
+    /* package */
+    static Image rgbToLuma(Image originalImage) {
+        return convert(originalImage, 1, (source, i, destination, j) ->
+                destination[j] = luma(source[i], source[i + 1], source[i + 2]));
+    }
+
+
+    // ================================================================================================================
+    // Helper methods
+    // ================================================================================================================
+
+    /**
+     * Converts each pixel of the given three bands {@link Image} with the given {@link PixelConversion},
+     * processing rows in parallel.
+     *
+     * @param image      The {@link Image} to be converted (must have three bands).
+     * @param bands      The amount of bands of the converted {@link Image}.
+     * @param conversion The {@link PixelConversion}.
+     * @return The converted {@link Image}.
+     */
+    private static Image convert(Image image, int bands, PixelConversion conversion) {
+        Assert.isTrue(image.getBands() == 3, "The amount of bands of the original image must be 3");
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final Image converted = Image.empty(width, height, bands);
+        try (ProgressTracker tracker = ProgressTracker.start(height)) {
+            IntStream.range(0, height).parallel().forEach(y -> {
+                final double[] source = image.getRow(y, null);
+                final double[] destination = new double[width * bands];
+                for (int x = 0; x < width; x++) {
+                    conversion.convert(source, x * 3, destination, x * bands);
+                }
+                converted.setRow(y, destination);
+                tracker.step();
+            });
+        }
+        return converted;
+    }
+
+    /**
+     * Converts the given CIE XYZ color to RGB, storing it in the given {@code destination} array.
+     *
+     * @param x           The X component.
+     * @param y           The Y component.
+     * @param z           The Z component.
+     * @param destination The array into which the RGB samples are stored.
+     * @param index       The index of the red sample in the {@code destination} array.
+     */
+    private static void xyzToRgb(double x, double y, double z, double[] destination, int index) {
+        final double red = 3.2404542 * x - 1.5371385 * y - 0.4985314 * z;
+        final double green = -0.9692660 * x + 1.8760108 * y + 0.0415560 * z;
+        final double blue = 0.0556434 * x - 0.2040259 * y + 1.0572252 * z;
+        destination[index] = 255d * tabulatedGammaEncoding(red);
+        destination[index + 1] = 255d * tabulatedGammaEncoding(green);
+        destination[index + 2] = 255d * tabulatedGammaEncoding(blue);
+    }
+
+    /**
+     * Calculates the luma of the given RGB color (ITU-R BT.601).
+     *
+     * @param r The red sample.
+     * @param g The green sample.
+     * @param b The blue sample.
+     * @return The luma.
+     */
+    private static double luma(double r, double g, double b) {
+        return 0.299 * r + 0.587 * g + 0.114 * b;
+    }
+
+    /**
+     * Linearizes the given sRGB {@code sample} (between 0 and 255), using the {@link #LINEARIZATION_TABLE}.
+     * Non integer samples are interpolated, and samples out of range are calculated.
+     *
+     * @param sample The sample to be linearized.
+     * @return The linear value (between 0 and 1 for samples in range).
+     */
+    private static double linearizeSample(double sample) {
+        if (!(sample >= 0 && sample < 255)) {
+            return linearize(sample / 255); // Out of range (or the last value, or NaN)
+        }
+        final int index = (int) sample;
+        final double fraction = sample - index;
+        final double lower = LINEARIZATION_TABLE[index];
+        return fraction == 0 ? lower : lower + fraction * (LINEARIZATION_TABLE[index + 1] - lower);
+    }
+
+    /**
+     * Encodes the given linear {@code value} with the sRGB gamma, using the {@link #GAMMA_TABLE}
+     * (values out of range are calculated).
+     *
+     * @param value The linear value.
+     * @return The gamma encoded value.
+     */
+    private static double tabulatedGammaEncoding(double value) {
+        return value >= 0 && value < 1 ? interpolate(GAMMA_TABLE, value) : encodeGamma(value);
+    }
+
+    /**
+     * Calculates the CIE-Lab {@code f(t)} function, using the {@link #LAB_FUNCTION_TABLE}
+     * (values out of range are calculated).
+     *
+     * @param t The value.
+     * @return The result of the function.
+     */
+    private static double tabulatedLabFunction(double t) {
+        return t >= 0 && t < 1 ? interpolate(LAB_FUNCTION_TABLE, t) : labFunction(t);
+    }
+
+    /**
+     * Evaluates the function tabulated in the given {@code table} at the given {@code value},
+     * interpolating linearly between entries.
+     *
+     * @param table The table, having an entry for each of the {@link #TABLE_INTERVALS} between 0 and 1.
+     * @param value The value (between 0, inclusive, and 1, exclusive).
+     * @return The result of the function.
+     */
+    private static double interpolate(double[] table, double value) {
+        final double position = value * TABLE_INTERVALS;
+        final int index = (int) position;
+        final double lower = table[index];
+        return lower + (position - index) * (table[index + 1] - lower);
+    }
+
+    /**
+     * The sRGB linearization function.
+     *
+     * @param value The gamma encoded value (between 0 and 1).
+     * @return The linear value.
+     */
+    private static double linearize(double value) {
+        return value <= 0.04045 ? value / 12.92 : Math.pow((value + 0.055) / 1.055, 2.4);
+    }
+
+    /**
+     * The sRGB gamma encoding function.
+     *
+     * @param value The linear value (between 0 and 1).
+     * @return The gamma encoded value.
+     */
+    private static double encodeGamma(double value) {
+        return value <= 0.00304 ? 12.92 * value : 1.055 * Math.pow(value, 1 / 2.4) - 0.055;
+    }
+
+    /**
+     * The CIE-Lab {@code f(t)} function (i.e a cube root with a linear segment near zero).
+     *
+     * @param t The value (i.e a tristimulus value relative to the referent).
+     * @return The result of the function.
+     */
+    private static double labFunction(double t) {
+        return t > 0.008856 ? Math.cbrt(t) : 7.787037 * t + 4.0 / 29;
+    }
+
+    /**
+     * The inverse of the CIE-Lab {@code f(t)} function.
+     *
+     * @param t The value.
+     * @return The result of the function.
+     */
+    private static double inverseLabFunction(double t) {
+        return t > 0.206893034 ? t * t * t : (t - 4.0 / 29) / 7.787037;
+    }
+
+    /**
+     * Converts a pixel, reading it from a row of samples, and writing the converted one into another row.
+     */
+    @FunctionalInterface
+    private interface PixelConversion {
+
+        /**
+         * Converts the pixel starting at the given {@code sourceIndex} of the {@code source} row,
+         * writing the converted pixel starting at the given {@code destinationIndex} of the {@code destination} row.
+         *
+         * @param source           The row of samples from where the pixel is read.
+         * @param sourceIndex      The index of the first sample of the pixel in the {@code source} row.
+         * @param destination      The row of samples into which the converted pixel is written.
+         * @param destinationIndex The index of the first sample of the pixel in the {@code destination} row.
+         */
+        void convert(double[] source, int sourceIndex, double[] destination, int destinationIndex);
     }
 }
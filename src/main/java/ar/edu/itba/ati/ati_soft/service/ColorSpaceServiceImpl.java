@@ -0,0 +1,60 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.interfaces.ColorSpaceService;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.springframework.stereotype.Service;
+
+/**
+ * Concrete implementation of {@link ColorSpaceService}.
+ */
+@Service
+public class ColorSpaceServiceImpl implements ColorSpaceService {
+
+    @Override
+    public Image rgbToHsv(Image image) {
+        return ColorHelper.rgbToHsv(image);
+    }
+
+    @Override
+    public Image hsvToRgb(Image image) {
+        return ColorHelper.hsvToRgb(image);
+    }
+
+    @Override
+    public Image rgbToYCbCr(Image image) {
+        return ColorHelper.rgbToYCbCr(image);
+    }
+
+    @Override
+    public Image yCbCrToRgb(Image image) {
+        return ColorHelper.yCbCrToRgb(image);
+    }
+
+    @Override
+    public Image rgbToXyz(Image image) {
+        return ColorHelper.rgbToXyz(image);
+    }
+
+    @Override
+    public Image xyzToRgb(Image image) {
+        return ColorHelper.xyzToRgb(image);
+    }
+
+    @Override
+    public Image rgbToCieLab(Image image) {
+        return ColorHelper.rgbToCieLab(image);
+    }
+
+    @Override
+    public Image cieLabToRgb(Image image) {
+        return ColorHelper.cieLabToRGB(image);
+    }
+
+    @Override
+    public Image toLuma(Image image) {
+        if (image.getBands() == 1) {
+            return image.copy(); // Already gray (callers expect a new instance)
+        }
+        return ColorHelper.rgbToLuma(image);
+    }
+}
@@ -0,0 +1,268 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Corner;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Class implementing corner detectors based on the structure tensor (i.e Harris, and Shi-Tomasi).
+ * The tensor is calculated from gradients that are already calculated (so they can be shared with other methods,
+ * like Canny), is stored in flat arrays, and is windowed with a separable Gaussian filter.
+ */
+/* package */ class CornerHelper {
+
+    /**
+     * The min. response of a corner, relative to the max. response in the image (i.e weaker ones are discarded).
+     */
+    private static final double QUALITY_LEVEL = 0.01;
+
+    /**
+     * The amount of pixels at each side of a corner that are marked when drawing it.
+     */
+    private static final int MARKER_RADIUS = 2;
+
+    /**
+     * Creates a {@link CornerMeasure} that calculates the Harris response
+     * (i.e {@code det(M) - k * trace(M) ^ 2}, being {@code M} the structure tensor).
+     *
+     * @param k The Harris sensitivity parameter (usually between 0.04 and 0.06).
+     * @return The {@link CornerMeasure}.
+     * @throws IllegalArgumentException If the sensitivity parameter is not positive.
+     */
+    /* package */
+    static CornerMeasure harris(double k) throws IllegalArgumentException {
+        Assert.isTrue(k > 0, "The sensitivity parameter must be positive");
+        return (xx, yy, xy) -> xx * yy - xy * xy - k * (xx + yy) * (xx + yy);
+    }
+
+    /**
+     * Creates a {@link CornerMeasure} that calculates the Shi-Tomasi response
+     * (i.e the min. eigenvalue of the structure tensor).
+     *
+     * @return The {@link CornerMeasure}.
+     */
+    /* package */
+    static CornerMeasure shiTomasi() {
+        return (xx, yy, xy) -> {
+            final double halfDifference = (xx - yy) / 2;
+            return (xx + yy) / 2 - Math.sqrt(halfDifference * halfDifference + xy * xy);
+        };
+    }
+
+    /**
+     * Finds the corners of an image, given its gradients (using their first band).
+     * The structure tensor of each pixel is windowed with a Gaussian filter, and its response is calculated with
+     * the given {@link CornerMeasure}. Corners are the pixels whose response is the max. in their neighbourhood,
+     * and at least {@link #QUALITY_LEVEL} times the max. response in the image.
+     *
+     * @param gx            The 'x' gradient.
+     * @param gy            The 'y' gradient.
+     * @param invalidBorder The amount of pixels at each side of the gradients that are not valid
+     *                      (e.g the border of the filters used to calculate them), which are not taken into account.
+     * @param windowSigma   The standard deviation of the Gaussian window of the structure tensor.
+     * @param measure       The {@link CornerMeasure} that calculates the response of each pixel.
+     * @param maxCorners    The max. amount of corners to be returned (i.e the strongest ones).
+     * @return The found {@link Corner}s, sorted by response in descending order.
+     * @throws IllegalArgumentException If the gradients don't have the same dimensions, if the window standard
+     *                                  deviation is not positive, or if the max. amount of corners is not positive.
+     */
+    /* package */
+    static List<Corner> findCorners(Image gx, Image gy, int invalidBorder, double windowSigma,
+                                    CornerMeasure measure, int maxCorners) throws IllegalArgumentException {
+        Assert.isTrue(gx.getWidth() == gy.getWidth() && gx.getHeight() == gy.getHeight(),
+                "The gradients must have the same dimensions");
+        Assert.isTrue(windowSigma > 0, "The window standard deviation must be positive");
+        Assert.isTrue(maxCorners > 0, "The max. amount of corners must be positive");
+        final int width = gx.getWidth();
+        final int height = gx.getHeight();
+        Assert.isTrue((long) width * height <= Integer.MAX_VALUE, "The image is too big");
+        final double[] kernel = KernelCache.gaussianWindow(windowSigma).copySeparableFactor();
+        final int margin = invalidBorder + kernel.length / 2;
+        final int suppressionRadius = Math.max(1, (int) Math.round(windowSigma));
+        // Each phase (i.e tensor, windowing of each component, response and suppression) is a step
+        try (ProgressTracker tracker = ProgressTracker.start(6)) {
+            final double[] xx = new double[width * height];
+            final double[] yy = new double[width * height];
+            final double[] xy = new double[width * height];
+            final Image xGradient = gx.band(0);
+            final Image yGradient = gy.band(0);
+            IntStream.range(0, height).parallel().forEach(y -> {
+                final double[] xRow = xGradient.getRow(y, null);
+                final double[] yRow = yGradient.getRow(y, null);
+                for (int x = 0, index = y * width; x < width; x++, index++) {
+                    xx[index] = xRow[x] * xRow[x];
+                    yy[index] = yRow[x] * yRow[x];
+                    xy[index] = xRow[x] * yRow[x];
+                }
+            });
+            tracker.step();
+            final double[] buffer = new double[width * height];
+            blur(xx, buffer, width, height, kernel);
+            tracker.step();
+            blur(yy, buffer, width, height, kernel);
+            tracker.step();
+            blur(xy, buffer, width, height, kernel);
+            tracker.step();
+            // The responses are stored in the buffer, as it is not needed anymore
+            final double[] responses = buffer;
+            IntStream.range(0, width * height).parallel()
+                    .forEach(index -> responses[index] = measure.response(xx[index], yy[index], xy[index]));
+            tracker.step();
+            final double threshold = QUALITY_LEVEL * IntStream.range(margin, height - margin).parallel()
+                    .mapToDouble(y -> IntStream.range(margin, width - margin)
+                            .mapToDouble(x -> responses[y * width + x])
+                            .max()
+                            .orElse(0d))
+                    .max()
+                    .orElse(0d);
+            final List<Corner> corners = IntStream.range(margin, height - margin).parallel()
+                    .mapToObj(y -> {
+                        final List<Corner> rowCorners = new ArrayList<>();
+                        for (int x = margin; x < width - margin; x++) {
+                            final double response = responses[y * width + x];
+                            if (response > 0 && response >= threshold
+                                    && isMax(responses, width, height, x, y, suppressionRadius)) {
+                                rowCorners.add(new Corner(x, y, response));
+                            }
+                        }
+                        return rowCorners;
+                    })
+                    .flatMap(List::stream)
+                    .sorted(Comparator.comparingDouble(Corner::getResponse).reversed())
+                    .limit(maxCorners)
+                    .collect(Collectors.toList());
+            tracker.step();
+            return corners;
+        }
+    }
+
+    /**
+     * Draws the given {@link Corner}s over the given {@link Image} (i.e as red crosses),
+     * into a new RGB {@link Image} (being gray images converted to RGB).
+     *
+     * @param image   The {@link Image} in which the corners were found.
+     * @param corners The {@link Corner}s to be drawn.
+     * @return The new {@link Image}.
+     */
+    /* package */
+    static Image draw(Image image, List<Corner> corners) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int bands = image.getBands();
+        final Image result = Image.empty(width, height, 3);
+        for (int y = 0; y < height; y++) {
+            final double[] row = image.getRow(y, null);
+            final double[] rgbRow = new double[width * 3];
+            for (int x = 0; x < width; x++) {
+                if (bands == 3) {
+                    System.arraycopy(row, x * 3, rgbRow, x * 3, 3);
+                } else {
+                    double squaredSum = 0;
+                    for (int b = 0; b < bands; b++) {
+                        squaredSum += row[x * bands + b] * row[x * bands + b];
+                    }
+                    final double gray = Math.sqrt(squaredSum);
+                    rgbRow[x * 3] = rgbRow[x * 3 + 1] = rgbRow[x * 3 + 2] = gray;
+                }
+            }
+            result.setRow(y, rgbRow);
+        }
+        final Double[] red = {255d, 0d, 0d};
+        for (Corner corner : corners) {
+            for (int d = -MARKER_RADIUS; d <= MARKER_RADIUS; d++) {
+                if (corner.getX() + d >= 0 && corner.getX() + d < width) {
+                    result.setPixel(corner.getX() + d, corner.getY(), red);
+                }
+                if (corner.getY() + d >= 0 && corner.getY() + d < height) {
+                    result.setPixel(corner.getX(), corner.getY() + d, red);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Filters the given {@code values} (i.e a flat image, row by row) with the given one-dimensional {@code kernel},
+     * first by rows and then by columns, storing the result in the same array.
+     * Pixels outside the image take the value of the closest pixel inside it.
+     *
+     * @param values The values to be filtered.
+     * @param buffer An array with the same length as {@code values}, used to store the result of the first pass.
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @param kernel The kernel.
+     */
+    private static void blur(double[] values, double[] buffer, int width, int height, double[] kernel) {
+        final int margin = kernel.length / 2;
+        IntStream.range(0, height).parallel().forEach(y -> {
+            final int rowStart = y * width;
+            for (int x = 0; x < width; x++) {
+                double sum = 0;
+                for (int i = -margin; i <= margin; i++) {
+                    sum += kernel[i + margin] * values[rowStart + Math.min(width - 1, Math.max(0, x + i))];
+                }
+                buffer[rowStart + x] = sum;
+            }
+        });
+        IntStream.range(0, height).parallel().forEach(y -> {
+            final int rowStart = y * width;
+            for (int x = 0; x < width; x++) {
+                double sum = 0;
+                for (int i = -margin; i <= margin; i++) {
+                    sum += kernel[i + margin] * buffer[Math.min(height - 1, Math.max(0, y + i)) * width + x];
+                }
+                values[rowStart + x] = sum;
+            }
+        });
+    }
+
+    /**
+     * Checks whether the response of the given pixel is the max. among the pixels at the given {@code radius}.
+     * In case of ties, only the first pixel (i.e from top to bottom, and from left to right) is the max.
+     *
+     * @param responses The responses (i.e a flat image, row by row).
+     * @param width     The width of the image.
+     * @param height    The height of the image.
+     * @param x         The 'x' coordinate of the pixel.
+     * @param y         The 'y' coordinate of the pixel.
+     * @param radius    The radius of the neighbourhood.
+     * @return {@code true} if the pixel is the max., or {@code false} otherwise.
+     */
+    private static boolean isMax(double[] responses, int width, int height, int x, int y, int radius) {
+        final int index = y * width + x;
+        final double response = responses[index];
+        for (int j = Math.max(0, y - radius); j <= Math.min(height - 1, y + radius); j++) {
+            for (int i = Math.max(0, x - radius); i <= Math.min(width - 1, x + radius); i++) {
+                final int neighbourIndex = j * width + i;
+                final double neighbour = responses[neighbourIndex];
+                if (neighbour > response || neighbour == response && neighbourIndex < index) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Defines behaviour for an object that calculates the corner response of a pixel, given its structure tensor.
+     */
+    @FunctionalInterface
+    /* package */ interface CornerMeasure {
+
+        /**
+         * Calculates the response.
+         *
+         * @param xx The sum of the squared 'x' gradients in the window.
+         * @param yy The sum of the squared 'y' gradients in the window.
+         * @param xy The sum of the products of the 'x' and 'y' gradients in the window.
+         * @return The response.
+         */
+        double response(double xx, double yy, double xy);
+    }
+}
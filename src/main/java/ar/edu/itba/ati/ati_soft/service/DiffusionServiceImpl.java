@@ -55,9 +55,12 @@ public class DiffusionServiceImpl implements DiffusionService {
         if (t == 0) {
             return image.copy(); // Copy image as this is the expected behaviour.
         }
-        for (int i = 0; i < t; i++) {
-            image = ImageManipulationHelper.createApplying(() -> Image.empty(width, height, bands),
-                    diffusionFunction(image, detector, lambda));
+        try (ProgressTracker tracker = ProgressTracker.start(t)) {
+            for (int i = 0; i < t; i++) {
+                image = ImageManipulationHelper.createApplying(() -> Image.empty(width, height, bands),
+                        diffusionFunction(image, detector, lambda));
+                tracker.step();
+            }
         }
         return image; // Note that the returned image is a new instance
     }
@@ -13,6 +13,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -26,10 +27,11 @@ public class HistogramServiceImpl implements HistogramService {
 
     @Override
     public Map<Integer, Histogram> getHistograms(Image image) {
-        return IntStream.range(0, image.getBands())
-                .parallel()
+        // All bands are calculated in a single pass over the raster
+        final Histogram[] histograms = ImageManipulationHelper.getHistograms(image);
+        return IntStream.range(0, histograms.length)
                 .boxed()
-                .collect(Collectors.toMap(b -> b, b -> ImageManipulationHelper.getHistogram(image, b)));
+                .collect(Collectors.toMap(Function.identity(), b -> histograms[b]));
     }
 
     @Override
@@ -52,7 +54,7 @@ public class HistogramServiceImpl implements HistogramService {
 
     @Override
     public Image increaseContrast(Image image) {
-        final StatsContainer[] stats = StatsHelper.getStats(image, ImageManipulationHelper::getHistogram);
+        final StatsContainer[] stats = StatsHelper.getStats(ImageManipulationHelper.getHistograms(image));
         final double minimums[] = Arrays.stream(stats)
                 .mapToDouble(StatsContainer::getMin)
                 .toArray();
@@ -88,31 +90,38 @@ public class HistogramServiceImpl implements HistogramService {
                 })
                 .toArray();
 
-        final List<Function<Double, Double>> f1s = IntStream.range(0, stats.length)
+        final List<DoubleUnaryOperator> f1s = IntStream.range(0, stats.length)
                 .mapToObj(b -> toLinear(minimums[b], minimums[b], r1s[b], s1s[b]))
                 .collect(Collectors.toList());
-        final List<Function<Double, Double>> f2s = IntStream.range(0, stats.length)
+        final List<DoubleUnaryOperator> f2s = IntStream.range(0, stats.length)
                 .mapToObj(b -> toLinear(r1s[b], s1s[b], r2s[b], s2s[b]))
                 .collect(Collectors.toList());
-        final List<Function<Double, Double>> f3s = IntStream.range(0, stats.length)
+        final List<DoubleUnaryOperator> f3s = IntStream.range(0, stats.length)
                 .mapToObj(b -> toLinear(r2s[b], s2s[b], maximums[b], maximums[b]))
                 .collect(Collectors.toList());
 
-        final List<Function<Double, Double>> partedFunctions = IntStream.range(0, stats.length)
-                .mapToObj(b -> parted(f1s.get(b), minimums[b], f2s.get(b), maximums[b], f3s.get(b)))
-                .collect(Collectors.toList());
-        final BiFunction<Integer, Double, Double> newValueFunction = (b, v) -> partedFunctions.get(b).apply(v);
-        return ImageManipulationHelper.createApplying(image, (x, y, b, v) -> newValueFunction.apply(b, v));
+        // The contrast stretching is a point operation, so it is applied through a lookup table
+        // that covers all the categories of the histograms.
+        return PointOperation
+                .perBand(stats.length, b -> parted(f1s.get(b), minimums[b], f2s.get(b), maximums[b], f3s.get(b)))
+                .withDomain((int) Arrays.stream(minimums).min().orElse(0),
+                        (int) Arrays.stream(maximums).max().orElse(0))
+                .apply(image);
     }
 
 
     @Override
     public Image equalize(Image image) {
-        final Map<Integer, Histogram> cumulativeHistograms = getHistograms(image).entrySet()
-                .stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, e -> getCumulativeDistributionHistogram(e.getValue())));
-        return ImageManipulationHelper.createApplying(image,
-                (x, y, b, v) -> (double) cumulativeHistograms.get(b).getCount((v.intValue())));
+        final Histogram[] cumulativeHistograms = Arrays.stream(ImageManipulationHelper.getHistograms(image))
+                .map(this::getCumulativeDistributionHistogram)
+                .toArray(Histogram[]::new);
+        final int first = Arrays.stream(cumulativeHistograms).mapToInt(Histogram::minCategory).min().orElse(0);
+        final int last = Arrays.stream(cumulativeHistograms).mapToInt(Histogram::maxCategory).max().orElse(0);
+        return PointOperation
+                .perBand(cumulativeHistograms.length,
+                        b -> v -> (double) cumulativeHistograms[b].getCount((int) v))
+                .withDomain(first, last)
+                .apply(image);
     }
 
 
@@ -141,33 +150,33 @@ public class HistogramServiceImpl implements HistogramService {
      *
      * @return A {@link QuadFunction} that takes two points (in x1, y2, x2, y2 format), and builds a linear function.
      */
-    private static Function<Double, Double> toLinear(double x1, double y1, double x2, double y2) {
+    private static DoubleUnaryOperator toLinear(double x1, double y1, double x2, double y2) {
         final double m = (y2 - y1) / (x2 - x1);
         final double b = y1 - m * x1;
         return x -> m * x + b;
     }
 
     /**
-     * Builds a parted {@link Function} from the given {@link Function}s.
+     * Builds a parted {@link DoubleUnaryOperator} from the given {@link DoubleUnaryOperator}s.
      *
      * @param f1         The function that takes place before the lower limit.
      * @param lowerLimit The lower limit.
      * @param f2         The function that takes place between lower and upper limits.
      * @param upperLimit The upper limit.
      * @param f3         The function that takes place after the upper limit.
-     * @return The parted {@link Function}.
+     * @return The parted {@link DoubleUnaryOperator}.
      */
-    private static Function<Double, Double> parted(Function<Double, Double> f1, double lowerLimit,
-                                                   Function<Double, Double> f2, double upperLimit,
-                                                   Function<Double, Double> f3) {
+    private static DoubleUnaryOperator parted(DoubleUnaryOperator f1, double lowerLimit,
+                                              DoubleUnaryOperator f2, double upperLimit,
+                                              DoubleUnaryOperator f3) {
         return v -> {
             if (v <= lowerLimit) {
-                return f1.apply(v);
+                return f1.applyAsDouble(v);
             }
             if (v >= upperLimit) {
-                return f3.apply(v);
+                return f3.applyAsDouble(v);
             }
-            return f2.apply(v);
+            return f2.applyAsDouble(v);
         };
     }
 
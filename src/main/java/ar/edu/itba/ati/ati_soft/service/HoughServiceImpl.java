@@ -32,26 +32,40 @@ public class HoughServiceImpl implements HoughService {
         final Set<Shape> shapes = new HashSet<>();
         final int d = Math.max(image.getWidth(), image.getHeight());
         final double squaredRootOfTwo = Math.sqrt(2); // Avoid recalculating this
-        for (double theta = -90d; theta <= 90d; theta += thetaStep) {
-            for (double ro = -d * squaredRootOfTwo; ro <= d * squaredRootOfTwo; ro += squaredRootOfTwo) {
-                shapes.add(new StraightLine(theta, ro, epsilon));
+        // Building the shapes is one step, and finding them is the other one
+        try (ProgressTracker tracker = ProgressTracker.start(2)) {
+            try (ProgressTracker shapesTracker = ProgressTracker.start((long) (180d / thetaStep) + 1)) {
+                for (double theta = -90d; theta <= 90d; theta += thetaStep) {
+                    for (double ro = -d * squaredRootOfTwo; ro <= d * squaredRootOfTwo; ro += squaredRootOfTwo) {
+                        shapes.add(new StraightLine(theta, ro, epsilon));
+                    }
+                    shapesTracker.step();
+                }
             }
+            tracker.step();
+            return findShape(image, sigma, () -> shapes, maxPercentage);
         }
-        return findShape(image, sigma, () -> shapes, maxPercentage);
     }
 
     @Override
     public Image findCircles(Image image, double sigma, double epsilon, double maxPercentage) {
         final Set<Shape> shapes = new HashSet<>();
         final int d = Math.max(image.getWidth(), image.getHeight());
-        for (int radius = 1; radius <= d / 2; radius += 1) {
-            for (int x = radius; x <= image.getWidth() - radius; x += 1) {
-                for (int y = radius; y <= image.getHeight() - radius; y += 1) {
-                    shapes.add(new Circle(x, y, radius, epsilon));
+        // Building the shapes is one step, and finding them is the other one
+        try (ProgressTracker tracker = ProgressTracker.start(2)) {
+            try (ProgressTracker shapesTracker = ProgressTracker.start(d / 2)) {
+                for (int radius = 1; radius <= d / 2; radius += 1) {
+                    for (int x = radius; x <= image.getWidth() - radius; x += 1) {
+                        for (int y = radius; y <= image.getHeight() - radius; y += 1) {
+                            shapes.add(new Circle(x, y, radius, epsilon));
+                        }
+                    }
+                    shapesTracker.step();
                 }
             }
+            tracker.step();
+            return findShape(image, sigma, () -> shapes, maxPercentage);
         }
-        return findShape(image, sigma, () -> shapes, maxPercentage);
     }
 
     /**
@@ -68,49 +82,57 @@ public class HoughServiceImpl implements HoughService {
      */
     private <T extends Shape> Image findShape(Image image, double sigma,
                                               Supplier<Set<T>> shapeSetSupplier, double maxPercentage) {
-        // Canny already applies a threshold method
-        final Image bordersImage = slidingWindowService.cannyDetection(image, sigma);
-        final int width = bordersImage.getWidth();
-        final int height = bordersImage.getHeight();
-
-        final Set<T> shapes = shapeSetSupplier.get();
-        final Map<T, Integer> shapesAccumulator = shapes.stream()
-                .collect(Collectors.toMap(Function.identity(), shape -> 0));
-
-        int max = 0; // Used in order to select only those that are greater than a given value
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                if (bordersImage.getSample(x, y, 0) == 255d) {
-                    for (T shape : shapes) {
-                        if (shape.belongs(x, y)) {
-                            // Store the count for this shape
-                            final int newCount = 1 + Optional.ofNullable(shapesAccumulator.get(shape))
-                                    .orElseThrow(() -> new RuntimeException("This should not happen"));
-                            shapesAccumulator.put(shape, newCount);
-                            max = newCount > max ? newCount : max;
+        // Detecting borders, accumulating and drawing the shapes are the three steps
+        try (ProgressTracker tracker = ProgressTracker.start(3)) {
+            // Canny already applies a threshold method
+            final Image bordersImage = slidingWindowService.cannyDetection(image, sigma);
+            tracker.step();
+            final int width = bordersImage.getWidth();
+            final int height = bordersImage.getHeight();
+
+            final Set<T> shapes = shapeSetSupplier.get();
+            final Map<T, Integer> shapesAccumulator = shapes.stream()
+                    .collect(Collectors.toMap(Function.identity(), shape -> 0));
+
+            int max = 0; // Used in order to select only those that are greater than a given value
+            try (ProgressTracker accumulationTracker = ProgressTracker.start(width)) {
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < height; y++) {
+                        if (bordersImage.getSample(x, y, 0) == 255d) {
+                            for (T shape : shapes) {
+                                if (shape.belongs(x, y)) {
+                                    // Store the count for this shape
+                                    final int newCount = 1 + Optional.ofNullable(shapesAccumulator.get(shape))
+                                            .orElseThrow(() -> new RuntimeException("This should not happen"));
+                                    shapesAccumulator.put(shape, newCount);
+                                    max = newCount > max ? newCount : max;
+                                }
+                            }
                         }
                     }
+                    accumulationTracker.step();
                 }
             }
+            tracker.step();
+            final double threshold = maxPercentage * max;
+            final Set<Shape> allowedShapes = shapes.stream()
+                    .filter(shape -> Optional.ofNullable(shapesAccumulator.get(shape))
+                            .orElseThrow(() -> new RuntimeException("This should not happen")) >= threshold)
+                    .collect(Collectors.toSet());
+
+            return ImageManipulationHelper.createApplying(() -> Image.empty(width, height, 3),
+                    (x, y) -> {
+                        if (allowedShapes.stream().anyMatch(shape -> shape.belongs(x, y))) {
+                            return new Double[]{0d, 255d, 0d};
+                        }
+                        final Double[] pixel = image.getPixel(x, y);
+                        if (image.getBands() == 3) {
+                            return pixel;
+                        }
+                        final double gray = Math.sqrt(Arrays.stream(pixel).mapToDouble(v -> v * v).sum());
+                        return new Double[]{gray, gray, gray};
+                    });
         }
-        final double threshold = maxPercentage * max;
-        final Set<Shape> allowedShapes = shapes.stream()
-                .filter(shape -> Optional.ofNullable(shapesAccumulator.get(shape))
-                        .orElseThrow(() -> new RuntimeException("This should not happen")) >= threshold)
-                .collect(Collectors.toSet());
-
-        return ImageManipulationHelper.createApplying(() -> Image.empty(width, height, 3),
-                (x, y) -> {
-                    if (allowedShapes.stream().anyMatch(shape -> shape.belongs(x, y))) {
-                        return new Double[]{0d, 255d, 0d};
-                    }
-                    final Double[] pixel = image.getPixel(x, y);
-                    if (image.getBands() == 3) {
-                        return pixel;
-                    }
-                    final double gray = Math.sqrt(Arrays.stream(pixel).mapToDouble(v -> v * v).sum());
-                    return new Double[]{gray, gray, gray};
-                });
     }
 
 
@@ -2,10 +2,13 @@ package ar.edu.itba.ati.ati_soft.service;
 
 import ar.edu.itba.ati.ati_soft.interfaces.ImageIOContainer;
 import ar.edu.itba.ati.ati_soft.interfaces.ImageIOService;
+import ar.edu.itba.ati.ati_soft.interfaces.ImageRowReader;
+import ar.edu.itba.ati.ati_soft.interfaces.ImageRowWriter;
 import ar.edu.itba.ati.ati_soft.interfaces.UnsupportedImageFileException;
 import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SampleLayout;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
 import ar.edu.itba.ati.ati_soft.utils.FileHelper;
-import ar.edu.itba.ati.ati_soft.utils.TriFunction;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -16,7 +19,6 @@ import java.awt.image.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.function.IntSupplier;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -26,6 +28,11 @@ import java.util.stream.Stream;
 @Service
 public class ImageIOServiceImpl implements ImageIOService, InitializingBean {
 
+    /**
+     * The format of PGM and PPM files (which are read and written without using ImageIO).
+     */
+    private static final String PNM_FORMAT = "pnm";
+
     /**
      * {@link Map} containing the format for each supported extension.
      */
@@ -50,8 +57,8 @@ public class ImageIOServiceImpl implements ImageIOService, InitializingBean {
         this.supportedExtensions.put("ppm", "Portable pixmap");
         this.supportedExtensions.put("pgm", "Portable graymap");
 
-        this.extensionFormats.put("pgm", "pnm");
-        this.extensionFormats.put("ppm", "pnm");
+        this.extensionFormats.put("pgm", PNM_FORMAT);
+        this.extensionFormats.put("ppm", PNM_FORMAT);
     }
 
     @Override
@@ -76,6 +83,50 @@ public class ImageIOServiceImpl implements ImageIOService, InitializingBean {
         ImageIO.write(image, getFormat(extension), file);
     }
 
+    @Override
+    public Image readImage(File imageFile, SampleType sampleType, SampleLayout layout)
+            throws IOException, UnsupportedImageFileException {
+        Assert.notNull(imageFile, "The image file must not be null");
+        Assert.notNull(sampleType, "The sample type must not be null");
+        Assert.notNull(layout, "The layout must not be null");
+        final String extension = FileHelper.getExtension(imageFile);
+        validateExtension(extension);
+        if (PNM_FORMAT.equals(getFormat(extension))) {
+            return PnmHelper.read(imageFile.toPath(), sampleType, layout);
+        }
+        final Image image = fromImageIO(openImage(imageFile)).getImage();
+        final Image converted = image.getSampleType() == sampleType ? image : image.toSampleType(sampleType);
+        return converted.getLayout() == layout ? converted : converted.toLayout(layout);
+    }
+
+    @Override
+    public void writeImage(Image image, File file) throws IOException, UnsupportedImageFileException {
+        Assert.notNull(image, "The image must not be null");
+        Assert.notNull(file, "The image file must not be null");
+        final String extension = FileHelper.getExtension(file);
+        validateExtension(extension);
+        if (PNM_FORMAT.equals(getFormat(extension))) {
+            PnmHelper.write(image, file.toPath());
+            return;
+        }
+        saveImage(toImageIO(ImageIOContainer.buildForSyntheticImage(image)), file);
+    }
+
+    @Override
+    public ImageRowReader openRowReader(File imageFile) throws IOException, UnsupportedImageFileException {
+        Assert.notNull(imageFile, "The image file must not be null");
+        validateRowStreaming(FileHelper.getExtension(imageFile));
+        return PnmHelper.openReader(imageFile.toPath());
+    }
+
+    @Override
+    public ImageRowWriter openRowWriter(File file, int width, int height, int bands)
+            throws IOException, UnsupportedImageFileException {
+        Assert.notNull(file, "The image file must not be null");
+        validateRowStreaming(FileHelper.getExtension(file));
+        return PnmHelper.openWriter(file.toPath(), width, height, bands);
+    }
+
     @Override
     public ImageIOContainer fromImageIO(BufferedImage image) {
         final Image translated = createImage(image);
@@ -110,6 +161,21 @@ public class ImageIOServiceImpl implements ImageIOService, InitializingBean {
         }
     }
 
+    /**
+     * Validates that files with the given {@code extension} can be read and written row by row
+     * (i.e they are PNM files).
+     *
+     * @param extension The {@code extension} to be validated.
+     * @throws UnsupportedImageFileException If the extension is not supported, or can't be streamed by rows.
+     */
+    private void validateRowStreaming(String extension) throws UnsupportedImageFileException {
+        validateExtension(extension);
+        if (!PNM_FORMAT.equals(getFormat(extension))) {
+            throw new UnsupportedImageFileException("Images with extension " + extension
+                    + " can't be read or written row by row");
+        }
+    }
+
     /**
      * Gets the format for the given {@code extension}.
      *
@@ -123,20 +189,34 @@ public class ImageIOServiceImpl implements ImageIOService, InitializingBean {
 
     /**
      * Creates an {@link Image} from the given {@link BufferedImage}.
+     * Rows are converted in parallel, accessing the {@link DataBuffer} arrays directly
+     * when the raster is a byte or unsigned short interleaved one (see {@link #getComponentData(Raster)}),
+     * or through {@link Raster#getPixels(int, int, int, int, double[])} otherwise.
      *
      * @param image The {@link BufferedImage} from where data will be taken.
      * @return The {@link Image} built from the given {@link BufferedImage}.
      */
     private static Image createImage(BufferedImage image) {
         final Raster raster = image.getRaster();
-        final Double[][][] pixels = IntStream.range(0, image.getWidth())
-                .mapToObj(x -> IntStream.range(0, raster.getHeight())
-                        .mapToObj(y -> IntStream.range(0, raster.getNumBands())
-                                .mapToObj(band -> (double) raster.getSample(x, y, band))
-                                .toArray(Double[]::new))
-                        .toArray(Double[][]::new))
-                .toArray(Double[][][]::new);
-        return Image.fromArray(pixels);
+        final int width = raster.getWidth();
+        final int bands = raster.getNumBands();
+        final Image result = Image.trash(width, raster.getHeight(), bands);
+        final ComponentData componentData = getComponentData(raster);
+        IntStream.range(0, raster.getHeight()).parallel().forEach(y -> {
+            final double[] row = new double[width * bands];
+            if (componentData == null) {
+                raster.getPixels(raster.getMinX(), raster.getMinY() + y, width, 1, row);
+            } else {
+                for (int b = 0; b < bands; b++) {
+                    for (int x = 0, index = componentData.index(x, y, b); x < width;
+                         x++, index += componentData.pixelStride) {
+                        row[x * bands + b] = componentData.get(b, index);
+                    }
+                }
+            }
+            result.setRow(y, row);
+        });
+        return result;
     }
 
     /**
@@ -155,41 +235,153 @@ public class ImageIOServiceImpl implements ImageIOService, InitializingBean {
 
     /**
      * Builds a {@link WritableRaster} from the given {@link Image}, using the given {@link SampleModel}.
+     * Samples are truncated to integers, and then to bytes.
+     * Rows are converted in parallel, accessing the {@link DataBuffer} arrays directly
+     * when the raster is a byte or unsigned short interleaved one (see {@link #getComponentData(Raster)}),
+     * or through {@link WritableRaster#setSamples(int, int, int, int, int, int[])} otherwise.
      *
      * @param image       The {@link Image} from where data will be taken..
      * @param sampleModel The {@link SampleModel} used to create the new {@link WritableRaster}.
      * @return The created {@link WritableRaster}.
      */
     private static WritableRaster buildRaster(Image image, SampleModel sampleModel) {
-        return buildRaster(image::getWidth, image::getHeight, image::getBands, image::getSample, sampleModel);
+        final int width = image.getWidth();
+        final int bands = image.getBands();
+        final WritableRaster raster = Raster.createWritableRaster(sampleModel, null);
+        final ComponentData componentData = getComponentData(raster);
+        IntStream.range(0, image.getHeight()).parallel().forEach(y -> {
+            final double[] row = image.getRow(y, null);
+            if (componentData == null) {
+                final int[] samples = new int[width];
+                for (int b = 0; b < bands; b++) {
+                    for (int x = 0; x < width; x++) {
+                        samples[x] = (byte) row[x * bands + b];
+                    }
+                    raster.setSamples(0, y, width, 1, b, samples);
+                }
+            } else {
+                for (int b = 0; b < bands; b++) {
+                    for (int x = 0, index = componentData.index(x, y, b); x < width;
+                         x++, index += componentData.pixelStride) {
+                        componentData.set(b, index, (byte) row[x * bands + b]);
+                    }
+                }
+            }
+        });
+        return raster;
     }
 
     /**
-     * Builds a {@link WritableRaster}, using the given suppliers and {@link SampleModel}.
+     * Gets the {@link ComponentData} of the given {@link Raster}, if its samples can be accessed directly
+     * (i.e it uses a {@link ComponentSampleModel}, like {@link PixelInterleavedSampleModel},
+     * a {@link DataBufferByte} or {@link DataBufferUShort}, and it is not translated).
      *
-     * @param widthSupplier  An {@link IntSupplier} that provides the width.
-     * @param heightSupplier An {@link IntSupplier} that provides the height.
-     * @param bandsSupplier  An {@link IntSupplier} that provides the amount of bands.
-     * @param sampleSupplier A {@link TriFunction} that takes the coordinate (x, y, band) and returns the sample for it.
-     * @param sampleModel    The {@link SampleModel} used to create the new {@link WritableRaster}.
-     * @return The created {@link WritableRaster}.
+     * @param raster The {@link Raster}.
+     * @return The {@link ComponentData}, or {@code null} if its samples can't be accessed directly.
      */
-    private static WritableRaster buildRaster(IntSupplier widthSupplier, IntSupplier heightSupplier,
-                                              IntSupplier bandsSupplier,
-                                              TriFunction<Integer, Integer, Integer, Double> sampleSupplier,
-                                              SampleModel sampleModel) {
-        final int width = widthSupplier.getAsInt();
-        final int height = heightSupplier.getAsInt();
-        final int bands = bandsSupplier.getAsInt();
-        final WritableRaster raster = Raster.createWritableRaster(sampleModel, null);
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                for (int b = 0; b < bands; b++) {
-                    final double value = sampleSupplier.apply(x, y, b);
-                    raster.setSample(x, y, b, (byte) value);
-                }
+    private static ComponentData getComponentData(Raster raster) {
+        final SampleModel sampleModel = raster.getSampleModel();
+        final DataBuffer dataBuffer = raster.getDataBuffer();
+        if (!(sampleModel instanceof ComponentSampleModel)
+                || !(dataBuffer instanceof DataBufferByte || dataBuffer instanceof DataBufferUShort)
+                || raster.getSampleModelTranslateX() != raster.getMinX()
+                || raster.getSampleModelTranslateY() != raster.getMinY()
+                || raster.getMinX() != 0 || raster.getMinY() != 0) {
+            return null;
+        }
+        return new ComponentData((ComponentSampleModel) sampleModel, dataBuffer);
+    }
+
+
+    // ================================================================================================================
+    // Helper classes
+    // ================================================================================================================
+
+    /**
+     * Provides direct access to the arrays of a {@link DataBuffer} described by a {@link ComponentSampleModel}.
+     * Samples are read as unsigned values (the same as {@link Raster#getSample(int, int, int)} does).
+     */
+    private static final class ComponentData {
+
+        /**
+         * The data arrays of each band (either {@code byte[]} or {@code short[]}).
+         */
+        private final Object[] bankData;
+
+        /**
+         * The offset of the first sample of each band (i.e the bank offset plus the band offset).
+         */
+        private final int[] offsets;
+
+        /**
+         * The amount of elements between two consecutive rows.
+         */
+        private final int scanlineStride;
+
+        /**
+         * The amount of elements between two consecutive pixels of the same row.
+         */
+        private final int pixelStride;
+
+        /**
+         * Constructor.
+         *
+         * @param sampleModel The {@link ComponentSampleModel} that describes the {@code dataBuffer}.
+         * @param dataBuffer  The {@link DataBufferByte} or {@link DataBufferUShort}.
+         */
+        private ComponentData(ComponentSampleModel sampleModel, DataBuffer dataBuffer) {
+            final int[] bankIndices = sampleModel.getBankIndices();
+            final int[] bandOffsets = sampleModel.getBandOffsets();
+            this.bankData = new Object[bankIndices.length];
+            this.offsets = new int[bankIndices.length];
+            for (int b = 0; b < bankIndices.length; b++) {
+                this.bankData[b] = dataBuffer instanceof DataBufferByte ?
+                        ((DataBufferByte) dataBuffer).getData(bankIndices[b]) :
+                        ((DataBufferUShort) dataBuffer).getData(bankIndices[b]);
+                this.offsets[b] = dataBuffer.getOffsets()[bankIndices[b]] + bandOffsets[b];
+            }
+            this.scanlineStride = sampleModel.getScanlineStride();
+            this.pixelStride = sampleModel.getPixelStride();
+        }
+
+        /**
+         * Calculates the index, in the data array of the given {@code band}, of the sample in the given position.
+         *
+         * @param x    The 'x' coordinate.
+         * @param y    The 'y' coordinate.
+         * @param band The band.
+         * @return The index.
+         */
+        private int index(int x, int y, int band) {
+            return offsets[band] + y * scanlineStride + x * pixelStride;
+        }
+
+        /**
+         * Gets the sample in the given {@code index} of the data array of the given {@code band}.
+         *
+         * @param band  The band.
+         * @param index The index (see {@link #index(int, int, int)}).
+         * @return The sample, as an unsigned value.
+         */
+        private int get(int band, int index) {
+            final Object data = bankData[band];
+            return data instanceof byte[] ? ((byte[]) data)[index] & 0xFF : ((short[]) data)[index] & 0xFFFF;
+        }
+
+        /**
+         * Sets the given {@code sample} in the given {@code index} of the data array of the given {@code band}.
+         *
+         * @param band   The band.
+         * @param index  The index (see {@link #index(int, int, int)}).
+         * @param sample The sample (truncated to the data type, like {@link WritableRaster#setSample} does).
+         */
+        private void set(int band, int index, int sample) {
+            final Object data = bankData[band];
+            if (data instanceof byte[]) {
+                ((byte[]) data)[index] = (byte) sample;
+            } else {
+                ((short[]) data)[index] = (short) sample;
             }
         }
-        return raster;
     }
 }
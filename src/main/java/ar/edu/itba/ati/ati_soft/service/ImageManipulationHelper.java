@@ -2,11 +2,14 @@ package ar.edu.itba.ati.ati_soft.service;
 
 import ar.edu.itba.ati.ati_soft.models.Histogram;
 import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.Region;
 import ar.edu.itba.ati.ati_soft.utils.QuadFunction;
 import ar.edu.itba.ati.ati_soft.utils.TriFunction;
 import org.springframework.util.Assert;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -28,12 +31,74 @@ import java.util.stream.IntStream;
      */
     /* package */
     static Image normalize(Image original) {
+        return normalization(original).apply(original);
+    }
+
+    /**
+     * Creates the {@link PointOperation} that normalizes the given {@link Image}
+     * to have pixel values between 0.0 and 255.0.
+     * The returned operation can be composed with other point operations before being applied.
+     *
+     * @param original The {@link Image} to be normalized (used to calculate min. and max. values).
+     * @return The normalization {@link PointOperation}.
+     */
+    /* package */
+    static PointOperation normalization(Image original) {
         final MinAndMaxContainer container = new MinAndMaxContainer(original).initialize();
-        final Double[] minimums = container.getMinimums();
-        final Double[] maximums = container.getMaximums();
-        final double[] factors = IntStream.range(0, original.getBands())
+        final double[] minimums = Arrays.stream(container.getMinimums()).mapToDouble(Double::doubleValue).toArray();
+        final double[] maximums = Arrays.stream(container.getMaximums()).mapToDouble(Double::doubleValue).toArray();
+        return normalization(minimums, maximums);
+    }
+
+    /**
+     * Creates the {@link PointOperation} that normalizes samples to have values between 0.0 and 255.0,
+     * using the given min. and max. values of each band.
+     *
+     * @param minimums The min. value of each band.
+     * @param maximums The max. value of each band.
+     * @return The normalization {@link PointOperation}.
+     */
+    /* package */
+    static PointOperation normalization(double[] minimums, double[] maximums) {
+        Assert.isTrue(minimums.length == maximums.length, "Both minimums and maximums must have the same length");
+        final double[] factors = IntStream.range(0, minimums.length)
                 .mapToDouble(i -> 255 / (maximums[i] - minimums[i])).toArray();
-        return createApplying(original, (x, y, i, value) -> (value - minimums[i]) * factors[i]);
+        return PointOperation.perBand(minimums.length, b -> value -> (value - minimums[b]) * factors[b]);
+    }
+
+    /**
+     * Creates the {@link PointOperation} that applies the dynamic range compression transformation,
+     * using the given max. value of each band.
+     *
+     * @param maximums The max. value of each band.
+     * @return The dynamic range compression {@link PointOperation}.
+     */
+    /* package */
+    static PointOperation dynamicRangeCompression(double[] maximums) {
+        final double[] constants = Arrays.stream(maximums).map(max -> 255.0 / Math.log10(1 + max)).toArray();
+        return PointOperation.perBand(maximums.length, b -> v -> constants[b] * Math.log10(1 + v));
+    }
+
+    /**
+     * Creates the {@link PointOperation} that applies the gamma power function.
+     *
+     * @param gamma The gamma value.
+     * @return The gamma power {@link PointOperation}.
+     */
+    /* package */
+    static PointOperation gammaPower(double gamma) {
+        final double constant = Math.pow(0xFF, 1 - gamma);
+        return PointOperation.of(v -> constant * Math.pow(v, gamma));
+    }
+
+    /**
+     * Creates the {@link PointOperation} that calculates the negative of a normalized sample.
+     *
+     * @return The negative {@link PointOperation}.
+     */
+    /* package */
+    static PointOperation negation() {
+        return PointOperation.of(value -> 0xFF - value);
     }
 
 
@@ -47,7 +112,18 @@ import java.util.stream.IntStream;
      */
     /* package */
     static Image threshold(Image image, int value) {
-        return createApplying(image, (x, y, b, v) -> (double) (v <= value ? 0x0 : 0xFF));
+        return thresholding(value).apply(image);
+    }
+
+    /**
+     * Creates the {@link PointOperation} that applies a threshold, using the given threshold {@code value}.
+     *
+     * @param value The threshold value.
+     * @return The threshold {@link PointOperation}.
+     */
+    /* package */
+    static PointOperation thresholding(int value) {
+        return PointOperation.of(v -> v <= value ? 0x0 : 0xFF);
     }
 
     /**
@@ -56,14 +132,100 @@ import java.util.stream.IntStream;
      * @param image The {@link Image} to be converted.
      * @return A new instance of {@link Image}, which is the converted {@link Image} of the given one.
      * @implNote This method uses the euclidean distance of each pixel
-     * (being the space the one formed by all the image's bands).
+     * (being the space the one formed by all the image's bands), which is calculated row by row
+     * (see {@link LazyImageExpression#toGray()}). The luma of RGB images can be calculated with
+     * {@link ar.edu.itba.ati.ati_soft.interfaces.ColorSpaceService#toLuma(Image)} instead,
+     * but the range of gray values would change (e.g for thresholds relative to it).
      */
     /* package */
     static Image toGray(Image image) {
         if (image.getBands() == 1) {
             return image.copy(); // Called of the method expects a new instance
         }
-        return createApplying(image, (x, y, b, v) -> getEuclideanDistance(image.getPixel(x, y)));
+        return LazyImageExpression.of(image).toGray().materialize();
+    }
+
+    /**
+     * Creates a downscaled version of the given {@link Image}, averaging blocks of {@code factor} x {@code factor}
+     * pixels (i.e each dimension is divided by the {@code factor}, being at least one).
+     *
+     * @param image  The {@link Image} to be downscaled.
+     * @param factor The amount of pixels of the image, in each direction, that are averaged into one pixel.
+     * @return The downscaled {@link Image}.
+     */
+    /* package */
+    static Image downscale(Image image, int factor) {
+        Assert.notNull(image, "The image must not be null");
+        Assert.isTrue(factor > 0, "The factor must be positive");
+        final int bands = image.getBands();
+        final int width = Math.max(1, image.getWidth() / factor);
+        final int height = Math.max(1, image.getHeight() / factor);
+        // Blocks are only smaller than the factor if the image is smaller than it (remaining pixels are dropped)
+        final int blockWidth = Math.min(factor, image.getWidth());
+        final int blockHeight = Math.min(factor, image.getHeight());
+        final int tileRowLength = width * blockWidth * bands;
+        final double blockSize = blockWidth * blockHeight;
+        final Image downscaled = image.createCompatible(width, height, bands);
+        try (ProgressTracker tracker = ProgressTracker.start(height)) {
+            IntStream.range(0, height).parallel().forEach(y -> {
+                final double[] tile = image.getTile(0, y * blockHeight, width * blockWidth, blockHeight, null);
+                final double[] row = new double[width * bands];
+                for (int tileY = 0; tileY < blockHeight; tileY++) {
+                    for (int tileX = 0; tileX < width * blockWidth; tileX++) {
+                        final int position = tileY * tileRowLength + tileX * bands;
+                        final int rowPosition = (tileX / blockWidth) * bands;
+                        for (int b = 0; b < bands; b++) {
+                            row[rowPosition + b] += tile[position + b];
+                        }
+                    }
+                }
+                for (int i = 0; i < row.length; i++) {
+                    row[i] /= blockSize;
+                }
+                downscaled.setRow(y, row);
+                tracker.step();
+            });
+        }
+        return downscaled;
+    }
+
+    /**
+     * Applies the given {@code operation} only to the given {@link Region} of the given {@link Image}.
+     * The operation is applied to a view of the region (see {@link Image#view(int, int, int, int)}),
+     * extended by the given {@code margin} (clipped to the image), so operations that use the neighbourhood
+     * of each pixel (e.g filters) produce the same results inside the region as if applied to the whole image,
+     * as long as the neighbourhood is not bigger than the margin.
+     *
+     * @param image     The {@link Image} to be processed.
+     * @param region    The {@link Region} to which the operation is applied.
+     * @param margin    The amount of pixels around the region that are used as context by the operation.
+     * @param operation The operation to be applied, which must keep the dimensions of the image.
+     * @return A new {@link Image} with the result of the operation inside the region,
+     * and the samples of the given {@code image} outside it.
+     * @throws IllegalArgumentException If the region is not inside the image,
+     *                                  or the operation does not keep the dimensions of the image.
+     */
+    /* package */
+    static Image applyToRegion(Image image, Region region, int margin, Function<Image, Image> operation)
+            throws IllegalArgumentException {
+        Assert.notNull(image, "The image must not be null");
+        Assert.notNull(region, "The region must not be null");
+        Assert.notNull(operation, "The operation must not be null");
+        final Region context = region.expand(margin, image);
+        final Image processed = operation.apply(context.viewOf(image));
+        Assert.isTrue(processed.getWidth() == context.getWidth() && processed.getHeight() == context.getHeight()
+                        && processed.getBands() == image.getBands(),
+                "The operation must keep the dimensions of the image to be applied to a region");
+        final Image result = image.toSampleType(processed.getSampleType());
+        // Only the region is taken from the processed image (the margin is just context)
+        final Image source = processed.view(region.getX() - context.getX(), region.getY() - context.getY(),
+                region.getWidth(), region.getHeight());
+        final Image target = region.viewOf(result);
+        final double[] row = new double[region.getWidth() * image.getBands()];
+        for (int y = 0; y < region.getHeight(); y++) {
+            target.setRow(y, source.getRow(y, row));
+        }
+        return result;
     }
 
     /**
@@ -164,11 +326,14 @@ import java.util.stream.IntStream;
      */
     /* package */
     static void populate(Image canvas, TriFunction<Integer, Integer, Integer, Double> pixelSetter) {
-        for (int x = 0; x < canvas.getWidth(); x++) {
-            for (int y = 0; y < canvas.getHeight(); y++) {
-                for (int b = 0; b < canvas.getBands(); b++) {
-                    canvas.setSample(x, y, b, pixelSetter.apply(x, y, b));
+        try (ProgressTracker tracker = ProgressTracker.start(canvas.getWidth())) {
+            for (int x = 0; x < canvas.getWidth(); x++) {
+                for (int y = 0; y < canvas.getHeight(); y++) {
+                    for (int b = 0; b < canvas.getBands(); b++) {
+                        canvas.setSample(x, y, b, pixelSetter.apply(x, y, b));
+                    }
                 }
+                tracker.step();
             }
         }
     }
@@ -188,11 +353,14 @@ import java.util.stream.IntStream;
     /* package */
     static void populate(Image canvas, BiFunction<Integer, Integer, Double[]> pixelSetter)
             throws IllegalArgumentException {
-        for (int x = 0; x < canvas.getWidth(); x++) {
-            for (int y = 0; y < canvas.getHeight(); y++) {
-                for (int b = 0; b < canvas.getBands(); b++) {
-                    canvas.setPixel(x, y, pixelSetter.apply(x, y));
+        try (ProgressTracker tracker = ProgressTracker.start(canvas.getWidth())) {
+            for (int x = 0; x < canvas.getWidth(); x++) {
+                for (int y = 0; y < canvas.getHeight(); y++) {
+                    for (int b = 0; b < canvas.getBands(); b++) {
+                        canvas.setPixel(x, y, pixelSetter.apply(x, y));
+                    }
                 }
+                tracker.step();
             }
         }
     }
@@ -206,30 +374,57 @@ import java.util.stream.IntStream;
      */
     /* package */
     static Histogram getHistogram(Image image, int band) {
-        final Map<Integer, Long> values = IntStream.range(0, image.getWidth())
-                .parallel()
-                .mapToObj(x -> IntStream.range(0, image.getHeight())
-                        .parallel()
-                        .mapToObj(y -> image.getSample(x, y, band)))
-                .flatMap(Function.identity())
-                .map(Double::intValue)
-                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
-        return new Histogram(values);
+        Assert.isTrue(band >= 0 && band < image.getBands(), "Usage a band out of range.");
+        return computeHistograms(image, band, band + 1)[0];
     }
 
     /**
-     * Calculates the euclidean distance of the given {@code pixel}.
+     * Calculates the {@link Histogram}s of all the bands of the given {@link Image},
+     * performing a single pass over the raster.
      *
-     * @param pixel The pixel whose euclidean distance will be calculated.
-     * @return The euclidean distance of the given {@code pixel}.
+     * @param image The {@link Image} whose {@link Histogram}s will be calculated.
+     * @return An array holding the calculated {@link Histogram}s (i.e the index of the array indicates the band).
      */
-    private static double getEuclideanDistance(Double[] pixel) {
-        return Math.sqrt(Arrays.stream(pixel)
-                .mapToDouble(i -> i)
-                .map(p -> p * p)
-                .sum());
+    /* package */
+    static Histogram[] getHistograms(Image image) {
+        return computeHistograms(image, 0, image.getBands());
     }
 
+    /**
+     * Calculates the {@link Histogram}s of the given {@link Image} for the bands between {@code fromBand}
+     * (inclusive) and {@code toBand} (exclusive), in a single pass over the raster.
+     * Rows are processed in parallel, each worker counting into its own {@link HistogramAccumulator},
+     * which are merged at the end. Each row is read through a view of each band (see {@link Image#band(int)}),
+     * so images with {@link ar.edu.itba.ati.ati_soft.models.SampleLayout#PLANAR} layout are read sequentially.
+     *
+     * @param image    The {@link Image} whose {@link Histogram}s will be calculated.
+     * @param fromBand The first band to be calculated (inclusive).
+     * @param toBand   The last band to be calculated (exclusive).
+     * @return An array holding the calculated {@link Histogram}s,
+     * being the first element the {@link Histogram} of {@code fromBand}.
+     */
+    private static Histogram[] computeHistograms(Image image, int fromBand, int toBand) {
+        final int amountOfBands = toBand - fromBand;
+        final Image[] bandViews = IntStream.range(fromBand, toBand).mapToObj(image::band).toArray(Image[]::new);
+        try (ProgressTracker tracker = ProgressTracker.start(image.getHeight())) {
+            return IntStream.range(0, image.getHeight())
+                    .parallel()
+                    .collect(() -> new HistogramAccumulator(amountOfBands),
+                            (accumulator, y) -> {
+                                final double[] row = new double[image.getWidth()];
+                                for (int b = 0; b < amountOfBands; b++) {
+                                    for (double sample : bandViews[b].getRow(y, row)) {
+                                        accumulator.add(b, sample);
+                                    }
+                                }
+                                tracker.step();
+                            },
+                            HistogramAccumulator::merge)
+                    .toHistograms();
+        }
+    }
+
+
     /**
      * Container class holding minimums and maximums values for a given {@link Image}.
      */
@@ -301,15 +496,107 @@ import java.util.stream.IntStream;
             if (minimums.length != maximums.length) {
                 throw new IllegalArgumentException("Both minimums and maximums array must have the same length");
             }
-            for (int x = 0; x < image.getWidth(); x++) {
-                for (int y = 0; y < image.getHeight(); y++) {
-                    for (int i = 0; i < image.getBands(); i++) {
-                        final double value = image.getSample(x, y, i);
-                        maximums[i] = maximums[i] > value ? maximums[i] : value;
-                        minimums[i] = minimums[i] < value ? minimums[i] : value;
+            // Traversed by rows, as rasters are stored row by row
+            final int bands = image.getBands();
+            final double[] row = new double[image.getWidth() * bands];
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.getRow(y, row);
+                for (int j = 0; j < row.length; j++) {
+                    final int i = j % bands;
+                    final double value = row[j];
+                    maximums[i] = maximums[i] > value ? maximums[i] : value;
+                    minimums[i] = minimums[i] < value ? minimums[i] : value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Mutable container that counts samples into primitive bins, used to build {@link Histogram}s.
+     * Categories between {@code 0} and {@code 255} (the usual range) are counted in a {@code long} array,
+     * while the rest are counted in a {@link Map} (only created when such a category appears).
+     *
+     * @implNote This class is not thread safe. Each worker must use its own instance,
+     * merging them afterwards with the {@link #merge(HistogramAccumulator)} method.
+     */
+    private static final class HistogramAccumulator {
+
+        /**
+         * The amount of categories counted in the bins arrays.
+         */
+        private static final int BINS = 0x100;
+
+        /**
+         * The bins holding the count for categories between {@code 0} and {@code 255}, for each band.
+         */
+        private final long[][] bins;
+
+        /**
+         * {@link Map}s holding the count for categories outside the bins range, for each band
+         * (empty {@link HashMap}s don't allocate their table until the first category is counted).
+         */
+        private final List<Map<Integer, Long>> outliers;
+
+        /**
+         * Constructor.
+         *
+         * @param bands The amount of bands to be counted.
+         */
+        private HistogramAccumulator(int bands) {
+            this.bins = new long[bands][BINS];
+            this.outliers = IntStream.range(0, bands)
+                    .<Map<Integer, Long>>mapToObj(b -> new HashMap<>())
+                    .collect(Collectors.toList());
+        }
+
+        /**
+         * Counts the given {@code sample} for the given {@code band}.
+         *
+         * @param band   The band to which the sample belongs.
+         * @param sample The sample to be counted (its category is its integer part).
+         */
+        private void add(int band, double sample) {
+            final int category = (int) sample;
+            if (category >= 0 && category < BINS) {
+                bins[band][category]++;
+                return;
+            }
+            outliers.get(band).merge(category, 1L, Long::sum);
+        }
+
+        /**
+         * Merges the given {@code other} accumulator into this one.
+         *
+         * @param other The {@link HistogramAccumulator} whose counts will be added to this one.
+         */
+        private void merge(HistogramAccumulator other) {
+            for (int b = 0; b < bins.length; b++) {
+                final long[] theseBins = this.bins[b];
+                final long[] otherBins = other.bins[b];
+                for (int i = 0; i < BINS; i++) {
+                    theseBins[i] += otherBins[i];
+                }
+                final Map<Integer, Long> theseOutliers = this.outliers.get(b);
+                other.outliers.get(b).forEach((category, count) -> theseOutliers.merge(category, count, Long::sum));
+            }
+        }
+
+        /**
+         * @return An array holding the {@link Histogram} for each band counted by this accumulator.
+         */
+        private Histogram[] toHistograms() {
+            final Histogram[] histograms = new Histogram[bins.length];
+            for (int b = 0; b < bins.length; b++) {
+                final Map<Integer, Long> values = new HashMap<>();
+                for (int i = 0; i < BINS; i++) {
+                    if (bins[b][i] != 0) {
+                        values.put(i, bins[b][i]);
                     }
                 }
+                values.putAll(outliers.get(b));
+                histograms[b] = new Histogram(values);
             }
+            return histograms;
         }
     }
 
@@ -1,12 +1,15 @@
 package ar.edu.itba.ati.ati_soft.service;
 
+import ar.edu.itba.ati.ati_soft.interfaces.ImageExpression;
 import ar.edu.itba.ati.ati_soft.interfaces.ImageOperationService;
 import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.Region;
 import ar.edu.itba.ati.ati_soft.service.ImageManipulationHelper.MinAndMaxContainer;
 import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
 
-import java.util.function.BiFunction;
-import java.util.stream.IntStream;
+import java.util.Arrays;
+import java.util.function.Function;
 
 
 /**
@@ -17,44 +20,46 @@ public class ImageOperationServiceImpl implements ImageOperationService {
 
     @Override
     public Image sum(Image first, Image second) {
-        return twoImagesPixelByPixelOperation(first, second, (v1, v2) -> v1 + v2);
+        return expression(first).sum(expression(second)).materialize();
     }
 
     @Override
     public Image subtract(Image first, Image second) {
-        return twoImagesPixelByPixelOperation(first, second, (v1, v2) -> v1 - v2);
+        return expression(first).subtract(expression(second)).materialize();
     }
 
     @Override
     public Image multiply(Image first, Image second) {
-        return twoImagesPixelByPixelOperation(first, second, (v1, v2) -> v1 * v2);
+        return expression(first).multiply(expression(second)).materialize();
     }
 
     @Override
     public Image multiplyByScalar(Image image, double scalar) {
-        return ImageManipulationHelper.createApplying(image, (x, y, b, v) -> scalar * v);
+        Assert.notNull(image, "The image must not be null");
+        // The result can exceed the range of the image samples
+        return PointOperation.of(v -> scalar * v).apply(image, image.getSampleType().toFloatingPoint());
     }
 
     @Override
     public Image dynamicRangeCompression(Image image) {
-        final Double[] maximums = new MinAndMaxContainer(image).initialize().getMaximums();
-        final double[] constants = IntStream.range(0, image.getBands())
-                .mapToDouble(i -> 255.0 / Math.log10(1 + maximums[i]))
+        final double[] maximums = Arrays.stream(new MinAndMaxContainer(image).initialize().getMaximums())
+                .mapToDouble(Double::doubleValue)
                 .toArray();
-        return ImageManipulationHelper.createApplying(image, (x, y, b, v) -> constants[b] * Math.log10(1 + v));
+        return ImageManipulationHelper.dynamicRangeCompression(maximums).apply(image);
     }
 
     @Override
     public Image gammaPower(Image image, double gamma) {
-        final double constant = Math.pow(0xFF, 1 - gamma);
-        return ImageManipulationHelper.createApplying(image, (x, y, b, v) -> constant * Math.pow(v, gamma));
+        return ImageManipulationHelper.gammaPower(gamma).apply(image);
     }
 
     @Override
     public Image getNegative(Image image) {
         // Image must be normalized as it can have pixels bigger than 0xFF
-        return ImageManipulationHelper
-                .createApplying(ImageManipulationHelper.normalize(image), (x, y, i, value) -> 0xFF - value);
+        // (both operations are composed in order to be applied in one pass)
+        return ImageManipulationHelper.normalization(image)
+                .andThen(ImageManipulationHelper.negation())
+                .apply(image);
     }
 
     @Override
@@ -62,28 +67,18 @@ public class ImageOperationServiceImpl implements ImageOperationService {
         return ImageManipulationHelper.normalize(original);
     }
 
+    @Override
+    public ImageExpression expression(Image image) {
+        return LazyImageExpression.of(image);
+    }
 
-    // ================================================================================================================
-    // Helper methods
-    // ================================================================================================================
+    @Override
+    public Image downscale(Image image, int factor) {
+        return ImageManipulationHelper.downscale(image, factor);
+    }
 
-    /**
-     * Performs a two {@link Image} operation, pixel by pixel,
-     * applying the given {@link BiFunction} to generate the new pixel.
-     *
-     * @param first     The first {@link Image} in the operation.
-     * @param second    The second {@link Image} in the operation.
-     * @param operation A {@link BiFunction} that takes two pixel components (i.e samples),
-     *                  being the 1st argument, the {@code first} {@link Image} pixel component,
-     *                  the 2nd argument, the {@code second} {@link Image} pixel component,
-     *                  and the result, the new value for the pixel component.
-     * @return An {@link Image} whose samples will be the result of applying the operation.
-     */
-    private Image twoImagesPixelByPixelOperation(Image first, Image second,
-                                                 BiFunction<Double, Double, Double> operation) {
-        if (first.getWidth() != second.getWidth() || first.getHeight() != second.getHeight()) {
-            throw new IllegalArgumentException("Both images must be the same size to be summed.");
-        }
-        return ImageManipulationHelper.createApplying(first, (x, y, b, v) -> operation.apply(v, second.getSample(x, y, b)));
+    @Override
+    public Image applyToRegion(Image image, Region region, int margin, Function<Image, Image> operation) {
+        return ImageManipulationHelper.applyToRegion(image, region, margin, operation);
     }
 }
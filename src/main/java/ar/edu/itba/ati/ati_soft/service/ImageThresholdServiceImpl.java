@@ -22,136 +22,160 @@ public class ImageThresholdServiceImpl implements ImageThresholdService {
 
     @Override
     public Image manualThreshold(Image image, int value) {
-        return ImageManipulationHelper.threshold(prepareImage(image), value);
+        // Gray conversion, normalization and threshold are fused in order to create only the resulting image
+        return LazyImageExpression.of(image).threshold(value).materialize();
     }
 
     @Override
     public Image globalThreshold(Image image, int deltaT) {
-        final Image prepared = prepareImage(image);
-        int actualT = 255 / 2; // This should always be the middle value as the image is normalized
-        boolean shouldContinue = true;
-        while (shouldContinue) {
-            final int newT = calculateNewThreshold(prepared, actualT);
-            shouldContinue = Math.abs(actualT - newT) >= deltaT;
-            actualT = newT;
+        // Preparing the image, searching the threshold and applying it are the three steps
+        try (ProgressTracker tracker = ProgressTracker.start(3)) {
+            final Image prepared = prepareImage(image);
+            tracker.step();
+            int actualT = 255 / 2; // This should always be the middle value as the image is normalized
+            boolean shouldContinue = true;
+            // The amount of iterations is not known, so cancellation is checked, but progress is not reported
+            while (shouldContinue) {
+                tracker.checkCancelled();
+                final int newT = calculateNewThreshold(prepared, actualT);
+                shouldContinue = Math.abs(actualT - newT) >= deltaT;
+                actualT = newT;
+            }
+            tracker.step();
+            return ImageManipulationHelper.threshold(prepared, actualT);
         }
-        return ImageManipulationHelper.threshold(prepared, actualT);
     }
 
     @Override
     public Image otsuThreshold(Image image) {
-        final Image prepared = prepareImage(image);
-        return ImageManipulationHelper.threshold(prepared, calculateOtsuThreshold(prepared));
+        // Preparing the image, calculating the threshold and applying it are the three steps
+        try (ProgressTracker tracker = ProgressTracker.start(3)) {
+            final Image prepared = prepareImage(image);
+            tracker.step();
+            final int threshold = calculateOtsuThreshold(prepared);
+            tracker.step();
+            return ImageManipulationHelper.threshold(prepared, threshold);
+        }
     }
 
     @Override
     public Image hysteresisThreshold(Image image) {
-        final Image prepared = prepareImage(image);
-        final int otsuThreshold = calculateOtsuThreshold(prepared);
-        final int margin = (otsuThreshold <= 127 ? otsuThreshold : (255 - otsuThreshold)) / 3;
-        final int t1 = otsuThreshold - margin;
-        final int t2 = otsuThreshold + margin;
-
-        // First we get the initial threshold image,
-        // which has all pixels above t2 as a border
-        // those below t1, not border
-        // and those between t1 and t2, undefined
-        final Image thresholdImage = ImageManipulationHelper.createApplying(prepared, (x, y, b, v) -> {
-            if (v < t1) {
-                return 0d;
-            }
-            if (v > t2) {
-                return 255d;
-            }
-            return -1d;
-        });
-
-        final int width = thresholdImage.getWidth();
-        final int height = thresholdImage.getHeight();
-        final int bands = thresholdImage.getBands();
-
-        final int imageSize = width * height;
-        // If the image is a one pixel image, then finish here
-        if (imageSize == 1) {
-            if (thresholdImage.getSample(0, 0, 0) == -1d) {
-                // But before, check that this is not an undefined pixel
-                // In case it is, set it to zero.
-                final Double[] pixel = IntStream.range(0, bands)
-                        .mapToDouble(b -> 0d)
-                        .boxed()
-                        .toArray(Double[]::new);
-                thresholdImage.setPixel(0, 0, pixel);
+        // Preparing the image, calculating the Otsu threshold, classifying the pixels,
+        // and resolving the undefined ones are the four steps
+        try (ProgressTracker tracker = ProgressTracker.start(4)) {
+            final Image prepared = prepareImage(image);
+            tracker.step();
+            final int otsuThreshold = calculateOtsuThreshold(prepared);
+            tracker.step();
+            final int margin = (otsuThreshold <= 127 ? otsuThreshold : (255 - otsuThreshold)) / 3;
+            final int t1 = otsuThreshold - margin;
+            final int t2 = otsuThreshold + margin;
+
+            // First we get the initial threshold image,
+            // which has all pixels above t2 as a border
+            // those below t1, not border
+            // and those between t1 and t2, undefined
+            // (stored with a floating point type, as the -1 marker would saturate with an integer one)
+            final Image thresholdImage = PointOperation.of(v -> {
+                if (v < t1) {
+                    return 0d;
+                }
+                if (v > t2) {
+                    return 255d;
+                }
+                return -1d;
+            }).apply(prepared, prepared.getSampleType().toFloatingPoint());
+            tracker.step();
+
+            final int width = thresholdImage.getWidth();
+            final int height = thresholdImage.getHeight();
+            final int bands = thresholdImage.getBands();
+
+            final int imageSize = width * height;
+            // If the image is a one pixel image, then finish here
+            if (imageSize == 1) {
+                if (thresholdImage.getSample(0, 0, 0) == -1d) {
+                    // But before, check that this is not an undefined pixel
+                    // In case it is, set it to zero.
+                    final Double[] pixel = IntStream.range(0, bands)
+                            .mapToDouble(b -> 0d)
+                            .boxed()
+                            .toArray(Double[]::new);
+                    thresholdImage.setPixel(0, 0, pixel);
+                }
+                return thresholdImage;
             }
-            return thresholdImage;
-        }
 
-        // Get the undefined positions, and place them in a queue.
-        final Queue<ImageManipulationHelper.ImagePosition> undefinedPositions = IntStream.range(0, width)
-                .mapToObj(x -> IntStream.range(0, height)
-                        .filter(y -> thresholdImage.getSample(x, y, 0) == -1d)
-                        .mapToObj(y -> new ImageManipulationHelper.ImagePosition(x, y)))
-                .flatMap(Function.identity())
-                .collect(Collectors.toCollection(LinkedList::new));
-
-        if (undefinedPositions.size() == imageSize) {
-            // TODO: what do we do here?
-            throw new IllegalStateException("All the image has its pixels between " + t1 + " and " + t2);
-        }
+            // Get the undefined positions, and place them in a queue.
+            final Queue<ImageManipulationHelper.ImagePosition> undefinedPositions = IntStream.range(0, width)
+                    .mapToObj(x -> IntStream.range(0, height)
+                            .filter(y -> thresholdImage.getSample(x, y, 0) == -1d)
+                            .mapToObj(y -> new ImageManipulationHelper.ImagePosition(x, y)))
+                    .flatMap(Function.identity())
+                    .collect(Collectors.toCollection(LinkedList::new));
+
+            if (undefinedPositions.size() == imageSize) {
+                // TODO: what do we do here?
+                throw new IllegalStateException("All the image has its pixels between " + t1 + " and " + t2);
+            }
 
-        // While there is an undefined position in the queue...
-        while (!undefinedPositions.isEmpty()) {
-            final ImageManipulationHelper.ImagePosition position = Optional.ofNullable(undefinedPositions.poll())
-                    .orElseThrow(() -> new RuntimeException("This should not happen"));
-            final int x = position.getX();
-            final int y = position.getY();
-            final ImageManipulationHelper.ImagePosition[] neighbors = buildNeighborsPositions(x, y);
-
-            int realNeighbors = 0; // Indicates the real amount of neighbors (excluding those out of range)
-            int undefinedNeighbors = 0; // Indicates how many neighbors are also undefined
-            int nonBorderNeighbors = 0;
-            for (ImageManipulationHelper.ImagePosition neighbor : neighbors) {
-                final int row = neighbor.getX();
-                final int column = neighbor.getY();
-
-                if (row >= 0 && row < width && column >= 0 && column < height) {
-                    // If the neighbor is not out of range...
-                    realNeighbors++; // In this case, this is a real neighbor
-                    final double sample = thresholdImage.getSample(row, column, 0);
-                    if (sample == 255d) {
-                        // In this case the pixel is connected with a border,
-                        // so we must set it as border also
-                        final Double[] pixel = IntStream.range(0, bands)
-                                .mapToDouble(b -> 255d)
-                                .boxed()
-                                .toArray(Double[]::new);
-                        thresholdImage.setPixel(x, y, pixel);
-                        break; // Stop checking neighbors
-                    } else if (sample == 0d) {
-                        nonBorderNeighbors++;
-                    } else if (sample == -1d) {
-                        // In this case, this neighbor is undefined also
-                        undefinedNeighbors++;
+            // While there is an undefined position in the queue...
+            // (the amount of iterations is not known, so cancellation is checked, but progress is not reported)
+            while (!undefinedPositions.isEmpty()) {
+                tracker.checkCancelled();
+                final ImageManipulationHelper.ImagePosition position = Optional.ofNullable(undefinedPositions.poll())
+                        .orElseThrow(() -> new RuntimeException("This should not happen"));
+                final int x = position.getX();
+                final int y = position.getY();
+                final ImageManipulationHelper.ImagePosition[] neighbors = buildNeighborsPositions(x, y);
+
+                int realNeighbors = 0; // Indicates the real amount of neighbors (excluding those out of range)
+                int undefinedNeighbors = 0; // Indicates how many neighbors are also undefined
+                int nonBorderNeighbors = 0;
+                for (ImageManipulationHelper.ImagePosition neighbor : neighbors) {
+                    final int row = neighbor.getX();
+                    final int column = neighbor.getY();
+
+                    if (row >= 0 && row < width && column >= 0 && column < height) {
+                        // If the neighbor is not out of range...
+                        realNeighbors++; // In this case, this is a real neighbor
+                        final double sample = thresholdImage.getSample(row, column, 0);
+                        if (sample == 255d) {
+                            // In this case the pixel is connected with a border,
+                            // so we must set it as border also
+                            final Double[] pixel = IntStream.range(0, bands)
+                                    .mapToDouble(b -> 255d)
+                                    .boxed()
+                                    .toArray(Double[]::new);
+                            thresholdImage.setPixel(x, y, pixel);
+                            break; // Stop checking neighbors
+                        } else if (sample == 0d) {
+                            nonBorderNeighbors++;
+                        } else if (sample == -1d) {
+                            // In this case, this neighbor is undefined also
+                            undefinedNeighbors++;
+                        }
                     }
                 }
-            }
-            // In case the pixel is surrounded by non border neighbors (i.e all black pixels, or zero pixels)
-            // Then this pixel is not a border also (i.e must be set to zero)
-            if (nonBorderNeighbors == realNeighbors) {
-                final Double[] pixel = IntStream.range(0, bands)
-                        .mapToDouble(b -> 0d)
-                        .boxed()
-                        .toArray(Double[]::new);
-                thresholdImage.setPixel(x, y, pixel);
-                break;
-            }
+                // In case the pixel is surrounded by non border neighbors (i.e all black pixels, or zero pixels)
+                // Then this pixel is not a border also (i.e must be set to zero)
+                if (nonBorderNeighbors == realNeighbors) {
+                    final Double[] pixel = IntStream.range(0, bands)
+                            .mapToDouble(b -> 0d)
+                            .boxed()
+                            .toArray(Double[]::new);
+                    thresholdImage.setPixel(x, y, pixel);
+                    break;
+                }
 
-            // In case the pixel is surrounded by all undefined pixels, then this position must be processed again
-            if (undefinedNeighbors == realNeighbors) {
-                undefinedPositions.offer(position);
-            }
+                // In case the pixel is surrounded by all undefined pixels, then this position must be processed again
+                if (undefinedNeighbors == realNeighbors) {
+                    undefinedPositions.offer(position);
+                }
 
+            }
+            return thresholdImage;
         }
-        return thresholdImage;
     }
 
     /**
@@ -162,7 +186,8 @@ public class ImageThresholdServiceImpl implements ImageThresholdService {
      * @return The prepared {@link Image}.
      */
     private static Image prepareImage(Image image) {
-        return ImageManipulationHelper.normalize(ImageManipulationHelper.toGray(image));
+        // Gray conversion and normalization are fused in order to avoid creating the intermediate gray image
+        return LazyImageExpression.of(image).toGray().normalize().materialize();
     }
 
     /**
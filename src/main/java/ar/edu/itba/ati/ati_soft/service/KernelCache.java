@@ -0,0 +1,364 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import org.springframework.util.Assert;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Class holding a cache of the kernels used by the filters (e.g Gaussian, or Laplacian of Gaussian),
+ * so they are not calculated each time a filter is applied with the same parameters.
+ * The cache is shared by all the services, is thread safe, and is bounded (i.e the least recently used kernels
+ * are evicted when it has {@link #MAX_ENTRIES} kernels).
+ */
+/* package */ class KernelCache {
+
+    /**
+     * The max. amount of kernels held by the cache.
+     */
+    private static final int MAX_ENTRIES = 64;
+
+    /**
+     * The cached kernels, in access order (i.e the eldest entry is the least recently used one).
+     */
+    private static final Map<Key, Kernel> CACHE = new LinkedHashMap<Key, Kernel>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Kernel> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Returns the mask of the Gaussian filter for the given {@code sigma} (i.e whose values sum 1,
+     * calculated with {@code exp(-(x^2 + y^2) / sigma^2)}), of length {@code 2 * (int) sigma + 1}.
+     * The kernel is separable.
+     *
+     * @param sigma The standard deviation.
+     * @return The {@link Kernel}.
+     * @throws IllegalArgumentException If the standard deviation is not positive.
+     */
+    /* package */
+    static Kernel gaussian(double sigma) throws IllegalArgumentException {
+        Assert.isTrue(sigma > 0, "The standard deviation must be positive");
+        final int size = 2 * (int) sigma + 1;
+        return get(new Key(Type.GAUSSIAN, sigma, size), () -> {
+            final double variance = sigma * sigma; // Avoid recalculating this
+            final double factor = 1 / (2 * Math.PI * variance); // Avoid recalculating this
+            final double[] weights = weights(size, distance -> factor * Math.exp(-distance / variance));
+            final double[] separableFactor = weights(size, 1, distance -> Math.exp(-distance / variance));
+            return new Kernel(size, normalize(weights), normalize(separableFactor));
+        });
+    }
+
+    /**
+     * Returns the mask of the Laplacian of Gaussian method for the given {@code sigma},
+     * of length {@code 2 * (int) (3 * sigma) + 1}. The kernel is not separable.
+     *
+     * @param sigma The standard deviation.
+     * @return The {@link Kernel}.
+     * @throws IllegalArgumentException If the standard deviation is not positive.
+     */
+    /* package */
+    static Kernel laplacianOfGaussian(double sigma) throws IllegalArgumentException {
+        Assert.isTrue(sigma > 0, "The standard deviation must be positive");
+        final int size = 2 * (int) (sigma * 3) + 1;
+        return get(new Key(Type.LAPLACIAN_OF_GAUSSIAN, sigma, size), () -> {
+            final double variance = sigma * sigma; // Avoid recalculating this
+            final double factor = -1 / (Math.sqrt(2 * Math.PI) * variance * sigma); // Avoid recalculating this
+            return new Kernel(size, weights(size, distance -> {
+                final double value = distance / variance;
+                return factor * (2 - value) * Math.exp(-value / 2);
+            }), null);
+        });
+    }
+
+    /**
+     * Returns the spatial weights of the bilateral filter for the given {@code sigma} and {@code size}
+     * (i.e {@code exp(-(x^2 + y^2) / (2 * sigma^2))}, not normalized). The kernel is separable.
+     *
+     * @param sigma The standard deviation.
+     * @param size  The length of the kernel.
+     * @return The {@link Kernel}.
+     * @throws IllegalArgumentException If the standard deviation is not positive, or the size is not positive
+     *                                  and odd.
+     */
+    /* package */
+    static Kernel bilateralSpatial(double sigma, int size) throws IllegalArgumentException {
+        Assert.isTrue(sigma > 0, "The standard deviation must be positive");
+        Assert.isTrue(size > 0 && size % 2 == 1, "The size must be positive and odd");
+        return get(new Key(Type.BILATERAL_SPATIAL, sigma, size), () -> {
+            final double spatialFactor = 2 * sigma * sigma;
+            return new Kernel(size, weights(size, distance -> Math.exp(-distance / spatialFactor)),
+                    weights(size, 1, distance -> Math.exp(-distance / spatialFactor)));
+        });
+    }
+
+    /**
+     * Returns a Gaussian window for the given {@code sigma} (i.e whose values sum 1, calculated with
+     * {@code exp(-(x^2 + y^2) / (2 * sigma^2))}), of length {@code 2 * ceil(3 * sigma) + 1}.
+     * The kernel is separable (e.g to be applied as two one-dimensional filters).
+     *
+     * @param sigma The standard deviation.
+     * @return The {@link Kernel}.
+     * @throws IllegalArgumentException If the standard deviation is not positive.
+     */
+    /* package */
+    static Kernel gaussianWindow(double sigma) throws IllegalArgumentException {
+        Assert.isTrue(sigma > 0, "The standard deviation must be positive");
+        final int size = 2 * (int) Math.ceil(3 * sigma) + 1;
+        return get(new Key(Type.GAUSSIAN_WINDOW, sigma, size), () -> {
+            final double factor = 2 * sigma * sigma;
+            return new Kernel(size, normalize(weights(size, distance -> Math.exp(-distance / factor))),
+                    normalize(weights(size, 1, distance -> Math.exp(-distance / factor))));
+        });
+    }
+
+    /**
+     * Returns the cached {@link Kernel} for the given {@link Key}, creating it with the given {@code factory}
+     * (and caching it) if it is not cached.
+     *
+     * @param key     The {@link Key}.
+     * @param factory A {@link Supplier} that creates the {@link Kernel}.
+     * @return The {@link Kernel}.
+     */
+    private static Kernel get(Key key, Supplier<Kernel> factory) {
+        synchronized (CACHE) {
+            final Kernel cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // The kernel is created without holding the lock (if two threads create the same kernel, the first is kept)
+        final Kernel kernel = factory.get();
+        synchronized (CACHE) {
+            final Kernel cached = CACHE.putIfAbsent(key, kernel);
+            return cached == null ? kernel : cached;
+        }
+    }
+
+    /**
+     * Calculates the weights of a square kernel of the given {@code size}, row by row,
+     * being the weight of each position the result of applying the given {@code function}
+     * to its squared distance to the center.
+     *
+     * @param size     The length of the kernel.
+     * @param function The function that calculates the weight of a squared distance.
+     * @return The weights.
+     */
+    private static double[] weights(int size, SquaredDistanceFunction function) {
+        return weights(size, size, function);
+    }
+
+    /**
+     * Calculates the weights of a kernel of the given {@code width} and {@code height} (which must be odd),
+     * row by row (see {@link #weights(int, SquaredDistanceFunction)}).
+     *
+     * @param width    The width of the kernel.
+     * @param height   The height of the kernel.
+     * @param function The function that calculates the weight of a squared distance.
+     * @return The weights.
+     */
+    private static double[] weights(int width, int height, SquaredDistanceFunction function) {
+        final int xMargin = width / 2;
+        final int yMargin = height / 2;
+        final double[] weights = new double[width * height];
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                final int di = i - yMargin;
+                final int dj = j - xMargin;
+                weights[i * width + j] = function.apply(di * di + dj * dj);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Divides the given {@code weights} by their sum (in place), so they sum 1.
+     *
+     * @param weights The weights to be normalized.
+     * @return The given {@code weights}.
+     */
+    private static double[] normalize(double[] weights) {
+        double sum = 0;
+        for (double weight : weights) {
+            sum += weight;
+        }
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] /= sum;
+        }
+        return weights;
+    }
+
+    /**
+     * The types of kernels.
+     */
+    private enum Type {
+        /**
+         * The mask of the Gaussian filter (see {@link #gaussian(double)}).
+         */
+        GAUSSIAN,
+        /**
+         * The mask of the Laplacian of Gaussian method (see {@link #laplacianOfGaussian(double)}).
+         */
+        LAPLACIAN_OF_GAUSSIAN,
+        /**
+         * The spatial weights of the bilateral filter (see {@link #bilateralSpatial(double, int)}).
+         */
+        BILATERAL_SPATIAL,
+        /**
+         * A normalized Gaussian window (see {@link #gaussianWindow(double)}).
+         */
+        GAUSSIAN_WINDOW
+    }
+
+    /**
+     * A function that calculates a weight, given a squared distance.
+     */
+    @FunctionalInterface
+    private interface SquaredDistanceFunction {
+
+        /**
+         * Calculates the weight.
+         *
+         * @param squaredDistance The squared distance to the center of the kernel.
+         * @return The weight.
+         */
+        double apply(int squaredDistance);
+    }
+
+    /**
+     * The key of a cached kernel (i.e its type and its parameters).
+     */
+    private static final class Key {
+        /**
+         * The {@link Type} of kernel.
+         */
+        private final Type type;
+        /**
+         * The standard deviation.
+         */
+        private final double sigma;
+        /**
+         * The length of the kernel.
+         */
+        private final int size;
+
+        /**
+         * Constructor.
+         *
+         * @param type  The {@link Type} of kernel.
+         * @param sigma The standard deviation.
+         * @param size  The length of the kernel.
+         */
+        private Key(Type type, double sigma, int size) {
+            this.type = type;
+            this.sigma = sigma;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return type == key.type && Double.compare(key.sigma, sigma) == 0 && size == key.size;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type.hashCode();
+            result = 31 * result + Double.hashCode(sigma);
+            result = 31 * result + size;
+            return result;
+        }
+    }
+
+    /**
+     * An immutable square kernel, whose weights are stored row by row in a flat array.
+     * Separable kernels also hold their one-dimensional factor (i.e the weight of position {@code (i, j)}
+     * is the product of the values of positions {@code i} and {@code j} of the factor).
+     */
+    /* package */ static final class Kernel {
+
+        /**
+         * The length of the kernel.
+         */
+        private final int size;
+
+        /**
+         * The weights, being the weight of row {@code i} and column {@code j} stored in position
+         * {@code i * size + j}.
+         */
+        private final double[] weights;
+
+        /**
+         * The one-dimensional factor of the kernel, or {@code null} if it is not separable.
+         */
+        private final double[] separableFactor;
+
+        /**
+         * Constructor.
+         *
+         * @param size            The length of the kernel.
+         * @param weights         The weights (row by row).
+         * @param separableFactor The one-dimensional factor of the kernel, or {@code null} if it is not separable.
+         */
+        private Kernel(int size, double[] weights, double[] separableFactor) {
+            this.size = size;
+            this.weights = weights;
+            this.separableFactor = separableFactor;
+        }
+
+        /**
+         * @return The length of the kernel.
+         */
+        /* package */ int getSize() {
+            return size;
+        }
+
+        /**
+         * @return {@code true} if the kernel is separable, or {@code false} otherwise.
+         */
+        /* package */ boolean isSeparable() {
+            return separableFactor != null;
+        }
+
+        /**
+         * @return A copy of the weights, row by row (i.e the weight of row {@code i} and column {@code j}
+         * is in position {@code i * size + j}).
+         */
+        /* package */ double[] copyWeights() {
+            return weights.clone();
+        }
+
+        /**
+         * @return A copy of the one-dimensional factor of the kernel.
+         * @throws IllegalStateException If the kernel is not separable.
+         */
+        /* package */ double[] copySeparableFactor() throws IllegalStateException {
+            if (separableFactor == null) {
+                throw new IllegalStateException("The kernel is not separable");
+            }
+            return separableFactor.clone();
+        }
+
+        /**
+         * @return A new mask with the weights of the kernel, to be used with the sliding window filters
+         * (i.e indexed by column, and then by row).
+         */
+        /* package */ Double[][] toMask() {
+            final Double[][] mask = new Double[size][size];
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    mask[x][y] = weights[y * size + x];
+                }
+            }
+            return mask;
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.interfaces.ImageExpression;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Concrete implementation of {@link ImageExpression}.
+ * The expression is a graph of {@link Node}s that is evaluated row by row,
+ * so intermediate results never take more than a row of memory.
+ * Consecutive point operations are composed into a single {@link PointOperation} (i.e one lookup table).
+ * <p>
+ * Operations that depend on global values of their input (i.e normalization, negative and dynamic range compression)
+ * perform a reduction pass over the upstream graph when they are recorded, without materializing it.
+ * <p>
+ * The result keeps the {@link SampleType} of the source {@link Image}, except when an operation can produce
+ * negative, or out of range, values (i.e pixel by pixel operations, scalar multiplication and gray conversion),
+ * in which case it is promoted (see {@link SampleType#toFloatingPoint()}).
+ */
+/* package */ final class LazyImageExpression implements ImageExpression {
+
+    /**
+     * The root of the graph (i.e the node that produces the result of this expression).
+     */
+    private final Node root;
+
+    /**
+     * The source {@link Image} used to create the result
+     * (see {@link Image#createCompatible(int, int, int, SampleType)}).
+     */
+    private final Image template;
+
+    /**
+     * The {@link SampleType} of the result.
+     */
+    private final SampleType sampleType;
+
+    /**
+     * Constructor.
+     *
+     * @param root       The root of the graph.
+     * @param template   The source {@link Image} used to create the result.
+     * @param sampleType The {@link SampleType} of the result.
+     */
+    private LazyImageExpression(Node root, Image template, SampleType sampleType) {
+        this.root = root;
+        this.template = template;
+        this.sampleType = sampleType;
+    }
+
+    /**
+     * Creates a new {@link LazyImageExpression} whose source is the given {@link Image}.
+     *
+     * @param image The source {@link Image}.
+     * @return The created expression.
+     */
+    /* package */
+    static LazyImageExpression of(Image image) {
+        Assert.notNull(image, "The image must not be null");
+        return new LazyImageExpression(new SourceNode(image), image, image.getSampleType());
+    }
+
+    @Override
+    public int getWidth() {
+        return root.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return root.height;
+    }
+
+    @Override
+    public int getBands() {
+        return root.bands;
+    }
+
+    @Override
+    public ImageExpression sum(ImageExpression other) throws IllegalArgumentException {
+        return binary(other, (v1, v2) -> v1 + v2);
+    }
+
+    @Override
+    public ImageExpression subtract(ImageExpression other) throws IllegalArgumentException {
+        return binary(other, (v1, v2) -> v1 - v2);
+    }
+
+    @Override
+    public ImageExpression multiply(ImageExpression other) throws IllegalArgumentException {
+        return binary(other, (v1, v2) -> v1 * v2);
+    }
+
+    @Override
+    public ImageExpression multiplyByScalar(double scalar) {
+        return point(PointOperation.of(v -> scalar * v)).promoted();
+    }
+
+    @Override
+    public ImageExpression dynamicRangeCompression() {
+        return point(ImageManipulationHelper.dynamicRangeCompression(root.getMinimumsAndMaximums()[1]));
+    }
+
+    @Override
+    public ImageExpression gammaPower(double gamma) {
+        return point(ImageManipulationHelper.gammaPower(gamma));
+    }
+
+    @Override
+    public ImageExpression negative() {
+        // Normalization is needed as samples can be bigger than 0xFF
+        final double[][] minimumsAndMaximums = root.getMinimumsAndMaximums();
+        return point(ImageManipulationHelper.normalization(minimumsAndMaximums[0], minimumsAndMaximums[1])
+                .andThen(ImageManipulationHelper.negation()));
+    }
+
+    @Override
+    public ImageExpression normalize() {
+        final double[][] minimumsAndMaximums = root.getMinimumsAndMaximums();
+        return point(ImageManipulationHelper.normalization(minimumsAndMaximums[0], minimumsAndMaximums[1]));
+    }
+
+    @Override
+    public ImageExpression toGray() {
+        if (root.bands == 1) {
+            return this; // Already gray
+        }
+        return new LazyImageExpression(new GrayNode(root), template, sampleType.toFloatingPoint());
+    }
+
+    @Override
+    public ImageExpression threshold(int value) {
+        return ((LazyImageExpression) toGray().normalize()).point(ImageManipulationHelper.thresholding(value));
+    }
+
+    @Override
+    public ImageExpression then(UnaryOperator<Image> operation) {
+        Assert.notNull(operation, "The operation must not be null");
+        return of(operation.apply(materialize()));
+    }
+
+    @Override
+    public Image materialize() {
+        final int width = root.width;
+        final int bands = root.bands;
+        final Image result = template.createCompatible(width, root.height, bands, sampleType);
+        try (ProgressTracker tracker = ProgressTracker.start(root.height)) {
+            IntStream.range(0, root.height).parallel().forEach(y -> {
+                result.setRow(y, root.evaluateRow(y, new double[width * bands]));
+                tracker.step();
+            });
+        }
+        return result;
+    }
+
+
+    // ================================================================================================================
+    // Helper methods
+    // ================================================================================================================
+
+    /**
+     * Appends the given {@link PointOperation} to this expression,
+     * composing it with the root's operation if the root is also a point operation.
+     *
+     * @param operation The {@link PointOperation} to append.
+     * @return The new expression.
+     */
+    private LazyImageExpression point(PointOperation operation) {
+        if (root instanceof PointNode) {
+            final PointNode pointNode = (PointNode) root;
+            return new LazyImageExpression(new PointNode(pointNode.upstream, pointNode.operation.andThen(operation)),
+                    template, sampleType);
+        }
+        return new LazyImageExpression(new PointNode(root, operation), template, sampleType);
+    }
+
+    /**
+     * @return An expression equal to this one, whose result is stored with a promoted {@link SampleType}
+     * (see {@link SampleType#toFloatingPoint()}).
+     */
+    private LazyImageExpression promoted() {
+        return new LazyImageExpression(root, template, sampleType.toFloatingPoint());
+    }
+
+    /**
+     * Appends a pixel by pixel operation between this expression and the given {@code other} one.
+     *
+     * @param other     The other {@link ImageExpression}.
+     * @param operation A {@link DoubleBinaryOperator} that takes a sample of this expression,
+     *                  and the sample in the same position of the {@code other} one, and returns the new sample.
+     * @return The new expression.
+     * @throws IllegalArgumentException If both expressions have different size.
+     */
+    private LazyImageExpression binary(ImageExpression other, DoubleBinaryOperator operation)
+            throws IllegalArgumentException {
+        Assert.notNull(other, "The other expression must not be null");
+        if (root.width != other.getWidth() || root.height != other.getHeight()) {
+            throw new IllegalArgumentException("Both images must be the same size to be operated.");
+        }
+        Assert.isTrue(other.getBands() >= root.bands, "The second image must have at least as many bands as the first");
+        // Expressions from other implementations are evaluated, as its graph can't be accessed
+        final Node otherRoot = other instanceof LazyImageExpression ?
+                ((LazyImageExpression) other).root : new SourceNode(other.materialize());
+        return new LazyImageExpression(new BinaryNode(root, otherRoot, operation), template,
+                sampleType.toFloatingPoint());
+    }
+
+
+    // ================================================================================================================
+    // Nodes
+    // ================================================================================================================
+
+    /**
+     * A node of the graph, which produces an {@link Image}, row by row.
+     * Rows are stored band-interleaved (i.e the sample of column {@code x} and band {@code b}
+     * is stored in position {@code x * bands + b}).
+     */
+    private static abstract class Node {
+
+        /**
+         * The width of the produced {@link Image}.
+         */
+        private final int width;
+
+        /**
+         * The height of the produced {@link Image}.
+         */
+        private final int height;
+
+        /**
+         * The amount of bands of the produced {@link Image}.
+         */
+        private final int bands;
+
+        /**
+         * Constructor.
+         *
+         * @param width  The width of the produced {@link Image}.
+         * @param height The height of the produced {@link Image}.
+         * @param bands  The amount of bands of the produced {@link Image}.
+         */
+        private Node(int width, int height, int bands) {
+            this.width = width;
+            this.height = height;
+            this.bands = bands;
+        }
+
+        /**
+         * Evaluates the given {@code y} row of this node.
+         *
+         * @param y   The row to be evaluated.
+         * @param row An array of {@code width * bands} length in which the row will be stored.
+         * @return The given {@code row} array, for method chaining.
+         */
+        /* package */
+        abstract double[] evaluateRow(int y, double[] row);
+
+        /**
+         * Calculates the min. and max. values of each band, evaluating this node in parallel by rows.
+         *
+         * @return A two elements array, being the first one the min. values, and the second one the max. values.
+         */
+        /* package */ double[][] getMinimumsAndMaximums() {
+            return IntStream.range(0, height)
+                    .parallel()
+                    .collect(() -> {
+                                final double[][] container = new double[2][bands];
+                                Arrays.fill(container[0], Double.POSITIVE_INFINITY);
+                                Arrays.fill(container[1], Double.NEGATIVE_INFINITY);
+                                return container;
+                            },
+                            (container, y) -> {
+                                final double[] row = evaluateRow(y, new double[width * bands]);
+                                for (int i = 0; i < row.length; i++) {
+                                    final int b = i % bands;
+                                    container[0][b] = Math.min(container[0][b], row[i]);
+                                    container[1][b] = Math.max(container[1][b], row[i]);
+                                }
+                            },
+                            (c1, c2) -> {
+                                for (int b = 0; b < bands; b++) {
+                                    c1[0][b] = Math.min(c1[0][b], c2[0][b]);
+                                    c1[1][b] = Math.max(c1[1][b], c2[1][b]);
+                                }
+                            });
+        }
+    }
+
+    /**
+     * A {@link Node} that reads its rows from an {@link Image}.
+     */
+    private static final class SourceNode extends Node {
+
+        /**
+         * The {@link Image} from which rows are read.
+         */
+        private final Image image;
+
+        /**
+         * Constructor.
+         *
+         * @param image The {@link Image} from which rows are read.
+         */
+        private SourceNode(Image image) {
+            super(image.getWidth(), image.getHeight(), image.getBands());
+            this.image = image;
+        }
+
+        @Override
+        /* package */ double[] evaluateRow(int y, double[] row) {
+            return image.getRow(y, row);
+        }
+    }
+
+    /**
+     * A {@link Node} that applies a {@link PointOperation} to the rows of its upstream node.
+     */
+    private static final class PointNode extends Node {
+
+        /**
+         * The node to which the operation is applied.
+         */
+        private final Node upstream;
+
+        /**
+         * The {@link PointOperation} applied by this node (kept in order to be composed with following operations).
+         */
+        private final PointOperation operation;
+
+        /**
+         * The {@link PointOperation.LookupTable} of the {@link #operation} (built once, when the node is created).
+         */
+        private final PointOperation.LookupTable lookupTable;
+
+        /**
+         * Constructor.
+         *
+         * @param upstream  The node to which the operation is applied.
+         * @param operation The {@link PointOperation} applied by this node.
+         */
+        private PointNode(Node upstream, PointOperation operation) {
+            super(upstream.width, upstream.height, upstream.bands);
+            this.upstream = upstream;
+            this.operation = operation;
+            this.lookupTable = operation.tabulate(upstream.bands);
+        }
+
+        @Override
+        /* package */ double[] evaluateRow(int y, double[] row) {
+            lookupTable.mapInPlace(upstream.evaluateRow(y, row));
+            return row;
+        }
+    }
+
+    /**
+     * A {@link Node} that converts the rows of its upstream node into gray
+     * (i.e each sample is replaced by the euclidean distance of its pixel, keeping the amount of bands).
+     */
+    private static final class GrayNode extends Node {
+
+        /**
+         * The node being converted.
+         */
+        private final Node upstream;
+
+        /**
+         * Constructor.
+         *
+         * @param upstream The node being converted.
+         */
+        private GrayNode(Node upstream) {
+            super(upstream.width, upstream.height, upstream.bands);
+            this.upstream = upstream;
+        }
+
+        @Override
+        /* package */ double[] evaluateRow(int y, double[] row) {
+            final int bands = upstream.bands;
+            upstream.evaluateRow(y, row);
+            for (int start = 0; start < row.length; start += bands) {
+                double squares = 0;
+                for (int b = 0; b < bands; b++) {
+                    squares += row[start + b] * row[start + b];
+                }
+                Arrays.fill(row, start, start + bands, Math.sqrt(squares));
+            }
+            return row;
+        }
+    }
+
+    /**
+     * A {@link Node} that applies a pixel by pixel operation between the rows of two upstream nodes.
+     */
+    private static final class BinaryNode extends Node {
+
+        /**
+         * The node providing the first operand (and the amount of bands of the result).
+         */
+        private final Node first;
+
+        /**
+         * The node providing the second operand.
+         */
+        private final Node second;
+
+        /**
+         * The operation applied to each pair of samples.
+         */
+        private final DoubleBinaryOperator operation;
+
+        /**
+         * Constructor.
+         *
+         * @param first     The node providing the first operand.
+         * @param second    The node providing the second operand.
+         * @param operation The operation applied to each pair of samples.
+         */
+        private BinaryNode(Node first, Node second, DoubleBinaryOperator operation) {
+            super(first.width, first.height, first.bands);
+            this.first = first;
+            this.second = second;
+            this.operation = operation;
+        }
+
+        @Override
+        /* package */ double[] evaluateRow(int y, double[] row) {
+            final int bands = first.bands;
+            final int otherBands = second.bands;
+            final double[] other = second.evaluateRow(y, new double[second.width * otherBands]);
+            first.evaluateRow(y, row);
+            for (int x = 0; x < first.width; x++) {
+                for (int b = 0; b < bands; b++) {
+                    row[x * bands + b] = operation.applyAsDouble(row[x * bands + b], other[x * otherBands + b]);
+                }
+            }
+            return row;
+        }
+    }
+}
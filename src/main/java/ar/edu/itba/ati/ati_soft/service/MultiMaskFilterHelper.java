@@ -0,0 +1,274 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.springframework.util.Assert;
+
+import java.util.stream.IntStream;
+
+/**
+ * Class implementing multi-mask filtering (i.e applying several masks, like the rotations of a direction mask,
+ * and combining their results into one value per pixel).
+ * The masks are stored in a {@link MaskBank}, and each neighbourhood is read once and evaluated against all of them,
+ * so no intermediate image is created for each mask, nor for each reduction step.
+ */
+/* package */ class MultiMaskFilterHelper {
+
+    /**
+     * Creates a {@link MaskBank} with the masks contained by the given
+     * {@link ar.edu.itba.ati.ati_soft.service.MaskHelper.MaskContainer}s.
+     *
+     * @param maskContainers The {@link ar.edu.itba.ati.ati_soft.service.MaskHelper.MaskContainer}s
+     *                       that hold the masks.
+     * @return The created {@link MaskBank}.
+     * @throws IllegalArgumentException If there are no masks, if any of them is invalid,
+     *                                  or if they don't have the same odd length.
+     */
+    /* package */
+    static MaskBank bank(MaskHelper.MaskContainer... maskContainers) throws IllegalArgumentException {
+        Assert.notEmpty(maskContainers, "There must be at least one mask");
+        final int windowLength = maskContainers[0].getMask().length;
+        Assert.isTrue(windowLength % 2 == 1, "The window length must not be even");
+        final double[][] weights = new double[maskContainers.length][windowLength * windowLength];
+        for (int m = 0; m < maskContainers.length; m++) {
+            final Double[][] mask = maskContainers[m].getMask();
+            MaskHelper.validateMask(mask);
+            Assert.isTrue(mask.length == windowLength, "All the masks must have the same length");
+            // Masks are indexed by column and then by row, while weights are stored row by row
+            for (int i = 0; i < windowLength; i++) {
+                for (int j = 0; j < windowLength; j++) {
+                    weights[m][i * windowLength + j] = mask[j][i];
+                }
+            }
+        }
+        return new MaskBank(windowLength, weights);
+    }
+
+    /**
+     * Filters the given {@link Image} with all the masks in the given {@link MaskBank},
+     * keeping, for each pixel, the max. absolute value among all the masks.
+     * Pixels in the border are set to zero, as with the rest of the sliding window filters.
+     *
+     * @param image The {@link Image} to be filtered.
+     * @param bank  The {@link MaskBank} with the masks to be applied.
+     * @return The filtered {@link Image} (with a floating point sample type).
+     */
+    /* package */
+    static Image filterWithMax(Image image, MaskBank bank) {
+        return filter(image, bank, Reduction.MAX);
+    }
+
+    /**
+     * Filters the given {@link Image} with all the masks in the given {@link MaskBank},
+     * keeping, for each pixel, the modulus of the vector formed with the values of all the masks.
+     * Pixels in the border are set to zero, as with the rest of the sliding window filters.
+     *
+     * @param image The {@link Image} to be filtered.
+     * @param bank  The {@link MaskBank} with the masks to be applied.
+     * @return The filtered {@link Image} (with a floating point sample type).
+     */
+    /* package */
+    static Image filterWithModulus(Image image, MaskBank bank) {
+        return filter(image, bank, Reduction.MODULUS);
+    }
+
+    /**
+     * Filters the given {@link Image} with each of the masks in the given {@link MaskBank},
+     * reading each neighbourhood once for all of them (e.g to calculate both Sobel gradients in one pass).
+     * Pixels in the border are set to zero, as with the rest of the sliding window filters.
+     *
+     * @param image The {@link Image} to be filtered.
+     * @param bank  The {@link MaskBank} with the masks to be applied.
+     * @return The filtered {@link Image}s (with a floating point sample type), in the order of the masks.
+     */
+    /* package */
+    static Image[] filterEach(Image image, MaskBank bank) {
+        Assert.notNull(image, "The image must not be null");
+        Assert.notNull(bank, "The mask bank must not be null");
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int bands = image.getBands();
+        final double[][] weights = bank.weights;
+        final Image[] results = new Image[weights.length];
+        for (int m = 0; m < weights.length; m++) {
+            results[m] = image.createCompatible(width, height, bands, image.getSampleType().toFloatingPoint());
+        }
+        filter(image, bank.windowLength, (y, tile) -> {
+            final double[][] rows = new double[weights.length][width * bands]; // Borders are set to zero
+            if (tile != null) {
+                final double[] neighbourhood = new double[bank.windowLength * bank.windowLength];
+                for (int x = bank.windowLength / 2; x < width - bank.windowLength / 2; x++) {
+                    for (int b = 0; b < bands; b++) {
+                        loadNeighbourhood(tile, width, bands, bank.windowLength, x, b, neighbourhood);
+                        for (int m = 0; m < weights.length; m++) {
+                            rows[m][x * bands + b] = apply(weights[m], neighbourhood);
+                        }
+                    }
+                }
+            }
+            for (int m = 0; m < weights.length; m++) {
+                results[m].setRow(y, rows[m]);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Filters the given {@link Image} with all the masks in the given {@link MaskBank},
+     * combining their values with the given {@link Reduction}.
+     *
+     * @param image     The {@link Image} to be filtered.
+     * @param bank      The {@link MaskBank} with the masks to be applied.
+     * @param reduction The {@link Reduction} that combines the values of all the masks.
+     * @return The filtered {@link Image}.
+     */
+    private static Image filter(Image image, MaskBank bank, Reduction reduction) {
+        Assert.notNull(image, "The image must not be null");
+        Assert.notNull(bank, "The mask bank must not be null");
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int bands = image.getBands();
+        final double[][] weights = bank.weights;
+        final Image result = image.createCompatible(width, height, bands, image.getSampleType().toFloatingPoint());
+        filter(image, bank.windowLength, (y, tile) -> {
+            final double[] row = new double[width * bands]; // Pixels in the border are set to zero
+            if (tile != null) {
+                final double[] neighbourhood = new double[bank.windowLength * bank.windowLength];
+                for (int x = bank.windowLength / 2; x < width - bank.windowLength / 2; x++) {
+                    for (int b = 0; b < bands; b++) {
+                        // Each neighbourhood is loaded once, and evaluated against all the masks
+                        loadNeighbourhood(tile, width, bands, bank.windowLength, x, b, neighbourhood);
+                        double accumulated = 0;
+                        for (double[] mask : weights) {
+                            final double value = apply(mask, neighbourhood);
+                            accumulated = reduction == Reduction.MAX ?
+                                    Math.max(accumulated, Math.abs(value)) : accumulated + value * value;
+                        }
+                        row[x * bands + b] = reduction == Reduction.MAX ? accumulated : Math.sqrt(accumulated);
+                    }
+                }
+            }
+            result.setRow(y, row);
+        });
+        return result;
+    }
+
+    /**
+     * Processes the rows of the given {@link Image} in parallel, passing to the given {@link RowProcessor}
+     * the window rows of each row (or {@code null} for the rows in the border, for which the window does not fit).
+     *
+     * @param image        The {@link Image} to be processed.
+     * @param windowLength The length of the window.
+     * @param processor    The {@link RowProcessor} that processes each row.
+     */
+    private static void filter(Image image, int windowLength, RowProcessor processor) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int margin = windowLength / 2;
+        try (ProgressTracker tracker = ProgressTracker.start(height)) {
+            IntStream.range(0, height).parallel().forEach(y -> {
+                // The window rows of the whole row are read at once
+                processor.process(y, y >= margin && y < height - margin ?
+                        image.getTile(0, y - margin, width, windowLength, null) : null);
+                tracker.step();
+            });
+        }
+    }
+
+    /**
+     * Copies the neighbourhood of the given pixel from the given {@code tile} into the given
+     * {@code neighbourhood} array (row by row).
+     *
+     * @param tile          The window rows of the row of the pixel.
+     * @param width         The width of the tile.
+     * @param bands         The amount of bands of the tile.
+     * @param windowLength  The length of the window.
+     * @param x             The 'x' coordinate of the pixel.
+     * @param band          The band of the pixel.
+     * @param neighbourhood The array into which the neighbourhood is copied.
+     */
+    private static void loadNeighbourhood(double[] tile, int width, int bands, int windowLength, int x, int band,
+                                          double[] neighbourhood) {
+        final int rowLength = width * bands;
+        final int margin = windowLength / 2;
+        for (int i = 0, k = 0; i < windowLength; i++) {
+            int index = i * rowLength + (x - margin) * bands + band;
+            for (int j = 0; j < windowLength; j++, k++, index += bands) {
+                neighbourhood[k] = tile[index];
+            }
+        }
+    }
+
+    /**
+     * Applies the given mask to the given neighbourhood (i.e multiplies each element of the neighbourhood
+     * with its corresponding weight, summing all the resultant elements).
+     *
+     * @param mask          The weights of the mask.
+     * @param neighbourhood The neighbourhood.
+     * @return The result.
+     */
+    private static double apply(double[] mask, double[] neighbourhood) {
+        double value = 0;
+        for (int k = 0; k < neighbourhood.length; k++) {
+            value += neighbourhood[k] * mask[k];
+        }
+        return value;
+    }
+
+    /**
+     * Defines behaviour for an object that processes a row of an image, given its window rows.
+     */
+    @FunctionalInterface
+    private interface RowProcessor {
+
+        /**
+         * Processes the given row.
+         *
+         * @param y    The row.
+         * @param tile The window rows of the row (interleaved), or {@code null} if the row is in the border.
+         */
+        void process(int y, double[] tile);
+    }
+
+    /**
+     * The ways in which the values of all the masks are combined.
+     */
+    private enum Reduction {
+        /**
+         * The max. absolute value.
+         */
+        MAX,
+        /**
+         * The square root of the sum of the squared values.
+         */
+        MODULUS
+    }
+
+    /**
+     * An immutable set of masks with the same length, whose weights are stored in flat arrays
+     * (i.e row by row), so they can be applied without unboxing nor indexing two-dimensional arrays.
+     */
+    /* package */ static final class MaskBank {
+
+        /**
+         * The length of the masks.
+         */
+        private final int windowLength;
+
+        /**
+         * The weights of each mask, being the weight of row {@code i} and column {@code j}
+         * stored in position {@code i * windowLength + j}.
+         */
+        private final double[][] weights;
+
+        /**
+         * Constructor.
+         *
+         * @param windowLength The length of the masks.
+         * @param weights      The weights of each mask.
+         */
+        private MaskBank(int windowLength, double[][] weights) {
+            this.windowLength = windowLength;
+            this.weights = weights;
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.interfaces.ImageRowReader;
+import ar.edu.itba.ati.ati_soft.interfaces.ImageRowWriter;
+import ar.edu.itba.ati.ati_soft.interfaces.UnsupportedImageFileException;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SampleLayout;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
+import org.springframework.util.Assert;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Helper class that reads and writes PNM images (PGM and PPM, both plain and raw),
+ * streaming rows between a {@link FileChannel} and the {@link Image} raster
+ * (i.e no intermediate representation of the whole image is created).
+ * Rows can also be read and written one at a time (see {@link #openReader(Path)}
+ * and {@link #openWriter(Path, int, int, int)}), without creating an {@link Image} at all.
+ */
+/* package */ class PnmHelper {
+
+    /**
+     * The size of the buffer used to read and write files.
+     */
+    private static final int BUFFER_SIZE = 0x10000;
+
+    /**
+     * The max. value that can be written with 8-bit samples.
+     */
+    private static final int WRITE_MAX_VALUE = 0xFF;
+
+    /**
+     * The max. value that can be written with 16-bit samples (only used for {@link SampleType#UINT16} images).
+     */
+    private static final int WIDE_WRITE_MAX_VALUE = 0xFFFF;
+
+    /**
+     * The fraction of the max. heap size that a read raster can use (i.e bigger rasters are memory-mapped).
+     */
+    private static final double HEAP_FRACTION = 0.25;
+
+    /**
+     * Reads the PNM file in the given {@code path} (P2, P3, P5 or P6).
+     * The raster is stored in the heap if it fits in {@link #HEAP_FRACTION} of the max. heap size,
+     * or in a temporary memory-mapped file otherwise (see {@link Image#mappedTemporary(int, int, int)}),
+     * so images bigger than the heap can be read.
+     *
+     * @param path       The {@link Path} of the file.
+     * @param sampleType The {@link SampleType} with which samples are stored.
+     * @param layout     The {@link SampleLayout} of the raster.
+     * @return The read {@link Image}, holding the raw sample values (i.e not scaled according to the max. value).
+     * @throws IOException                   If any IO error occurs while reading the file
+     *                                       (including the file being truncated).
+     * @throws UnsupportedImageFileException If the file is not a supported PNM file.
+     */
+    /* package */
+    static Image read(Path path, SampleType sampleType, SampleLayout layout)
+            throws IOException, UnsupportedImageFileException {
+        try (ImageRowReader reader = openReader(path)) {
+            final int width = reader.getWidth();
+            final int height = reader.getHeight();
+            final int bands = reader.getBands();
+            final Image image = fitsInHeap((long) width * height * bands, sampleType) ?
+                    Image.trash(width, height, bands, sampleType, layout) :
+                    Image.mappedTemporary(width, height, bands, sampleType, layout);
+            try {
+                final double[] row = new double[width * bands];
+                for (int y = 0; y < height; y++) {
+                    image.setRow(y, reader.readRow(row));
+                }
+                return image;
+            } catch (IOException | RuntimeException e) {
+                image.close(); // Unmaps the raster now, instead of waiting for it to be garbage collected
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a raster with the given amount of {@code samples} of the given {@code sampleType}
+     * can be stored in the heap (i.e in an array that uses at most {@link #HEAP_FRACTION} of the max. heap size).
+     *
+     * @param samples    The amount of samples.
+     * @param sampleType The {@link SampleType} with which samples are stored.
+     * @return {@code true} if the raster fits in the heap, or {@code false} otherwise.
+     */
+    private static boolean fitsInHeap(long samples, SampleType sampleType) {
+        return samples <= Integer.MAX_VALUE - 8 // The max. length of an array in most virtual machines
+                && samples * sampleType.getBytes() <= HEAP_FRACTION * Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * Writes the given {@link Image} into the given {@code path}, as a raw PGM (P5) if it has one band,
+     * or as a raw PPM (P6) if it has three bands, using 8-bit samples
+     * (or 16-bit ones, i.e a max. value of 65535, if the image is stored with {@link SampleType#UINT16}).
+     * Samples are truncated to integers, and clamped to the range of the written samples.
+     *
+     * @param image The {@link Image} to be written.
+     * @param path  The {@link Path} of the file.
+     * @throws IOException              If any IO error occurs while writing the file.
+     * @throws IllegalArgumentException If the {@link Image} is not Gray or RGB (i.e 1 band or 3 bands).
+     */
+    /* package */
+    static void write(Image image, Path path) throws IOException, IllegalArgumentException {
+        Assert.notNull(image, "The image must not be null");
+        final int maxValue = image.getSampleType() == SampleType.UINT16 ? WIDE_WRITE_MAX_VALUE : WRITE_MAX_VALUE;
+        try (ImageRowWriter writer = new RowWriter(openChannel(path, image.getWidth(), image.getHeight(),
+                image.getBands()), image.getWidth(), image.getHeight(), image.getBands(), maxValue)) {
+            final double[] row = new double[image.getWidth() * image.getBands()];
+            for (int y = 0; y < image.getHeight(); y++) {
+                writer.writeRow(image.getRow(y, row));
+            }
+        }
+    }
+
+    /**
+     * Opens the PNM file in the given {@code path} (P2, P3, P5 or P6), reading its header,
+     * in order to read its rows sequentially.
+     *
+     * @param path The {@link Path} of the file.
+     * @return An {@link ImageRowReader} that reads the raw sample values (i.e not scaled according to the max. value).
+     * @throws IOException                   If any IO error occurs while reading the header.
+     * @throws UnsupportedImageFileException If the file is not a supported PNM file.
+     */
+    /* package */
+    static ImageRowReader openReader(Path path) throws IOException, UnsupportedImageFileException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new RowReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a raw PGM (P5) file if {@code bands} is one, or a raw PPM (P6) if it is three,
+     * in the given {@code path}, writing its header, in order to write its rows sequentially.
+     * Samples are truncated to integers, and clamped to the 8-bit range.
+     *
+     * @param path   The {@link Path} of the file.
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @param bands  The amount of bands of the image.
+     * @return An {@link ImageRowWriter} that writes the rows into the file.
+     * @throws IOException              If any IO error occurs while creating the file.
+     * @throws IllegalArgumentException If the image is not Gray or RGB (i.e 1 band or 3 bands),
+     *                                  or if any dimension is not positive.
+     */
+    /* package */
+    static ImageRowWriter openWriter(Path path, int width, int height, int bands)
+            throws IOException, IllegalArgumentException {
+        return new RowWriter(openChannel(path, width, height, bands), width, height, bands, WRITE_MAX_VALUE);
+    }
+
+    /**
+     * Opens a {@link FileChannel} to write a PNM image with the given dimensions into the given {@code path}.
+     *
+     * @param path   The {@link Path} of the file.
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @param bands  The amount of bands of the image.
+     * @return The opened {@link FileChannel}.
+     * @throws IOException              If any IO error occurs while creating the file.
+     * @throws IllegalArgumentException If the image is not Gray or RGB (i.e 1 band or 3 bands),
+     *                                  or if any dimension is not positive.
+     */
+    private static FileChannel openChannel(Path path, int width, int height, int bands)
+            throws IOException, IllegalArgumentException {
+        Assert.isTrue(bands == 1 || bands == 3, "Only Gray or RGB images are supported.");
+        Assert.isTrue(width > 0 && height > 0, "The image dimensions must be positive.");
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Writes all the content of the given {@code buffer} into the given {@code channel}, clearing it afterwards.
+     *
+     * @param buffer  The {@link ByteBuffer} to be flushed.
+     * @param channel The {@link FileChannel} into which data is written.
+     * @throws IOException If any IO error occurs while writing.
+     */
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Enum containing the supported PNM formats.
+     */
+    private enum Format {
+        PLAIN_GRAY('2', 1, false),
+        PLAIN_COLOR('3', 3, false),
+        RAW_GRAY('5', 1, true),
+        RAW_COLOR('6', 3, true);
+
+        /**
+         * The character following the 'P' in the magic number.
+         */
+        private final char number;
+
+        /**
+         * The amount of bands of the images in this format.
+         */
+        private final int bands;
+
+        /**
+         * Indicates whether samples are stored as binary values (or as decimal numbers).
+         */
+        private final boolean binary;
+
+        /**
+         * Constructor.
+         *
+         * @param number The character following the 'P' in the magic number.
+         * @param bands  The amount of bands of the images in this format.
+         * @param binary Indicates whether samples are stored as binary values.
+         */
+        Format(char number, int bands, boolean binary) {
+            this.number = number;
+            this.bands = bands;
+            this.binary = binary;
+        }
+
+        /**
+         * Returns the {@link Format} for the given magic number.
+         *
+         * @param first  The first byte of the file.
+         * @param second The second byte of the file.
+         * @return The {@link Format}.
+         * @throws UnsupportedImageFileException If the magic number does not belong to a supported format.
+         */
+        private static Format fromMagicNumber(int first, int second) throws UnsupportedImageFileException {
+            if (first == 'P') {
+                for (Format format : values()) {
+                    if (format.number == second) {
+                        return format;
+                    }
+                }
+            }
+            throw new UnsupportedImageFileException("Not a supported PNM file");
+        }
+    }
+
+    /**
+     * An {@link ImageRowReader} that reads the rows of a PNM file.
+     */
+    private static final class RowReader implements ImageRowReader {
+
+        /**
+         * The {@link FileChannel} from where the file is read (closed when this reader is closed).
+         */
+        private final FileChannel channel;
+
+        /**
+         * The {@link ChannelReader} wrapping the {@link #channel}.
+         */
+        private final ChannelReader reader;
+
+        /**
+         * The {@link Format} of the file.
+         */
+        private final Format format;
+
+        /**
+         * The width of the image.
+         */
+        private final int width;
+
+        /**
+         * The height of the image.
+         */
+        private final int height;
+
+        /**
+         * The amount of bytes of each sample (for binary formats).
+         */
+        private final int bytesPerSample;
+
+        /**
+         * The amount of rows already read.
+         */
+        private int rowsRead;
+
+        /**
+         * Constructor, which reads the header of the file.
+         *
+         * @param channel The {@link FileChannel} from where the file is read.
+         * @throws IOException                   If any IO error occurs while reading the header.
+         * @throws UnsupportedImageFileException If the file is not a supported PNM file.
+         */
+        private RowReader(FileChannel channel) throws IOException, UnsupportedImageFileException {
+            this.channel = channel;
+            this.reader = new ChannelReader(channel);
+            this.format = Format.fromMagicNumber(reader.read(), reader.read());
+            this.width = reader.readInt();
+            this.height = reader.readInt();
+            final int maxValue = reader.readInt();
+            if (width <= 0 || height <= 0 || maxValue <= 0 || maxValue > 0xFFFF) {
+                throw new UnsupportedImageFileException("Invalid PNM header");
+            }
+            // After the max. value there is a single whitespace (already consumed by #readInt)
+            this.bytesPerSample = maxValue > 0xFF ? 2 : 1;
+            this.rowsRead = 0;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getBands() {
+            return format.bands;
+        }
+
+        @Override
+        public boolean hasNextRow() {
+            return rowsRead < height;
+        }
+
+        @Override
+        public double[] readRow(double[] row) throws IOException, IllegalStateException {
+            Assert.notNull(row, "The row must not be null");
+            Assert.isTrue(row.length == width * format.bands, "The row length does not match the image width");
+            Assert.state(hasNextRow(), "All the rows were already read");
+            if (format.binary) {
+                reader.readBinary(row, bytesPerSample);
+            } else {
+                reader.readPlain(row);
+            }
+            rowsRead++;
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * An {@link ImageRowWriter} that writes rows into a raw PNM file,
+     * using 8-bit samples or 16-bit (big-endian) ones, according to its max. value.
+     */
+    private static final class RowWriter implements ImageRowWriter {
+
+        /**
+         * The {@link FileChannel} into which the file is written (closed when this writer is closed).
+         */
+        private final FileChannel channel;
+
+        /**
+         * The buffer holding the bytes that were not written yet.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * The amount of samples in each row.
+         */
+        private final int rowLength;
+
+        /**
+         * The max. value of the samples (i.e 255 for 8-bit samples, or 65535 for 16-bit ones).
+         */
+        private final int maxValue;
+
+        /**
+         * The height of the image.
+         */
+        private final int height;
+
+        /**
+         * The amount of rows already written.
+         */
+        private int rowsWritten;
+
+        /**
+         * Constructor, which writes the header of the file.
+         *
+         * @param channel  The {@link FileChannel} into which the file is written.
+         * @param width    The width of the image.
+         * @param height   The height of the image.
+         * @param bands    The amount of bands of the image (1 or 3).
+         * @param maxValue The max. value of the samples (i.e 255 for 8-bit samples, or 65535 for 16-bit ones).
+         */
+        private RowWriter(FileChannel channel, int width, int height, int bands, int maxValue) {
+            this.channel = channel;
+            this.rowLength = width * bands;
+            this.maxValue = maxValue;
+            this.height = height;
+            this.buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, rowLength * bytesPerSample()));
+            final String header = (bands == 1 ? "P5" : "P6") + "\n" + width + " " + height
+                    + "\n" + maxValue + "\n";
+            this.buffer.put(header.getBytes(StandardCharsets.US_ASCII));
+            this.rowsWritten = 0;
+        }
+
+        @Override
+        public void writeRow(double[] row) throws IOException, IllegalStateException {
+            Assert.notNull(row, "The row must not be null");
+            Assert.isTrue(row.length == rowLength, "The row length does not match the image width");
+            Assert.state(rowsWritten < height, "All the rows were already written");
+            if (buffer.remaining() < rowLength * bytesPerSample()) {
+                flush(buffer, channel);
+            }
+            if (maxValue > WRITE_MAX_VALUE) {
+                for (double sample : row) {
+                    buffer.putShort((short) Math.max(0, Math.min(maxValue, (int) sample))); // Big-endian
+                }
+            } else {
+                for (double sample : row) {
+                    buffer.put((byte) Math.max(0, Math.min(maxValue, (int) sample)));
+                }
+            }
+            rowsWritten++;
+        }
+
+        /**
+         * @return The amount of bytes of each written sample.
+         */
+        private int bytesPerSample() {
+            return maxValue > WRITE_MAX_VALUE ? 2 : 1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush(buffer, channel);
+                if (rowsWritten < height) {
+                    throw new IOException("Only " + rowsWritten + " of " + height + " rows were written");
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads bytes from a {@link FileChannel} through a buffer.
+     */
+    private static final class ChannelReader {
+
+        /**
+         * The {@link FileChannel} from where bytes are read.
+         */
+        private final FileChannel channel;
+
+        /**
+         * The buffer holding the read bytes that were not consumed yet.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Constructor.
+         *
+         * @param channel The {@link FileChannel} from where bytes are read.
+         */
+        private ChannelReader(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            this.buffer.flip(); // Starts empty
+        }
+
+        /**
+         * Reads the next byte.
+         *
+         * @return The read byte, as an unsigned value.
+         * @throws IOException If any IO error occurs while reading, or if the end of the file is reached.
+         */
+        private int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                fill();
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        /**
+         * Reads a decimal number, skipping the whitespaces and comments before it.
+         * The whitespace that follows the number is consumed.
+         *
+         * @return The read number.
+         * @throws IOException                   If any IO error occurs while reading,
+         *                                       or if the end of the file is reached.
+         * @throws UnsupportedImageFileException If a non numeric token is found.
+         */
+        private int readInt() throws IOException, UnsupportedImageFileException {
+            int value = read();
+            while (Character.isWhitespace(value) || value == '#') {
+                if (value == '#') {
+                    while (value != '\n' && value != '\r') {
+                        value = read();
+                    }
+                }
+                value = read();
+            }
+            if (value < '0' || value > '9') {
+                throw new UnsupportedImageFileException("Invalid PNM file: a number was expected");
+            }
+            int number = 0;
+            while (value >= '0' && value <= '9') {
+                number = number * 10 + (value - '0');
+                if (number > 0xFFFFFF) {
+                    throw new UnsupportedImageFileException("Invalid PNM file: number out of range");
+                }
+                // The last number of a file might not be followed by a whitespace
+                if (!buffer.hasRemaining() && !tryFill()) {
+                    return number;
+                }
+                value = read();
+            }
+            if (!Character.isWhitespace(value)) {
+                throw new UnsupportedImageFileException("Invalid PNM file: a whitespace was expected");
+            }
+            return number;
+        }
+
+        /**
+         * Reads binary samples (unsigned, big-endian) into the given {@code samples} array.
+         *
+         * @param samples        The array to be filled.
+         * @param bytesPerSample The amount of bytes of each sample (1 or 2).
+         * @throws IOException If any IO error occurs while reading, or if the end of the file is reached.
+         */
+        private void readBinary(double[] samples, int bytesPerSample) throws IOException {
+            int index = 0;
+            while (index < samples.length) {
+                if (buffer.remaining() < bytesPerSample) {
+                    fill();
+                }
+                final int available = Math.min(samples.length - index, buffer.remaining() / bytesPerSample);
+                if (bytesPerSample == 1) {
+                    for (int i = 0; i < available; i++) {
+                        samples[index++] = buffer.get() & 0xFF;
+                    }
+                } else {
+                    for (int i = 0; i < available; i++) {
+                        samples[index++] = buffer.getShort() & 0xFFFF;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reads plain (i.e decimal) samples into the given {@code samples} array.
+         *
+         * @param samples The array to be filled.
+         * @throws IOException If any IO error occurs while reading, or if the end of the file is reached.
+         */
+        private void readPlain(double[] samples) throws IOException {
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = readInt();
+            }
+        }
+
+        /**
+         * Reads more bytes from the channel, keeping the not consumed ones.
+         *
+         * @throws IOException If any IO error occurs while reading, or if the end of the file is reached.
+         */
+        private void fill() throws IOException {
+            if (!tryFill()) {
+                throw new EOFException("Unexpected end of PNM file");
+            }
+        }
+
+        /**
+         * Tries to read more bytes from the channel, keeping the not consumed ones.
+         *
+         * @return {@code true} if bytes were read, or {@code false} if the end of the file was reached.
+         * @throws IOException If any IO error occurs while reading.
+         */
+        private boolean tryFill() throws IOException {
+            buffer.compact();
+            int read = 0;
+            while (read == 0) {
+                read = channel.read(buffer);
+            }
+            buffer.flip();
+            return read > 0;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
+import org.springframework.util.Assert;
+
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * A point operation (i.e an operation in which each new sample only depends on the old value of that sample,
+ * and the band it belongs to), that can be composed with other point operations,
+ * and that is applied through a lookup table.
+ * <p>
+ * When applied, the operation is evaluated once for each integer value in its domain (by default, between
+ * {@code 0} and {@code 255}), for each band, building a lookup table.
+ * Then, samples holding integer values inside the domain are mapped through the table,
+ * while the rest are mapped evaluating the operation (so the result is always the same as evaluating it).
+ * Composing operations (see {@link #andThen(PointOperation)}) produces a single table,
+ * so a chain of point operations is applied in one pass over the raster.
+ */
+/* package */ final class PointOperation {
+
+    /**
+     * The first value of the default domain.
+     */
+    private static final int DEFAULT_DOMAIN_START = 0;
+
+    /**
+     * The amount of entries of the default domain (i.e the 8-bit range).
+     */
+    private static final int DEFAULT_DOMAIN_SIZE = 0x100;
+
+    /**
+     * The max. amount of entries a lookup table can have.
+     * Domains bigger than this are not tabulated (i.e the operation is evaluated for each sample).
+     */
+    private static final int MAX_TABLE_SIZE = 0x10000;
+
+    /**
+     * The functions to apply to each band, or {@code null} if the {@link #uniformFunction} is used.
+     */
+    private final DoubleUnaryOperator[] bandFunctions;
+
+    /**
+     * The function to apply to all the bands, or {@code null} if the {@link #bandFunctions} are used.
+     */
+    private final DoubleUnaryOperator uniformFunction;
+
+    /**
+     * The first value of the domain of the lookup table.
+     */
+    private final int domainStart;
+
+    /**
+     * The amount of entries of the lookup table.
+     */
+    private final int domainSize;
+
+    /**
+     * Constructor.
+     *
+     * @param bandFunctions   The functions to apply to each band, or {@code null} if the uniform function is used.
+     * @param uniformFunction The function to apply to all the bands, or {@code null} if band functions are used.
+     * @param domainStart     The first value of the domain of the lookup table.
+     * @param domainSize      The amount of entries of the lookup table.
+     */
+    private PointOperation(DoubleUnaryOperator[] bandFunctions, DoubleUnaryOperator uniformFunction,
+                           int domainStart, int domainSize) {
+        this.bandFunctions = bandFunctions;
+        this.uniformFunction = uniformFunction;
+        this.domainStart = domainStart;
+        this.domainSize = domainSize;
+    }
+
+    /**
+     * Creates a {@link PointOperation} that applies the given {@code function} to all the bands.
+     *
+     * @param function The function to be applied to each sample.
+     * @return The created {@link PointOperation}.
+     */
+    /* package */
+    static PointOperation of(DoubleUnaryOperator function) {
+        Assert.notNull(function, "The function must not be null");
+        return new PointOperation(null, function, DEFAULT_DOMAIN_START, DEFAULT_DOMAIN_SIZE);
+    }
+
+    /**
+     * Creates a {@link PointOperation} that applies a different function to each band.
+     *
+     * @param bands            The amount of bands of the {@link Image}s to which the operation can be applied.
+     * @param functionProvider An {@link IntFunction} that takes a band and returns the function for it.
+     * @return The created {@link PointOperation}.
+     */
+    /* package */
+    static PointOperation perBand(int bands, IntFunction<DoubleUnaryOperator> functionProvider) {
+        Assert.isTrue(bands > 0, "The amount of bands must be positive");
+        Assert.notNull(functionProvider, "The function provider must not be null");
+        final DoubleUnaryOperator[] functions = IntStream.range(0, bands)
+                .mapToObj(functionProvider)
+                .toArray(DoubleUnaryOperator[]::new);
+        Assert.noNullElements(functions, "The function provider must not return null functions");
+        return new PointOperation(functions, null, DEFAULT_DOMAIN_START, DEFAULT_DOMAIN_SIZE);
+    }
+
+    /**
+     * Creates a new {@link PointOperation} that tabulates this operation
+     * for all the integers between {@code first} and {@code last} (both inclusive).
+     *
+     * @param first The first value of the new domain.
+     * @param last  The last value of the new domain.
+     * @return The new {@link PointOperation}.
+     */
+    /* package */ PointOperation withDomain(int first, int last) {
+        Assert.isTrue(first <= last, "The first value of the domain must not be greater than the last one");
+        final long size = (long) last - first + 1;
+        // Domains bigger than the max. table size are not tabulated (see #tabulate(int))
+        return new PointOperation(bandFunctions, uniformFunction, first, (int) Math.min(size, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns a composed {@link PointOperation} that first applies this operation, and then the {@code after} one.
+     * The composed operation keeps the domain of this operation (i.e the one of the input samples).
+     *
+     * @param after The {@link PointOperation} to be applied after this one.
+     * @return The composed {@link PointOperation}.
+     * @throws IllegalArgumentException If both operations apply a different function to each band,
+     *                                  but for different amounts of bands.
+     */
+    /* package */ PointOperation andThen(PointOperation after) throws IllegalArgumentException {
+        Assert.notNull(after, "The operation to compose must not be null");
+        if (this.uniformFunction != null && after.uniformFunction != null) {
+            return new PointOperation(null, this.uniformFunction.andThen(after.uniformFunction),
+                    domainStart, domainSize);
+        }
+        final int bands = this.bandFunctions != null ? this.bandFunctions.length : after.bandFunctions.length;
+        Assert.isTrue(after.bandFunctions == null || after.bandFunctions.length == bands,
+                "Both operations must be defined for the same amount of bands");
+        final DoubleUnaryOperator[] composed = IntStream.range(0, bands)
+                .mapToObj(b -> this.getFunction(b).andThen(after.getFunction(b)))
+                .toArray(DoubleUnaryOperator[]::new);
+        return new PointOperation(composed, null, domainStart, domainSize);
+    }
+
+    /**
+     * Applies this operation to the given {@link Image}.
+     *
+     * @param image The {@link Image} to which the operation will be applied.
+     * @return A new {@link Image} with the operation applied.
+     * @throws IllegalArgumentException If this operation applies a different function to each band,
+     *                                  and the amount of bands does not match the one of the {@code image}.
+     */
+    /* package */ Image apply(Image image) throws IllegalArgumentException {
+        Assert.notNull(image, "The image must not be null");
+        return apply(image, image.getSampleType());
+    }
+
+    /**
+     * Applies this operation to the given {@link Image}, storing the result with the given {@link SampleType}
+     * (i.e operations that can produce negative, or out of range, values can promote the type).
+     *
+     * @param image      The {@link Image} to which the operation will be applied.
+     * @param resultType The {@link SampleType} of the result.
+     * @return A new {@link Image} with the operation applied.
+     * @throws IllegalArgumentException If this operation applies a different function to each band,
+     *                                  and the amount of bands does not match the one of the {@code image}.
+     */
+    /* package */ Image apply(Image image, SampleType resultType) throws IllegalArgumentException {
+        Assert.notNull(image, "The image must not be null");
+        Assert.notNull(resultType, "The result type must not be null");
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int bands = image.getBands();
+        final LookupTable lookupTable = tabulate(bands);
+        final Image result = image.createCompatible(width, height, bands, resultType);
+        try (ProgressTracker tracker = ProgressTracker.start(height)) {
+            IntStream.range(0, height).parallel().forEach(y -> {
+                final double[] row = image.getRow(y, null);
+                lookupTable.mapInPlace(row);
+                result.setRow(y, row);
+                tracker.step();
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Builds the {@link LookupTable} of this operation, for the given amount of {@code bands}.
+     *
+     * @param bands The amount of bands of the samples that will be mapped.
+     * @return The built {@link LookupTable}.
+     * @throws IllegalArgumentException If this operation applies a different function to each band,
+     *                                  and the amount of bands does not match the given one.
+     */
+    /* package */ LookupTable tabulate(int bands) throws IllegalArgumentException {
+        Assert.isTrue(bandFunctions == null || bandFunctions.length == bands,
+                "The operation is defined for " + (bandFunctions == null ? 0 : bandFunctions.length)
+                        + " bands, but the image has " + bands + ".");
+        final DoubleUnaryOperator[] functions = IntStream.range(0, bands)
+                .mapToObj(this::getFunction)
+                .toArray(DoubleUnaryOperator[]::new);
+        final double[][] tables = new double[bands][];
+        // Domains that are too big are not tabulated (i.e tables are left null)
+        if (domainSize <= MAX_TABLE_SIZE) {
+            for (int b = 0; b < bands; b++) {
+                // Bands that share the function share the table
+                tables[b] = uniformFunction != null && b > 0 ? tables[b - 1] : tabulate(functions[b]);
+            }
+        }
+        return new LookupTable(functions, tables, domainStart);
+    }
+
+    /**
+     * Evaluates the given {@code function} for each value in the domain.
+     *
+     * @param function The function to be tabulated.
+     * @return The lookup table.
+     */
+    private double[] tabulate(DoubleUnaryOperator function) {
+        final double[] table = new double[domainSize];
+        for (int i = 0; i < domainSize; i++) {
+            table[i] = function.applyAsDouble(domainStart + i);
+        }
+        return table;
+    }
+
+    /**
+     * Returns the function to be applied to the given {@code band}.
+     *
+     * @param band The band.
+     * @return The function for the band.
+     */
+    private DoubleUnaryOperator getFunction(int band) {
+        return uniformFunction != null ? uniformFunction : bandFunctions[band];
+    }
+
+
+    /**
+     * A {@link PointOperation} tabulated for a given amount of bands, ready to map samples.
+     */
+    /* package */ static final class LookupTable {
+
+        /**
+         * The functions used for those samples that are not in the tables (one per band).
+         */
+        private final DoubleUnaryOperator[] functions;
+
+        /**
+         * The tables (one per band, or {@code null}s if the domain was not tabulated).
+         */
+        private final double[][] tables;
+
+        /**
+         * The value corresponding to the first entry of the tables.
+         */
+        private final int domainStart;
+
+        /**
+         * Constructor.
+         *
+         * @param functions   The functions used for those samples that are not in the tables (one per band).
+         * @param tables      The tables (one per band, or {@code null}s if the domain was not tabulated).
+         * @param domainStart The value corresponding to the first entry of the tables.
+         */
+        private LookupTable(DoubleUnaryOperator[] functions, double[][] tables, int domainStart) {
+            this.functions = functions;
+            this.tables = tables;
+            this.domainStart = domainStart;
+        }
+
+        /**
+         * Maps the given {@code value}, using the table of the given {@code band} if the value belongs to the domain,
+         * or evaluating the function of the band otherwise.
+         *
+         * @param band  The band to which the value belongs.
+         * @param value The value to be mapped.
+         * @return The mapped value.
+         */
+        /* package */ double map(int band, double value) {
+            final double[] table = tables[band];
+            if (table != null) {
+                final int integer = (int) value;
+                final int index = integer - domainStart;
+                if (integer == value && index >= 0 && index < table.length) {
+                    return table[index];
+                }
+            }
+            return functions[band].applyAsDouble(value);
+        }
+
+        /**
+         * Maps, in place, the given {@code samples}, which are stored band-interleaved
+         * (i.e the sample in position {@code i} belongs to band {@code i % bands}).
+         *
+         * @param samples The samples to be mapped.
+         */
+        /* package */ void mapInPlace(double[] samples) {
+            final int bands = functions.length;
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = map(i % bands, samples[i]);
+            }
+        }
+    }
+}
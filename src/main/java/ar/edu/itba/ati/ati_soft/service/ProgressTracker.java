@@ -0,0 +1,126 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.interfaces.OperationContext;
+import ar.edu.itba.ati.ati_soft.interfaces.ProgressMonitor;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the steps (e.g rows) of an operation, reporting its progress to the {@link ProgressMonitor}
+ * bound to the thread that started it (see {@link OperationContext}), and checking whether it must be cancelled.
+ * <p>
+ * Trackers started while another one is open in the same thread are nested: their progress is reported
+ * as the progress of the current step of the outer tracker, so operations composed of other operations
+ * can be tracked by starting a tracker with a step per inner operation.
+ * Steps can be performed from any thread (e.g the workers of a parallel stream),
+ * but trackers must be started and closed in the same thread.
+ */
+/* package */ final class ProgressTracker implements AutoCloseable {
+
+    /**
+     * Holds the open tracker of each thread (i.e the one to which new trackers are nested).
+     */
+    private static final ThreadLocal<ProgressTracker> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The {@link ProgressMonitor} to which progress is reported, or {@code null} if there is none.
+     */
+    private final ProgressMonitor monitor;
+
+    /**
+     * The tracker in which this one is nested, or {@code null} if it is not nested.
+     */
+    private final ProgressTracker parent;
+
+    /**
+     * The total amount of steps.
+     */
+    private final long totalSteps;
+
+    /**
+     * The amount of steps performed.
+     */
+    private final AtomicLong doneSteps;
+
+    /**
+     * Constructor.
+     *
+     * @param monitor    The {@link ProgressMonitor} to which progress is reported, or {@code null} if there is none.
+     * @param parent     The tracker in which this one is nested, or {@code null} if it is not nested.
+     * @param totalSteps The total amount of steps.
+     */
+    private ProgressTracker(ProgressMonitor monitor, ProgressTracker parent, long totalSteps) {
+        this.monitor = monitor;
+        this.parent = parent;
+        this.totalSteps = totalSteps;
+        this.doneSteps = new AtomicLong();
+    }
+
+    /**
+     * Starts tracking an operation with the given amount of steps, in the calling thread.
+     *
+     * @param totalSteps The total amount of steps (at least one is assumed).
+     * @return The started tracker, which must be closed when the operation finishes.
+     * @throws CancellationException If the operation must be cancelled.
+     */
+    /* package */
+    static ProgressTracker start(long totalSteps) throws CancellationException {
+        final ProgressTracker parent = CURRENT.get();
+        final ProgressMonitor monitor = parent != null ? parent.monitor : OperationContext.getMonitor().orElse(null);
+        final ProgressTracker tracker = new ProgressTracker(monitor, parent, Math.max(1, totalSteps));
+        tracker.checkCancelled(); // Before opening it, as it is not closed if this method throws
+        CURRENT.set(tracker);
+        return tracker;
+    }
+
+    /**
+     * Registers a performed step, reporting the progress.
+     *
+     * @throws CancellationException If the operation must be cancelled.
+     */
+    /* package */ void step() throws CancellationException {
+        if (monitor == null) {
+            return; // Nothing to report nor to check
+        }
+        report(Math.min(1d, (double) doneSteps.incrementAndGet() / totalSteps));
+        checkCancelled();
+    }
+
+    /**
+     * Checks whether the operation must be cancelled (i.e for loops whose progress can't be measured).
+     *
+     * @throws CancellationException If the operation must be cancelled.
+     */
+    /* package */ void checkCancelled() throws CancellationException {
+        if (monitor != null && monitor.isCancelled()) {
+            throw new CancellationException("The operation was cancelled");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (CURRENT.get() != this) {
+            return; // Not open in this thread
+        }
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+
+    /**
+     * Reports the given {@code fraction} of this tracker
+     * (to the parent, as the progress of its current step, or to the monitor).
+     *
+     * @param fraction The fraction of this tracker's steps that are done.
+     */
+    private void report(double fraction) {
+        if (parent != null) {
+            parent.report(Math.min(1d, (parent.doneSteps.get() + fraction) / parent.totalSteps));
+        } else {
+            monitor.updateProgress(fraction);
+        }
+    }
+}
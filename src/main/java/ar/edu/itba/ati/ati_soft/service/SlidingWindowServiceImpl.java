@@ -1,19 +1,29 @@
 package ar.edu.itba.ati.ati_soft.service;
 
+import ar.edu.itba.ati.ati_soft.interfaces.ImageRowReader;
+import ar.edu.itba.ati.ati_soft.interfaces.ImageRowWriter;
 import ar.edu.itba.ati.ati_soft.interfaces.ImageThresholdService;
 import ar.edu.itba.ati.ati_soft.interfaces.SlidingWindowService;
+import ar.edu.itba.ati.ati_soft.models.Corner;
+import ar.edu.itba.ati.ati_soft.models.Gradients;
 import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.Region;
+import ar.edu.itba.ati.ati_soft.models.SampleLayout;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
+import ar.edu.itba.ati.ati_soft.models.SusanFeature;
 import ar.edu.itba.ati.ati_soft.utils.TriFunction;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.function.BiFunction;
+import java.util.List;
 import java.util.function.Function;
-import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.IntStream;
 
 /**
@@ -22,6 +32,16 @@ import java.util.stream.IntStream;
 @Service
 public class SlidingWindowServiceImpl implements SlidingWindowService {
 
+    /**
+     * The amount of rows of each band processed when applying a filter.
+     */
+    private static final int TILE_ROWS = 64;
+
+    /**
+     * The tolerance used when checking whether the values of a mask sum more than 1 (e.g Gaussian masks).
+     */
+    private static final double MASK_SUM_TOLERANCE = 1e-9;
+
     private final ImageThresholdService imageThresholdService;
 
     @Autowired
@@ -35,78 +55,50 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
 
     @Override
     public Image applyMeanFilter(Image image, int windowLength) {
-        return applyFilter(image, windowLength,
-                array -> Arrays.stream(array).flatMap(Arrays::stream)
-                        .mapToDouble(i -> i)
-                        .average()
-                        .orElseThrow(RuntimeException::new));
+        return applyFilter(image, windowLength, meanFunction());
+    }
+
+    @Override
+    public void applyMeanFilter(ImageRowReader source, ImageRowWriter sink, int windowLength) throws IOException {
+        applyFilter(source, sink, windowLength, meanFunction());
     }
 
     @Override
     public Image applyMedianFilter(Image image, int windowLength) {
-        return applyFilter(image, windowLength,
-                array -> {
-                    final long arrayAmount = Arrays.stream(array).flatMap(Arrays::stream).count();
-                    return Arrays.stream(array).flatMap(Arrays::stream)
-                            .mapToDouble(i -> i)
-                            .sorted()
-                            .skip((arrayAmount - 1) / 2)
-                            .limit(2 - arrayAmount % 2)
-                            .average()
-                            .orElseThrow(RuntimeException::new);
-                });
+        return applyFilter(image, windowLength, medianFunction());
+    }
+
+    @Override
+    public void applyMedianFilter(ImageRowReader source, ImageRowWriter sink, int windowLength) throws IOException {
+        applyFilter(source, sink, windowLength, medianFunction());
     }
 
     @Override
     public Image applyWeightMedianFilter(Image image, Integer[][] weights) {
-        Assert.notNull(weights, "The weights array must not be null");
-        Assert.notEmpty(weights, "The weights array must not be empty");
-        final int length = weights.length;
-        Assert.isTrue(Arrays.stream(weights)
-                .filter(internalArray -> internalArray == null || internalArray.length != length)
-                .count() == 0, "The weights array must be square");
+        final Function<Double[][], Double> filterFunction = weightMedianFunction(weights); // Validates the weights
+        return applyFilter(image, weights.length, filterFunction);
+    }
 
-        return applyFilter(image, length,
-                array -> {
-                    final int arrayAmount = Arrays.stream(weights).flatMap(Arrays::stream).mapToInt(i -> i).sum();
-                    return IntStream.range(0, array.length)
-                            .mapToObj(x -> IntStream.range(0, array[x].length)
-                                    .mapToObj(y -> Collections.nCopies(weights[x][y], array[x][y]))
-                                    .flatMap(Collection::stream))
-                            .flatMap(Function.identity())
-                            .mapToDouble(i -> i)
-                            .sorted()
-                            .skip((arrayAmount - 1) / 2)
-                            .limit(2 - arrayAmount % 2)
-                            .average()
-                            .orElseThrow(RuntimeException::new);
-                });
+    @Override
+    public void applyWeightMedianFilter(ImageRowReader source, ImageRowWriter sink, Integer[][] weights)
+            throws IOException {
+        final Function<Double[][], Double> filterFunction = weightMedianFunction(weights); // Validates the weights
+        applyFilter(source, sink, weights.length, filterFunction);
     }
 
     @Override
     public Image applyGaussianFilter(Image image, double standardDeviation) {
-        Assert.isTrue(standardDeviation > 0, "The standard deviation must be positive");
-        final int margin = (int) standardDeviation;
-        // First calculate values using the Gaussian function
-        final double variance = standardDeviation * standardDeviation; // Avoid recalculating this
-        final double factor = 1 / (2 * Math.PI * variance); // Avoid recalculating this
-        final Double[][] unfinishedMask = IntStream.range(-margin, margin + 1)
-                .mapToObj(x -> IntStream.range(-margin, margin + 1)
-                        .mapToObj(y -> factor * Math.exp(-(x * x + y * y) / variance))
-                        .toArray(Double[]::new))
-                .toArray(Double[][]::new);
-        // Then, calculate the sum of values
-        final double sum = Arrays.stream(unfinishedMask)
-                .flatMap(Arrays::stream)
-                .reduce(0.0, (o1, o2) -> o1 + o2);
-        // Finally, produce the mask by dividing each value with the calculated sum
-        final Double[][] mask = Arrays.stream(unfinishedMask)
-                .map(internal -> Arrays.stream(internal)
-                        .map(value -> value / sum)
-                        .toArray(Double[]::new))
-                .toArray(Double[][]::new);
+        return applySeparableFilter(image, KernelCache.gaussian(standardDeviation).copySeparableFactor());
+    }
 
-        return filterWithMask(image, mask);
+    @Override
+    public void applyGaussianFilter(ImageRowReader source, ImageRowWriter sink, double standardDeviation)
+            throws IOException {
+        final double[] factor = KernelCache.gaussian(standardDeviation).copySeparableFactor();
+        Assert.notNull(source, "The source must not be null");
+        Assert.notNull(sink, "The sink must not be null");
+        applySeparableFilter(source.getWidth(), source.getHeight(), source.getBands(), factor,
+                (y, row) -> source.readRow(row), (y, row) -> sink.writeRow(row));
     }
 
     @Override
@@ -114,6 +106,19 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
         return doApplyBilateralFilter(image, spatialStd, rangeStd, windowSize);
     }
 
+    @Override
+    public Image applyBilateralFilter(Image image, Region region, double spatialStd, double rangeStd,
+                                      int windowSize) {
+        return ImageManipulationHelper.applyToRegion(image, region, windowSize / 2,
+                view -> doApplyBilateralFilter(view, spatialStd, rangeStd, windowSize));
+    }
+
+    @Override
+    public void applyBilateralFilter(ImageRowReader source, ImageRowWriter sink,
+                                     double spatialStd, double rangeStd, int windowSize) throws IOException {
+        applyFilter(source, sink, windowSize, BilateralFilterHelper.windowFunction(spatialStd, rangeStd, windowSize));
+    }
+
     @Override
     public Image applyBilateralFilterWithCIELabColor(Image image, double spatialStd, double rangeStd, int windowSize) {
         Assert.isTrue(image.getBands() == 1 || image.getBands() == 3,
@@ -123,7 +128,59 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
         if (image.getBands() == 1) {
             return applyBilateralFilterForGrayImage(image, spatialStd, rangeStd, windowSize);
         }
-        return applyBilateralFilterForColorImage(image, spatialStd, rangeStd, windowSize);
+        return applyBilateralFilterForColorImage(image, ImageManipulationHelper.normalization(image),
+                spatialStd, rangeStd, windowSize);
+    }
+
+    @Override
+    public Image applyBilateralFilterWithCIELabColor(Image image, Region region,
+                                                     double spatialStd, double rangeStd, int windowSize) {
+        Assert.isTrue(image.getBands() == 1 || image.getBands() == 3,
+                "Only one band or three bands images (For three bands images, the image must be RGB)");
+        if (image.getBands() == 1) {
+            return applyBilateralFilter(image, region, spatialStd, rangeStd, windowSize);
+        }
+        // The normalization depends on the whole image, so it is calculated before restricting to the region
+        final PointOperation normalization = ImageManipulationHelper.normalization(image);
+        return ImageManipulationHelper.applyToRegion(image, region, windowSize / 2,
+                view -> applyBilateralFilterForColorImage(view, normalization, spatialStd, rangeStd, windowSize));
+    }
+
+    @Override
+    public Image applyBilateralGridFilter(Image image, double spatialStd, double rangeStd) {
+        return BilateralFilterHelper.gridFilter(image, spatialStd, rangeStd);
+    }
+
+    @Override
+    public Image applyBilateralGridFilter(Image image, Region region, double spatialStd, double rangeStd) {
+        return ImageManipulationHelper.applyToRegion(image, region, gridMargin(spatialStd),
+                view -> BilateralFilterHelper.gridFilter(view, spatialStd, rangeStd));
+    }
+
+    @Override
+    public Image applyBilateralGridFilterWithCIELabColor(Image image, double spatialStd, double rangeStd) {
+        Assert.isTrue(image.getBands() == 1 || image.getBands() == 3,
+                "Only one band or three bands images (For three bands images, the image must be RGB)");
+        if (image.getBands() == 1) {
+            return BilateralFilterHelper.gridFilter(image, spatialStd, rangeStd);
+        }
+        return applyInCieLab(image, ImageManipulationHelper.normalization(image),
+                cieLabImage -> BilateralFilterHelper.gridFilter(cieLabImage, spatialStd, rangeStd));
+    }
+
+    @Override
+    public Image applyBilateralGridFilterWithCIELabColor(Image image, Region region,
+                                                         double spatialStd, double rangeStd) {
+        Assert.isTrue(image.getBands() == 1 || image.getBands() == 3,
+                "Only one band or three bands images (For three bands images, the image must be RGB)");
+        if (image.getBands() == 1) {
+            return applyBilateralGridFilter(image, region, spatialStd, rangeStd);
+        }
+        // The normalization depends on the whole image, so it is calculated before restricting to the region
+        final PointOperation normalization = ImageManipulationHelper.normalization(image);
+        return ImageManipulationHelper.applyToRegion(image, region, gridMargin(spatialStd),
+                view -> applyInCieLab(view, normalization,
+                        cieLabImage -> BilateralFilterHelper.gridFilter(cieLabImage, spatialStd, rangeStd)));
     }
 
 
@@ -150,74 +207,126 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
 
     @Override
     public Image prewittGradientOperatorBorderDetectionMethod(Image image) {
-        return multiMaskFilteringWithModulus(ImageManipulationHelper.toGray(image), PrewittMask.TOP, PrewittMask.RIGHT);
+        return MultiMaskFilterHelper.filterWithModulus(ImageManipulationHelper.toGray(image), PREWITT_GRADIENT_BANK);
     }
 
     @Override
     public Image sobelGradientOperatorBorderDetectionMethod(Image image) {
-        return multiMaskFilteringWithModulus(ImageManipulationHelper.toGray(image), SobelMask.TOP, SobelMask.RIGHT);
+        return MultiMaskFilterHelper.filterWithModulus(ImageManipulationHelper.toGray(image), SOBEL_GRADIENT_BANK);
     }
 
     @Override
     public Image anonymousMaxDirectionBorderDetectionMethod(Image image) {
-        return multiMaskFilteringWithMax(ImageManipulationHelper.toGray(image), AnonymousMask.values());
+        return MultiMaskFilterHelper.filterWithMax(ImageManipulationHelper.toGray(image), ANONYMOUS_DIRECTIONS_BANK);
     }
 
     @Override
     public Image kirshMaxDirectionBorderDetectionMethod(Image image) {
-        return multiMaskFilteringWithMax(ImageManipulationHelper.toGray(image), KirshMask.values());
+        return MultiMaskFilterHelper.filterWithMax(ImageManipulationHelper.toGray(image), KIRSH_DIRECTIONS_BANK);
     }
 
     @Override
     public Image prewittMaxDirectionBorderDetectionMethod(Image image) {
-        return multiMaskFilteringWithMax(ImageManipulationHelper.toGray(image), PrewittMask.values());
+        return MultiMaskFilterHelper.filterWithMax(ImageManipulationHelper.toGray(image), PREWITT_DIRECTIONS_BANK);
     }
 
     @Override
     public Image sobelMaxDirectionBorderDetectionMethod(Image image) {
-        return multiMaskFilteringWithMax(ImageManipulationHelper.toGray(image), SobelMask.values());
+        return MultiMaskFilterHelper.filterWithMax(ImageManipulationHelper.toGray(image), SOBEL_DIRECTIONS_BANK);
     }
 
     @Override
     public Image laplaceMethod(Image image) {
-        return laplaceMethod(image, (prev, actual) -> true);
+        return laplaceMethod(image, 0d);
     }
 
     @Override
     public Image laplaceMethodWithSlopeEvaluation(Image image, double slopeThreshold) {
-        return laplaceMethod(image, (prev, actual) -> Math.abs(prev - actual) >= slopeThreshold);
+        return laplaceMethod(image, slopeThreshold);
     }
 
     @Override
     public Image laplaceOfGaussianMethod(Image image, double sigma) {
-        return laplaceOfGaussianMethod(image, sigma, (prev, actual) -> true);
+        return laplaceOfGaussianMethod(image, sigma, 0d);
     }
 
     @Override
     public Image laplaceOfGaussianWithSlopeEvaluation(Image image, double sigma, double slopeThreshold) {
-        return laplaceOfGaussianMethod(image, sigma, (prev, actual) -> Math.abs(prev - actual) >= slopeThreshold);
+        return laplaceOfGaussianMethod(image, sigma, slopeThreshold);
     }
 
     @Override
     public Image suppressNoMaxPixels(Image image, double sigma) {
-        final int width = image.getWidth();
-        final int height = image.getHeight();
-        final int bands = image.getBands();
-        final Image grayImage = ImageManipulationHelper.toGray(image);
-        final Image filtered = sigma == 0 ? grayImage : applyGaussianFilter(grayImage, sigma);
-        final Image gx = filterWithMask(filtered, SobelMask.TOP.getMask());
-        final Image gy = filterWithMask(filtered, SobelMask.RIGHT.getMask());
-        // Use the modulus instead of the 1st-norm, as is has better results
-        final Image gradientImage = ImageManipulationHelper.createApplying(() -> Image.empty(width, height, bands),
-                ((x, y, b) -> {
-                    final double xGradient = gx.getSample(x, y, b);
-                    final double yGradient = gy.getSample(x, y, b);
-                    return Math.sqrt(xGradient * xGradient + yGradient * yGradient);
-                }));
-
-        final Image anglesImage = ImageManipulationHelper.createApplying(() -> Image.empty(width, height, bands),
-                new AnglesFunction(gx, gy).andThen(SlidingWindowServiceImpl::correctAngle));
+        // Both phases (i.e the gradients and the suppression) are a step
+        try (ProgressTracker tracker = ProgressTracker.start(2)) {
+            final Gradients gradients = gradients(image, sigma);
+            tracker.step();
+            final Image suppressed = suppressNoMaxPixels(gradients);
+            tracker.step();
+            return suppressed;
+        }
+    }
+
+    /**
+     * Suppresses the no max. pixels of the modulus of the given {@link Gradients}.
+     *
+     * @param gradients The {@link Gradients}.
+     * @return The processed {@link Image}.
+     */
+    private static Image suppressNoMaxPixels(Gradients gradients) {
+        final Image gx = gradients.getXGradient();
+        final Image gy = gradients.getYGradient();
+        final int width = gx.getWidth();
+        final int height = gx.getHeight();
+        final int bands = gx.getBands();
+        // Each phase (i.e modulus, angles and suppression) is a step
+        try (ProgressTracker tracker = ProgressTracker.start(3)) {
+            // Use the modulus instead of the 1st-norm, as is has better results
+            final Image gradientImage = ImageManipulationHelper.createApplying(() -> Image.empty(width, height, bands),
+                    ((x, y, b) -> {
+                        final double xGradient = gx.getSample(x, y, b);
+                        final double yGradient = gy.getSample(x, y, b);
+                        return Math.sqrt(xGradient * xGradient + yGradient * yGradient);
+                    }));
+            tracker.step();
+
+            final Image anglesImage = ImageManipulationHelper.createApplying(() -> Image.empty(width, height, bands),
+                    new AnglesFunction(gx, gy).andThen(SlidingWindowServiceImpl::correctAngle));
+            tracker.step();
+
+            final Image suppressed = suppressNoMaxPixels(gradientImage, anglesImage);
+            tracker.step();
+            return suppressed;
+        }
+    }
 
+    @Override
+    public Gradients gradients(Image image, double sigma) {
+        Assert.isTrue(sigma >= 0, "The standard deviation must not be negative");
+        // Each phase (i.e gray conversion, gaussian filter and gradients) is a step
+        try (ProgressTracker tracker = ProgressTracker.start(3)) {
+            final Image grayImage = ImageManipulationHelper.toGray(image);
+            tracker.step();
+            final Image filtered = sigma == 0 ? grayImage : applyGaussianFilter(grayImage, sigma);
+            tracker.step();
+            // Both gradients are calculated in the same pass
+            final Image[] gradients = MultiMaskFilterHelper.filterEach(filtered, SOBEL_GRADIENT_BANK);
+            tracker.step();
+            return new Gradients(gradients[0], gradients[1], sigma);
+        }
+    }
+
+    /**
+     * Performs the non-maximum suppression step of the Canny method,
+     * setting to zero the pixels of the given {@code gradientImage} that are not maximums along the gradient direction.
+     *
+     * @param gradientImage The gradient modulus {@link Image}.
+     * @param anglesImage   The {@link Image} holding the (corrected) gradient angles.
+     * @return The new {@link Image}.
+     */
+    private static Image suppressNoMaxPixels(Image gradientImage, Image anglesImage) {
+        final int width = gradientImage.getWidth();
+        final int height = gradientImage.getHeight();
         return ImageManipulationHelper.createApplying(gradientImage,
                 (x, y, b, v) -> {
                     if (v <= 0) {
@@ -242,47 +351,86 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
 
     @Override
     public Image cannyDetection(Image image, double sigma) {
-        return imageThresholdService.hysteresisThreshold(suppressNoMaxPixels(image, sigma));
+        try (ProgressTracker tracker = ProgressTracker.start(2)) {
+            final Gradients gradients = gradients(image, sigma);
+            tracker.step();
+            final Image result = cannyDetection(gradients);
+            tracker.step();
+            return result;
+        }
+    }
+
+    @Override
+    public Image cannyDetection(Gradients gradients) {
+        try (ProgressTracker tracker = ProgressTracker.start(2)) {
+            final Image suppressed = suppressNoMaxPixels(gradients);
+            tracker.step();
+            final Image result = imageThresholdService.hysteresisThreshold(suppressed);
+            tracker.step();
+            return result;
+        }
+    }
+
+    @Override
+    public Image cannyDetection(Image image, Region region, double sigma) {
+        // The gaussian window margin, plus one pixel for the gradient, and one for the max. suppression
+        return ImageManipulationHelper.applyToRegion(image, region, (int) sigma + 2,
+                view -> cannyDetection(view, sigma));
+    }
+
+    @Override
+    public Image cannyDetection(Image image, Region region, double sigma, boolean globalThresholds) {
+        if (!globalThresholds) {
+            return cannyDetection(image, region, sigma);
+        }
+        // The thresholds depend on the whole image, so it is processed, and only the region is kept
+        return ImageManipulationHelper.applyToRegion(image, region, 0,
+                view -> region.viewOf(cannyDetection(image, sigma)));
     }
 
     @Override
     public Image susanDetection(Image image, double t) {
-        // Avoid recalculating these values...
-        final long amountOfPixelsInMask = Arrays.stream(SUSAN_CIRCULAR_MASK).flatMap(Arrays::stream)
-                .filter(v -> v == 1d)
-                .count();
-        final int centerRow = SUSAN_CIRCULAR_MASK.length / 2;
-        final int centerColumn = SUSAN_CIRCULAR_MASK.length / 2;
-
-        final Image circularImage = applyFilter(ImageManipulationHelper.toGray(image), SUSAN_CIRCULAR_MASK.length,
-                window -> {
-                    final double center = window[centerRow][centerColumn];
-                    final double nr0 = IntStream.range(0, SUSAN_CIRCULAR_MASK.length)
-                            .mapToObj(x -> IntStream.range(0, SUSAN_CIRCULAR_MASK.length)
-                                    .filter(y -> !(x == centerRow && y == centerColumn))
-                                    .filter(y -> SUSAN_CIRCULAR_MASK[x][y] == 1d)
-                                    .mapToObj(y -> window[x][y]))
-                            .flatMap(Function.identity())
-                            .map(r -> Math.abs(r - center) < t ? 1d : 0d)
-                            .reduce(0d, (o1, o2) -> o1 + o2);
-                    return 1 - (nr0 / amountOfPixelsInMask);
-                });
-        final int width = image.getWidth();
-        final int height = image.getHeight();
-
-        return ImageManipulationHelper.createApplying(() -> Image.empty(width, height, 3),
-                (x, y) -> {
-                    // The image is gray so only one sample is needed
-                    final double v = circularImage.getSample(x, y, 0);
-                    if (v >= 0.65 && v <= 0.85) {
-                        // In this case, it is a corner
-                        return new Double[]{255d, 0d, 0d};
-                    } else if (v >= 0.4 && v <= 0.6) {
-                        // In this case, it is a corner
-                        return new Double[]{0d, 255d, 0d};
-                    }
-                    return new Double[]{0d, 0d, 0d};
-                });
+        return SusanHelper.draw(image.getWidth(), image.getHeight(), susanFeatures(image, t));
+    }
+
+    @Override
+    public List<SusanFeature> susanFeatures(Image image, double t) {
+        return susanFeatures(image, grayImage -> SusanHelper.findFeatures(grayImage, t));
+    }
+
+    @Override
+    public List<SusanFeature> smoothSusanFeatures(Image image, double t) {
+        return susanFeatures(image, grayImage -> SusanHelper.findSmoothFeatures(grayImage, t));
+    }
+
+    @Override
+    public Image harrisCornerDetection(Image image, double sigma, double windowSigma, double k, int maxCorners) {
+        return CornerHelper.draw(image, harrisCorners(image, sigma, windowSigma, k, maxCorners));
+    }
+
+    @Override
+    public List<Corner> harrisCorners(Image image, double sigma, double windowSigma, double k, int maxCorners) {
+        return corners(image, sigma, gradients -> harrisCorners(gradients, windowSigma, k, maxCorners));
+    }
+
+    @Override
+    public List<Corner> harrisCorners(Gradients gradients, double windowSigma, double k, int maxCorners) {
+        return corners(gradients, windowSigma, CornerHelper.harris(k), maxCorners);
+    }
+
+    @Override
+    public Image shiTomasiCornerDetection(Image image, double sigma, double windowSigma, int maxCorners) {
+        return CornerHelper.draw(image, shiTomasiCorners(image, sigma, windowSigma, maxCorners));
+    }
+
+    @Override
+    public List<Corner> shiTomasiCorners(Image image, double sigma, double windowSigma, int maxCorners) {
+        return corners(image, sigma, gradients -> shiTomasiCorners(gradients, windowSigma, maxCorners));
+    }
+
+    @Override
+    public List<Corner> shiTomasiCorners(Gradients gradients, double windowSigma, int maxCorners) {
+        return corners(gradients, windowSigma, CornerHelper.shiTomasi(), maxCorners);
     }
 
     // ================================================================================================================
@@ -294,15 +442,20 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
     private final static Double[][] PREWITT_MASK = {{1d, 1d, 1d}, {0d, 0d, 0d}, {-1d, -1d, -1d}};
     private final static Double[][] SOBEL_MASK = {{1d, 2d, 1d}, {0d, 0d, 0d}, {-1d, -2d, -1d}};
     private final static Double[][] LAPLACE_MASK = {{0d, -1d, 0d}, {-1d, 4d, -1d}, {0d, -1d, 0d}};
-    private final static Double[][] SUSAN_CIRCULAR_MASK = {
-            {0d, 0d, 1d, 1d, 1d, 0d, 0d},
-            {0d, 1d, 1d, 1d, 1d, 1d, 0d},
-            {1d, 1d, 1d, 1d, 1d, 1d, 1d},
-            {1d, 1d, 1d, 1d, 1d, 1d, 1d},
-            {1d, 1d, 1d, 1d, 1d, 1d, 1d},
-            {0d, 1d, 1d, 1d, 1d, 1d, 0d},
-            {0d, 0d, 1d, 1d, 1d, 0d, 0d},
-    };
+
+    // Mask banks (i.e all the directions of each mask, to be applied in a single pass)
+    private final static MultiMaskFilterHelper.MaskBank PREWITT_GRADIENT_BANK =
+            MultiMaskFilterHelper.bank(PrewittMask.TOP, PrewittMask.RIGHT);
+    private final static MultiMaskFilterHelper.MaskBank SOBEL_GRADIENT_BANK =
+            MultiMaskFilterHelper.bank(SobelMask.TOP, SobelMask.RIGHT);
+    private final static MultiMaskFilterHelper.MaskBank ANONYMOUS_DIRECTIONS_BANK =
+            MultiMaskFilterHelper.bank(AnonymousMask.values());
+    private final static MultiMaskFilterHelper.MaskBank KIRSH_DIRECTIONS_BANK =
+            MultiMaskFilterHelper.bank(KirshMask.values());
+    private final static MultiMaskFilterHelper.MaskBank PREWITT_DIRECTIONS_BANK =
+            MultiMaskFilterHelper.bank(PrewittMask.values());
+    private final static MultiMaskFilterHelper.MaskBank SOBEL_DIRECTIONS_BANK =
+            MultiMaskFilterHelper.bank(SobelMask.values());
 
     /**
      * Enum containing the anonymous mask in all directions.
@@ -457,10 +610,142 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
     }
 
 
+    // ================================================================================================================
+    // Filter functions
+    // ================================================================================================================
+
+    /**
+     * @return A filter function that calculates the mean of the window.
+     */
+    private static Function<Double[][], Double> meanFunction() {
+        return array -> Arrays.stream(array).flatMap(Arrays::stream)
+                .mapToDouble(i -> i)
+                .average()
+                .orElseThrow(RuntimeException::new);
+    }
+
+    /**
+     * @return A filter function that calculates the median of the window.
+     */
+    private static Function<Double[][], Double> medianFunction() {
+        return array -> {
+            final long arrayAmount = Arrays.stream(array).flatMap(Arrays::stream).count();
+            return Arrays.stream(array).flatMap(Arrays::stream)
+                    .mapToDouble(i -> i)
+                    .sorted()
+                    .skip((arrayAmount - 1) / 2)
+                    .limit(2 - arrayAmount % 2)
+                    .average()
+                    .orElseThrow(RuntimeException::new);
+        };
+    }
+
+    /**
+     * Creates a filter function that calculates the weighted median of the window, using the given {@code weights}.
+     *
+     * @param weights A square two-dimensional array containing the weights.
+     * @return The filter function.
+     */
+    private static Function<Double[][], Double> weightMedianFunction(Integer[][] weights) {
+        Assert.notNull(weights, "The weights array must not be null");
+        Assert.notEmpty(weights, "The weights array must not be empty");
+        final int length = weights.length;
+        Assert.isTrue(Arrays.stream(weights)
+                .filter(internalArray -> internalArray == null || internalArray.length != length)
+                .count() == 0, "The weights array must be square");
+
+        return array -> {
+            final int arrayAmount = Arrays.stream(weights).flatMap(Arrays::stream).mapToInt(i -> i).sum();
+            return IntStream.range(0, array.length)
+                    .mapToObj(x -> IntStream.range(0, array[x].length)
+                            .mapToObj(y -> Collections.nCopies(weights[x][y], array[x][y]))
+                            .flatMap(Collection::stream))
+                    .flatMap(Function.identity())
+                    .mapToDouble(i -> i)
+                    .sorted()
+                    .skip((arrayAmount - 1) / 2)
+                    .limit(2 - arrayAmount % 2)
+                    .average()
+                    .orElseThrow(RuntimeException::new);
+        };
+    }
+
+    /**
+     * Creates a filter function that applies the given {@code mask} to the window
+     * (i.e multiplies each element of the window with its corresponding element in the mask,
+     * summing all the resultant elements).
+     *
+     * @param mask The mask to be applied.
+     * @return The filter function.
+     */
+    private static Function<Double[][], Double> maskFunction(Double[][] mask) {
+        MaskHelper.validateMask(mask);
+        return array -> IntStream.range(0, array.length)
+                .mapToObj(x -> IntStream.range(0, array[x].length)
+                        .mapToObj(y -> array[x][y] * mask[x][y]))
+                .flatMap(Function.identity())
+                .reduce(0.0, (o1, o2) -> o1 + o2);
+    }
+
+
     // ================================================================================================================
     // Helper methods
     // ================================================================================================================
 
+    /**
+     * Finds the borders and corners of the gray version of the given {@link Image} with the given SUSAN detector.
+     *
+     * @param image    The {@link Image} to be processed.
+     * @param detector A {@link Function} that finds the {@link SusanFeature}s of a gray {@link Image}.
+     * @return The found {@link SusanFeature}s.
+     */
+    private static List<SusanFeature> susanFeatures(Image image, Function<Image, List<SusanFeature>> detector) {
+        // Both phases (i.e the gray conversion and the detection) are a step
+        try (ProgressTracker tracker = ProgressTracker.start(2)) {
+            final Image grayImage = ImageManipulationHelper.toGray(image);
+            tracker.step();
+            final List<SusanFeature> features = detector.apply(grayImage);
+            tracker.step();
+            return features;
+        }
+    }
+
+    /**
+     * Finds the corners of the given {@link Image} with the given {@code detector},
+     * after calculating its gradients with {@link #gradients(Image, double)}.
+     *
+     * @param image    The {@link Image} to be processed.
+     * @param sigma    The standard deviation of the Gaussian filter applied before calculating the gradients.
+     * @param detector A {@link Function} that finds the {@link Corner}s, given the {@link Gradients}.
+     * @return The found {@link Corner}s, sorted by response in descending order.
+     */
+    private List<Corner> corners(Image image, double sigma, Function<Gradients, List<Corner>> detector) {
+        // Both phases (i.e the gradients and the detection) are a step
+        try (ProgressTracker tracker = ProgressTracker.start(2)) {
+            final Gradients gradients = gradients(image, sigma);
+            tracker.step();
+            final List<Corner> corners = detector.apply(gradients);
+            tracker.step();
+            return corners;
+        }
+    }
+
+    /**
+     * Finds the corners given the {@link Gradients} of an {@link Image}.
+     *
+     * @param gradients   The {@link Gradients}.
+     * @param windowSigma The standard deviation of the Gaussian window of the structure tensor.
+     * @param measure     The {@link CornerHelper.CornerMeasure} that calculates the response of each pixel.
+     * @param maxCorners  The max. amount of corners to be returned.
+     * @return The found {@link Corner}s, sorted by response in descending order.
+     */
+    private static List<Corner> corners(Gradients gradients, double windowSigma, CornerHelper.CornerMeasure measure,
+                                        int maxCorners) {
+        Assert.notNull(gradients, "The gradients must not be null");
+        return CornerHelper.findCorners(gradients.getXGradient(), gradients.getYGradient(),
+                gradients.getInvalidBorder(), windowSigma, measure, maxCorners);
+    }
+
     /**
      * Performs bilateral filtering for gray images.
      *
@@ -479,21 +764,50 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
     /**
      * Performs bilateral filtering for color images, applying an RGB to CIE-Lab transformation before filtering,
      * and reconverting to RGB after the process.
+     * The range weight of each neighbour is calculated with the color difference in the CIE-Lab space,
+     * filtering the three channels jointly (see {@link BilateralFilterHelper#jointFilter(Image, double, double, int)}).
      *
-     * @param image      The {@link Image} to which the filter will be applied.
-     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
-     * @param rangeStd   The Gaussian standard deviation for the range filtering.
-     * @param windowSize The size of the window to be used.
+     * @param image         The {@link Image} to which the filter will be applied.
+     * @param normalization The {@link PointOperation} that normalizes the image before the transformation.
+     * @param spatialStd    The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd      The Gaussian standard deviation for the range filtering.
+     * @param windowSize    The size of the window to be used.
      * @return a new {@link Image} with the filter applied.
      */
-    private static Image applyBilateralFilterForColorImage(Image image,
+    private static Image applyBilateralFilterForColorImage(Image image, PointOperation normalization,
                                                            double spatialStd, double rangeStd, int windowSize) {
+        // The three channels are filtered jointly, weighting neighbours by their color difference
+        return applyInCieLab(image, normalization,
+                cieLabImage -> BilateralFilterHelper.jointFilter(cieLabImage, spatialStd, rangeStd, windowSize));
+    }
+
+    /**
+     * Applies the given {@code filter} to the given color {@link Image},
+     * applying an RGB to CIE-Lab transformation before filtering, and reconverting to RGB after the process.
+     *
+     * @param image         The {@link Image} to which the filter will be applied.
+     * @param normalization The {@link PointOperation} that normalizes the image before the transformation.
+     * @param filter        The filter, which takes and returns CIE-Lab {@link Image}s.
+     * @return a new {@link Image} with the filter applied.
+     */
+    private static Image applyInCieLab(Image image, PointOperation normalization, UnaryOperator<Image> filter) {
         Assert.isTrue(image.getBands() == 3, "Only three bands images (in RGB color space)");
-        final Image cieLabImage = ColorHelper.rgbToCieLab(ImageManipulationHelper.normalize(image));
-        final Image filteredCieLab = doApplyBilateralFilter(cieLabImage, spatialStd, rangeStd, windowSize);
+        final Image cieLabImage = ColorHelper.rgbToCieLab(normalization.apply(image));
+        final Image filteredCieLab = filter.apply(cieLabImage);
         return ColorHelper.cieLabToRGB(filteredCieLab);
     }
 
+    /**
+     * Returns the margin the bilateral grid filter needs around a region (i.e three spatial standard deviations,
+     * beyond which the Gaussian blur of the grid has a negligible weight).
+     *
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @return The margin.
+     */
+    private static int gridMargin(double spatialStd) {
+        return (int) Math.ceil(3 * spatialStd);
+    }
+
 
     /**
      * Performs the bilateral filtering of the given {@code image}.
@@ -504,186 +818,116 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
      * @param windowSize The size of the window to be used.
      * @return a new {@link Image} with the filter applied.
      * @apiNote This method assumes that the images are 1-band or 3-band images (being CIE-Lab in this case).
+     * @implNote The filter is applied by {@link BilateralFilterHelper}, instead of with the sliding window
+     * filters, as it reads the window rows of each row at once, and processes rows in parallel.
      */
     private static Image doApplyBilateralFilter(Image image, double spatialStd, double rangeStd, int windowSize) {
-        Assert.isTrue(spatialStd > 0 && rangeStd > 0, "Both standard deviations must be positive");
-        final int margin = windowSize / 2;
-        final double spatialFactor = 2 * spatialStd * spatialStd;
-        final Double[][] spatialGauss = IntStream.range(-margin, margin + 1)
-                .mapToObj(x -> IntStream.range(-margin, margin + 1)
-                        .mapToObj(y -> Math.exp(-(x * x + y * y) / spatialFactor))
-                        .toArray(Double[]::new))
-                .toArray(Double[][]::new);
-        final double rangeFactor = 2 * rangeStd * rangeStd;
-        // The bilateral filtering is composed of a spatial domain filter (which only depends on the distance of pixels)
-        // and a range filter (which depends on the intensity value of the image in a given region)
-        // That's why we must use the applyFilter method, which receives a function that depends on a portion
-        // of an image (the so called window). This method allows to operate with the window,
-        // defining the mask based on it.
-        return applyFilter(image, windowSize,
-                window -> {
-                    // First get the center of the window, which will be used for range filtering
-                    final double center = window[margin][margin];
-                    // Then calculate the unfinished mask, which lacks the division of the sum
-                    final Double[][] partiallyFiltered = IntStream.range(0, window.length)
-                            .mapToObj(x -> IntStream.range(0, window[x].length)
-                                    .mapToObj(y -> {
-                                        final double windowValue = window[x][y];
-                                        final double difference = windowValue - center;
-                                        final double distance = difference * difference;
-                                        final double exponential = Math.exp(-distance / rangeFactor);
-                                        return exponential * spatialGauss[x][y]; // Combination of both filters
-                                    })
-                                    .toArray(Double[]::new)
-                            ).toArray(Double[][]::new);
-                    // Calculate the sum of the mask
-                    final double sum = Arrays.stream(partiallyFiltered)
-                            .flatMap(Arrays::stream)
-                            .reduce(0.0, (o1, o2) -> o1 + o2);
-                    // Then, apply the filtering with the mask by multiplying each element of the window
-                    // with its corresponding element in the mask, and them summing all the resultant elements
-                    // The result is then divided by the sum (acts as a normalization)
-                    return IntStream.range(0, window.length)
-                            .mapToObj(x -> IntStream.range(0, window[x].length)
-                                    .mapToObj(y -> partiallyFiltered[x][y] * window[x][y]))
-                            .flatMap(Function.identity())
-                            .reduce(0.0, (o1, o2) -> o1 + o2) / sum;
-                });
-    }
-
-
-    /**
-     * Performs a multi-mask filtering, according to the given
-     * {@link ar.edu.itba.ati.ati_soft.service.MaskHelper.MaskContainer}s,
-     * applying the modulus between all the generated border images.
-     *
-     * @param image          The {@link Image} to be filtered.
-     * @param maskContainers The {@link ar.edu.itba.ati.ati_soft.service.MaskHelper.MaskContainer}
-     *                       that holds the masks to be applied.
-     * @return The filtered image.
-     */
-    private static Image multiMaskFilteringWithModulus(Image image, MaskHelper.MaskContainer... maskContainers) {
-        return Arrays.stream(maskContainers)
-                .parallel()
-                .map(MaskHelper.MaskContainer::getMask)
-                .map(mask -> filterWithMask(image, mask))
-                .map(img -> ImageManipulationHelper.createApplying(img, (x, y, b, v) -> v * v))
-                .reduce(((img1, img2) ->
-                        ImageManipulationHelper.createApplying(img1, (x, y, b, v) -> v + img2.getSample(x, y, b))))
-                .map(img -> ImageManipulationHelper.createApplying(img, (x, y, b, v) -> Math.sqrt(v)))
-                .orElseThrow(() -> new RuntimeException("This should not happen"));
-    }
-
-    /**
-     * Performs a multi-mask filtering, according to the given
-     * {@link ar.edu.itba.ati.ati_soft.service.MaskHelper.MaskContainer}s,
-     * applying the max between all the generated border images.
-     *
-     * @param image          The {@link Image} to be filtered.
-     * @param maskContainers The {@link ar.edu.itba.ati.ati_soft.service.MaskHelper.MaskContainer}
-     *                       that holds the masks to be applied.
-     * @return The filtered image.
-     */
-    private static Image multiMaskFilteringWithMax(Image image, MaskHelper.MaskContainer... maskContainers) {
-        final int width = image.getWidth();
-        final int height = image.getHeight();
-        final int bands = image.getBands();
-        return Arrays.stream(maskContainers)
-                .parallel()
-                .map(MaskHelper.MaskContainer::getMask)
-                .map(mask -> filterWithMask(image, mask))
-                .map(img -> ImageManipulationHelper.createApplying(img, (x, y, b, v) -> Math.abs(v)))
-                .reduce(Image.empty(width, height, bands),
-                        (img1, img2) -> ImageManipulationHelper.createApplying(img1,
-                                (x, y, b, v) -> Math.max(v, img2.getSample(x, y, b))));
+        return BilateralFilterHelper.filter(image, spatialStd, rangeStd, windowSize);
     }
 
     /**
      * Applies the Laplace method for border detection.
      *
-     * @param image       The {@link Image} to which the method will be applied.
-     * @param acceptSlope A {@link BiFunction} that takes to contiguous pixels, calculates the slope,
-     *                    and tells whether this slope is acceptable (i.e can be considered a border).
+     * @param image          The {@link Image} to which the method will be applied.
+     * @param slopeThreshold The min. slope (i.e absolute difference between two contiguous pixels)
+     *                       for a change of sign to be considered a border.
      * @return The processed {@link Image}.
      */
-    private static Image laplaceMethod(Image image, BiFunction<Double, Double, Boolean> acceptSlope) {
-        return secondDerivativeMethod(image, LAPLACE_MASK, acceptSlope);
+    private static Image laplaceMethod(Image image, double slopeThreshold) {
+        return secondDerivativeMethod(image, LAPLACE_MASK, slopeThreshold);
     }
 
     /**
      * Applies the Laplace method for border detection.
      *
-     * @param image       The {@link Image} to which the method will be applied.
-     * @param acceptSlope A {@link BiFunction} that takes to contiguous pixels, calculates the slope,
-     *                    and tells whether this slope is acceptable (i.e can be considered a border).
+     * @param image          The {@link Image} to which the method will be applied.
+     * @param slopeThreshold The min. slope (i.e absolute difference between two contiguous pixels)
+     *                       for a change of sign to be considered a border.
      * @return The processed {@link Image}.
      */
-    private static Image laplaceOfGaussianMethod(Image image, double sigma,
-                                                 BiFunction<Double, Double, Boolean> acceptSlope) {
-        Assert.isTrue(sigma > 0, "The standard deviation must be positive");
-        final int margin = (int) (sigma * 3);
-        final double variance = sigma * sigma; // Avoid recalculating this
-        final double factor = -1 / (Math.sqrt(2 * Math.PI) * variance * sigma); // Avoid recalculating this
-        final Double[][] mask = IntStream.range(-margin, margin + 1)
-                .mapToObj(x -> IntStream.range(-margin, margin + 1)
-                        .mapToObj(y -> (x * x + y * y) / variance)
-                        .map(value -> factor * (2 - value) * Math.exp(-value / 2))
-                        .toArray(Double[]::new))
-                .toArray(Double[][]::new);
-        return secondDerivativeMethod(image, mask, acceptSlope);
+    private static Image laplaceOfGaussianMethod(Image image, double sigma, double slopeThreshold) {
+        final Double[][] mask = KernelCache.laplacianOfGaussian(sigma).toMask(); // Validates the sigma
+        return secondDerivativeMethod(image, mask, slopeThreshold);
     }
 
     /**
      * Applies the a second derivative method for border detection.
      *
-     * @param image       The {@link Image} to which the method will be applied.
-     * @param mask        The mask to be applied.
-     * @param acceptSlope A {@link BiFunction} that takes to contiguous pixels, calculates the slope,
-     *                    and tells whether this slope is acceptable (i.e can be considered a border).
+     * @param image          The {@link Image} to which the method will be applied.
+     * @param mask           The mask to be applied.
+     * @param slopeThreshold The min. slope (i.e absolute difference between two contiguous pixels)
+     *                       for a change of sign to be considered a border.
      * @return The processed {@link Image}.
      */
-    private static Image secondDerivativeMethod(Image image, Double[][] mask,
-                                                BiFunction<Double, Double, Boolean> acceptSlope) {
-        final Image maskImage = filterWithMask(ImageManipulationHelper.toGray(image), mask);
-        final Supplier<Image> emptyImageSupplier =
-                () -> Image.empty(maskImage.getWidth(), maskImage.getHeight(), maskImage.getBands());
-
-        final Image zeroCrossByColumn = ImageManipulationHelper.createApplying(emptyImageSupplier,
-                (x, y, b) -> borderPixel(0, maskImage.getWidth() - 1, x,
-                        position -> maskImage.getSample(position, y, b), acceptSlope));
-        final Image zeroCrossByRow = ImageManipulationHelper.createApplying(emptyImageSupplier,
-                (x, y, b) -> borderPixel(0, maskImage.getHeight() - 1, y,
-                        position -> maskImage.getSample(x, position, b), acceptSlope));
-
-        return ImageManipulationHelper.createApplying(emptyImageSupplier,
-                (x, y, b) -> zeroCrossByColumn.getSample(x, y, b) + zeroCrossByRow.getSample(x, y, b) == 0 ? 0d : 255d);
+    private static Image secondDerivativeMethod(Image image, Double[][] mask, double slopeThreshold) {
+        // Both phases (i.e the filter and the zero crossing detection) are a step
+        try (ProgressTracker tracker = ProgressTracker.start(2)) {
+            final Image maskImage = filterWithMask(ImageManipulationHelper.toGray(image), mask);
+            tracker.step();
+            final Image borders = zeroCrossings(maskImage, slopeThreshold);
+            tracker.step();
+            return borders;
+        }
     }
 
     /**
-     * Returns a border pixel (i.e {@code 0.0} if there is no border, or {@code 255.0} if there is border).
-     * This method uses the zero cross technique.
+     * Detects the zero crossings (i.e changes of sign) of the given second derivative {@link Image},
+     * producing a border image (i.e {@code 0.0} if there is no border, or {@code 255.0} if there is border).
+     * A pixel is a border if there is a change of sign with its previous pixel in its row or in its column
+     * (skipping the pixel if it is zero), and the slope between them is at least the given {@code slopeThreshold}.
+     * Both directions are checked in the same scan, reading for each row only the row itself and its neighbours,
+     * and processing rows in parallel.
      *
-     * @param lowerLimit    The lower limit to iterate.
-     * @param upperLimit    The upper limit to iterate.
-     * @param position      The actual position (i.e
-     * @param pixelSupplier The function that returns a pixel according to the actual position.
-     * @return The border pixel.
+     * @param secondDerivative The second derivative {@link Image} (e.g the result of applying the Laplace mask).
+     * @param slopeThreshold   The min. slope for a change of sign to be considered a border.
+     * @return The border {@link Image}.
      */
-    private static double borderPixel(int lowerLimit, int upperLimit, int position,
-                                      Function<Integer, Double> pixelSupplier,
-                                      BiFunction<Double, Double, Boolean> acceptSlope) {
-        Assert.isTrue(position >= lowerLimit && position <= upperLimit, "The position is out of range");
-
-        if (position == lowerLimit) {
-            return 0d;
-        }
-        final double pixel = pixelSupplier.apply(position);
-        final double prev = pixelSupplier.apply(position - 1);
-        if (position == upperLimit) {
-            return changeOfSign(prev, pixel) && acceptSlope.apply(prev, pixel) ? 255d : 0;
+    private static Image zeroCrossings(Image secondDerivative, double slopeThreshold) {
+        final int width = secondDerivative.getWidth();
+        final int height = secondDerivative.getHeight();
+        final int bands = secondDerivative.getBands();
+        final int rowLength = width * bands;
+        final Image result = Image.empty(width, height, bands);
+        try (ProgressTracker tracker = ProgressTracker.start(height)) {
+            IntStream.range(0, height).parallel().forEach(y -> {
+                // The previous, actual and next rows are read at once (if they exist)
+                final int firstRow = Math.max(0, y - 1);
+                final double[] tile = secondDerivative.getTile(0, firstRow, width,
+                        Math.min(height, y + 2) - firstRow, null);
+                final int rowStart = (y - firstRow) * rowLength;
+                final double[] row = new double[rowLength];
+                for (int x = 0; x < width; x++) {
+                    for (int b = 0; b < bands; b++) {
+                        final int index = rowStart + x * bands + b;
+                        final double pixel = tile[index];
+                        // The last pixel of a row or column is compared with itself as the next one,
+                        // so it is only a border if it has a different sign than the previous one
+                        final boolean byColumn = x > 0 && zeroCrossing(tile[index - bands], pixel,
+                                x < width - 1 ? tile[index + bands] : pixel, slopeThreshold);
+                        final boolean byRow = y > 0 && zeroCrossing(tile[index - rowLength], pixel,
+                                y < height - 1 ? tile[index + rowLength] : pixel, slopeThreshold);
+                        row[x * bands + b] = byColumn || byRow ? 255d : 0d;
+                    }
+                }
+                result.setRow(y, row);
+                tracker.step();
+            });
         }
-        final double next = pixelSupplier.apply(position + 1);
-        return changeOfSign(prev, pixel, next) && acceptSlope.apply(prev, pixel) ? 255d : 0;
+        return result;
+    }
+
+    /**
+     * Checks whether there is a zero crossing in the given pixel (see {@link #changeOfSign(double, double, double)}),
+     * with a slope that is at least the given {@code slopeThreshold}.
+     *
+     * @param prev           The previous pixel.
+     * @param pixel          The actual pixel.
+     * @param next           The next pixel.
+     * @param slopeThreshold The min. slope for a change of sign to be considered a border.
+     * @return {@code true} if there is a zero crossing, or {@code false} otherwise.
+     */
+    private static boolean zeroCrossing(double prev, double pixel, double next, double slopeThreshold) {
+        return changeOfSign(prev, pixel, next) && Math.abs(prev - pixel) >= slopeThreshold;
     }
 
     /**
@@ -726,19 +970,20 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
 
     /**
      * Applies a filter to the given {@link Image}, using the given {@code mask}.
+     * If the mask can produce values out of the range of the samples (i.e it has negative values,
+     * like gradient masks, or its values sum more than 1), the {@link SampleType} of the result is promoted.
      *
      * @param image The {@link Image} to be filtered.
      * @param mask  The mask to be applied.
      * @return The filtered {@link Image}.
      */
     private static Image filterWithMask(Image image, Double[][] mask) {
-        MaskHelper.validateMask(mask);
-        return applyFilter(image, mask.length,
-                array -> IntStream.range(0, array.length)
-                        .mapToObj(x -> IntStream.range(0, array[x].length)
-                                .mapToObj(y -> array[x][y] * mask[x][y]))
-                        .flatMap(Function.identity())
-                        .reduce(0.0, (o1, o2) -> o1 + o2));
+        final Function<Double[][], Double> filterFunction = maskFunction(mask); // Validates the mask
+        final boolean hasNegatives = Arrays.stream(mask).flatMap(Arrays::stream).anyMatch(value -> value < 0);
+        final double sum = Arrays.stream(mask).flatMap(Arrays::stream).mapToDouble(Double::doubleValue).sum();
+        final SampleType resultType = hasNegatives || sum > 1 + MASK_SUM_TOLERANCE ?
+                image.getSampleType().toFloatingPoint() : image.getSampleType();
+        return applyFilter(image, resultType, mask.length, filterFunction);
     }
 
     /**
@@ -756,6 +1001,91 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
      * @return A new {@link Image} instance with the filter applied.
      */
     private static Image applyFilter(Image image, int windowLength, Function<Double[][], Double> filterFunction) {
+        return applyFilter(image, image.getSampleType(), windowLength, filterFunction);
+    }
+
+    /**
+     * Applies a filter to the given {@link Image} (see {@link #applyFilter(Image, int, Function)}),
+     * storing the result with the given {@link SampleType}.
+     * Images with {@link SampleLayout#PLANAR} layout are filtered band by band, through band views
+     * (see {@link Image#band(int)}), so each plane is read and written sequentially.
+     *
+     * @param image          The {@link Image} to which the filtering will be applied.
+     * @param resultType     The {@link SampleType} of the result.
+     * @param windowLength   The window length (i.e the length of the kernel).
+     * @param filterFunction A function that takes a two-dimensional array
+     *                       that represents sub-raster of the given {@code image}, in a given channel,
+     *                       and produces the new value (i.e the filtered value).
+     * @return A new {@link Image} instance with the filter applied.
+     */
+    private static Image applyFilter(Image image, SampleType resultType, int windowLength,
+                                     Function<Double[][], Double> filterFunction) {
+        final Image newImage = image.createCompatible(image.getWidth(), image.getHeight(), image.getBands(),
+                resultType);
+        try {
+            if (image.getLayout() == SampleLayout.PLANAR && image.getBands() > 1) {
+                try (ProgressTracker tracker = ProgressTracker.start(image.getBands())) {
+                    for (int b = 0; b < image.getBands(); b++) {
+                        final Image band = image.band(b);
+                        applyFilter(image.getWidth(), image.getHeight(), 1, windowLength,
+                                band::getRow, newImage.band(b)::setRow, filterFunction);
+                        tracker.step();
+                    }
+                }
+            } else {
+                applyFilter(image.getWidth(), image.getHeight(), image.getBands(), windowLength,
+                        image::getRow, newImage::setRow, filterFunction);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Images are not read nor written using IO operations
+        }
+        return newImage;
+    }
+
+    /**
+     * Applies a filter to the image being read by the given {@code source}, writing the result into the given
+     * {@code sink} (see {@link #applyFilter(Image, int, Function)}).
+     *
+     * @param source         The {@link ImageRowReader} from where the image is read.
+     * @param sink           The {@link ImageRowWriter} into which the filtered image is written.
+     * @param windowLength   The window length (i.e the length of the kernel).
+     * @param filterFunction A function that takes a two-dimensional array
+     *                       that represents sub-raster of the image, in a given channel,
+     *                       and produces the new value (i.e the filtered value).
+     * @throws IOException If any IO error occurs while reading or writing rows.
+     */
+    private static void applyFilter(ImageRowReader source, ImageRowWriter sink, int windowLength,
+                                    Function<Double[][], Double> filterFunction) throws IOException {
+        Assert.notNull(source, "The source must not be null");
+        Assert.notNull(sink, "The sink must not be null");
+        applyFilter(source.getWidth(), source.getHeight(), source.getBands(), windowLength,
+                (y, row) -> source.readRow(row), (y, row) -> sink.writeRow(row), filterFunction);
+    }
+
+    /**
+     * Applies a filter to an image with the given dimensions, whose rows are taken from the given {@code input},
+     * writing the filtered rows into the given {@code output}.
+     * Rows are read and written sequentially (i.e from top to bottom, each one once).
+     * <p>
+     * The image is processed in bands of {@link #TILE_ROWS} rows (each band in parallel).
+     * Only the rows of the band being processed, and the {@code windowLength / 2} rows above and below it,
+     * are held in memory (the ones above being kept from the previous band),
+     * so memory use depends on the width of the image and on the window length, but not on its height.
+     *
+     * @param width          The width of the image.
+     * @param height         The height of the image.
+     * @param bands          The amount of bands of the image.
+     * @param windowLength   The window length (i.e the length of the kernel).
+     * @param input          The {@link RowInput} from where rows are read.
+     * @param output         The {@link RowOutput} into which filtered rows are written.
+     * @param filterFunction A function that takes a two-dimensional array
+     *                       that represents sub-raster of the image, in a given channel,
+     *                       and produces the new value (i.e the filtered value).
+     * @throws IOException If any IO error occurs while reading or writing rows.
+     */
+    private static void applyFilter(int width, int height, int bands, int windowLength,
+                                    RowInput input, RowOutput output,
+                                    Function<Double[][], Double> filterFunction) throws IOException {
         if (windowLength < 0) {
             throw new IllegalArgumentException("The length must be positive");
         }
@@ -763,39 +1093,172 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
             throw new IllegalArgumentException("The window length must not be even");
         }
 
-        final int margin = windowLength / 2;
-        final int width = image.getWidth();
-        final int height = image.getHeight();
-        final int bands = image.getBands();
-        final Image newImage = Image.homogeneous(width, height, bands, 0d);
-        final Double[][] window = new Double[windowLength][windowLength];
-        for (int x = margin; x < width - margin; x++) {
-            for (int y = margin; y < height - margin; y++) {
-                for (int b = 0; b < bands; b++) {
-                    fill(x - margin, y - margin, b, image, window);
-                    final double filtered = filterFunction.apply(window);
-                    newImage.setSample(x, y, b, filtered);
+        try (ProgressTracker tracker = ProgressTracker.start(height)) {
+            final int margin = windowLength / 2;
+            final int rowLength = width * bands;
+            // Input rows are stored in a circular buffer (row 'y' is stored in position 'y % capacity')
+            final int capacity = TILE_ROWS + 2 * margin;
+            final double[][] inputRows = new double[capacity][];
+            final double[][] outputRows = new double[Math.min(height, TILE_ROWS)][rowLength];
+            int rowsRead = 0;
+            for (int firstRow = 0; firstRow < height; firstRow += TILE_ROWS) {
+                final int bandStart = firstRow;
+                final int bandEnd = Math.min(height, firstRow + TILE_ROWS); // Exclusive
+                // Read the rows of the band, and the ones below it (the ones above were read with the previous band)
+                for (final int lastNeeded = Math.min(height, bandEnd + margin); rowsRead < lastNeeded; rowsRead++) {
+                    final int position = rowsRead % capacity;
+                    if (inputRows[position] == null) {
+                        inputRows[position] = new double[rowLength];
+                    }
+                    input.read(rowsRead, inputRows[position]);
+                }
+                IntStream.range(bandStart, bandEnd).parallel().forEach(y -> {
+                    final double[] row = outputRows[y - bandStart];
+                    Arrays.fill(row, 0d); // Pixels in the border are set to zero
+                    if (y >= margin && y < height - margin) {
+                        final Double[][] window = new Double[windowLength][windowLength];
+                        for (int x = margin; x < width - margin; x++) {
+                            for (int b = 0; b < bands; b++) {
+                                fill(x - margin, y - margin, b, bands, inputRows, window);
+                                row[x * bands + b] = filterFunction.apply(window);
+                            }
+                        }
+                    }
+                    tracker.step();
+                });
+                for (int y = bandStart; y < bandEnd; y++) {
+                    output.write(y, outputRows[y - bandStart]);
                 }
             }
         }
+    }
+
+    /**
+     * Applies a separable filter to the given {@link Image}, given the one-dimensional {@code factor} of its mask
+     * (i.e filtering first by rows, and then by columns, which is equivalent to applying the mask).
+     * The factor must not have negative values and must sum 1 (e.g Gaussian masks),
+     * so the {@link SampleType} of the result is the one of the given {@link Image}.
+     * Images with {@link SampleLayout#PLANAR} layout are filtered band by band (see
+     * {@link #applyFilter(Image, SampleType, int, Function)}).
+     *
+     * @param image  The {@link Image} to which the filtering will be applied.
+     * @param factor The one-dimensional factor of the mask.
+     * @return A new {@link Image} instance with the filter applied.
+     */
+    private static Image applySeparableFilter(Image image, double[] factor) {
+        final Image newImage = image.createCompatible(image.getWidth(), image.getHeight(), image.getBands());
+        try {
+            if (image.getLayout() == SampleLayout.PLANAR && image.getBands() > 1) {
+                try (ProgressTracker tracker = ProgressTracker.start(image.getBands())) {
+                    for (int b = 0; b < image.getBands(); b++) {
+                        final Image band = image.band(b);
+                        applySeparableFilter(image.getWidth(), image.getHeight(), 1, factor,
+                                band::getRow, newImage.band(b)::setRow);
+                        tracker.step();
+                    }
+                }
+            } else {
+                applySeparableFilter(image.getWidth(), image.getHeight(), image.getBands(), factor,
+                        image::getRow, newImage::setRow);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Images are not read nor written using IO operations
+        }
         return newImage;
     }
 
     /**
-     * Fills the given {@code window} with data from the given {@link Image}.
+     * Applies a separable filter to an image with the given dimensions, given the one-dimensional {@code factor}
+     * of its mask, reading and writing rows sequentially as
+     * {@link #applyFilter(int, int, int, int, RowInput, RowOutput, Function)} does.
+     * Each row is filtered horizontally once when it is read, and kept in a circular buffer
+     * until the rows that need it are filtered vertically, so each pixel costs two one-dimensional convolutions
+     * (instead of a two-dimensional one), without boxing samples into windows.
+     * Pixels in the border are set to zero, as with the rest of the sliding window filters.
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @param bands  The amount of bands of the image.
+     * @param factor The one-dimensional factor of the mask (whose length is the window length).
+     * @param input  The {@link RowInput} from where rows are read.
+     * @param output The {@link RowOutput} into which filtered rows are written.
+     * @throws IOException If any IO error occurs while reading or writing rows.
+     */
+    private static void applySeparableFilter(int width, int height, int bands, double[] factor,
+                                             RowInput input, RowOutput output) throws IOException {
+        final int windowLength = factor.length;
+        final int margin = windowLength / 2;
+        final int rowLength = width * bands;
+        try (ProgressTracker tracker = ProgressTracker.start(height)) {
+            // Rows (read, and horizontally filtered) are stored in circular buffers (row 'y' in 'y % capacity')
+            final int capacity = TILE_ROWS + 2 * margin;
+            final double[][] inputRows = new double[capacity][];
+            final double[][] filteredRows = new double[capacity][];
+            final double[][] outputRows = new double[Math.min(height, TILE_ROWS)][rowLength];
+            int rowsRead = 0;
+            for (int firstRow = 0; firstRow < height; firstRow += TILE_ROWS) {
+                final int bandStart = firstRow;
+                final int bandEnd = Math.min(height, firstRow + TILE_ROWS); // Exclusive
+                // Read the rows of the band, and the ones below it (the ones above were read with the previous band)
+                final int firstRead = rowsRead;
+                for (final int lastNeeded = Math.min(height, bandEnd + margin); rowsRead < lastNeeded; rowsRead++) {
+                    final int position = rowsRead % capacity;
+                    if (inputRows[position] == null) {
+                        inputRows[position] = new double[rowLength];
+                        filteredRows[position] = new double[rowLength];
+                    }
+                    input.read(rowsRead, inputRows[position]);
+                }
+                IntStream.range(firstRead, rowsRead).parallel().forEach(y -> {
+                    final double[] row = inputRows[y % capacity];
+                    final double[] filtered = filteredRows[y % capacity];
+                    for (int index = margin * bands; index < (width - margin) * bands; index++) {
+                        double sum = 0;
+                        for (int k = 0, neighbour = index - margin * bands; k < windowLength;
+                             k++, neighbour += bands) {
+                            sum += factor[k] * row[neighbour];
+                        }
+                        filtered[index] = sum;
+                    }
+                });
+                IntStream.range(bandStart, bandEnd).parallel().forEach(y -> {
+                    final double[] row = outputRows[y - bandStart];
+                    Arrays.fill(row, 0d); // Pixels in the border are set to zero
+                    if (y >= margin && y < height - margin) {
+                        for (int k = 0; k < windowLength; k++) {
+                            final double weight = factor[k];
+                            final double[] filtered = filteredRows[(y - margin + k) % capacity];
+                            for (int index = margin * bands; index < (width - margin) * bands; index++) {
+                                row[index] += weight * filtered[index];
+                            }
+                        }
+                    }
+                    tracker.step();
+                });
+                for (int y = bandStart; y < bandEnd; y++) {
+                    output.write(y, outputRows[y - bandStart]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the given {@code window} with data from the given {@code rows} circular buffer.
      * This method avoid instantiating a window for each step, saving a lot of memory.
      *
      * @param xInitial Initial 'x' from where data will be taken.
      * @param yInitial Initial 'y' from where data will be taken.
      * @param band     Band from where data will be taken.
-     * @param image    The {@link Image} from where data will be taken.
+     * @param bands    The amount of bands of the image.
+     * @param rows     The circular buffer of rows (row 'y' is stored in position {@code y % rows.length}).
      * @param window   The {@code {@link Double[][]}} instance where data will be outputted.
      * @implNote This method assumes that all params are well formed, in order to avoid extra computing.
      */
-    private static void fill(int xInitial, int yInitial, int band, Image image, Double[][] window) {
-        for (int x = 0; x < window.length; x++) {
-            for (int y = 0; y < window[0].length; y++) {
-                window[x][y] = image.getSample(xInitial + x, yInitial + y, band);
+    private static void fill(int xInitial, int yInitial, int band, int bands, double[][] rows, Double[][] window) {
+        for (int y = 0; y < window[0].length; y++) {
+            final double[] row = rows[(yInitial + y) % rows.length];
+            for (int x = 0; x < window.length; x++) {
+                window[x][y] = row[(xInitial + x) * bands + band];
             }
         }
     }
@@ -912,4 +1375,36 @@ public class SlidingWindowServiceImpl implements SlidingWindowService {
             return ANGLES_ORDER[(int) index];
         }
     }
+
+    /**
+     * Reads the rows of an image being filtered.
+     */
+    @FunctionalInterface
+    private interface RowInput {
+
+        /**
+         * Reads the given {@code y} row.
+         *
+         * @param y   The row to be read.
+         * @param row An array of {@code width * bands} length in which the row will be stored.
+         * @throws IOException If any IO error occurs while reading the row.
+         */
+        void read(int y, double[] row) throws IOException;
+    }
+
+    /**
+     * Writes the rows of a filtered image.
+     */
+    @FunctionalInterface
+    private interface RowOutput {
+
+        /**
+         * Writes the given {@code y} row.
+         *
+         * @param y   The row to be written.
+         * @param row An array of {@code width * bands} length holding the row.
+         * @throws IOException If any IO error occurs while writing the row.
+         */
+        void write(int y, double[] row) throws IOException;
+    }
 }
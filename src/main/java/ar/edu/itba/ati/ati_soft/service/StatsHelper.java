@@ -3,6 +3,7 @@ package ar.edu.itba.ati.ati_soft.service;
 import ar.edu.itba.ati.ati_soft.models.Histogram;
 import ar.edu.itba.ati.ati_soft.models.Image;
 
+import java.util.Arrays;
 import java.util.function.BiFunction;
 import java.util.stream.IntStream;
 
@@ -30,6 +31,21 @@ import java.util.stream.IntStream;
                 .toArray(StatsContainer[]::new);
     }
 
+    /**
+     * Returns an array containing the stats for each of the given {@link Histogram}s.
+     *
+     * @param histograms The {@link Histogram}s (one per band) whose stats will be calculated.
+     * @return An array with the stats, for each band.
+     * @apiNote The index of the array indicates which band the corresponding {@link StatsContainer} belongs to
+     * (i.e the same index the corresponding {@link Histogram} has in the {@code histograms} array).
+     */
+    /* package */
+    static StatsContainer[] getStats(Histogram... histograms) {
+        return Arrays.stream(histograms)
+                .map(StatsContainer::new)
+                .toArray(StatsContainer[]::new);
+    }
+
     /**
      * Bean class holding together the mean and variance obtained from an {@link Histogram}.
      */
@@ -0,0 +1,237 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SusanFeature;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Class implementing the SUSAN (i.e Smallest Univalue Segment Assimilating Nucleus) detector
+ * (see Smith S. M., Brady J. M., (1997), SUSAN - A New Approach to Low Level Image Processing).
+ * The offsets of the circular mask are calculated once, so a pixel is processed without allocating memory.
+ * A pixel is similar to the nucleus if their brightness difference is below the threshold, or, optionally,
+ * according to the smooth similarity taken from a {@link SimilarityTable} lookup table.
+ */
+/* package */ class SusanHelper {
+
+    /**
+     * The radius of the circular mask (i.e a mask of 37 pixels).
+     */
+    private static final double MASK_RADIUS = 3.4;
+
+    /**
+     * The margin of the circular mask (i.e the amount of pixels at each side of the nucleus).
+     */
+    private static final int MARGIN = (int) MASK_RADIUS;
+
+    /**
+     * The 'x' offsets of the pixels of the circular mask, relative to its nucleus (excluding the nucleus).
+     */
+    private static final int[] MASK_X_OFFSETS;
+
+    /**
+     * The 'y' offsets of the pixels of the circular mask, relative to its nucleus (excluding the nucleus).
+     */
+    private static final int[] MASK_Y_OFFSETS;
+
+    static {
+        final List<int[]> offsets = new ArrayList<>();
+        for (int dy = -MARGIN; dy <= MARGIN; dy++) {
+            for (int dx = -MARGIN; dx <= MARGIN; dx++) {
+                if ((dx != 0 || dy != 0) && dx * dx + dy * dy <= MASK_RADIUS * MASK_RADIUS) {
+                    offsets.add(new int[]{dx, dy});
+                }
+            }
+        }
+        MASK_X_OFFSETS = offsets.stream().mapToInt(offset -> offset[0]).toArray();
+        MASK_Y_OFFSETS = offsets.stream().mapToInt(offset -> offset[1]).toArray();
+    }
+
+    /**
+     * The min. response for a pixel to be considered a corner.
+     */
+    private static final double MIN_CORNER_RESPONSE = 0.65;
+
+    /**
+     * The max. response for a pixel to be considered a corner.
+     */
+    private static final double MAX_CORNER_RESPONSE = 0.85;
+
+    /**
+     * The min. response for a pixel to be considered an edge.
+     */
+    private static final double MIN_EDGE_RESPONSE = 0.4;
+
+    /**
+     * The max. response for a pixel to be considered an edge.
+     */
+    private static final double MAX_EDGE_RESPONSE = 0.6;
+
+    /**
+     * Finds the corners and edges of the given gray {@link Image} (using its first band),
+     * processing its rows in parallel.
+     * For each pixel whose circular mask fits in the image, the USAN area is calculated (i.e the amount of pixels
+     * of the mask, without counting the nucleus, whose brightness differs from the nucleus' one in less than
+     * {@code t}), and the pixel is a corner or an edge according to the SUSAN response
+     * (i.e {@code 1 - usan / maskArea}).
+     *
+     * @param image The gray {@link Image} to be processed.
+     * @param t     The brightness difference threshold.
+     * @return The found {@link SusanFeature}s, sorted by row, and then by column.
+     * @throws IllegalArgumentException If the threshold is not positive.
+     */
+    /* package */
+    static List<SusanFeature> findFeatures(Image image, double t) throws IllegalArgumentException {
+        Assert.isTrue(t > 0, "The t value must be positive");
+        return findFeatures(image, difference -> Math.abs(difference) < t ? 1d : 0d);
+    }
+
+    /**
+     * Finds the corners and edges of the given gray {@link Image} as {@link #findFeatures(Image, double)} does,
+     * but using the smooth similarity of the SUSAN paper (see {@link SimilarityTable}) to calculate the USAN area.
+     *
+     * @param image The gray {@link Image} to be processed.
+     * @param t     The brightness difference threshold (i.e the difference at which the similarity drops).
+     * @return The found {@link SusanFeature}s, sorted by row, and then by column.
+     * @throws IllegalArgumentException If the threshold is not positive.
+     */
+    /* package */
+    static List<SusanFeature> findSmoothFeatures(Image image, double t) throws IllegalArgumentException {
+        Assert.isTrue(t > 0, "The t value must be positive");
+        return findFeatures(image, new SimilarityTable(t));
+    }
+
+    /**
+     * Finds the corners and edges of the given gray {@link Image}, calculating the USAN area of each pixel
+     * with the given {@link Similarity}.
+     *
+     * @param image      The gray {@link Image} to be processed.
+     * @param similarity The {@link Similarity} between a pixel and the nucleus of the mask.
+     * @return The found {@link SusanFeature}s, sorted by row, and then by column.
+     */
+    private static List<SusanFeature> findFeatures(Image image, Similarity similarity) {
+        Assert.notNull(image, "The image must not be null");
+        final Image band = image.band(0);
+        final int width = band.getWidth();
+        final int height = band.getHeight();
+        final int windowLength = 2 * MARGIN + 1;
+        final int maskArea = MASK_X_OFFSETS.length + 1; // The nucleus is part of the mask
+        // The offsets of the mask in a tile of the window rows of a row, relative to the nucleus
+        final int[] offsets = IntStream.range(0, MASK_X_OFFSETS.length)
+                .map(i -> MASK_Y_OFFSETS[i] * width + MASK_X_OFFSETS[i])
+                .toArray();
+        try (ProgressTracker tracker = ProgressTracker.start(height)) {
+            return IntStream.range(0, height).parallel()
+                    .mapToObj(y -> {
+                        final List<SusanFeature> features = new ArrayList<>();
+                        if (y >= MARGIN && y < height - MARGIN) {
+                            final double[] tile = band.getTile(0, y - MARGIN, width, windowLength, null);
+                            for (int x = MARGIN; x < width - MARGIN; x++) {
+                                final int nucleusIndex = MARGIN * width + x;
+                                final double nucleus = tile[nucleusIndex];
+                                double usan = 0;
+                                for (int offset : offsets) {
+                                    usan += similarity.get(tile[nucleusIndex + offset] - nucleus);
+                                }
+                                final double response = 1 - usan / maskArea;
+                                if (response >= MIN_CORNER_RESPONSE && response <= MAX_CORNER_RESPONSE) {
+                                    features.add(new SusanFeature(x, y, SusanFeature.Type.CORNER, usan, response));
+                                } else if (response >= MIN_EDGE_RESPONSE && response <= MAX_EDGE_RESPONSE) {
+                                    features.add(new SusanFeature(x, y, SusanFeature.Type.EDGE, usan, response));
+                                }
+                            }
+                        }
+                        tracker.step();
+                        return features;
+                    })
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Draws the given {@link SusanFeature}s into a new black RGB {@link Image}
+     * (i.e corners in red, and edges in green).
+     *
+     * @param width    The width of the new {@link Image}.
+     * @param height   The height of the new {@link Image}.
+     * @param features The {@link SusanFeature}s to be drawn.
+     * @return The new {@link Image}.
+     */
+    /* package */
+    static Image draw(int width, int height, List<SusanFeature> features) {
+        final Image result = Image.empty(width, height, 3);
+        for (SusanFeature feature : features) {
+            final int band = feature.getType() == SusanFeature.Type.CORNER ? 0 : 1;
+            result.setSample(feature.getX(), feature.getY(), band, 255d);
+        }
+        return result;
+    }
+
+    /**
+     * Defines behaviour for an object that calculates the similarity between a pixel and the nucleus of the mask.
+     */
+    @FunctionalInterface
+    private interface Similarity {
+
+        /**
+         * Returns the similarity of the given {@code difference}.
+         *
+         * @param difference The difference between a pixel and the nucleus of the mask.
+         * @return The similarity (i.e a value between 0 and 1).
+         */
+        double get(double difference);
+    }
+
+    /**
+     * A lookup table of the similarity between a pixel and the nucleus of the mask, according to their
+     * brightness difference {@code d}, being {@code exp(-(d / t) ^ 6)} (i.e a smooth version of
+     * {@code |d| < t}, which makes the USAN area more stable with respect to small changes of brightness).
+     */
+    private static final class SimilarityTable implements Similarity {
+
+        /**
+         * The amount of entries of the table per unit of threshold.
+         */
+        private static final int ENTRIES_PER_T = 256;
+
+        /**
+         * The max. difference (in units of threshold) with non zero similarity
+         * (i.e similarities below {@code exp(-64)} are discarded).
+         */
+        private static final int MAX_TS = 2;
+
+        /**
+         * The similarities, being the one of the difference {@code d} in index {@code round(|d| * scale)}.
+         */
+        private final double[] table;
+
+        /**
+         * The factor that converts a difference into an index of the table.
+         */
+        private final double scale;
+
+        /**
+         * Constructor.
+         *
+         * @param t The brightness difference threshold.
+         */
+        private SimilarityTable(double t) {
+            this.scale = ENTRIES_PER_T / t;
+            this.table = new double[ENTRIES_PER_T * MAX_TS + 1];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = Math.exp(-Math.pow((double) i / ENTRIES_PER_T, 6));
+            }
+        }
+
+        @Override
+        public double get(double difference) {
+            final double position = Math.abs(difference) * scale + 0.5;
+            return position < table.length ? table[(int) position] : 0d; // NaNs fall in the else branch
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ar.edu.itba.ati.ati_soft.batch;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SampleLayout;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
+import ar.edu.itba.ati.ati_soft.service.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link BatchRunner}, processing a directory with the actual services.
+ */
+public class BatchRunnerTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ImageIOServiceImpl imageIOService = new ImageIOServiceImpl();
+
+    private BatchProcessor batchProcessor;
+
+    private File input;
+
+    private File output;
+
+    @Before
+    public void setUp() throws Exception {
+        imageIOService.afterPropertiesSet();
+        final ImageThresholdServiceImpl imageThresholdService = new ImageThresholdServiceImpl();
+        final SlidingWindowServiceImpl slidingWindowService = new SlidingWindowServiceImpl(imageThresholdService);
+        final ImageOperationServiceImpl imageOperationService = new ImageOperationServiceImpl();
+        final BatchOperationRegistry registry = new BatchOperationRegistry(imageIOService, imageOperationService,
+                imageThresholdService, new NoiseGenerationServiceImpl(), slidingWindowService,
+                new HistogramServiceImpl(), new DiffusionServiceImpl(), new HoughServiceImpl(slidingWindowService));
+        registry.afterPropertiesSet();
+        this.batchProcessor = new BatchProcessor(imageIOService, imageOperationService, registry);
+        this.input = folder.newFolder("input");
+        this.output = new File(folder.getRoot(), "output");
+    }
+
+    @Test
+    public void appliesThePipelineToEachFile() throws Exception {
+        write("first.pgm", 0, 10, 128, 255);
+        write("second.pgm", 255, 0, 1, 2);
+        // Integer sample types give the same results, as the operations saturate to the 8-bit range
+        for (SampleType sampleType : new SampleType[]{SampleType.FLOAT64, SampleType.UINT8}) {
+            for (SampleLayout layout : SampleLayout.values()) {
+                final BatchRunner runner = runner("steps:\n  - getNegative\n  - operation: gammaPower\n"
+                        + "    gamma: 1\n", sampleType, layout);
+                runner.run();
+                assertEquals(0, runner.getExitCode());
+                assertArrayEquals(new double[]{255, 245, 127, 0}, read("first.pgm"), 0d);
+                assertArrayEquals(new double[]{0, 255, 254, 253}, read("second.pgm"), 0d);
+            }
+        }
+    }
+
+    @Test
+    public void setsAnErrorExitCodeWhenAFileFails() throws Exception {
+        write("good.pgm", 0, 1, 2, 255);
+        Files.write(new File(input, "bad.pgm").toPath(), "P5 2 2 255\n".getBytes(StandardCharsets.US_ASCII));
+        final BatchRunner runner = runner("steps:\n  - getNegative\n", SampleType.FLOAT64, SampleLayout.INTERLEAVED);
+        runner.run();
+        assertEquals(1, runner.getExitCode());
+        assertArrayEquals(new double[]{255, 254, 253, 0}, read("good.pgm"), 0d);
+    }
+
+    @Test
+    public void unknownOperationsFailBeforeProcessingAnyFile() throws Exception {
+        write("image.pgm", 0, 1, 2, 3);
+        try {
+            runner("steps:\n  - notAnOperation\n", SampleType.FLOAT64, SampleLayout.INTERLEAVED).run();
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, output.list().length);
+            return;
+        }
+        throw new AssertionError("An IllegalArgumentException was expected");
+    }
+
+    /**
+     * Creates a {@link BatchRunner} that applies the given pipeline to the {@link #input} directory.
+     *
+     * @param pipeline   The YAML document of the pipeline.
+     * @param sampleType The {@link SampleType} with which images are read.
+     * @param layout     The {@link SampleLayout} with which images are read.
+     * @return The created {@link BatchRunner}.
+     * @throws IOException If the pipeline file could not be written.
+     */
+    private BatchRunner runner(String pipeline, SampleType sampleType, SampleLayout layout) throws IOException {
+        final File pipelineFile = File.createTempFile("pipeline-", ".yml", folder.getRoot());
+        Files.write(pipelineFile.toPath(), pipeline.getBytes(StandardCharsets.UTF_8));
+        return new BatchRunner(batchProcessor, pipelineFile.getPath(), input.getPath(), output.getPath(),
+                2, 64, true, sampleType, layout);
+    }
+
+    /**
+     * Writes a 2x2 binary PGM file into the {@link #input} directory.
+     *
+     * @param name    The name of the file.
+     * @param samples The four samples of the image (row by row).
+     * @throws IOException If the file could not be written.
+     */
+    private void write(String name, int... samples) throws IOException {
+        final byte[] header = "P5\n2 2\n255\n".getBytes(StandardCharsets.US_ASCII);
+        final byte[] content = new byte[header.length + samples.length];
+        System.arraycopy(header, 0, content, 0, header.length);
+        for (int i = 0; i < samples.length; i++) {
+            content[header.length + i] = (byte) samples[i];
+        }
+        Files.write(new File(input, name).toPath(), content);
+    }
+
+    /**
+     * Reads the samples of the given file from the {@link #output} directory.
+     *
+     * @param name The name of the file.
+     * @return The samples of the image (row by row).
+     * @throws IOException If the file could not be read.
+     */
+    private double[] read(String name) throws IOException {
+        final Image image = imageIOService.fromImageIO(imageIOService.openImage(new File(output, name))).getImage();
+        final double[] samples = new double[image.getWidth() * image.getHeight()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                samples[y * image.getWidth() + x] = image.getSample(x, y, 0);
+            }
+        }
+        return samples;
+    }
+}
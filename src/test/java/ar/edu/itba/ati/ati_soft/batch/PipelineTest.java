@@ -0,0 +1,82 @@
+package ar.edu.itba.ati.ati_soft.batch;
+
+import org.junit.Test;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link Pipeline} and {@link PipelineStep}.
+ */
+public class PipelineTest {
+
+    @Test
+    public void readsStepsWithAndWithoutParameters() {
+        final Pipeline pipeline = read("steps:\n"
+                + "  - operation: applyGaussianFilter\n"
+                + "    standardDeviation: 1.5\n"
+                + "  - otsuThreshold\n"
+                + "  - operation: applyWeightMedianFilter\n"
+                + "    weights: [[1, 2, 1], [2, 4, 2], [1, 2, 1]]\n");
+        final List<PipelineStep> steps = pipeline.getSteps();
+        assertEquals(3, steps.size());
+        assertEquals("applyGaussianFilter", steps.get(0).getOperation());
+        assertEquals(1.5, steps.get(0).getDouble("standardDeviation"), 0d);
+        assertEquals("otsuThreshold", steps.get(1).getOperation());
+        assertTrue(steps.get(1).getParameters().isEmpty());
+        final Integer[][] weights = steps.get(2).getIntMatrix("weights");
+        assertArrayEquals(new Integer[]{2, 4, 2}, weights[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsWithoutSteps() {
+        read("operation: otsuThreshold\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsWithStepsWithoutOperation() {
+        read("steps:\n  - windowLength: 3\n");
+    }
+
+    @Test(expected = YAMLException.class)
+    public void doesNotInstantiateArbitraryClasses() {
+        read("steps: !!java.util.ArrayList [otsuThreshold]\n");
+    }
+
+    @Test
+    public void checksTheTypeOfTheParameters() {
+        final PipelineStep step = read("steps:\n"
+                + "  - operation: applyMeanFilter\n"
+                + "    windowLength: 2.5\n"
+                + "    weights: [[1, 2], [3]]\n").getSteps().get(0);
+        for (Runnable getter : Arrays.<Runnable>asList(
+                () -> step.getInt("windowLength"),
+                () -> step.getDouble("missing"),
+                () -> step.getIntMatrix("weights"))) {
+            try {
+                getter.run();
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            throw new AssertionError("An IllegalArgumentException was expected");
+        }
+        assertEquals(2.5, step.getDouble("windowLength"), 0d);
+    }
+
+    /**
+     * Reads a {@link Pipeline} from the given YAML {@code document}.
+     *
+     * @param document The YAML document.
+     * @return The read {@link Pipeline}.
+     */
+    private static Pipeline read(String document) {
+        return Pipeline.fromYaml(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,133 @@
+package ar.edu.itba.ati.ati_soft.controller;
+
+import ar.edu.itba.ati.ati_soft.interfaces.ImageIOContainer;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SampleLayout;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ImageHistory}.
+ */
+public class ImageHistoryTest {
+
+    /**
+     * The amount of bytes a 1-band {@link SampleType#UINT8} state takes (i.e its samples and its displayed image).
+     */
+    private static final long GRAY_STATE_BYTES = 2 * 13 * 7;
+
+    @Test
+    public void statesWithinTheBudgetAreNotCopied() {
+        final ImageMapping first = mapping(SampleType.UINT8, SampleLayout.INTERLEAVED, 1, 1);
+        final ImageMapping actual = mapping(SampleType.UINT8, SampleLayout.INTERLEAVED, 1, 2);
+        final ImageHistory history = new ImageHistory(Long.MAX_VALUE, ImageHistoryTest::toBufferedImage);
+        history.record(first);
+        assertSame(first, history.undo(actual).orElse(null));
+        assertSame(actual, history.redo(first).orElse(null));
+        assertFalse(history.redo(actual).isPresent());
+    }
+
+    @Test
+    public void leastRecentlyUsedStatesAreSpilledFirst() {
+        final ImageMapping first = mapping(SampleType.UINT8, SampleLayout.INTERLEAVED, 1, 1);
+        final ImageMapping second = mapping(SampleType.UINT8, SampleLayout.INTERLEAVED, 1, 2);
+        final ImageMapping third = mapping(SampleType.UINT8, SampleLayout.INTERLEAVED, 1, 3);
+        final ImageMapping actual = mapping(SampleType.UINT8, SampleLayout.INTERLEAVED, 1, 4);
+        // Only two states fit in the budget, so the first one is spilled when the third one is recorded
+        final ImageHistory history = new ImageHistory(2 * GRAY_STATE_BYTES, ImageHistoryTest::toBufferedImage);
+        history.record(first);
+        history.record(second);
+        history.record(third);
+        assertSame(third, history.undo(actual).orElse(null));
+        assertSame(second, history.undo(third).orElse(null));
+        assertLoaded(first, history.undo(second));
+    }
+
+    @Test
+    public void spilledStatesAreRestored() {
+        final ImageMapping first = mapping(SampleType.FLOAT32, SampleLayout.PLANAR, 3, 1);
+        final ImageMapping second = mapping(SampleType.UINT16, SampleLayout.INTERLEAVED, 1, 2);
+        final ImageMapping actual = mapping(SampleType.FLOAT64, SampleLayout.INTERLEAVED, 3, 3);
+        // Every state is spilled, as none fits in the budget
+        final ImageHistory history = new ImageHistory(1, ImageHistoryTest::toBufferedImage);
+        history.record(first);
+        history.record(second);
+        final ImageMapping undoneSecond = assertLoaded(second, history.undo(actual));
+        final ImageMapping undoneFirst = assertLoaded(first, history.undo(undoneSecond));
+        assertFalse(history.undo(undoneFirst).isPresent());
+        // States keep their files, so they can be loaded again
+        final ImageMapping redoneSecond = assertLoaded(second, history.redo(undoneFirst));
+        assertLoaded(actual, history.redo(redoneSecond));
+    }
+
+    /**
+     * Checks that the given {@code loaded} state holds an {@link Image} equal to the one of the {@code expected} state
+     * (i.e same dimensions, {@link SampleType}, {@link SampleLayout} and samples).
+     *
+     * @param expected The expected state.
+     * @param loaded   An {@link Optional} holding the loaded state.
+     * @return The loaded state.
+     */
+    private static ImageMapping assertLoaded(ImageMapping expected, Optional<ImageMapping> loaded) {
+        assertTrue(loaded.isPresent());
+        final Image expectedImage = expected.getInternalRepresentation();
+        final Image actualImage = loaded.get().getInternalRepresentation();
+        assertNotSame(expectedImage, actualImage);
+        assertEquals(expectedImage.getWidth(), actualImage.getWidth());
+        assertEquals(expectedImage.getHeight(), actualImage.getHeight());
+        assertEquals(expectedImage.getBands(), actualImage.getBands());
+        assertEquals(expectedImage.getSampleType(), actualImage.getSampleType());
+        assertEquals(expectedImage.getLayout(), actualImage.getLayout());
+        for (int y = 0; y < expectedImage.getHeight(); y++) {
+            assertArrayEquals(expectedImage.getRow(y, null), actualImage.getRow(y, null), 0d);
+        }
+        return loaded.get();
+    }
+
+    /**
+     * Creates a 13x7 state holding an {@link Image} with random samples.
+     *
+     * @param type   The {@link SampleType} of the image.
+     * @param layout The {@link SampleLayout} of the image.
+     * @param bands  The amount of bands.
+     * @param seed   The seed of the random values.
+     * @return The created state.
+     */
+    private static ImageMapping mapping(SampleType type, SampleLayout layout, int bands, long seed) {
+        final Random random = new Random(seed);
+        final Image image = Image.trash(13, 7, bands, type, layout);
+        for (int y = 0; y < image.getHeight(); y++) {
+            final double[] row = new double[image.getWidth() * bands];
+            for (int i = 0; i < row.length; i++) {
+                // Floating point types get non integer values
+                row[i] = type.isInteger() ? random.nextInt(256) : random.nextDouble() * 512 - 256;
+            }
+            image.setRow(y, row);
+        }
+        final ImageIOContainer container = ImageIOContainer.buildForSyntheticImage(image);
+        return new ImageMapping(container, toBufferedImage(container));
+    }
+
+    /**
+     * Builds the displayed {@link BufferedImage} of the given {@link ImageIOContainer}
+     * (only its dimensions are taken into account).
+     *
+     * @param container The {@link ImageIOContainer}.
+     * @return The {@link BufferedImage}.
+     */
+    private static BufferedImage toBufferedImage(ImageIOContainer container) {
+        final Image image = container.getImage();
+        return new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+    }
+}
@@ -0,0 +1,87 @@
+package ar.edu.itba.ati.ati_soft.models;
+
+import org.junit.Test;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.assertImageEquals;
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the layouts and views of {@link Image}.
+ */
+public class ImageTest {
+
+    @Test
+    public void planarImagesHoldTheSameSamplesAsInterleavedOnes() {
+        final Image interleaved = random(13, 9, 3, 1);
+        final Image planar = interleaved.toLayout(SampleLayout.PLANAR);
+        assertEquals(SampleLayout.PLANAR, planar.getLayout());
+        assertImageEquals(interleaved, planar, 0d);
+        // Rows and tiles are band-interleaved regardless of the layout
+        assertArrayEquals(interleaved.getRow(4, null), planar.getRow(4, null), 0d);
+        assertArrayEquals(interleaved.getTile(2, 3, 5, 4, null), planar.getTile(2, 3, 5, 4, null), 0d);
+        assertImageEquals(interleaved, planar.toLayout(SampleLayout.INTERLEAVED), 0d);
+    }
+
+    @Test
+    public void bandViewsShareTheRaster() {
+        for (SampleLayout layout : SampleLayout.values()) {
+            final Image image = random(7, 5, 3, 2).toLayout(layout);
+            final Image band = image.band(2);
+            assertEquals(1, band.getBands());
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    assertEquals(layout + " (" + x + ", " + y + ")",
+                            image.getSample(x, y, 2), band.getSample(x, y, 0), 0d);
+                }
+            }
+            band.setRow(1, new double[]{1, 2, 3, 4, 5, 6, 7});
+            assertEquals(layout.name(), 4, image.getSample(3, 1, 2), 0d);
+        }
+    }
+
+    @Test
+    public void viewsShareTheRaster() {
+        final Image image = random(9, 8, 2, 3);
+        final Image view = image.view(2, 3, 4, 5);
+        assertArrayEquals(image.getTile(2, 3, 4, 5, null), view.getTile(0, 0, 4, 5, null), 0d);
+        view.setSample(1, 2, 1, 300);
+        assertEquals(300, image.getSample(3, 5, 1), 0d);
+        // Views of views are relative to the viewed image
+        assertEquals(image.getSample(4, 5, 0), view.view(1, 1, 2, 2).getSample(1, 1, 0), 0d);
+    }
+
+    @Test
+    public void closingAViewDoesNotReleaseTheRaster() {
+        final Image image = Image.mappedTemporary(4, 3, 1);
+        try {
+            image.setSample(2, 1, 0, 42);
+            image.view(1, 1, 2, 2).close();
+            assertEquals(42, image.getSample(2, 1, 0), 0d);
+        } finally {
+            image.close();
+        }
+    }
+
+    @Test
+    public void closingABandViewDoesNotReleaseTheRaster() {
+        final Image image = Image.mappedTemporary(4, 3, 3, SampleType.UINT8, SampleLayout.PLANAR);
+        try {
+            image.setSample(1, 2, 1, 42);
+            image.band(1).close();
+            assertEquals(42, image.getSample(1, 2, 1), 0d);
+            assertEquals(42, image.band(1).getSample(1, 2, 0), 0d);
+        } finally {
+            image.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closingTheImageReleasesTheRasterOfItsViews() {
+        final Image image = Image.mappedTemporary(4, 3, 3);
+        final Image band = image.band(0);
+        image.close();
+        band.getSample(0, 0, 0);
+    }
+}
@@ -0,0 +1,122 @@
+package ar.edu.itba.ati.ati_soft.models;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SampleBuffer}, mainly for memory-mapped buffers, whose samples are split into regions.
+ */
+public class SampleBufferTest {
+
+    /**
+     * The size of the regions of mapped buffers (i.e 1 GiB).
+     */
+    private static final long REGION_BYTES = 1L << 30;
+
+    @Test
+    public void mappedBufferCrossesTheGibibyteBoundary() throws IOException {
+        // The file is sparse, so only the pages around the boundary are actually written
+        final long length = REGION_BYTES + 64;
+        try (SampleBuffer buffer = SampleBuffer.mappedTemporary(Files.createTempFile("ati-test-", ".raw"),
+                length, SampleType.UINT8)) {
+            for (long index = REGION_BYTES - 32; index < length; index++) {
+                buffer.set(index, index % 251);
+            }
+            for (long index = REGION_BYTES - 32; index < length; index++) {
+                assertEquals("Sample " + index, index % 251, buffer.get(index), 0d);
+            }
+            // Bulk operations spanning both regions
+            final double[] samples = new double[48];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = 200 - i;
+            }
+            buffer.set(REGION_BYTES - 24, 1, samples, 0, 1, samples.length);
+            assertArrayEquals(samples, get(buffer, REGION_BYTES - 24, 1, samples.length), 0d);
+        }
+    }
+
+    @Test
+    public void stridedBulkOperationsCrossRegions() throws IOException {
+        for (SampleType type : SampleType.values()) {
+            final Path path = Files.createTempFile("ati-test-", ".raw");
+            // Small regions, so strided rows span several of them
+            try (SampleBuffer buffer = new SampleBuffer.MappedSampleBuffer(path, 100, type, 7, true)) {
+                final double[] interleaved = new double[60];
+                for (int i = 0; i < interleaved.length; i++) {
+                    interleaved[i] = i * 3;
+                }
+                // Every third sample of the array, into every other sample of the buffer
+                buffer.fill(1);
+                buffer.set(5, 2, interleaved, 1, 3, 20);
+                for (int i = 0; i < 20; i++) {
+                    assertEquals(type + " sample " + i, interleaved[1 + 3 * i], buffer.get(5 + 2 * i), 0d);
+                    assertEquals(type + " untouched sample " + i, 1d, buffer.get(6 + 2 * i), 0d);
+                }
+                final double[] copied = new double[40];
+                buffer.get(5, 2, copied, 0, 2, 20);
+                for (int i = 0; i < 20; i++) {
+                    assertEquals(type + " copied sample " + i, interleaved[1 + 3 * i], copied[2 * i], 0d);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mappedBufferMatchesHeapBuffer() throws IOException {
+        final int length = 1000;
+        for (SampleType type : SampleType.values()) {
+            final SampleBuffer heap = SampleBuffer.heap(length, type);
+            try (SampleBuffer mapped = new SampleBuffer.MappedSampleBuffer(Files.createTempFile("ati-test-", ".raw"),
+                    length, type, 64, true)) {
+                for (int i = 0; i < length; i++) {
+                    final double value = (i * 37 % 300) - 20.25;
+                    heap.set(i, value);
+                    mapped.set(i, value);
+                }
+                assertArrayEquals(type.name(), get(heap, 0, 1, length), get(mapped, 0, 1, length), 0d);
+            }
+        }
+    }
+
+    @Test
+    public void temporaryFileIsDeletedAndClosingUnmapsTheBuffer() throws IOException {
+        final Path path = Files.createTempFile("ati-test-", ".raw");
+        final SampleBuffer buffer = SampleBuffer.mappedTemporary(path, 16, SampleType.FLOAT64);
+        final File file = path.toFile();
+        buffer.set(3, 4.5);
+        assertEquals(4.5, buffer.get(3), 0d);
+        buffer.close();
+        buffer.close(); // Closing twice does nothing
+        assertFalse(file.exists());
+        try {
+            buffer.get(3);
+            throw new AssertionError("A closed buffer must not be accessed");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("closed"));
+        }
+    }
+
+    /**
+     * Copies {@code length} samples of the given {@code buffer} into a new array.
+     *
+     * @param buffer The {@link SampleBuffer}.
+     * @param index  The index of the first sample.
+     * @param stride The distance between two consecutive samples.
+     * @param length The amount of samples.
+     * @return The copied samples.
+     */
+    private static double[] get(SampleBuffer buffer, long index, int stride, int length) {
+        final double[] samples = new double[length];
+        buffer.get(index, stride, samples, 0, 1, length);
+        return samples;
+    }
+}
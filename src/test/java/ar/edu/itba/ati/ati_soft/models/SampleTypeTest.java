@@ -0,0 +1,62 @@
+package ar.edu.itba.ati.ati_soft.models;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Tests for {@link SampleType}.
+ */
+public class SampleTypeTest {
+
+    @Test
+    public void integerTypesRoundToTheNearestInteger() {
+        assertEquals(12d, SampleType.UINT8.quantize(12.4), 0d);
+        assertEquals(13d, SampleType.UINT8.quantize(12.5), 0d);
+        assertEquals(1000d, SampleType.UINT16.quantize(999.7), 0d);
+    }
+
+    @Test
+    public void integerTypesSaturate() {
+        assertEquals(0d, SampleType.UINT8.quantize(-3), 0d);
+        assertEquals(255d, SampleType.UINT8.quantize(300), 0d);
+        assertEquals(0d, SampleType.UINT16.quantize(-0.4), 0d);
+        assertEquals(65535d, SampleType.UINT16.quantize(70000), 0d);
+    }
+
+    @Test
+    public void integerTypesConvertNaNsIntoZero() {
+        assertEquals(0d, SampleType.UINT8.quantize(Double.NaN), 0d);
+        assertEquals(0d, SampleType.UINT16.quantize(Double.NaN), 0d);
+    }
+
+    @Test
+    public void floatingPointTypesKeepTheirPrecision() {
+        assertEquals((float) 0.1, SampleType.FLOAT32.quantize(0.1), 0d);
+        assertNotEquals(0.1, SampleType.FLOAT32.quantize(0.1), 0d);
+        assertEquals(0.1, SampleType.FLOAT64.quantize(0.1), 0d);
+        assertEquals(-1e300, SampleType.FLOAT64.quantize(-1e300), 0d);
+    }
+
+    @Test
+    public void integerTypesArePromotedToFloat32() {
+        assertEquals(SampleType.FLOAT32, SampleType.UINT8.toFloatingPoint());
+        assertEquals(SampleType.FLOAT32, SampleType.UINT16.toFloatingPoint());
+        assertEquals(SampleType.FLOAT32, SampleType.FLOAT32.toFloatingPoint());
+        assertEquals(SampleType.FLOAT64, SampleType.FLOAT64.toFloatingPoint());
+    }
+
+    @Test
+    public void imagesStoreQuantizedSamples() {
+        for (SampleType type : SampleType.values()) {
+            final Image image = Image.trash(3, 1, 1, type);
+            final double[] row = {-7.3, 100.5, 1e6 + 0.1};
+            image.setRow(0, row.clone());
+            final double[] stored = image.getRow(0, null);
+            for (int i = 0; i < row.length; i++) {
+                assertEquals(type + " sample " + i, type.quantize(row[i]), stored[i], 0d);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.assertImageEquals;
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link BilateralFilterHelper}, comparing it with the direct evaluation of the filter formula.
+ */
+public class BilateralFilterHelperTest {
+
+    /**
+     * The max. difference with the direct evaluation, caused by the quantization of the range weights.
+     */
+    private static final double LOOKUP_TOLERANCE = 0.05;
+
+    @Test
+    public void filterMatchesTheDirectEvaluation() {
+        final Image image = random(23, 19, 3, 1);
+        for (double rangeStd : new double[]{5, 30, 200}) {
+            assertImageEquals(directBilateral(image, 2, rangeStd, 5),
+                    BilateralFilterHelper.filter(image, 2, rangeStd, 5), LOOKUP_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void rangeWeightsMatchTheGaussianFunction() {
+        final double rangeStd = 12.5;
+        final BilateralFilterHelper.RangeWeights weights = new BilateralFilterHelper.RangeWeights(rangeStd);
+        for (double difference = -120; difference <= 120; difference += 0.37) {
+            assertEquals("Difference " + difference,
+                    Math.exp(-difference * difference / (2 * rangeStd * rangeStd)), weights.get(difference), 2e-3);
+        }
+        // Differences beyond eight standard deviations weigh zero
+        assertEquals(0d, weights.get(8.01 * rangeStd), 0d);
+        assertEquals(0d, weights.get(Double.NaN), 0d);
+    }
+
+    @Test
+    public void windowFunctionMatchesTheImageFilter() {
+        final Image image = random(9, 9, 1, 2);
+        final Double[][] window = new Double[5][5];
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                window[i][j] = image.getSample(2 + j, 2 + i, 0);
+            }
+        }
+        assertEquals(BilateralFilterHelper.filter(image, 1.5, 20, 5).getSample(4, 4, 0),
+                BilateralFilterHelper.windowFunction(1.5, 20, 5).apply(window), 1e-9);
+    }
+
+    @Test
+    public void jointFilterMatchesTheDirectEvaluationWithTheColorDistance() {
+        final Image image = random(19, 17, 3, 4);
+        assertImageEquals(directJointBilateral(image, 2, 40, 5),
+                BilateralFilterHelper.jointFilter(image, 2, 40, 5), LOOKUP_TOLERANCE);
+    }
+
+    @Test
+    public void jointFilterOfOneBandImagesIsThePerBandFilter() {
+        final Image image = random(19, 17, 1, 5);
+        assertImageEquals(BilateralFilterHelper.filter(image, 2, 30, 5),
+                BilateralFilterHelper.jointFilter(image, 2, 30, 5));
+    }
+
+    @Test
+    public void gridFilterApproximatesTheFilterPreservingEdges() {
+        final Image image = noisyStep(60, 40);
+        final Image grid = BilateralFilterHelper.gridFilter(image, 4, 30);
+        final Image exact = BilateralFilterHelper.filter(image, 4, 30, 25);
+        // Pixels in the border are only filtered by the grid
+        double difference = 0;
+        int pixels = 0;
+        for (int y = 12; y < image.getHeight() - 12; y++) {
+            for (int x = 12; x < image.getWidth() - 12; x++) {
+                difference += Math.abs(grid.getSample(x, y, 0) - exact.getSample(x, y, 0));
+                pixels++;
+            }
+        }
+        assertTrue("Mean difference " + difference / pixels, difference / pixels < 1.5);
+        // Both sides of the edge keep their levels
+        assertEquals(50, grid.getSample(10, 20, 0), 5);
+        assertEquals(200, grid.getSample(50, 20, 0), 5);
+    }
+
+    @Test
+    public void gridFilterKeepsConstantImages() {
+        final Image image = Image.empty(17, 13, 2);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setPixel(x, y, new Double[]{80d, 3d});
+            }
+        }
+        assertImageEquals(image, BilateralFilterHelper.gridFilter(image, 3, 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void gridFilterFailsWithDeviationsTooSmallForTheGrid() {
+        BilateralFilterHelper.gridFilter(random(100, 100, 1, 3), 1e-3, 1e-3);
+    }
+
+    /**
+     * Applies the joint bilateral filter evaluating the formula for each pixel of the window,
+     * being the range distance the euclidean distance between pixels (setting the pixels in the border to zero).
+     *
+     * @param image      The {@link Image} to be filtered.
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @param windowSize The size of the window.
+     * @return The filtered {@link Image}.
+     */
+    private static Image directJointBilateral(Image image, double spatialStd, double rangeStd, int windowSize) {
+        final int margin = windowSize / 2;
+        final int bands = image.getBands();
+        final Image result = Image.empty(image.getWidth(), image.getHeight(), bands);
+        for (int y = margin; y < image.getHeight() - margin; y++) {
+            for (int x = margin; x < image.getWidth() - margin; x++) {
+                final double[] weightedSums = new double[bands];
+                double weightsSum = 0;
+                for (int dy = -margin; dy <= margin; dy++) {
+                    for (int dx = -margin; dx <= margin; dx++) {
+                        double squaredDistance = 0;
+                        for (int b = 0; b < bands; b++) {
+                            final double difference = image.getSample(x + dx, y + dy, b) - image.getSample(x, y, b);
+                            squaredDistance += difference * difference;
+                        }
+                        final double weight = Math.exp(-(dx * dx + dy * dy) / (2 * spatialStd * spatialStd)
+                                - squaredDistance / (2 * rangeStd * rangeStd));
+                        for (int b = 0; b < bands; b++) {
+                            weightedSums[b] += weight * image.getSample(x + dx, y + dy, b);
+                        }
+                        weightsSum += weight;
+                    }
+                }
+                for (int b = 0; b < bands; b++) {
+                    result.setSample(x, y, b, weightedSums[b] / weightsSum);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a 1-band image with a vertical step edge in the middle (from 50 to 200), with uniform noise.
+     *
+     * @param width  The image width.
+     * @param height The image height.
+     * @return The created {@link Image}.
+     */
+    private static Image noisyStep(int width, int height) {
+        final Random random = new Random(width * height);
+        final Image image = Image.empty(width, height, 1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setSample(x, y, 0, (x < width / 2 ? 50 : 200) + random.nextInt(21) - 10);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Applies the bilateral filter evaluating the formula for each pixel of the window
+     * (setting the pixels in the border to zero).
+     *
+     * @param image      The {@link Image} to be filtered.
+     * @param spatialStd The Gaussian standard deviation for the spatial domain filtering.
+     * @param rangeStd   The Gaussian standard deviation for the range filtering.
+     * @param windowSize The size of the window.
+     * @return The filtered {@link Image}.
+     */
+    private static Image directBilateral(Image image, double spatialStd, double rangeStd, int windowSize) {
+        final int margin = windowSize / 2;
+        final Image result = Image.empty(image.getWidth(), image.getHeight(), image.getBands());
+        for (int y = margin; y < image.getHeight() - margin; y++) {
+            for (int x = margin; x < image.getWidth() - margin; x++) {
+                for (int b = 0; b < image.getBands(); b++) {
+                    final double center = image.getSample(x, y, b);
+                    double weightedSum = 0;
+                    double weightsSum = 0;
+                    for (int dy = -margin; dy <= margin; dy++) {
+                        for (int dx = -margin; dx <= margin; dx++) {
+                            final double value = image.getSample(x + dx, y + dy, b);
+                            final double difference = value - center;
+                            final double weight = Math.exp(-(dx * dx + dy * dy) / (2 * spatialStd * spatialStd)
+                                    - difference * difference / (2 * rangeStd * rangeStd));
+                            weightedSum += weight * value;
+                            weightsSum += weight;
+                        }
+                    }
+                    result.setSample(x, y, b, weightedSum / weightsSum);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.assertImageEquals;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests for {@link ColorHelper}, comparing the tabulated conversions with the exact formulas.
+ */
+public class ColorHelperTest {
+
+    /**
+     * The max. difference with the exact formulas, caused by the interpolation of the tables.
+     */
+    private static final double TABLE_TOLERANCE = 0.01;
+
+    @Test
+    public void referenceColorsAreConverted() {
+        final Image image = Image.empty(3, 1, 3);
+        image.setRow(0, new double[]{255, 255, 255, 0, 0, 0, 255, 0, 0});
+        final Image cieLab = ColorHelper.rgbToCieLab(image);
+        assertArrayEquals(new double[]{100, 0, 0}, cieLab.getTile(0, 0, 1, 1, null), 0.01);
+        assertArrayEquals(new double[]{0, 0, 0}, cieLab.getTile(1, 0, 1, 1, null), 0.01);
+        assertArrayEquals(new double[]{53.24, 80.09, 67.20}, cieLab.getTile(2, 0, 1, 1, null), 0.01);
+    }
+
+    @Test
+    public void rgbToCieLabMatchesTheExactFormulas() {
+        final Image image = randomRgb();
+        final Image expected = Image.empty(image.getWidth(), image.getHeight(), 3);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                final double r = linearize(image.getSample(x, y, 0) / 255);
+                final double g = linearize(image.getSample(x, y, 1) / 255);
+                final double b = linearize(image.getSample(x, y, 2) / 255);
+                final double fx = labFunction((0.4124564 * r + 0.3575761 * g + 0.1804375 * b) / 0.950470);
+                final double fy = labFunction(0.2126729 * r + 0.7151522 * g + 0.0721750 * b);
+                final double fz = labFunction((0.0193339 * r + 0.1191920 * g + 0.9503041 * b) / 1.088830);
+                expected.setPixel(x, y, new Double[]{116 * fy - 16, 500 * (fx - fy), 200 * (fy - fz)});
+            }
+        }
+        assertImageEquals(expected, ColorHelper.rgbToCieLab(image), TABLE_TOLERANCE);
+    }
+
+    @Test
+    public void rgbRoundTripsThroughCieLab() {
+        final Image image = randomRgb();
+        assertImageEquals(image, ColorHelper.cieLabToRGB(ColorHelper.rgbToCieLab(image)), 2 * TABLE_TOLERANCE);
+    }
+
+    /**
+     * Creates an RGB {@link Image} with random samples between 0 and 255, half of them being integers.
+     *
+     * @return The created {@link Image}.
+     */
+    private static Image randomRgb() {
+        final Random random = new Random(44);
+        final Image image = Image.empty(32, 24, 3);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                for (int b = 0; b < 3; b++) {
+                    image.setSample(x, y, b, (x + y) % 2 == 0 ? random.nextInt(256) : random.nextDouble() * 255);
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * The sRGB linearization function.
+     *
+     * @param value The gamma encoded value (between 0 and 1).
+     * @return The linear value.
+     */
+    private static double linearize(double value) {
+        return value <= 0.04045 ? value / 12.92 : Math.pow((value + 0.055) / 1.055, 2.4);
+    }
+
+    /**
+     * The CIE-Lab {@code f(t)} function.
+     *
+     * @param t The value.
+     * @return The result of the function.
+     */
+    private static double labFunction(double t) {
+        return t > 0.008856 ? Math.cbrt(t) : 7.787037 * t + 4.0 / 29;
+    }
+}
@@ -0,0 +1,52 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.junit.Test;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.assertImageEquals;
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link ColorSpaceServiceImpl}.
+ */
+public class ColorSpaceServiceImplTest {
+
+    private final ColorSpaceServiceImpl service = new ColorSpaceServiceImpl();
+
+    private final Image image = random(23, 17, 3, 45);
+
+    @Test
+    public void hsvRoundTrips() {
+        assertImageEquals(image, service.hsvToRgb(service.rgbToHsv(image)));
+    }
+
+    @Test
+    public void yCbCrRoundTrips() {
+        // The inverse matrix coefficients are rounded
+        assertImageEquals(image, service.yCbCrToRgb(service.rgbToYCbCr(image)), 0.01);
+    }
+
+    @Test
+    public void xyzRoundTrips() {
+        assertImageEquals(image, service.xyzToRgb(service.rgbToXyz(image)), 0.01);
+    }
+
+    @Test
+    public void referenceColorsAreConverted() {
+        final Image colors = Image.empty(2, 1, 3);
+        colors.setRow(0, new double[]{255, 0, 0, 255, 255, 255});
+        assertArrayEquals(new double[]{0, 1, 255, 0, 0, 255}, service.rgbToHsv(colors).getRow(0, null), 1e-9);
+        assertArrayEquals(new double[]{76.245, 84.972, 255.5, 255, 128, 128},
+                service.rgbToYCbCr(colors).getRow(0, null), 0.01);
+        // The Y component of white is 1
+        assertEquals(1, service.rgbToXyz(colors).getSample(1, 0, 1), 1e-4);
+    }
+
+    @Test
+    public void lumaIsTheYComponent() {
+        final Image yCbCr = service.rgbToYCbCr(image);
+        assertImageEquals(yCbCr.band(0), service.toLuma(image));
+    }
+}
@@ -0,0 +1,106 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Corner;
+import ar.edu.itba.ati.ati_soft.models.Gradients;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CornerHelper}, using the corners of a rectangle.
+ */
+public class CornerHelperTest {
+
+    /**
+     * The corners of the rectangle built by {@link #rectangle()}.
+     */
+    private static final int[][] RECTANGLE_CORNERS = {{12, 10}, {35, 10}, {12, 29}, {35, 29}};
+
+    private final SlidingWindowServiceImpl service = new SlidingWindowServiceImpl(new ImageThresholdServiceImpl());
+
+    @Test
+    public void harrisMeasureMatchesItsDefinition() {
+        final double xx = 7;
+        final double yy = 3;
+        final double xy = -2;
+        assertEquals(7 * 3 - 4 - 0.05 * 100, CornerHelper.harris(0.05).response(xx, yy, xy), 1e-12);
+    }
+
+    @Test
+    public void shiTomasiMeasureIsTheMinEigenvalue() {
+        final double xx = 7;
+        final double yy = 3;
+        final double xy = -2;
+        // The eigenvalues of [[7, -2], [-2, 3]] are 5 +- sqrt(8)
+        assertEquals(5 - Math.sqrt(8), CornerHelper.shiTomasi().response(xx, yy, xy), 1e-12);
+        // A straight edge has a single non-zero eigenvalue
+        assertEquals(0, CornerHelper.shiTomasi().response(9, 0, 0), 0d);
+    }
+
+    @Test
+    public void harrisFindsTheCornersOfARectangle() {
+        assertRectangleCorners(service.harrisCorners(rectangle(), 1, 1.5, 0.04, 4));
+    }
+
+    @Test
+    public void shiTomasiFindsTheCornersOfARectangle() {
+        assertRectangleCorners(service.shiTomasiCorners(rectangle(), 1, 1.5, 4));
+    }
+
+    @Test
+    public void cornersAreSortedByResponseAndLimited() {
+        final List<Corner> corners = service.harrisCorners(rectangle(), 1, 1.5, 0.04, 3);
+        assertEquals(3, corners.size());
+        for (int i = 1; i < corners.size(); i++) {
+            assertTrue(corners.get(i - 1).getResponse() >= corners.get(i).getResponse());
+        }
+    }
+
+    @Test
+    public void sharedGradientsGiveTheSameCorners() {
+        final Image image = rectangle();
+        final Gradients gradients = service.gradients(image, 1);
+        assertEquals(service.harrisCorners(image, 1, 1.5, 0.04, 10),
+                service.harrisCorners(gradients, 1.5, 0.04, 10));
+        assertEquals(service.shiTomasiCorners(image, 1, 1.5, 10), service.shiTomasiCorners(gradients, 1.5, 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void harrisSensitivityMustBePositive() {
+        CornerHelper.harris(0);
+    }
+
+    /**
+     * Checks that the given {@link Corner}s are close (i.e at most two pixels) to the corners of the rectangle.
+     *
+     * @param corners The {@link Corner}s to be checked.
+     */
+    private static void assertRectangleCorners(List<Corner> corners) {
+        assertEquals(RECTANGLE_CORNERS.length, corners.size());
+        for (int[] expected : RECTANGLE_CORNERS) {
+            assertTrue("Corner " + expected[0] + ", " + expected[1], corners.stream()
+                    .anyMatch(corner -> Math.abs(corner.getX() - expected[0]) <= 2
+                            && Math.abs(corner.getY() - expected[1]) <= 2));
+        }
+    }
+
+    /**
+     * Creates a 1-band 48x40 image with a bright rectangle (from 30 to 220)
+     * spanning from (12, 10) to (35, 29).
+     *
+     * @return The created {@link Image}.
+     */
+    private static Image rectangle() {
+        final Image image = Image.empty(48, 40, 1);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setSample(x, y, 0, x >= 12 && x < 36 && y >= 10 && y < 30 ? 220 : 30);
+            }
+        }
+        return image;
+    }
+}
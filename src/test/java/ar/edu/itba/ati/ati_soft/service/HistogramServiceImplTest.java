@@ -0,0 +1,82 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Histogram;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.random;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link HistogramServiceImpl}, comparing the single pass histograms with a direct count of each band.
+ */
+public class HistogramServiceImplTest {
+
+    private final HistogramServiceImpl service = new HistogramServiceImpl();
+
+    @Test
+    public void histogramsOfAllBandsMatchTheCountOfEachBand() {
+        // Tall enough for the rows to be counted by several workers, whose counts are merged
+        final Image image = random(64, 500, 3, 1);
+        final Map<Integer, Histogram> histograms = service.getHistograms(image);
+        assertEquals(3, histograms.size());
+        for (int b = 0; b < image.getBands(); b++) {
+            assertHistogramEquals(count(image, b), histograms.get(b));
+        }
+    }
+
+    @Test
+    public void samplesOutsideTheEightBitRangeAreCounted() {
+        final Image image = random(40, 300, 2, 2);
+        // Negative, big and non integer samples (i.e the category is the integer part of the sample)
+        final double[] outliers = {-1, -300.7, 256, 1000, 1000.2, 12.9};
+        for (int i = 0; i < outliers.length; i++) {
+            image.setSample(i, 7 * i, i % 2, outliers[i]);
+        }
+        final Histogram[] histograms = ImageManipulationHelper.getHistograms(image);
+        for (int b = 0; b < image.getBands(); b++) {
+            final Map<Integer, Long> expected = count(image, b);
+            assertHistogramEquals(expected, histograms[b]);
+            assertHistogramEquals(expected, ImageManipulationHelper.getHistogram(image, b));
+        }
+        assertEquals(-300, histograms[1].minCategory());
+        assertEquals(1000, histograms[0].maxCategory());
+        assertEquals(1, histograms[1].getCount(1000));
+    }
+
+    /**
+     * Counts the samples of the given {@code band} of the given {@link Image} (one by one).
+     *
+     * @param image The {@link Image}.
+     * @param band  The band to be counted.
+     * @return A {@link Map} holding, for each category, the amount of samples in it.
+     */
+    private static Map<Integer, Long> count(Image image, int band) {
+        final Map<Integer, Long> values = new HashMap<>();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                values.merge((int) image.getSample(x, y, band), 1L, Long::sum);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Checks that the given {@link Histogram} holds the {@code expected} counts (and no other category).
+     *
+     * @param expected The expected counts, for each category.
+     * @param actual   The actual {@link Histogram}.
+     */
+    private static void assertHistogramEquals(Map<Integer, Long> expected, Histogram actual) {
+        long total = 0;
+        for (int category = actual.minCategory(); category <= actual.maxCategory(); category++) {
+            assertEquals("Category " + category, expected.getOrDefault(category, 0L).longValue(),
+                    actual.getCount(category));
+            total += actual.getCount(category);
+        }
+        assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), total);
+    }
+}
@@ -0,0 +1,105 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.interfaces.ImageIOContainer;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.random;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the conversions between {@link BufferedImage} and {@link Image} of {@link ImageIOServiceImpl},
+ * comparing them with the sample by sample access of the {@link Raster}.
+ */
+public class ImageIOServiceImplTest {
+
+    private final ImageIOServiceImpl service = new ImageIOServiceImpl();
+
+    @Test
+    public void readsTheSamplesOfEachRasterType() {
+        // Interleaved byte and short rasters are accessed directly, and packed ones through the raster
+        for (int type : new int[]{BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_3BYTE_BGR,
+                BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_USHORT_GRAY, BufferedImage.TYPE_INT_RGB}) {
+            final BufferedImage bufferedImage = randomBufferedImage(type);
+            assertSamplesEqual(bufferedImage.getRaster(), service.fromImageIO(bufferedImage).getImage());
+        }
+    }
+
+    @Test
+    public void readsTheSamplesOfTranslatedRasters() {
+        // Sub-images share the data buffer with their parent, with a translated sample model
+        final BufferedImage subImage = randomBufferedImage(BufferedImage.TYPE_3BYTE_BGR).getSubimage(3, 5, 11, 7);
+        assertSamplesEqual(subImage.getRaster(), service.fromImageIO(subImage).getImage());
+    }
+
+    @Test
+    public void writesTheSamplesOfEachRasterType() {
+        for (int type : new int[]{BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_3BYTE_BGR,
+                BufferedImage.TYPE_INT_RGB}) {
+            final ImageIOContainer container = service.fromImageIO(randomBufferedImage(type));
+            final Image image = random(container.getImage().getWidth(), container.getImage().getHeight(),
+                    container.getImage().getBands(), type);
+            final BufferedImage written = service.toImageIO(container.buildForNewImage(image));
+            assertSamplesEqual(written.getRaster(), image);
+        }
+    }
+
+    @Test
+    public void writtenSamplesAreTruncatedToBytes() {
+        final Image image = Image.empty(3, 1, 1);
+        image.setSample(0, 0, 0, 12.7);
+        image.setSample(1, 0, 0, 300);
+        image.setSample(2, 0, 0, -1);
+        final Raster raster = service.toImageIO(ImageIOContainer.buildForSyntheticImage(image)).getRaster();
+        assertEquals(12, raster.getSample(0, 0, 0));
+        assertEquals(300 & 0xFF, raster.getSample(1, 0, 0));
+        assertEquals(0xFF, raster.getSample(2, 0, 0));
+    }
+
+    /**
+     * Creates a {@link BufferedImage} of the given {@code type} with random samples.
+     *
+     * @param type The type of the {@link BufferedImage}.
+     * @return The created {@link BufferedImage}.
+     */
+    private static BufferedImage randomBufferedImage(int type) {
+        final BufferedImage image = new BufferedImage(23, 17, type);
+        final WritableRaster raster = image.getRaster();
+        final int maxValue = type == BufferedImage.TYPE_USHORT_GRAY ? 0xFFFF : 0xFF;
+        final Random random = new Random(type);
+        for (int y = 0; y < raster.getHeight(); y++) {
+            for (int x = 0; x < raster.getWidth(); x++) {
+                for (int b = 0; b < raster.getNumBands(); b++) {
+                    raster.setSample(x, y, b, random.nextInt(maxValue + 1));
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Asserts that the samples of the given {@link Raster} are the ones of the given {@link Image}.
+     *
+     * @param raster The {@link Raster}.
+     * @param image  The {@link Image}.
+     */
+    private static void assertSamplesEqual(Raster raster, Image image) {
+        assertEquals(raster.getWidth(), image.getWidth());
+        assertEquals(raster.getHeight(), image.getHeight());
+        assertEquals(raster.getNumBands(), image.getBands());
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                for (int b = 0; b < image.getBands(); b++) {
+                    assertEquals("Sample (" + x + ", " + y + ", " + b + ")",
+                            raster.getSample(raster.getMinX() + x, raster.getMinY() + y, b),
+                            image.getSample(x, y, b), 0d);
+                }
+            }
+        }
+    }
+}
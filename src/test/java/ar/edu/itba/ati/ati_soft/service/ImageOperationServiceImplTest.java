@@ -0,0 +1,56 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.junit.Test;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.assertImageEquals;
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.random;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link ImageOperationServiceImpl}.
+ */
+public class ImageOperationServiceImplTest {
+
+    private final ImageOperationServiceImpl service = new ImageOperationServiceImpl();
+
+    @Test
+    public void downscaleAveragesBlocksOfPixels() {
+        // The last column and row don't fill a block, so they are dropped
+        final Image image = random(37, 30, 3, 1);
+        final int factor = 4;
+        final Image downscaled = service.downscale(image, factor);
+        final Image expected = Image.empty(9, 7, 3);
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                for (int b = 0; b < expected.getBands(); b++) {
+                    double sum = 0;
+                    for (int blockY = 0; blockY < factor; blockY++) {
+                        for (int blockX = 0; blockX < factor; blockX++) {
+                            sum += image.getSample(x * factor + blockX, y * factor + blockY, b);
+                        }
+                    }
+                    expected.setSample(x, y, b, sum / (factor * factor));
+                }
+            }
+        }
+        assertImageEquals(expected, downscaled);
+    }
+
+    @Test
+    public void downscaleOfImagesSmallerThanTheFactorAveragesAllThePixels() {
+        final Image image = Image.empty(3, 2, 1);
+        image.setRow(0, new double[]{0, 1, 2});
+        image.setRow(1, new double[]{3, 4, 8});
+        final Image downscaled = service.downscale(image, 4);
+        assertEquals(1, downscaled.getWidth());
+        assertEquals(1, downscaled.getHeight());
+        assertEquals(3, downscaled.getSample(0, 0, 0), 0d);
+    }
+
+    @Test
+    public void downscaleByOneCopiesTheImage() {
+        final Image image = random(7, 5, 2, 2);
+        assertImageEquals(image, service.downscale(image, 1), 0d);
+    }
+}
@@ -0,0 +1,72 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.service.KernelCache.Kernel;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link KernelCache}.
+ */
+public class KernelCacheTest {
+
+    @Test
+    public void kernelsAreCached() {
+        assertSame(KernelCache.gaussian(1.5), KernelCache.gaussian(1.5));
+        assertSame(KernelCache.bilateralSpatial(2, 5), KernelCache.bilateralSpatial(2, 5));
+    }
+
+    @Test
+    public void kernelsWithOtherParametersAreNotShared() {
+        assertEquals(5, KernelCache.gaussian(2).getSize());
+        // Same sigma, but another kind of kernel, and another size
+        assertEquals(13, KernelCache.gaussianWindow(2).getSize());
+        assertEquals(7, KernelCache.bilateralSpatial(2, 7).getSize());
+    }
+
+    @Test
+    public void normalizedKernelsSumOne() {
+        assertEquals(1, Arrays.stream(KernelCache.gaussian(2.5).copyWeights()).sum(), 1e-12);
+        assertEquals(1, Arrays.stream(KernelCache.gaussianWindow(0.8).copyWeights()).sum(), 1e-12);
+    }
+
+    @Test
+    public void separableKernelsAreTheProductOfTheirFactor() {
+        for (Kernel kernel : new Kernel[]{KernelCache.gaussian(2), KernelCache.bilateralSpatial(1.5, 5),
+                KernelCache.gaussianWindow(1)}) {
+            assertTrue(kernel.isSeparable());
+            final int size = kernel.getSize();
+            final double[] weights = kernel.copyWeights();
+            final double[] factor = kernel.copySeparableFactor();
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    assertEquals(weights[i * size + j], factor[i] * factor[j], 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void laplacianOfGaussianIsNotSeparable() {
+        final Kernel kernel = KernelCache.laplacianOfGaussian(1);
+        assertEquals(7, kernel.getSize());
+        assertFalse(kernel.isSeparable());
+    }
+
+    @Test
+    public void copiesDoNotModifyTheCachedKernel() {
+        final double[] weights = KernelCache.gaussian(1).copyWeights();
+        Arrays.fill(weights, 0);
+        assertEquals(1, Arrays.stream(KernelCache.gaussian(1).copyWeights()).sum(), 1e-12);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sigmaMustBePositive() {
+        KernelCache.gaussian(0);
+    }
+}
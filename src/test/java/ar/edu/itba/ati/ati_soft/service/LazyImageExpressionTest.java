@@ -0,0 +1,115 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.interfaces.ImageExpression;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
+import org.junit.Test;
+
+import java.util.function.DoubleBinaryOperator;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.assertImageEquals;
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.random;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link LazyImageExpression}, comparing its results with the ones of the eager operations.
+ */
+public class LazyImageExpressionTest {
+
+    private final ImageOperationServiceImpl service = new ImageOperationServiceImpl();
+
+    private final Image first = random(23, 17, 3, 1);
+
+    private final Image second = random(23, 17, 3, 2);
+
+    @Test
+    public void pixelByPixelOperationsMatchTheirDefinition() {
+        assertImageEquals(combine(first, second, (v1, v2) -> v1 + v2),
+                LazyImageExpression.of(first).sum(LazyImageExpression.of(second)).materialize());
+        assertImageEquals(combine(first, second, (v1, v2) -> v1 - v2),
+                LazyImageExpression.of(first).subtract(LazyImageExpression.of(second)).materialize());
+        assertImageEquals(combine(first, second, (v1, v2) -> v1 * v2),
+                LazyImageExpression.of(first).multiply(LazyImageExpression.of(second)).materialize());
+    }
+
+    @Test
+    public void pointOperationsMatchTheEagerOnes() {
+        assertImageEquals(service.normalize(first), LazyImageExpression.of(first).normalize().materialize());
+        assertImageEquals(service.getNegative(first), LazyImageExpression.of(first).negative().materialize());
+        assertImageEquals(service.gammaPower(first, 0.7),
+                LazyImageExpression.of(first).gammaPower(0.7).materialize());
+        assertImageEquals(service.dynamicRangeCompression(first),
+                LazyImageExpression.of(first).dynamicRangeCompression().materialize());
+        assertImageEquals(service.multiplyByScalar(first, -1.5),
+                LazyImageExpression.of(first).multiplyByScalar(-1.5).materialize());
+    }
+
+    @Test
+    public void chainedOperationsMatchTheEagerOnes() {
+        final Image eager = service.gammaPower(service.getNegative(service.normalize(
+                combine(first, second, (v1, v2) -> v1 - v2))), 1.3);
+        final Image lazy = service.expression(first)
+                .subtract(service.expression(second))
+                .normalize()
+                .negative()
+                .gammaPower(1.3)
+                .materialize();
+        assertImageEquals(eager, lazy);
+    }
+
+    @Test
+    public void thresholdMatchesTheEagerOne() {
+        final Image eager = ImageManipulationHelper.threshold(
+                service.normalize(ImageManipulationHelper.toGray(first)), 100);
+        assertImageEquals(eager, LazyImageExpression.of(first).threshold(100).materialize());
+    }
+
+    @Test
+    public void thenAppliesTheOperationToTheMaterializedExpression() {
+        final ImageExpression expression = LazyImageExpression.of(first).normalize()
+                .then(image -> Image.fromArray(image.getSubRaster(2, 3, 10, 5)));
+        assertEquals(10, expression.getWidth());
+        assertEquals(5, expression.getHeight());
+        assertImageEquals(Image.fromArray(service.normalize(first).getSubRaster(2, 3, 10, 5)),
+                expression.materialize());
+    }
+
+    @Test
+    public void theSourceIsNotModified() {
+        final Image copy = first.copy();
+        LazyImageExpression.of(first).negative().multiplyByScalar(3).materialize();
+        assertImageEquals(copy, first, 0d);
+    }
+
+    @Test
+    public void typesArePromotedOnlyWhenNeeded() {
+        final Image image = Image.trash(4, 4, 1, SampleType.UINT8);
+        for (int y = 0; y < 4; y++) {
+            image.setRow(y, new double[]{y, 10 * y, 100, 255});
+        }
+        assertEquals(SampleType.UINT8, LazyImageExpression.of(image).normalize().negative()
+                .materialize().getSampleType());
+        assertEquals(SampleType.FLOAT32, LazyImageExpression.of(image).multiplyByScalar(-1)
+                .materialize().getSampleType());
+        assertEquals(SampleType.FLOAT32, LazyImageExpression.of(image).subtract(LazyImageExpression.of(image))
+                .materialize().getSampleType());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pixelByPixelOperationsRequireTheSameSize() {
+        LazyImageExpression.of(first).sum(LazyImageExpression.of(random(22, 17, 3, 3)));
+    }
+
+    /**
+     * Combines both {@link Image}s sample by sample.
+     *
+     * @param first     The first {@link Image}.
+     * @param second    The second {@link Image}.
+     * @param operation The operation applied to each pair of samples.
+     * @return The combined {@link Image}.
+     */
+    private static Image combine(Image first, Image second, DoubleBinaryOperator operation) {
+        return ImageManipulationHelper.createApplying(first,
+                (x, y, b, v) -> operation.applyAsDouble(v, second.getSample(x, y, b)));
+    }
+}
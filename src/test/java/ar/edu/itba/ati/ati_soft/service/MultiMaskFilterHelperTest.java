@@ -0,0 +1,153 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.service.MultiMaskFilterHelper.MaskBank;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.assertImageEquals;
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.random;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link MultiMaskFilterHelper}, comparing the results of applying a {@link MaskBank} in a single pass
+ * with the ones of applying each mask on its own, and then combining them.
+ */
+public class MultiMaskFilterHelperTest {
+
+    /**
+     * The Sobel mask (indexed by column, and then by row).
+     */
+    /* package */ static final Double[][] SOBEL_MASK = {{1d, 2d, 1d}, {0d, 0d, 0d}, {-1d, -2d, -1d}};
+
+    /**
+     * The eight directions of the Sobel mask (i.e as they are built by the direction methods).
+     */
+    /* package */ static final Double[][][] SOBEL_DIRECTIONS = IntStream.range(0, 8)
+            .mapToObj(turns -> MaskHelper.rotate3x3Mask(() -> SOBEL_MASK, turns))
+            .toArray(Double[][][]::new);
+
+    private final Image image = random(31, 19, 3, 3);
+
+    @Test
+    public void maxMatchesTheMaxAbsoluteValueOfEachMask() {
+        final Image[] filtered = filterEach(image, SOBEL_DIRECTIONS);
+        final Image expected = combine(filtered, values -> {
+            double max = 0;
+            for (double value : values) {
+                max = Math.max(max, Math.abs(value));
+            }
+            return max;
+        });
+        assertImageEquals(expected, MultiMaskFilterHelper.filterWithMax(image, bank(SOBEL_DIRECTIONS)));
+    }
+
+    @Test
+    public void modulusMatchesTheModulusOfTheValuesOfEachMask() {
+        final Double[][][] masks = {SOBEL_DIRECTIONS[0], SOBEL_DIRECTIONS[6]};
+        final Image[] filtered = filterEach(image, masks);
+        final Image expected = combine(filtered, values -> Math.sqrt(values[0] * values[0] + values[1] * values[1]));
+        assertImageEquals(expected, MultiMaskFilterHelper.filterWithModulus(image, bank(masks)));
+    }
+
+    @Test
+    public void eachMaskIsAppliedInTheGivenOrder() {
+        final Image[] expected = filterEach(image, SOBEL_DIRECTIONS);
+        final Image[] actual = MultiMaskFilterHelper.filterEach(image, bank(SOBEL_DIRECTIONS));
+        assertEquals(expected.length, actual.length);
+        for (int m = 0; m < expected.length; m++) {
+            assertImageEquals(expected[m], actual[m]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void masksMustHaveTheSameLength() {
+        final Double[][] bigger = new Double[5][5];
+        for (Double[] column : bigger) {
+            Arrays.fill(column, 1d);
+        }
+        MultiMaskFilterHelper.bank(() -> SOBEL_MASK, () -> bigger);
+    }
+
+    /**
+     * Convolves the given {@link Image} with the given {@code mask} (indexed by column, and then by row),
+     * setting the pixels in the border (i.e those for which the mask does not fit) to zero.
+     *
+     * @param image The {@link Image} to be convolved.
+     * @param mask  The mask.
+     * @return The convolved {@link Image}.
+     */
+    /* package */
+    static Image convolve(Image image, Double[][] mask) {
+        final int margin = mask.length / 2;
+        final Image result = Image.empty(image.getWidth(), image.getHeight(), image.getBands());
+        for (int y = margin; y < image.getHeight() - margin; y++) {
+            for (int x = margin; x < image.getWidth() - margin; x++) {
+                for (int b = 0; b < image.getBands(); b++) {
+                    double value = 0;
+                    for (int i = 0; i < mask.length; i++) {
+                        for (int j = 0; j < mask.length; j++) {
+                            value += mask[i][j] * image.getSample(x - margin + i, y - margin + j, b);
+                        }
+                    }
+                    result.setSample(x, y, b, value);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Convolves the given {@link Image} with each of the given {@code masks}.
+     *
+     * @param image The {@link Image} to be convolved.
+     * @param masks The masks.
+     * @return The convolved {@link Image}s.
+     */
+    private static Image[] filterEach(Image image, Double[][][] masks) {
+        final Image[] filtered = new Image[masks.length];
+        for (int m = 0; m < masks.length; m++) {
+            filtered[m] = convolve(image, masks[m]);
+        }
+        return filtered;
+    }
+
+    /**
+     * Creates a {@link MaskBank} with the given {@code masks}.
+     *
+     * @param masks The masks.
+     * @return The {@link MaskBank}.
+     */
+    private static MaskBank bank(Double[][][] masks) {
+        return MultiMaskFilterHelper.bank(IntStream.range(0, masks.length)
+                .mapToObj(m -> (MaskHelper.MaskContainer) () -> masks[m])
+                .toArray(MaskHelper.MaskContainer[]::new));
+    }
+
+    /**
+     * Combines the samples in the same position of the given {@link Image}s into a new {@link Image}.
+     *
+     * @param images   The {@link Image}s to be combined.
+     * @param combiner A function that takes the samples in a given position, and returns the combined sample.
+     * @return The combined {@link Image}.
+     */
+    private static Image combine(Image[] images, ToDoubleFunction<double[]> combiner) {
+        final Image first = images[0];
+        final Image result = Image.empty(first.getWidth(), first.getHeight(), first.getBands());
+        for (int y = 0; y < first.getHeight(); y++) {
+            for (int x = 0; x < first.getWidth(); x++) {
+                for (int b = 0; b < first.getBands(); b++) {
+                    final double[] values = new double[images.length];
+                    for (int m = 0; m < images.length; m++) {
+                        values[m] = images[m].getSample(x, y, b);
+                    }
+                    result.setSample(x, y, b, combiner.applyAsDouble(values));
+                }
+            }
+        }
+        return result;
+    }
+}
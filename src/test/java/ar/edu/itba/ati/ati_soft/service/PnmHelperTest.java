@@ -0,0 +1,172 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.interfaces.UnsupportedImageFileException;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SampleLayout;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.assertImageEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link PnmHelper}.
+ */
+public class PnmHelperTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsPlainGrayWithComments() throws IOException {
+        final Path path = file("P2\n# A comment\n3 2\n# Another comment\n255\n0 1 2\n3 4 255\n");
+        assertImageEquals(image(3, 2, 1, 0, 1, 2, 3, 4, 255),
+                PnmHelper.read(path, SampleType.FLOAT64, SampleLayout.INTERLEAVED), 0d);
+    }
+
+    @Test
+    public void readsPlainColor() throws IOException {
+        // The last number is not followed by a whitespace
+        final Path path = file("P3 2 1 255 10 20 30 40 50 60");
+        assertImageEquals(image(2, 1, 3, 10, 20, 30, 40, 50, 60),
+                PnmHelper.read(path, SampleType.FLOAT64, SampleLayout.INTERLEAVED), 0d);
+    }
+
+    @Test
+    public void readsRawGrayWithComments() throws IOException {
+        final Path path = file(bytes("P5\n# Width and height\n2 2 # Trailing comment\n255\n", 0, 128, 200, 255));
+        assertImageEquals(image(2, 2, 1, 0, 128, 200, 255),
+                PnmHelper.read(path, SampleType.FLOAT64, SampleLayout.INTERLEAVED), 0d);
+    }
+
+    @Test
+    public void readsRawColor() throws IOException {
+        final Path path = file(bytes("P6\n1 2\n255\n", 1, 2, 3, 250, 251, 252));
+        final Image image = PnmHelper.read(path, SampleType.FLOAT64, SampleLayout.PLANAR);
+        assertEquals(SampleLayout.PLANAR, image.getLayout());
+        assertImageEquals(image(1, 2, 3, 1, 2, 3, 250, 251, 252), image, 0d);
+        assertArrayEquals(new double[]{2, 251}, image.band(1).getTile(0, 0, 1, 2, null), 0d);
+    }
+
+    @Test
+    public void readsSixteenBitSamples() throws IOException {
+        // Samples take two bytes (big-endian) when the max. value is bigger than 255
+        final Path path = file(bytes("P5 3 1 65535\n", 0x01, 0x02, 0xFF, 0xFF, 0x00, 0x07));
+        final Image image = PnmHelper.read(path, SampleType.UINT16, SampleLayout.INTERLEAVED);
+        assertEquals(SampleType.UINT16, image.getSampleType());
+        assertImageEquals(image(3, 1, 1, 0x0102, 0xFFFF, 7), image, 0d);
+        final Path plainPath = file("P3 1 1 1000 1000 500 0\n");
+        assertImageEquals(image(1, 1, 3, 1000, 500, 0),
+                PnmHelper.read(plainPath, SampleType.UINT16, SampleLayout.INTERLEAVED), 0d);
+    }
+
+    @Test
+    public void writesEightBitRawFiles() throws IOException {
+        final Path grayPath = folder.newFile("gray.pgm").toPath();
+        PnmHelper.write(image(3, 1, 1, -5, 12.7, 300), grayPath);
+        // Samples are truncated, and clamped to the 8-bit range
+        assertArrayEquals(bytes("P5\n3 1\n255\n", 0, 12, 255), Files.readAllBytes(grayPath));
+
+        final Image color = image(2, 2, 3, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+        final Path colorPath = folder.newFile("color.ppm").toPath();
+        PnmHelper.write(color, colorPath);
+        assertImageEquals(color, PnmHelper.read(colorPath, SampleType.UINT8, SampleLayout.INTERLEAVED), 0d);
+    }
+
+    @Test
+    public void writesSixteenBitRawFilesForSixteenBitImages() throws IOException {
+        final Image image = Image.trash(3, 1, 1, SampleType.UINT16);
+        image.setRow(0, new double[]{0x0102, 0xFFFF, 7});
+        final Path path = folder.newFile("wide.pgm").toPath();
+        PnmHelper.write(image, path);
+        // Samples take two bytes (big-endian), as the max. value is bigger than 255
+        assertArrayEquals(bytes("P5\n3 1\n65535\n", 0x01, 0x02, 0xFF, 0xFF, 0x00, 0x07), Files.readAllBytes(path));
+        assertImageEquals(image, PnmHelper.read(path, SampleType.UINT16, SampleLayout.INTERLEAVED), 0d);
+    }
+
+    @Test(expected = EOFException.class)
+    public void failsWithTruncatedFiles() throws IOException {
+        PnmHelper.read(file(bytes("P5 2 2 255\n", 1, 2, 3)), SampleType.UINT8, SampleLayout.INTERLEAVED);
+    }
+
+    @Test(expected = UnsupportedImageFileException.class)
+    public void failsWithUnsupportedFormats() throws IOException {
+        PnmHelper.read(file("P4 1 1\n"), SampleType.UINT8, SampleLayout.INTERLEAVED);
+    }
+
+    @Test
+    public void readsFilesWrittenByTheService() throws Exception {
+        final ImageIOServiceImpl imageIOService = new ImageIOServiceImpl();
+        imageIOService.afterPropertiesSet();
+        final Image image = image(2, 1, 3, 0, 64, 128, 192, 255, 1);
+        final Path path = folder.newFile("image.ppm").toPath();
+        imageIOService.writeImage(image, path.toFile());
+        assertImageEquals(image, imageIOService.readImage(path.toFile()), 0d);
+    }
+
+    /**
+     * Creates a file with the given (ASCII) {@code content}.
+     *
+     * @param content The content of the file.
+     * @return The {@link Path} of the created file.
+     * @throws IOException If the file could not be created.
+     */
+    private Path file(String content) throws IOException {
+        return file(content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Creates a file with the given {@code content}.
+     *
+     * @param content The content of the file.
+     * @return The {@link Path} of the created file.
+     * @throws IOException If the file could not be created.
+     */
+    private Path file(byte[] content) throws IOException {
+        return Files.write(folder.newFile().toPath(), content);
+    }
+
+    /**
+     * Concatenates the given (ASCII) {@code header} with the given {@code samples} (as bytes).
+     *
+     * @param header  The header.
+     * @param samples The samples (each one being a byte).
+     * @return The concatenated bytes.
+     */
+    private static byte[] bytes(String header, int... samples) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+        output.write(headerBytes, 0, headerBytes.length);
+        for (int sample : samples) {
+            output.write(sample);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Creates an {@link Image} with the given {@code samples}.
+     *
+     * @param width   The image width.
+     * @param height  The image height.
+     * @param bands   The amount of bands.
+     * @param samples The samples (row by row, being the bands of each pixel together).
+     * @return The created {@link Image}.
+     */
+    private static Image image(int width, int height, int bands, double... samples) {
+        final Image image = Image.empty(width, height, bands);
+        for (int i = 0; i < samples.length; i++) {
+            image.setSample((i / bands) % width, i / (bands * width), i % bands, samples[i]);
+        }
+        return image;
+    }
+}
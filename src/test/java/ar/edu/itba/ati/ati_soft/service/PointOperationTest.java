@@ -0,0 +1,104 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SampleType;
+import org.junit.Test;
+
+import java.util.function.DoubleUnaryOperator;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.assertImageEquals;
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link PointOperation}.
+ */
+public class PointOperationTest {
+
+    @Test
+    public void tabulatedAndNotTabulatedSamplesMatchTheFunction() {
+        final DoubleUnaryOperator function = v -> Math.sqrt(Math.abs(v)) * 3 - 1;
+        // Integers inside the domain use the table, while the rest evaluate the function
+        final double[] samples = {0, 17, 255, 12.5, -4, 1000};
+        final Image result = PointOperation.of(function).apply(row(samples));
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals("Sample " + i, function.applyAsDouble(samples[i]), result.getSample(i, 0, 0), 0d);
+        }
+    }
+
+    @Test
+    public void composedOperationsApplyBothFunctionsInOrder() {
+        final Image result = PointOperation.of(v -> v + 1)
+                .andThen(PointOperation.of(v -> v * 2))
+                .apply(row(0, 10, 100, 300.5));
+        assertImageEquals(row(2, 22, 202, 603), result, 0d);
+    }
+
+    @Test
+    public void perBandOperationsApplyTheFunctionOfEachBand() {
+        final Image image = Image.empty(2, 1, 3);
+        final Image expected = Image.empty(2, 1, 3);
+        for (int x = 0; x < 2; x++) {
+            for (int b = 0; b < 3; b++) {
+                image.setSample(x, 0, b, 3 * x + b + 1);
+                expected.setSample(x, 0, b, (3 * x + b + 1) * (b + 1) + 0.5);
+            }
+        }
+        final PointOperation operation = PointOperation.perBand(3, b -> v -> v * (b + 1))
+                .andThen(PointOperation.of(v -> v + 0.5));
+        assertImageEquals(expected, operation.apply(image), 0d);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void perBandOperationsRequireTheSameAmountOfBands() {
+        PointOperation.perBand(3, b -> v -> v).apply(Image.empty(1, 1, 1));
+    }
+
+    @Test
+    public void widerDomainsAreTabulated() {
+        final Image result = PointOperation.of(v -> v / 2).withDomain(-255, 0xFFFF).apply(row(-100, 0, 60000));
+        assertImageEquals(row(-50, 0, 30000), result, 0d);
+    }
+
+    @Test
+    public void resultsAreStoredWithTheGivenType() {
+        final Image image = Image.trash(3, 1, 1, SampleType.UINT8);
+        image.setRow(0, new double[]{0, 100, 255});
+        final PointOperation negate = PointOperation.of(v -> -v / 3);
+        // The type of the image saturates, while the promoted one keeps the values
+        assertArrayEquals(new double[]{0, 0, 0}, negate.apply(image).getRow(0, null), 0d);
+        final Image promoted = negate.apply(image, SampleType.UINT8.toFloatingPoint());
+        assertEquals(SampleType.FLOAT32, promoted.getSampleType());
+        assertArrayEquals(new double[]{0, (float) (-100d / 3), -85}, promoted.getRow(0, null), 0d);
+    }
+
+    @Test
+    public void eagerOperationsMatchTheirDefinition() {
+        final ImageOperationServiceImpl service = new ImageOperationServiceImpl();
+        final Image image = random(23, 17, 3, 1);
+        final double constant = Math.pow(0xFF, 1 - 0.7);
+        assertImageEquals(ImageManipulationHelper.createApplying(image,
+                (x, y, b, v) -> constant * Math.pow(v, 0.7)), service.gammaPower(image, 0.7));
+        assertImageEquals(ImageManipulationHelper.createApplying(image, (x, y, b, v) -> -1.5 * v),
+                service.multiplyByScalar(image, -1.5));
+        // The negative is fused with the normalization
+        image.setSample(0, 0, 0, 400);
+        assertImageEquals(ImageManipulationHelper.createApplying(ImageManipulationHelper.normalize(image),
+                (x, y, b, v) -> 0xFF - v), service.getNegative(image));
+    }
+
+    /**
+     * Creates a one band {@link Image} with a single row holding the given {@code samples}.
+     *
+     * @param samples The samples.
+     * @return The created {@link Image}.
+     */
+    private static Image row(double... samples) {
+        final Image image = Image.empty(samples.length, 1, 1);
+        for (int x = 0; x < samples.length; x++) {
+            image.setSample(x, 0, 0, samples[x]);
+        }
+        return image;
+    }
+}
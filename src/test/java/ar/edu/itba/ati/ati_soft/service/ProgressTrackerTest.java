@@ -0,0 +1,100 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.interfaces.OperationContext;
+import ar.edu.itba.ati.ati_soft.interfaces.ProgressMonitor;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ProgressTracker}, and for the progress reporting and cancellation of services.
+ */
+public class ProgressTrackerTest {
+
+    @Test
+    public void nestedTrackersReportTheProgressOfTheOuterStep() {
+        final RecordingMonitor monitor = new RecordingMonitor(Integer.MAX_VALUE);
+        OperationContext.runWith(monitor, () -> {
+            try (ProgressTracker outer = ProgressTracker.start(2)) {
+                try (ProgressTracker inner = ProgressTracker.start(2)) {
+                    inner.step();
+                    inner.step();
+                }
+                outer.step();
+                outer.step();
+            }
+            return null;
+        });
+        assertArrayEquals(new double[]{0.25, 0.5, 0.5, 1}, monitor.fractions(), 0d);
+    }
+
+    @Test
+    public void trackersWithoutMonitorDoNothing() {
+        try (ProgressTracker tracker = ProgressTracker.start(1)) {
+            tracker.step();
+            tracker.step();
+            tracker.checkCancelled();
+        }
+        assertFalse(OperationContext.getMonitor().isPresent());
+    }
+
+    @Test
+    public void servicesReportTheirProgress() {
+        final RecordingMonitor monitor = new RecordingMonitor(Integer.MAX_VALUE);
+        final Image image = random(20, 30, 1, 1);
+        OperationContext.runWith(monitor, () -> new SlidingWindowServiceImpl(null).applyMeanFilter(image, 3));
+        final double[] fractions = monitor.fractions();
+        assertTrue(fractions.length > 1);
+        assertEquals(1d, fractions[fractions.length - 1], 0d);
+        // Steps can be performed by several workers, but the progress is never over one
+        for (double fraction : fractions) {
+            assertTrue(fraction > 0 && fraction <= 1);
+        }
+    }
+
+    @Test(expected = CancellationException.class)
+    public void servicesAbortWhenTheMonitorRequestsTheCancellation() {
+        final Image image = random(20, 300, 1, 2);
+        // Cancelled after a few rows
+        OperationContext.runWith(new RecordingMonitor(5),
+                () -> new SlidingWindowServiceImpl(null).applyMeanFilter(image, 3));
+    }
+
+    /**
+     * A {@link ProgressMonitor} that records the reported progress,
+     * requesting the cancellation after a given amount of updates.
+     */
+    private static final class RecordingMonitor implements ProgressMonitor {
+
+        private final List<Double> fractions = new CopyOnWriteArrayList<>();
+
+        private final int updatesBeforeCancelling;
+
+        private RecordingMonitor(int updatesBeforeCancelling) {
+            this.updatesBeforeCancelling = updatesBeforeCancelling;
+        }
+
+        @Override
+        public void updateProgress(double fraction) {
+            fractions.add(fraction);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return fractions.size() >= updatesBeforeCancelling;
+        }
+
+        private double[] fractions() {
+            return fractions.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.interfaces.ImageRowReader;
+import ar.edu.itba.ati.ati_soft.interfaces.ImageRowWriter;
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.Region;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+
+import static ar.edu.itba.ati.ati_soft.service.MultiMaskFilterHelperTest.SOBEL_DIRECTIONS;
+import static ar.edu.itba.ati.ati_soft.service.MultiMaskFilterHelperTest.convolve;
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.assertImageEquals;
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SlidingWindowServiceImpl}.
+ */
+public class SlidingWindowServiceImplTest {
+
+    /**
+     * The Laplace mask.
+     */
+    private static final Double[][] LAPLACE_MASK = {{0d, -1d, 0d}, {-1d, 4d, -1d}, {0d, -1d, 0d}};
+
+    private final SlidingWindowServiceImpl service = new SlidingWindowServiceImpl(new ImageThresholdServiceImpl());
+
+    /**
+     * An image taller than a band of rows, so the streaming filters process it in several bands.
+     */
+    private final Image image = random(37, 150, 3, 4);
+
+    // ================================================================================================================
+    // Streaming filters
+    // ================================================================================================================
+
+    @Test
+    public void streamingMeanFilterMatchesTheInMemoryOne() throws IOException {
+        final ImageSink sink = new ImageSink(image);
+        service.applyMeanFilter(new ImageSource(image), sink, 5);
+        assertImageEquals(service.applyMeanFilter(image, 5), sink.image);
+    }
+
+    @Test
+    public void streamingMedianFilterMatchesTheInMemoryOne() throws IOException {
+        final ImageSink sink = new ImageSink(image);
+        service.applyMedianFilter(new ImageSource(image), sink, 3);
+        assertImageEquals(service.applyMedianFilter(image, 3), sink.image);
+    }
+
+    @Test
+    public void streamingWeightMedianFilterMatchesTheInMemoryOne() throws IOException {
+        final Integer[][] weights = {{1, 2, 1}, {2, 4, 2}, {1, 2, 1}};
+        final ImageSink sink = new ImageSink(image);
+        service.applyWeightMedianFilter(new ImageSource(image), sink, weights);
+        assertImageEquals(service.applyWeightMedianFilter(image, weights), sink.image);
+    }
+
+    @Test
+    public void streamingGaussianFilterMatchesTheInMemoryOne() throws IOException {
+        for (double sigma : new double[]{0.5, 1, 3}) {
+            final ImageSink sink = new ImageSink(image);
+            service.applyGaussianFilter(new ImageSource(image), sink, sigma);
+            assertImageEquals(service.applyGaussianFilter(image, sigma), sink.image);
+        }
+    }
+
+    @Test
+    public void gaussianFilterMatchesTheGaussianMask() {
+        final double sigma = 2;
+        final double[] weights = KernelCache.gaussian(sigma).copyWeights();
+        final int size = KernelCache.gaussian(sigma).getSize();
+        final Double[][] mask = new Double[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                mask[x][y] = weights[y * size + x];
+            }
+        }
+        assertImageEquals(convolve(image, mask), service.applyGaussianFilter(image, sigma));
+    }
+
+    @Test
+    public void streamingBilateralFilterMatchesTheInMemoryOne() throws IOException {
+        final ImageSink sink = new ImageSink(image);
+        service.applyBilateralFilter(new ImageSource(image), sink, 2, 30, 5);
+        assertImageEquals(service.applyBilateralFilter(image, 2, 30, 5), sink.image);
+    }
+
+    // ================================================================================================================
+    // Regions of interest
+    // ================================================================================================================
+
+    /**
+     * A region touching the left border of the {@link #image}, so its margin is clipped on that side.
+     */
+    private final Region region = new Region(0, 40, 20, 30);
+
+    @Test
+    public void regionWithMarginMatchesTheWholeImageFiltering() {
+        final Image filtered = new ImageOperationServiceImpl()
+                .applyToRegion(image, region, 2, view -> service.applyMeanFilter(view, 5));
+        assertRegionResult(service.applyMeanFilter(image, 5), filtered);
+    }
+
+    @Test
+    public void regionWithoutMarginDiffersInItsBorders() {
+        final Image filtered = new ImageOperationServiceImpl()
+                .applyToRegion(image, region, 0, view -> service.applyMeanFilter(view, 5));
+        // The first row of the region is filtered without the rows above it
+        assertNotEquals(service.applyMeanFilter(image, 5).getSample(5, region.getY(), 0),
+                filtered.getSample(5, region.getY(), 0), 0d);
+    }
+
+    @Test
+    public void bilateralFilterOfARegionMatchesTheWholeImageFiltering() {
+        assertRegionResult(service.applyBilateralFilter(image, 2, 30, 5),
+                service.applyBilateralFilter(image, region, 2, 30, 5));
+    }
+
+    @Test
+    public void cieLabBilateralFilterOfARegionMatchesTheWholeImageFiltering() {
+        // The normalization of RGB images is calculated using the whole image
+        final Image colorImage = random(37, 150, 3, 5);
+        colorImage.setSample(30, 140, 0, 0); // Outside the region, so the normalization is not the region's one
+        assertRegionResult(colorImage, service.applyBilateralFilterWithCIELabColor(colorImage, 2, 30, 5),
+                service.applyBilateralFilterWithCIELabColor(colorImage, region, 2, 30, 5));
+    }
+
+    @Test
+    public void gridFilterOfARegionApproximatesTheWholeImageFiltering() {
+        // The grid of the region has other cells, so both approximations are only close
+        final Image filtered = service.applyBilateralGridFilter(image, region, 4, 30);
+        final Image whole = service.applyBilateralGridFilter(image, 4, 30);
+        assertImageEquals(region.viewOf(whole), region.viewOf(filtered), 10);
+        assertRegionResult(filtered, filtered); // Only checks that the samples outside the region are not changed
+    }
+
+    @Test
+    public void cannyDetectionOfARegionWithGlobalThresholdsMatchesTheWholeImageDetection() {
+        assertRegionResult(service.cannyDetection(image, 1), service.cannyDetection(image, region, 1, true));
+    }
+
+    // ================================================================================================================
+    // Border detection
+    // ================================================================================================================
+
+    @Test
+    public void laplaceZeroCrossingsMatchTheirDefinition() {
+        // Few different values, so the second derivative has many zeros (which are skipped)
+        final Random random = new Random(5);
+        final Image plateaus = Image.empty(41, 29, 1);
+        for (int y = 0; y < plateaus.getHeight(); y++) {
+            for (int x = 0; x < plateaus.getWidth(); x++) {
+                plateaus.setSample(x, y, 0, 50 * random.nextInt(3));
+            }
+        }
+        for (Image gray : new Image[]{plateaus, random(41, 29, 1, 6)}) {
+            final Image secondDerivative = convolve(gray, LAPLACE_MASK);
+            assertImageEquals(zeroCrossings(secondDerivative, 0), service.laplaceMethod(gray));
+            for (double slopeThreshold : new double[]{50, 200}) {
+                assertImageEquals(zeroCrossings(secondDerivative, slopeThreshold),
+                        service.laplaceMethodWithSlopeEvaluation(gray, slopeThreshold));
+            }
+        }
+    }
+
+    @Test
+    public void directionMethodsMatchTheMaxOfEachDirection() {
+        final Image gray = random(33, 21, 1, 7);
+        final Image result = service.sobelMaxDirectionBorderDetectionMethod(gray);
+        final Image[] directions = new Image[SOBEL_DIRECTIONS.length];
+        for (int m = 0; m < directions.length; m++) {
+            directions[m] = convolve(gray, SOBEL_DIRECTIONS[m]);
+        }
+        boolean anyBorder = false;
+        for (int y = 0; y < gray.getHeight(); y++) {
+            for (int x = 0; x < gray.getWidth(); x++) {
+                double max = 0;
+                for (Image direction : directions) {
+                    max = Math.max(max, Math.abs(direction.getSample(x, y, 0)));
+                }
+                assertEquals("Pixel (" + x + ", " + y + ")", max, result.getSample(x, y, 0), 0d);
+                anyBorder |= max > 0;
+            }
+        }
+        assertTrue(anyBorder);
+    }
+
+    @Test
+    public void cannyDetectionWithSharedGradientsMatchesTheImageDetection() {
+        assertImageEquals(service.cannyDetection(image, 1), service.cannyDetection(service.gradients(image, 1)));
+    }
+
+    /**
+     * Checks that the samples of the {@link #region} of the given {@code actual} {@link Image}
+     * are the ones of the {@code expected} {@link Image},
+     * and the samples outside it are the ones of the {@link #image}.
+     *
+     * @param expected The {@link Image} with the expected samples inside the region.
+     * @param actual   The {@link Image} to be checked.
+     */
+    private void assertRegionResult(Image expected, Image actual) {
+        assertRegionResult(image, expected, actual);
+    }
+
+    /**
+     * Checks that the samples of the {@link #region} of the given {@code actual} {@link Image}
+     * are the ones of the {@code expected} {@link Image}, and the samples outside it are the ones of the
+     * {@code original} {@link Image}.
+     *
+     * @param original The {@link Image} to which the operation was applied.
+     * @param expected The {@link Image} with the expected samples inside the region.
+     * @param actual   The {@link Image} to be checked.
+     */
+    private void assertRegionResult(Image original, Image expected, Image actual) {
+        assertImageEquals(region.viewOf(expected), region.viewOf(actual));
+        final Region below = new Region(0, region.getY() + region.getHeight(), original.getWidth(),
+                original.getHeight() - region.getY() - region.getHeight());
+        assertImageEquals(below.viewOf(original), below.viewOf(actual));
+    }
+
+    /**
+     * Detects the zero crossings of the given second derivative {@link Image}, checking rows and columns separately
+     * (i.e as they were detected before being checked in a single pass).
+     *
+     * @param secondDerivative The second derivative {@link Image}.
+     * @param slopeThreshold   The min. slope for a change of sign to be considered a border.
+     * @return The border {@link Image}.
+     */
+    private static Image zeroCrossings(Image secondDerivative, double slopeThreshold) {
+        final int width = secondDerivative.getWidth();
+        final int height = secondDerivative.getHeight();
+        final Image result = Image.empty(width, height, secondDerivative.getBands());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                for (int b = 0; b < secondDerivative.getBands(); b++) {
+                    final int band = b;
+                    final int row = y;
+                    final int column = x;
+                    final boolean byColumn = isBorder(x, width, position ->
+                            secondDerivative.getSample(position, row, band), slopeThreshold);
+                    final boolean byRow = isBorder(y, height, position ->
+                            secondDerivative.getSample(column, position, band), slopeThreshold);
+                    result.setSample(x, y, b, byColumn || byRow ? 255 : 0);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether there is a zero crossing in the given {@code position} of a row or column.
+     *
+     * @param position       The position in the row or column.
+     * @param length         The length of the row or column.
+     * @param samples        A function that returns the sample in a given position of the row or column.
+     * @param slopeThreshold The min. slope for a change of sign to be considered a border.
+     * @return {@code true} if there is a zero crossing, or {@code false} otherwise.
+     */
+    private static boolean isBorder(int position, int length, IntToDoubleFunction samples,
+                                    double slopeThreshold) {
+        if (position == 0) {
+            return false;
+        }
+        final double previous = samples.applyAsDouble(position - 1);
+        final double pixel = samples.applyAsDouble(position);
+        final boolean changeOfSign;
+        if (pixel != 0) {
+            changeOfSign = previous * pixel < 0;
+        } else {
+            // Zeros are skipped (the last pixel has no next one)
+            changeOfSign = position < length - 1 && previous * samples.applyAsDouble(position + 1) < 0;
+        }
+        return changeOfSign && Math.abs(previous - pixel) >= slopeThreshold;
+    }
+
+    /**
+     * An {@link ImageRowReader} that reads the rows of an {@link Image}.
+     */
+    private static final class ImageSource implements ImageRowReader {
+
+        private final Image image;
+
+        private int rowsRead;
+
+        private ImageSource(Image image) {
+            this.image = image;
+        }
+
+        @Override
+        public int getWidth() {
+            return image.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return image.getHeight();
+        }
+
+        @Override
+        public int getBands() {
+            return image.getBands();
+        }
+
+        @Override
+        public boolean hasNextRow() {
+            return rowsRead < image.getHeight();
+        }
+
+        @Override
+        public double[] readRow(double[] row) {
+            return image.getRow(rowsRead++, row);
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+
+    /**
+     * An {@link ImageRowWriter} that writes rows into an {@link Image}.
+     */
+    private static final class ImageSink implements ImageRowWriter {
+
+        private final Image image;
+
+        private int rowsWritten;
+
+        private ImageSink(Image template) {
+            this.image = Image.empty(template.getWidth(), template.getHeight(), template.getBands());
+        }
+
+        @Override
+        public void writeRow(double[] row) {
+            image.setRow(rowsWritten++, row);
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+}
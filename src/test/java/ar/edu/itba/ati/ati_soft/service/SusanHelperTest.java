@@ -0,0 +1,128 @@
+package ar.edu.itba.ati.ati_soft.service;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+import ar.edu.itba.ati.ati_soft.models.SusanFeature;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static ar.edu.itba.ati.ati_soft.utils.TestImages.assertImageEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SusanHelper}, comparing it with the evaluation of the circular mask for each pixel.
+ */
+public class SusanHelperTest {
+
+    /**
+     * The circular mask of the SUSAN detector (i.e 37 pixels).
+     */
+    private static final Double[][] CIRCULAR_MASK = {
+            {0d, 0d, 1d, 1d, 1d, 0d, 0d},
+            {0d, 1d, 1d, 1d, 1d, 1d, 0d},
+            {1d, 1d, 1d, 1d, 1d, 1d, 1d},
+            {1d, 1d, 1d, 1d, 1d, 1d, 1d},
+            {1d, 1d, 1d, 1d, 1d, 1d, 1d},
+            {0d, 1d, 1d, 1d, 1d, 1d, 0d},
+            {0d, 0d, 1d, 1d, 1d, 0d, 0d},
+    };
+
+    @Test
+    public void featuresMatchTheCircularMaskDefinition() {
+        final Image image = rectangle(true);
+        for (double t : new double[]{15, 27, 60}) {
+            final Image expected = directDetection(image, t);
+            final List<SusanFeature> features = SusanHelper.findFeatures(image, t);
+            assertImageEquals(expected, SusanHelper.draw(image.getWidth(), image.getHeight(), features), 0d);
+        }
+    }
+
+    @Test
+    public void cornersOfARectangleAreFound() {
+        final List<SusanFeature> features = SusanHelper.findFeatures(rectangle(false), 27);
+        for (int[] corner : new int[][]{{10, 8}, {29, 8}, {10, 21}, {29, 21}}) {
+            assertTrue("Corner " + corner[0] + ", " + corner[1], features.stream()
+                    .anyMatch(feature -> feature.getType() == SusanFeature.Type.CORNER
+                            && Math.abs(feature.getX() - corner[0]) <= 1
+                            && Math.abs(feature.getY() - corner[1]) <= 1));
+        }
+    }
+
+    @Test
+    public void smoothSimilarityMatchesTheHardOneForStepEdges() {
+        // Differences are 0 or far beyond the threshold, where both similarities are (almost) the same
+        final Image image = rectangle(false);
+        final List<SusanFeature> hard = SusanHelper.findFeatures(image, 27);
+        final List<SusanFeature> smooth = SusanHelper.findSmoothFeatures(image, 27);
+        assertEquals(hard.size(), smooth.size());
+        for (int i = 0; i < hard.size(); i++) {
+            assertEquals(hard.get(i).getX(), smooth.get(i).getX());
+            assertEquals(hard.get(i).getY(), smooth.get(i).getY());
+            assertEquals(hard.get(i).getType(), smooth.get(i).getType());
+            assertEquals(hard.get(i).getUsan(), smooth.get(i).getUsan(), 1e-6);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tMustBePositive() {
+        SusanHelper.findFeatures(rectangle(false), 0);
+    }
+
+    /**
+     * Creates a 1-band 40x30 image with a bright rectangle (from 50 to 200) spanning from (10, 8) to (29, 21).
+     *
+     * @param noisy Whether uniform noise must be added to the samples.
+     * @return The created {@link Image}.
+     */
+    private static Image rectangle(boolean noisy) {
+        final Random random = new Random(48);
+        final Image image = Image.empty(40, 30, 1);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                final double value = x >= 10 && x < 30 && y >= 8 && y < 22 ? 200 : 50;
+                image.setSample(x, y, 0, value + (noisy ? random.nextInt(41) - 20 : 0));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Applies the SUSAN detector evaluating the circular mask for each pixel
+     * (i.e as it was done before the mask offsets were calculated once), drawing corners in red, and edges in green.
+     *
+     * @param image The 1-band {@link Image} to be processed.
+     * @param t     The brightness difference threshold.
+     * @return An RGB {@link Image} with the found features.
+     */
+    private static Image directDetection(Image image, double t) {
+        final int margin = CIRCULAR_MASK.length / 2;
+        final Image result = Image.empty(image.getWidth(), image.getHeight(), 3);
+        for (int y = margin; y < image.getHeight() - margin; y++) {
+            for (int x = margin; x < image.getWidth() - margin; x++) {
+                final double nucleus = image.getSample(x, y, 0);
+                double usan = 0;
+                int maskArea = 0;
+                for (int i = 0; i < CIRCULAR_MASK.length; i++) {
+                    for (int j = 0; j < CIRCULAR_MASK.length; j++) {
+                        if (CIRCULAR_MASK[i][j] == 1d) {
+                            maskArea++;
+                            final double sample = image.getSample(x - margin + j, y - margin + i, 0);
+                            if ((i != margin || j != margin) && Math.abs(sample - nucleus) < t) {
+                                usan++;
+                            }
+                        }
+                    }
+                }
+                final double response = 1 - usan / maskArea;
+                if (response >= 0.65 && response <= 0.85) {
+                    result.setSample(x, y, 0, 255);
+                } else if (response >= 0.4 && response <= 0.6) {
+                    result.setSample(x, y, 1, 255);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package ar.edu.itba.ati.ati_soft.utils;
+
+import ar.edu.itba.ati.ati_soft.models.Image;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Helper class that implements methods to build and compare {@link Image}s in tests.
+ */
+public final class TestImages {
+
+    /**
+     * The default tolerance used to compare samples (i.e operations can be performed in a different order).
+     */
+    public static final double TOLERANCE = 1e-9;
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private TestImages() {
+    }
+
+    /**
+     * Creates an {@link Image} with random integer samples in the 8-bit range.
+     *
+     * @param width  The image width.
+     * @param height The image height.
+     * @param bands  The amount of bands.
+     * @param seed   The seed of the random values.
+     * @return The created {@link Image}.
+     */
+    public static Image random(int width, int height, int bands, long seed) {
+        final Random random = new Random(seed);
+        final Image image = Image.empty(width, height, bands);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                for (int b = 0; b < bands; b++) {
+                    image.setSample(x, y, b, random.nextInt(256));
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Checks that both {@link Image}s have the same dimensions and samples (see {@link #TOLERANCE}).
+     *
+     * @param expected The expected {@link Image}.
+     * @param actual   The actual {@link Image}.
+     */
+    public static void assertImageEquals(Image expected, Image actual) {
+        assertImageEquals(expected, actual, TOLERANCE);
+    }
+
+    /**
+     * Checks that both {@link Image}s have the same dimensions and samples, within the given {@code tolerance}.
+     *
+     * @param expected  The expected {@link Image}.
+     * @param actual    The actual {@link Image}.
+     * @param tolerance The max. difference between two samples for them to be considered equal.
+     */
+    public static void assertImageEquals(Image expected, Image actual, double tolerance) {
+        assertEquals("Width", expected.getWidth(), actual.getWidth());
+        assertEquals("Height", expected.getHeight(), actual.getHeight());
+        assertEquals("Bands", expected.getBands(), actual.getBands());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                for (int b = 0; b < expected.getBands(); b++) {
+                    assertEquals("Sample (" + x + ", " + y + ", " + b + ")",
+                            expected.getSample(x, y, b), actual.getSample(x, y, b), tolerance);
+                }
+            }
+        }
+    }
+}